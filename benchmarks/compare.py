@@ -0,0 +1,91 @@
+#!/usr/bin/env python3
+#
+#  compare.py Copyright (C) 2022 Daniel H. Huson
+#
+#  (Some files contain contributions from other authors, who are then mentioned separately.)
+#
+#  This program is free software: you can redistribute it and/or modify
+#  it under the terms of the GNU General Public License as published by
+#  the Free Software Foundation, either version 3 of the License, or
+#  (at your option) any later version.
+#
+#  This program is distributed in the hope that it will be useful,
+#  but WITHOUT ANY WARRANTY; without even the implied warranty of
+#  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+#  GNU General Public License for more details.
+#
+#  You should have received a copy of the GNU General Public License
+#  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+#
+"""
+Compares two JMH result files in JSON format and reports benchmarks that became slower.
+A benchmark is flagged if its score got worse by more than the threshold (in percent) and the
+difference is larger than the combined error margins. Exits with status 1 if any benchmark is flagged.
+
+usage: compare.py [--threshold percent] baseline.json results.json
+"""
+import argparse
+import json
+import sys
+
+
+def load(file_name):
+    """maps benchmark name and parameters to (score, error, unit, mode)"""
+    with open(file_name) as f:
+        runs = json.load(f)
+    results = {}
+    for run in runs:
+        params = run.get("params") or {}
+        key = run["benchmark"].rsplit(".", 2)[-2] + "." + run["benchmark"].rsplit(".", 1)[-1]
+        if params:
+            key += "(" + ",".join("%s=%s" % (name, params[name]) for name in sorted(params)) + ")"
+        metric = run["primaryMetric"]
+        error = metric.get("scoreError")
+        if not isinstance(error, (int, float)):
+            error = 0.0
+        results[key] = (metric["score"], error, metric["scoreUnit"], run["mode"])
+    return results
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Flags benchmarks that are slower than in the baseline")
+    parser.add_argument("--threshold", type=float, default=10.0, help="percent slowdown that is tolerated")
+    parser.add_argument("baseline")
+    parser.add_argument("results")
+    args = parser.parse_args()
+
+    baseline = load(args.baseline)
+    results = load(args.results)
+
+    slower = 0
+    print("%-60s %12s %12s %8s  %s" % ("Benchmark", "Baseline", "Current", "Change", ""))
+    for key in sorted(results):
+        score, error, unit, mode = results[key]
+        if key not in baseline:
+            print("%-60s %12s %12.3f %8s  new" % (key, "-", score, ""))
+            continue
+        base_score, base_error, base_unit, base_mode = baseline[key]
+        if base_unit != unit or base_score == 0:
+            print("%-60s %12.3f %12.3f %8s  not comparable" % (key, base_score, score, ""))
+            continue
+        # throughput: larger is better, all other modes report time: smaller is better
+        if mode == "thrpt":
+            change = 100.0 * (base_score - score) / base_score
+        else:
+            change = 100.0 * (score - base_score) / base_score
+        flag = ""
+        if change > args.threshold and abs(score - base_score) > error + base_error:
+            flag = "SLOWER"
+            slower += 1
+        elif change < -args.threshold and abs(score - base_score) > error + base_error:
+            flag = "faster"
+        print("%-60s %12.3f %12.3f %+7.1f%%  %s" % (key, base_score, score, change, flag))
+    for key in sorted(set(baseline) - set(results)):
+        print("%-60s %12.3f %12s %8s  missing" % (key, baseline[key][0], "-", ""))
+
+    print("Slower: %d of %d (threshold: %.1f%%)" % (slower, len(results), args.threshold))
+    return 1 if slower > 0 else 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
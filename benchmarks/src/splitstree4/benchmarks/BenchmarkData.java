@@ -0,0 +1,126 @@
+/*
+ * BenchmarkData.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.benchmarks;
+
+import jloda.util.parse.NexusStreamParser;
+import splitstree4.algorithms.util.PaupNode;
+import splitstree4.algorithms.util.PaupTreeUtils;
+import splitstree4.algorithms.util.simulate.*;
+import splitstree4.models.JCmodel;
+import splitstree4.nexus.Characters;
+import splitstree4.nexus.Distances;
+import splitstree4.nexus.Taxa;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * synthetic data for the benchmarks, generated with the simulation utilities. All data is
+ * generated from a fixed seed, so that runs are comparable
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class BenchmarkData {
+    public final static long SEED = 17;
+    public final static double TREE_HEIGHT = 0.3;
+    public final static double CLOCK_SIGMA = 0.2;
+
+    /**
+     * creates taxa named taxon1..taxon<ntax>
+     *
+     * @return taxa
+     */
+    public static Taxa createTaxa(int ntax) {
+        return RandomTaxa.generateTaxa(ntax);
+    }
+
+    /**
+     * creates a random coalescent tree with relaxed clock
+     *
+     * @return tree
+     */
+    public static PaupNode createTree(Taxa taxa, GenerateRandom random) {
+        final PaupNode tree = RandomTrees.randomCoalescentTree(taxa, TREE_HEIGHT, random);
+        RandomTrees.relaxClockLogNormal(tree, CLOCK_SIGMA, random);
+        return tree;
+    }
+
+    /**
+     * creates DNA characters evolved along a random tree under the Jukes-Cantor model
+     *
+     * @return characters
+     */
+    public static Characters createCharacters(Taxa taxa, int nchar) {
+        final GenerateRandom random = new GenerateRandom(SEED);
+        final Characters.Format format = new Characters.Format();
+        format.setDatatype(Characters.Datatypes.DNA);
+        final Characters characters = new Characters(taxa.getNtax(), nchar, format);
+        RandomCharacters.simulateCharacters(characters, createTree(taxa, random), new JCmodel(), null, random);
+        return characters;
+    }
+
+    /**
+     * creates additive distances on a random tree, with 10% noise
+     *
+     * @return distances
+     */
+    public static Distances createDistances(Taxa taxa) {
+        final GenerateRandom random = new GenerateRandom(SEED);
+        final Distances distances = RandomDistances.getAdditiveDistances(taxa, createTree(taxa, random));
+        RandomDistances.alterDistances(distances, 0.1, random);
+        return distances;
+    }
+
+    /**
+     * creates a trees block containing random trees, in nexus format
+     *
+     * @return nexus text of a trees block
+     */
+    public static String createTreesNexus(Taxa taxa, int ntrees) {
+        final GenerateRandom random = new GenerateRandom(SEED);
+        final StringBuilder buf = new StringBuilder("begin trees;\n");
+        for (int t = 1; t <= ntrees; t++) {
+            buf.append("tree t").append(t).append(" = ").append(PaupTreeUtils.getNewick(taxa, createTree(taxa, random), true)).append(";\n");
+        }
+        buf.append("end;\n");
+        return buf.toString();
+    }
+
+    /**
+     * writes a characters block in nexus format
+     *
+     * @return nexus text
+     */
+    public static String toNexus(Taxa taxa, Characters characters) throws IOException {
+        final StringWriter w = new StringWriter();
+        characters.write(w, taxa);
+        return w.toString();
+    }
+
+    /**
+     * creates a parser for the given nexus text
+     *
+     * @return parser
+     */
+    public static NexusStreamParser createParser(String text) {
+        return new NexusStreamParser(new StringReader(text));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * CharactersBenchmark.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import splitstree4.algorithms.characters.PairwiseCompare;
+import splitstree4.nexus.Characters;
+import splitstree4.nexus.Taxa;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks for reading characters and comparing sequences
+ *
+ * @author huson
+ * Date: 2022
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CharactersBenchmark {
+    @Param({"20", "100"})
+    public int ntax;
+
+    @Param({"1000", "10000"})
+    public int nchar;
+
+    private Taxa taxa;
+    private Characters characters;
+    private String nexus;
+
+    @Setup
+    public void setup() throws Exception {
+        taxa = BenchmarkData.createTaxa(ntax);
+        characters = BenchmarkData.createCharacters(taxa, nchar);
+        nexus = BenchmarkData.toNexus(taxa, characters);
+    }
+
+    @Benchmark
+    public Characters readCharacters() throws Exception {
+        final Characters result = new Characters();
+        result.read(BenchmarkData.createParser(nexus), taxa);
+        return result;
+    }
+
+    @Benchmark
+    public void pairwiseCompare(Blackhole blackhole) throws Exception {
+        final String symbols = characters.getFormat().getSymbols();
+        for (int s = 1; s <= ntax; s++) {
+            for (int t = s + 1; t <= ntax; t++) {
+                blackhole.consume(new PairwiseCompare(characters, symbols, s, t).getF());
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * NetworkBenchmark.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.benchmarks;
+
+import jloda.util.progress.ProgressSilent;
+import org.openjdk.jmh.annotations.*;
+import splitstree4.algorithms.distances.NeighborNet;
+import splitstree4.algorithms.splits.EqualAngle;
+import splitstree4.core.Document;
+import splitstree4.nexus.Network;
+import splitstree4.nexus.Splits;
+import splitstree4.nexus.Taxa;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmark for computing a splits graph with the equal angle algorithm, on Neighbor-Net splits
+ *
+ * @author huson
+ * Date: 2022
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NetworkBenchmark {
+    @Param({"50", "200"})
+    public int ntax;
+
+    private Document doc;
+    private Taxa taxa;
+    private Splits splits;
+
+    @Setup
+    public void setup() throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        taxa = BenchmarkData.createTaxa(ntax);
+        doc = new Document();
+        doc.setProgressListener(new ProgressSilent());
+        doc.setTaxa(taxa);
+        splits = new NeighborNet().apply(doc, taxa, BenchmarkData.createDistances(taxa));
+    }
+
+    @Benchmark
+    public Network equalAngle() throws Exception {
+        return new EqualAngle().apply(doc, taxa, splits);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * TreesBenchmark.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.benchmarks;
+
+import jloda.util.progress.ProgressSilent;
+import org.openjdk.jmh.annotations.*;
+import splitstree4.algorithms.trees.ConsensusNetwork;
+import splitstree4.core.Document;
+import splitstree4.nexus.Splits;
+import splitstree4.nexus.Taxa;
+import splitstree4.nexus.Trees;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks for reading trees and computing the consensus network
+ *
+ * @author huson
+ * Date: 2022
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreesBenchmark {
+    @Param({"20", "100"})
+    public int ntax;
+
+    @Param({"100", "1000"})
+    public int ntrees;
+
+    private Document doc;
+    private Taxa taxa;
+    private String nexus;
+    private Trees trees;
+
+    @Setup
+    public void setup() throws Exception {
+        taxa = BenchmarkData.createTaxa(ntax);
+        nexus = BenchmarkData.createTreesNexus(taxa, ntrees);
+        trees = readTrees();
+        doc = new Document();
+        doc.setProgressListener(new ProgressSilent());
+        doc.setTaxa(taxa);
+    }
+
+    @Benchmark
+    public Trees readTrees() throws Exception {
+        final Trees result = new Trees();
+        result.read(BenchmarkData.createParser(nexus), taxa);
+        return result;
+    }
+
+    @Benchmark
+    public Splits consensusNetwork() throws Exception {
+        return new ConsensusNetwork().apply(doc, taxa, trees);
+    }
+}
@@ -3,6 +3,8 @@ module splitstree {
     requires transitive com.install4j.runtime;
     requires transitive java.xml;
     requires transitive java.desktop;
+    requires jdk.management;
+    requires jdk.jfr;
 
     requires Jama;
 
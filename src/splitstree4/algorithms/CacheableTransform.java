@@ -0,0 +1,30 @@
+/*
+ * CacheableTransform.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.algorithms;
+
+/**
+ * marker interface for transforms whose result is determined by the taxa, the input block and the options alone.
+ * Only such transforms have their results kept in the transform cache. Transforms that are stochastic, run an
+ * external program or read other blocks of the document must not implement this
+ *
+ * @author huson
+ * Date: 2022
+ */
+public interface CacheableTransform {
+}
@@ -19,21 +19,25 @@
 package splitstree4.algorithms.characters;
 
 import jloda.util.parse.NexusStreamParser;
+import splitstree4.algorithms.util.ExternalProgram;
 import splitstree4.core.Document;
 import splitstree4.core.SplitsException;
 import splitstree4.nexus.Characters;
 import splitstree4.nexus.Splits;
 import splitstree4.nexus.Taxa;
 
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
 
 /**
  * @deprecated Runs external program
  */
 public class C2Sext /* implements Characters2Splits      */ {
+    private final static String INPUT_FILE = "input.nex";
+    private final static String OUTPUT_FILE = "output.nex";
+
     private char special = '_';
+    private boolean cacheable = false;
     private String cmd = "";
     private String informat = "nexus";
     private String outformat = "nexus";
@@ -127,6 +131,25 @@ public class C2Sext /* implements Characters2Splits      */ {
         return special;
     }
 
+    /**
+     * Sets whether the result of the external command may be reused for the same input, default is false,
+     * as the command may depend on files or other state that is not part of its input
+     *
+     * @param cacheable may the result be reused
+     */
+    public void setOptioncacheable(boolean cacheable) {
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * Gets whether the result of the external command may be reused
+     *
+     * @return true, if the result may be reused
+     */
+    public boolean getOptioncacheable() {
+        return cacheable;
+    }
+
     /**
      * Determine whether the external command can be applied to the given
      * data.
@@ -154,20 +177,16 @@ public class C2Sext /* implements Characters2Splits      */ {
 
             shellCmd = shellCmd.replaceAll("" + getOptionspecial(), " ");
 
-            File infile = File.createTempFile("c2s", ".in");
-            infile.deleteOnExit();
-            File outfile = File.createTempFile("c2s", ".out");
-            outfile.deleteOnExit();
-
-            shellCmd = shellCmd.replaceAll("%i", infile.getCanonicalPath());
-            shellCmd = shellCmd.replaceAll("%o", outfile.getCanonicalPath());
+            shellCmd = shellCmd.replaceAll("%i", INPUT_FILE);
+            shellCmd = shellCmd.replaceAll("%o", OUTPUT_FILE);
 
+            final String input;
             if (informat.equalsIgnoreCase("nexus")) {
-                FileWriter w = new FileWriter(infile);
+                final StringWriter w = new StringWriter();
                 w.write("#nexus\n");
                 taxa.write(w);
                 chars.write(w, taxa);
-                w.close();
+                input = w.toString();
             }
             /*
             else if(informat.equalsIgnoreCase("fasta"))
@@ -177,9 +196,9 @@ public class C2Sext /* implements Characters2Splits      */ {
             else
                 throw new SplitsException("Unknown informat: " + getOptioninformat());
 
-            Process p = Runtime.getRuntime().exec(shellCmd);
-            System.out.println("Command line: " + shellCmd);
-            p.waitFor();
+            final ExternalProgram.Invocation invocation = ExternalProgram.Invocation.parse(shellCmd)
+                    .addInputFile(INPUT_FILE, input).addOutputFile(OUTPUT_FILE).setCacheable(getOptioncacheable());
+            final ExternalProgram.Result result = ExternalProgram.getInstance().run(invocation, doc);
             /*
 {
 FileWriter w=new FileWriter(outfile);
@@ -193,7 +212,7 @@ w.close();
             Splits splits = new Splits(taxa.getNtax());
 
             if (getOptionoutformat().equalsIgnoreCase("nexus")) {
-                FileReader r = new FileReader(outfile);
+                StringReader r = new StringReader(result.getRequiredOutputFile(OUTPUT_FILE));
                 NexusStreamParser np = new NexusStreamParser(r);
                 np.matchIgnoreCase("#nexus");
                 Taxa tmp = new Taxa();
@@ -20,6 +20,7 @@ package splitstree4.algorithms.characters;
 
 import jloda.swing.util.Alert;
 import jloda.util.CanceledException;
+import splitstree4.algorithms.CacheableTransform;
 import splitstree4.core.Document;
 import splitstree4.core.SplitsException;
 import splitstree4.models.NucleotideModel;
@@ -35,7 +36,7 @@ import java.awt.event.ActionEvent;
 /**
  * Tools for setting up the options panels (custom designed) with DNA distance methods).
  */
-public abstract class DNAdistance extends SequenceBasedDistance {
+public abstract class DNAdistance extends SequenceBasedDistance implements CacheableTransform {
 
 
     /* These are the parameters used for distance calculation */
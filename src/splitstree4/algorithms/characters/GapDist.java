@@ -20,6 +20,7 @@
  */
 package splitstree4.algorithms.characters;
 
+import splitstree4.algorithms.CacheableTransform;
 import splitstree4.core.Document;
 import splitstree4.nexus.Characters;
 import splitstree4.nexus.Distances;
@@ -28,7 +29,7 @@ import splitstree4.nexus.Taxa;
 /**
  * Computes the gap distance from a set of sequences
  */
-public class GapDist implements Characters2Distances {
+public class GapDist implements Characters2Distances, PairwiseDistances, CacheableTransform {
     public final static String DESCRIPTION = "Calculates the gap distance from a set of sequences.";
 
     /**
@@ -22,6 +22,7 @@
 package splitstree4.algorithms.characters;
 
 import jloda.swing.util.Alert;
+import splitstree4.algorithms.CacheableTransform;
 import splitstree4.core.Document;
 import splitstree4.nexus.Characters;
 import splitstree4.nexus.Distances;
@@ -34,7 +35,7 @@ import java.util.List;
 /**
  * Simple implementation of hamming distances
  */
-public class Hamming implements Characters2Distances {
+public class Hamming implements Characters2Distances, PairwiseDistances, CacheableTransform {
 
     private int optionHandleAmbiguousStates = PairwiseCompare.IGNOREAMBIG;
     private boolean optionNormalize = true;
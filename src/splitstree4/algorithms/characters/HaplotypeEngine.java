@@ -0,0 +1,325 @@
+/*
+ * HaplotypeEngine.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.algorithms.characters;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * stores condensed haplotypes as packed state arrays and caches their pairwise weighted distances.
+ * Haplotypes are referred to by id, ids are never reused, so cached distances survive the
+ * removal of haplotypes from a working set
+ * <p/>
+ * Daniel Huson, 2022
+ */
+public class HaplotypeEngine {
+    private final int length;
+    private final double[] weights;
+
+    private final short[] char2state = new short[Character.MAX_VALUE + 1];
+    private final StringBuilder state2char = new StringBuilder();
+
+    private byte[][] haplotypes = new byte[16][];
+    private float[][] distances = new float[16][]; // distances[i][j] for j<i
+    private int size = 0;
+    private int sizeWithDistances = 0;
+
+    private final Map<Key, Integer> key2id = new HashMap<>();
+
+    /**
+     * constructor
+     *
+     * @param length  length of condensed sequences
+     * @param weights weight of each condensed position, or null
+     */
+    public HaplotypeEngine(int length, double[] weights) {
+        this.length = length;
+        this.weights = weights;
+        Arrays.fill(char2state, (short) -1);
+    }
+
+    /**
+     * adds a sequence, if not already present
+     *
+     * @return id of sequence
+     */
+    public int add(String sequence) {
+        return add(encode(sequence));
+    }
+
+    /**
+     * adds a packed haplotype, if not already present
+     *
+     * @return id of haplotype
+     */
+    public int add(byte[] states) {
+        final Key key = new Key(states);
+        final Integer id = key2id.get(key);
+        if (id != null)
+            return id;
+        if (size == haplotypes.length) {
+            haplotypes = Arrays.copyOf(haplotypes, 2 * size);
+            distances = Arrays.copyOf(distances, 2 * size);
+        }
+        haplotypes[size] = states;
+        key2id.put(key, size);
+        return size++;
+    }
+
+    /**
+     * gets the id of the given packed haplotype
+     *
+     * @return id or -1, if not present
+     */
+    public int indexOf(byte[] states) {
+        final Integer id = key2id.get(new Key(states));
+        return id != null ? id : -1;
+    }
+
+    /**
+     * gets the id of the given sequence
+     *
+     * @return id or -1, if not present
+     */
+    public int indexOf(String sequence) {
+        for (int i = 0; i < sequence.length(); i++) {
+            if (char2state[sequence.charAt(i)] == -1)
+                return -1;
+        }
+        return indexOf(encode(sequence));
+    }
+
+    /**
+     * number of haplotypes
+     *
+     * @return size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * gets the packed states of a haplotype
+     *
+     * @return states, don't modify
+     */
+    public byte[] getStates(int id) {
+        return haplotypes[id];
+    }
+
+    /**
+     * gets the haplotype as a sequence of characters
+     *
+     * @return sequence
+     */
+    public String getSequence(int id) {
+        final byte[] states = haplotypes[id];
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = state2char.charAt(states[i]);
+        return new String(chars);
+    }
+
+    /**
+     * computes the distances for all haplotypes added since the last call, in parallel
+     */
+    public void updateDistances() {
+        if (sizeWithDistances < size) {
+            IntStream.range(sizeWithDistances, size).parallel().forEach(i -> {
+                final float[] row = new float[i];
+                final byte[] a = haplotypes[i];
+                for (int j = 0; j < i; j++)
+                    row[j] = (float) computeDistance(a, haplotypes[j]);
+                distances[i] = row;
+            });
+            sizeWithDistances = size;
+        }
+    }
+
+    /**
+     * gets the cached weighted distance between two haplotypes.
+     * Call updateDistances() after adding haplotypes
+     *
+     * @return distance
+     */
+    public double getDistance(int a, int b) {
+        if (a == b)
+            return 0;
+        else if (a > b)
+            return distances[a][b];
+        else
+            return distances[b][a];
+    }
+
+    /**
+     * computes the weighted distance between two packed haplotypes
+     *
+     * @return distance
+     */
+    public double computeDistance(byte[] a, byte[] b) {
+        double cost = 0;
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i])
+                cost += (weights != null ? weights[i] : 1);
+        }
+        return cost;
+    }
+
+    /**
+     * compute the cost of connecting the median m to the three given haplotypes
+     *
+     * @return cost
+     */
+    public double computeConnectionCost(int a, int b, int c, byte[] m) {
+        return computeDistance(haplotypes[a], m) + computeDistance(haplotypes[b], m) + computeDistance(haplotypes[c], m);
+    }
+
+    /**
+     * computes the quasi medians of three haplotypes
+     *
+     * @return quasi medians
+     */
+    public List<byte[]> computeQuasiMedian(int a, int b, int c) {
+        final byte[] seqA = haplotypes[a];
+        final byte[] seqB = haplotypes[b];
+        final byte[] seqC = haplotypes[c];
+
+        final byte[] median = new byte[length];
+        int numStars = 0;
+        final int[] stars = new int[length];
+        for (int i = 0; i < length; i++) {
+            if (seqA[i] == seqB[i] || seqA[i] == seqC[i])
+                median[i] = seqA[i];
+            else if (seqB[i] == seqC[i])
+                median[i] = seqB[i];
+            else
+                stars[numStars++] = i;
+        }
+        if (numStars == 0)
+            return Collections.singletonList(median);
+
+        final Set<Key> result = new HashSet<>();
+        final Stack<byte[]> stack = new Stack<>();
+        stack.push(median);
+        final Stack<Integer> depths = new Stack<>();
+        depths.push(0);
+        while (!stack.empty()) {
+            final byte[] seq = stack.pop();
+            final int depth = depths.pop();
+            final int pos = stars[depth];
+            for (byte[] source : new byte[][]{seqA, seqB, seqC}) {
+                final byte[] next = seq.clone();
+                next[pos] = source[pos];
+                if (depth + 1 < numStars) {
+                    stack.push(next);
+                    depths.push(depth + 1);
+                } else
+                    result.add(new Key(next));
+            }
+        }
+        final List<byte[]> list = new ArrayList<>(result.size());
+        for (Key key : result)
+            list.add(key.states);
+        return list;
+    }
+
+    /**
+     * computes all pairs of the given haplotypes, sorted by increasing distance. Each pair is encoded as
+     * a long whose upper half holds the distance and whose lower half holds i*ids.length+j,
+     * where i&lt;j are indices into ids. Call updateDistances() first
+     *
+     * @return sorted encoded pairs
+     */
+    public long[] computeSortedPairs(final int[] ids) {
+        final int n = ids.length;
+        if ((long) n * n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many haplotypes: " + n);
+        final long[] pairs = new long[n * (n - 1) / 2];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            int offset = i * n - i * (i + 1) / 2;
+            for (int j = i + 1; j < n; j++) {
+                final int bits = Float.floatToIntBits((float) getDistance(ids[i], ids[j]));
+                pairs[offset++] = ((long) bits << 32) | (i * n + j);
+            }
+        });
+        Arrays.parallelSort(pairs);
+        return pairs;
+    }
+
+    /**
+     * gets the distance encoded in a sorted pair
+     *
+     * @return distance
+     */
+    public static double getPairDistance(long pair) {
+        return Float.intBitsToFloat((int) (pair >>> 32));
+    }
+
+    /**
+     * gets the pair index encoded in a sorted pair
+     *
+     * @return i*n+j
+     */
+    public static int getPairIndex(long pair) {
+        return (int) (pair & 0xffffffffL);
+    }
+
+    /**
+     * encodes a sequence as an array of states
+     *
+     * @return states
+     */
+    private byte[] encode(String sequence) {
+        if (sequence.length() != length)
+            throw new IllegalArgumentException("Sequence has wrong length: " + sequence.length());
+        final byte[] states = new byte[length];
+        for (int i = 0; i < length; i++) {
+            final char ch = sequence.charAt(i);
+            if (char2state[ch] == -1) {
+                if (state2char.length() == Byte.MAX_VALUE)
+                    throw new IllegalArgumentException("Too many different states");
+                char2state[ch] = (short) state2char.length();
+                state2char.append(ch);
+            }
+            states[i] = (byte) char2state[ch];
+        }
+        return states;
+    }
+
+    /**
+     * packed haplotype with cached hash code, used as hash key
+     */
+    private static class Key {
+        private final byte[] states;
+        private final int hash;
+
+        Key(byte[] states) {
+            this.states = states;
+            this.hash = Arrays.hashCode(states);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object other) {
+            return other instanceof Key && hash == ((Key) other).hash && Arrays.equals(states, ((Key) other).states);
+        }
+    }
+}
@@ -23,6 +23,7 @@ package splitstree4.algorithms.characters;
 import Jama.Matrix;
 import jloda.swing.util.Alert;
 import jloda.util.CanceledException;
+import splitstree4.algorithms.CacheableTransform;
 import splitstree4.analysis.characters.CaptureRecapture;
 import splitstree4.core.Document;
 import splitstree4.core.SplitsException;
@@ -86,7 +87,7 @@ import java.awt.event.FocusListener;
  * V = (F - p \Pi)
  * where \Pi is the diagonal matrix with \pi_i values down the diagonal. We then replace F by V in the formula above.
  */
-public class LogDet implements Characters2Distances {
+public class LogDet implements Characters2Distances, CacheableTransform {
 
 
     public final static String DESCRIPTION = "Calculates the logdet- distance";
@@ -21,16 +21,17 @@ package splitstree4.algorithms.characters;
 import jloda.graph.Edge;
 import jloda.graph.EdgeSet;
 import jloda.graph.Node;
+import jloda.graph.NodeIntArray;
 import jloda.graph.NodeSet;
 import jloda.phylo.PhyloSplitsGraph;
 import jloda.util.CanceledException;
-import jloda.util.Pair;
 import jloda.util.progress.ProgressListener;
 import splitstree4.core.Document;
 import splitstree4.nexus.Characters;
 import splitstree4.nexus.Taxa;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * computes splits from binary data  and draws them using the convex hull algorithm
@@ -61,21 +62,27 @@ public class MedianJoining extends QuasiMedianBase implements Characters2Network
      */
     public PhyloSplitsGraph computeGraph(ProgressListener progressListener, Set inputSequences, double[] weights) throws CanceledException {
         System.err.println("Computing the median joining network for epsilon=" + getOptionEpsilon());
+        final HaplotypeEngine engine = new HaplotypeEngine(weights.length, weights);
+        final BitSet input = new BitSet();
+        for (Object sequence : inputSequences) {
+            input.set(engine.add((String) sequence));
+        }
+
         PhyloSplitsGraph graph;
-        Set outputSequences = new HashSet();
-        computeMedianJoiningMainLoop(progressListener, inputSequences, weights, getOptionEpsilon(), outputSequences);
+        final BitSet output = new BitSet();
+        computeMedianJoiningMainLoop(progressListener, engine, input, getOptionEpsilon(), output);
         boolean changed;
         do {
             graph = new PhyloSplitsGraph();
             EdgeSet feasibleLinks = new EdgeSet(graph);
-            computeMinimumSpanningNetwork(outputSequences, weights, 0, graph, feasibleLinks);
-            List toDelete = new LinkedList();
+            NodeIntArray node2id = computeMinimumSpanningNetwork(engine, output, 0, graph, feasibleLinks);
+            List<Edge> toDelete = new LinkedList<>();
             for (Edge e = graph.getFirstEdge(); e != null; e = graph.getNextEdge(e)) {
                 if (!feasibleLinks.contains(e))
                     toDelete.add(e);
             }
-            for (Object aToDelete : toDelete) graph.deleteEdge((Edge) aToDelete);
-            changed = removeObsoleteNodes(graph, inputSequences, outputSequences, feasibleLinks);
+            for (Edge e : toDelete) graph.deleteEdge(e);
+            changed = removeObsoleteNodes(graph, node2id, input, output, feasibleLinks);
             progressListener.incrementProgress();
         }
         while (changed);
@@ -83,50 +90,51 @@ public class MedianJoining extends QuasiMedianBase implements Characters2Network
     }
 
     /**
-     * Main loop of the median joining algorithm
+     * Main loop of the median joining algorithm. Sequences are referred to by their id in the haplotype engine.
+     * Quasi medians and their connection costs are computed in parallel
      *
      */
-    private void computeMedianJoiningMainLoop(ProgressListener progressListener, Set input, double[] weights, int epsilon, Set<String> outputSequences) throws CanceledException {
-        outputSequences.addAll(input);
+    private void computeMedianJoiningMainLoop(ProgressListener progressListener, HaplotypeEngine engine, BitSet input, int epsilon, BitSet output) throws CanceledException {
+        output.or(input);
 
         boolean changed = true;
         while (changed) {
-            System.err.println("Median joining: " + outputSequences.size() + " sequences");
+            System.err.println("Median joining: " + output.cardinality() + " sequences");
             progressListener.incrementProgress();
             changed = false;
             PhyloSplitsGraph graph = new PhyloSplitsGraph();
             EdgeSet feasibleLinks = new EdgeSet(graph);
-            computeMinimumSpanningNetwork(outputSequences, weights, epsilon, graph, feasibleLinks);
-            if (removeObsoleteNodes(graph, input, outputSequences, feasibleLinks)) {
+            NodeIntArray node2id = computeMinimumSpanningNetwork(engine, output, epsilon, graph, feasibleLinks);
+            if (removeObsoleteNodes(graph, node2id, input, output, feasibleLinks)) {
                 changed = true;   // sequences have been changed, recompute graph
             } else {
                 // determine min connection cost:
-                double minConnectionCost = Double.MAX_VALUE;
-
+                final List<int[]> triples = new ArrayList<>();
                 for (Node u = graph.getFirstNode(); u != null; u = u.getNext()) {
-                    String seqU = (String) u.getInfo();
                     for (Edge e = u.getFirstAdjacentEdge(); e != null; e = u.getNextAdjacentEdge(e)) {
                         Node v = e.getOpposite(u);
-                        String seqV = (String) v.getInfo();
                         for (Edge f = u.getNextAdjacentEdge(e); f != null; f = u.getNextAdjacentEdge(f)) {
                             Node w = f.getOpposite(u);
-                            String seqW = (String) w.getInfo();
-                            String[] qm = computeQuasiMedian(seqU, seqV, seqW);
-                            for (String aQm : qm) {
-                                if (!outputSequences.contains(aQm)) {
-                                    double cost = computeConnectionCost(seqU, seqV, seqW, aQm, weights);
-                                    if (cost < minConnectionCost)
-                                        minConnectionCost = cost;
-                                }
-                            }
+                            triples.add(new int[]{node2id.get(u), node2id.get(v), node2id.get(w)});
                         }
                     }
                 }
+                progressListener.checkForCancel();
+
+                final double minConnectionCost = triples.parallelStream().mapToDouble(t -> {
+                    double min = Double.MAX_VALUE;
+                    for (byte[] median : engine.computeQuasiMedian(t[0], t[1], t[2])) {
+                        int id = engine.indexOf(median);
+                        if (id == -1 || !output.get(id))
+                            min = Math.min(min, engine.computeConnectionCost(t[0], t[1], t[2], median));
+                    }
+                    return min;
+                }).min().orElse(Double.MAX_VALUE);
+
+                triples.clear();
                 for (Edge e : feasibleLinks) {
                     Node u = e.getSource();
                     Node v = e.getTarget();
-                    String seqU = (String) u.getInfo();
-                    String seqV = (String) v.getInfo();
                     for (Edge f : feasibleLinks.successors(e)) {
                         Node w;
                         if (f.getSource() == u || f.getSource() == v)
@@ -135,16 +143,27 @@ public class MedianJoining extends QuasiMedianBase implements Characters2Network
                             w = f.getSource();
                         else
                             continue;
-                        String seqW = (String) w.getInfo();
-                        String[] qm = computeQuasiMedian(seqU, seqV, seqW);
-                        for (String aQm : qm) {
-                            if (!outputSequences.contains(aQm)) {
-                                double cost = computeConnectionCost(seqU, seqV, seqW, aQm, weights);
-                                if (cost <= minConnectionCost + epsilon) {
-                                    outputSequences.add(aQm);
-                                    changed = true;
-                                }
-                            }
+                        triples.add(new int[]{node2id.get(u), node2id.get(v), node2id.get(w)});
+                    }
+                }
+                progressListener.checkForCancel();
+
+                final List<List<byte[]>> newMedians = triples.parallelStream().map(t -> {
+                    final List<byte[]> list = new LinkedList<>();
+                    for (byte[] median : engine.computeQuasiMedian(t[0], t[1], t[2])) {
+                        int id = engine.indexOf(median);
+                        if ((id == -1 || !output.get(id)) && engine.computeConnectionCost(t[0], t[1], t[2], median) <= minConnectionCost + epsilon)
+                            list.add(median);
+                    }
+                    return list;
+                }).collect(Collectors.toList());
+
+                for (List<byte[]> list : newMedians) {
+                    for (byte[] median : list) {
+                        int id = engine.add(median);
+                        if (!output.get(id)) {
+                            output.set(id);
+                            changed = true;
                         }
                     }
                 }
@@ -153,96 +172,103 @@ public class MedianJoining extends QuasiMedianBase implements Characters2Network
     }
 
     /**
-     * computes the minimum spanning network upto a tolerance of epsilon
+     * computes the minimum spanning network upto a tolerance of epsilon. Uses the cached distances of the haplotype engine
+     * and processes all pairs in order of increasing distance, maintaining components using union-find
      *
+     * @return mapping of nodes to haplotype ids
      */
-    private void computeMinimumSpanningNetwork(Set sequences, double[] weights, int epsilon, PhyloSplitsGraph graph, EdgeSet feasibleLinks) {
-        String[] array = (String[]) sequences.toArray(new String[0]);
-        // compute a distance matrix between all sequences:
-        double[][] matrix = new double[array.length][array.length];
-
-        SortedMap<Double, List<Pair<Integer, Integer>>> value2pairs = new TreeMap<>();
-
-        for (int i = 0; i < array.length; i++) {
-            for (int j = i + 1; j < array.length; j++) {
-				matrix[i][j] = computeDistance(array[i], array[j], weights);
-				Double value = matrix[i][j];
-				List<Pair<Integer, Integer>> pairs = value2pairs.computeIfAbsent(value, k -> new ArrayList<>());
-				pairs.add(new Pair(i, j));
-			}
+    private NodeIntArray computeMinimumSpanningNetwork(HaplotypeEngine engine, BitSet sequences, int epsilon, PhyloSplitsGraph graph, EdgeSet feasibleLinks) {
+        final int[] ids = sequences.stream().toArray();
+        final int n = ids.length;
+
+        engine.updateDistances();
+        final long[] pairs = engine.computeSortedPairs(ids);
+
+        final NodeIntArray node2id = new NodeIntArray(graph);
+        Node[] nodes = new Node[n];
+        for (int i = 0; i < n; i++) {
+            final String sequence = engine.getSequence(ids[i]);
+            nodes[i] = graph.newNode(sequence);
+            graph.setLabel(nodes[i], sequence);
+            node2id.set(nodes[i], ids[i]);
+        }
+
+        final int[] componentsOfMSN = new int[n];
+        final int[] componentsOfThresholdGraph = new int[n];
+        for (int i = 0; i < n; i++) {
+            componentsOfMSN[i] = i;
+            componentsOfThresholdGraph[i] = i;
         }
+        int numComponentsMSN = n;
+
+        double maxValue = Double.MAX_VALUE;
+        int thresholdPos = 0; // all pairs before this position have been merged into the threshold graph
+        // all sets of edges in ascending order of lengths
+        for (int start = 0; start < pairs.length; ) {
+            final double threshold = HaplotypeEngine.getPairDistance(pairs[start]);
+            if (threshold > maxValue)
+                break;
+            int end = start + 1;
+            while (end < pairs.length && HaplotypeEngine.getPairDistance(pairs[end]) == threshold)
+                end++;
+
+            // update threshold graph components:
+            while (thresholdPos < pairs.length && HaplotypeEngine.getPairDistance(pairs[thresholdPos]) < threshold - epsilon) {
+                final int index = HaplotypeEngine.getPairIndex(pairs[thresholdPos++]);
+                union(componentsOfThresholdGraph, index / n, index % n);
+            }
+
+            // determine new edges for minimum spanning network and determine feasible links
+            for (int p = start; p < end; p++) {
+                final int index = HaplotypeEngine.getPairIndex(pairs[p]);
+                final int i = index / n;
+                final int j = index % n;
+
+                Edge e = graph.newEdge(nodes[i], nodes[j]);
+                graph.setWeight(e, threshold);
 
-        Node[] nodes = new Node[array.length];
-        int[] componentsOfMSN = new int[array.length];
-        int[] componentsOfThresholdGraph = new int[array.length];
-
-        for (int i = 0; i < array.length; i++) {
-            nodes[i] = graph.newNode(array[i]);
-            graph.setLabel(nodes[i], array[i]);
-			componentsOfMSN[i] = i;
-			componentsOfThresholdGraph[i] = i;
-		}
-
-		int numComponentsMSN = array.length;
-
-		// TODO: This implementation of the minimum spanning network is wrong, add only edges between different connected components
-
-		double maxValue = Double.MAX_VALUE;
-		// all sets of edges in ascending order of lengths
-		for (Double o : value2pairs.keySet()) {
-			Double value = o;
-			double threshold = value;
-			if (threshold > maxValue)
-				break;
-			var ijPairs = (List<Pair<Integer, Integer>>) value2pairs.get(value);
-
-			// update threshold graph components:
-			for (int i = 0; i < array.length; i++) {
-				for (int j = i + 1; j < array.length; j++) {
-					if (componentsOfThresholdGraph[i] != componentsOfThresholdGraph[j] && matrix[i][j] < threshold - epsilon) {
-						int oldComponent = componentsOfThresholdGraph[i];
-						int newComponent = componentsOfThresholdGraph[j];
-						for (int k = 0; k < array.length; k++) {
-							if (componentsOfThresholdGraph[k] == oldComponent)
-								componentsOfThresholdGraph[k] = newComponent;
-						}
-					}
-				}
-			}
-
-			// determine new edges for minimum spanning network and determine feasible links
-			var newPairs = new ArrayList<Pair<Integer, Integer>>();
-			for (var ijPair : ijPairs) {
-				int i = ijPair.getFirst();
-				int j = ijPair.getSecond();
-
-				Edge e = graph.newEdge(nodes[i], nodes[j]);
-				graph.setWeight(e, matrix[i][j]);
-
-				if (feasibleLinks != null && componentsOfThresholdGraph[i] != componentsOfThresholdGraph[j]) {
-					feasibleLinks.add(e);
-					if (false)
-						System.err.println("ERROR nodes are connected: " + i + ", " + j);
-				}
-				newPairs.add(new Pair<>(i, j));
-			}
-
-			// update MSN components
-			for (var pair : newPairs) {
-				int i = pair.getFirst();
-				int j = pair.getSecond();
-				if (componentsOfMSN[i] != componentsOfMSN[j]) {
-					numComponentsMSN--;
-					int oldComponent = componentsOfMSN[i];
-					int newComponent = componentsOfMSN[j];
-					for (int k = 0; k < array.length; k++)
-						if (componentsOfMSN[k] == oldComponent)
-							componentsOfMSN[k] = newComponent;
-				}
-			}
-			if (numComponentsMSN == 1 && maxValue == Double.MAX_VALUE)
+                if (feasibleLinks != null && find(componentsOfThresholdGraph, i) != find(componentsOfThresholdGraph, j))
+                    feasibleLinks.add(e);
+            }
+
+            // update MSN components
+            for (int p = start; p < end; p++) {
+                final int index = HaplotypeEngine.getPairIndex(pairs[p]);
+                if (union(componentsOfMSN, index / n, index % n))
+                    numComponentsMSN--;
+            }
+            if (numComponentsMSN == 1 && maxValue == Double.MAX_VALUE)
                 maxValue = threshold + epsilon; // once network is connected, add all edges upto threshold+epsilon
+            start = end;
+        }
+        return node2id;
+    }
+
+    /**
+     * find the representative of a component, with path halving
+     *
+     * @return representative
+     */
+    private static int find(int[] components, int i) {
+        while (components[i] != i) {
+            components[i] = components[components[i]];
+            i = components[i];
         }
+        return i;
+    }
+
+    /**
+     * merge the components of i and j
+     *
+     * @return true, if they were different
+     */
+    private static boolean union(int[] components, int i, int j) {
+        final int ci = find(components, i);
+        final int cj = find(components, j);
+        if (ci == cj)
+            return false;
+        components[ci] = cj;
+        return true;
     }
 
     /**
@@ -273,16 +299,15 @@ public class MedianJoining extends QuasiMedianBase implements Characters2Network
      *
      * @return true, if anything was removed
      */
-    private boolean removeObsoleteNodes(PhyloSplitsGraph graph, Set input, Set sequences, EdgeSet feasibleLinks) {
+    private boolean removeObsoleteNodes(PhyloSplitsGraph graph, NodeIntArray node2id, BitSet input, BitSet sequences, EdgeSet feasibleLinks) {
         int removed = 0;
         boolean changed = true;
         while (changed) {
             changed = false;
-            List toDelete = new LinkedList();
+            List<Node> toDelete = new LinkedList<>();
 
             for (Node v = graph.getFirstNode(); v != null; v = v.getNext()) {
-                String seqV = (String) v.getInfo();
-                if (!input.contains(seqV)) {
+                if (!input.get(node2id.get(v))) {
                     int count = 0;
                     for (Edge e = v.getFirstAdjacentEdge(); count <= 2 && e != null; e = v.getNextAdjacentEdge(e)) {
                         if (feasibleLinks.contains(e))
@@ -295,9 +320,8 @@ public class MedianJoining extends QuasiMedianBase implements Characters2Network
             if (toDelete.size() > 0) {
                 changed = true;
                 removed += toDelete.size();
-                for (Object aToDelete : toDelete) {
-                    Node v = (Node) aToDelete;
-                    sequences.remove(v.getInfo());
+                for (Node v : toDelete) {
+                    sequences.clear(node2id.get(v));
                     graph.deleteNode(v);
                 }
             }
@@ -305,78 +329,6 @@ public class MedianJoining extends QuasiMedianBase implements Characters2Network
         return removed > 0;
     }
 
-
-    /**
-     * compute the cost of connecting seqM to the other three sequences
-     *
-     * @return cost
-     */
-    private double computeConnectionCost(String seqU, String seqV, String seqW, String seqM, double[] weights) {
-        return computeDistance(seqU, seqM, weights) + computeDistance(seqV, seqM, weights) + computeDistance(seqW, seqM, weights);
-    }
-
-    /**
-     * compute weighted distance between two sequences
-     *
-     * @return distance
-     */
-    private double computeDistance(String seqA, String seqB, double[] weights) {
-        double cost = 0;
-        for (int i = 0; i < seqA.length(); i++) {
-            if (seqA.charAt(i) != seqB.charAt(i))
-                if (weights != null)
-                    cost += weights[i];
-                else
-                    cost++;
-        }
-        return cost;
-    }
-
-
-    /**
-     * computes the quasi median for three sequences
-     *
-     * @return quasi median
-     */
-    private String[] computeQuasiMedian(String seqA, String seqB, String seqC) {
-        StringBuilder buf = new StringBuilder();
-        boolean hasStar = false;
-        for (int i = 0; i < seqA.length(); i++) {
-            if (seqA.charAt(i) == seqB.charAt(i) || seqA.charAt(i) == seqC.charAt(i))
-                buf.append(seqA.charAt(i));
-            else if (seqB.charAt(i) == seqC.charAt(i))
-                buf.append(seqB.charAt(i));
-            else {
-                buf.append("*");
-                hasStar = true;
-            }
-        }
-        if (!hasStar)
-            return new String[]{buf.toString()};
-
-        Set median = new HashSet();
-        Stack stack = new Stack();
-        stack.add(buf.toString());
-        while (!stack.empty()) {
-            String seq = (String) stack.pop();
-            int pos = seq.indexOf('*');
-            int pos2 = seq.indexOf('*', pos + 1);
-            String first = seq.substring(0, pos) + seqA.charAt(pos) + seq.substring(pos + 1);
-            String second = seq.substring(0, pos) + seqB.charAt(pos) + seq.substring(pos + 1);
-            String third = seq.substring(0, pos) + seqC.charAt(pos) + seq.substring(pos + 1);
-            if (pos2 == -1) {
-                median.add(first);
-                median.add(second);
-                median.add(third);
-            } else {
-                stack.add(first);
-                stack.add(second);
-                stack.add(third);
-            }
-        }
-		return (String[]) median.toArray(new String[0]);
-    }
-
     /**
      * Gets a short description of the algorithm
      *
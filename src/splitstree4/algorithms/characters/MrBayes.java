@@ -19,10 +19,9 @@
 package splitstree4.algorithms.characters;
 
 import jloda.swing.util.ProgramProperties;
-import jloda.util.Basic;
 import jloda.util.CanceledException;
-import jloda.util.StreamGobbler;
 import jloda.util.parse.NexusStreamParser;
+import splitstree4.algorithms.util.ExternalProgram;
 import splitstree4.core.Document;
 import splitstree4.core.SplitsException;
 import splitstree4.externalIO.imports.ImportManager;
@@ -30,7 +29,12 @@ import splitstree4.nexus.Characters;
 import splitstree4.nexus.Taxa;
 import splitstree4.nexus.Trees;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.function.Consumer;
 
 
 /**
@@ -53,10 +57,9 @@ public class MrBayes implements Characters2Trees {
 
     /* OTHER FIELDS */
 
-    private static final int LINUX = 0;
-    private static final int REDMOND = 1;
-    private static final int MAC_OS = 2;
-    private int os = 0;
+    private static final String INFILE = "input.nex";
+    // the trees sampled in the first run:
+    private static final String TREE_FILE = INFILE + ".run1.t";
 
 
     public MrBayes() {
@@ -87,16 +90,6 @@ public class MrBayes implements Characters2Trees {
         if (!mrBayesBin.isFile()) {
             throw new SplitsException(getClass().getName() + ": File not found: " + getOptionMrBayesPath());
         }
-        final File mrBayesDir = mrBayesBin.getParentFile();
-        final File infile = File.createTempFile("tmp_MB_input", ".nex", mrBayesDir);
-        final String tmpFileName = infile.getName();
-        final String tmpFileBaseName = tmpFileName.substring(0, tmpFileName.length() - 4);
-        final File treeFile = new File(mrBayesDir, tmpFileBaseName + ".nex.run1.t");
-
-        // get os
-        if (System.getProperty("os.name").matches(".*[Ll]inux.*")) os = MrBayes.LINUX;
-        if (System.getProperty("os.name").matches(".*[Ww]indows.*")) os = MrBayes.REDMOND;
-        if (System.getProperty("os.name").matches(".*[Mm]ac.*")) os = MrBayes.MAC_OS;
 
         /* write MrBayes-infile */
         doc.notifySubtask("exporting data");
@@ -106,11 +99,11 @@ public class MrBayes implements Characters2Trees {
         for (int i = 1; i <= taxa.getNtax(); i++) {
             newTaxa.setLabel(i, "TAXON" + i);
         }
-        createMrBayesInput(infile, newTaxa, chars);
+        final String input = createMrBayesInput(newTaxa, chars);
 
         /* execute MyBayes */
         doc.notifySubtask("running " + getOptionMrBayesPath());
-        executeMrBayes(mrBayesBin, infile, doc);
+        final String treeFile = executeMrBayes(mrBayesBin, input, doc);
 
         /* import sampled trees */
         doc.notifySubtask("importing the trees sampled");
@@ -120,10 +113,9 @@ public class MrBayes implements Characters2Trees {
 
     }
 
-    private void createMrBayesInput(File infile, Taxa taxa, Characters chars) throws SplitsException {
-        FileWriter fw;
+    private String createMrBayesInput(Taxa taxa, Characters chars) throws SplitsException {
+        final StringWriter fw = new StringWriter();
         try {
-            fw = new FileWriter(infile);
             boolean oldQuoteLabels = chars.getFormat().isLabelQuotes();
             chars.getFormat().setLabelQuotes(false);
             chars.writeDataBlock(fw, taxa);
@@ -140,62 +132,31 @@ public class MrBayes implements Characters2Trees {
             //fw.write(" nruns="+getOptionNumRuns());
             fw.write(" nChains=" + (getOptionNumHeatedChains() - 1));
             fw.write(";\n\tquit;\nend;\n");
-            fw.close();
-
         } catch (IOException e) {
-            throw new SplitsException(getClass().getName() + ": could not write to temp file: " + e.getMessage());
+            throw new SplitsException(getClass().getName() + ": could not write input: " + e.getMessage());
         }
+        return fw.toString();
     }
 
     /**
-     * execute the MrBayes executable using Runtime.exec
+     * execute the MrBayes executable in a directory of its own
      *
      * @param mrBayesBin the executable MrBayes
-     * @param inputFile  (the input file)
+     * @param input      content of the input file
+     * @return content of the file of sampled trees
      */
-    private void executeMrBayes(File mrBayesBin, File inputFile, Document doc) throws IOException {
-
-
-        String shell = (os == MrBayes.REDMOND) ? "cmd.exe" : "sh";
-        String readCmdStringOpt = (os == MrBayes.REDMOND) ? "/c" : "-c";
-
-        String mrBayesCmd = mrBayesBin.getAbsolutePath()
-                            + "  "
-                            + inputFile.getName();
-
-
-        String[] commands = new String[]
-                {
-                        shell,
-                        readCmdStringOpt,
-                        mrBayesCmd
-                };
-
+    private String executeMrBayes(File mrBayesBin, String input, Document doc) throws IOException {
+        // MrBayes uses a random seed, so its results are not cached
+        final ExternalProgram.Invocation invocation = new ExternalProgram.Invocation(List.of(mrBayesBin.getAbsolutePath(), INFILE))
+                .addInputFile(INFILE, input).addOutputFile(TREE_FILE).setCacheable(false)
+                .setOutputListener(new MrBayesProgressListener(getOptionNumGenerations(), doc));
         try {
-            Process proc = Runtime.getRuntime().exec(commands, null, mrBayesBin.getParentFile());
-            System.out.println("Executing: ");
-            for (String command : commands) System.out.println("\t" + command);
-
-            // any error message?
-            StreamGobbler errorGobbler = new
-                    StreamGobbler(proc.getErrorStream(), "ERROR");
-
-            // any output?
-            MrBayesOutputGobbler outputGobbler = new
-                    MrBayesOutputGobbler(proc, getOptionNumGenerations(), doc);
-
-            // kick them off
-            errorGobbler.start();
-            outputGobbler.start();
-
-            System.err.println("### Started external command ###");
             doc.notifySetMaximumProgress(getOptionNumGenerations());
-            int exitVal = proc.waitFor();
+            final ExternalProgram.Result result = ExternalProgram.getInstance().run(invocation, doc);
             doc.notifySetProgress(-1);
-            System.err.println("### Finished external command ###");
-            // any error???
-            if (exitVal != 0)
-                throw new SplitsException("Return value=" + exitVal);
+            if (result.getExitCode() != 0)
+                throw new SplitsException("Return value=" + result.getExitCode());
+            return result.getRequiredOutputFile(TREE_FILE);
         } catch (Exception e) {
             //ToDO: we can still recover any trees generated.
             throw new SplitsException(getClass().getName() + ": " + e.getMessage());
@@ -206,22 +167,20 @@ public class MrBayes implements Characters2Trees {
     /**
      * parse computed output
      *
-     * @param outtree phylip outtree-file
+     * @param outtree content of the file of sampled trees
      * @param taxa    original taxa
      * @return the parsed Trees-block
      * @throws Exception SplitsException, if import or parsing fails
      */
-    private Trees parseTrees(File outtree, Taxa taxa) throws IOException {
+    private Trees parseTrees(String outtree, Taxa taxa) throws IOException {
 
         Trees trees = new Trees();
         String nexus;
 
         // convert newick to nexus format
-        try {
-            nexus = ImportManager.importData(outtree);
-        } catch (Exception e) {
-            throw new SplitsException(getClass().getName() + ": import failed: " + e.getMessage());
-        }
+        nexus = ImportManager.importDataFromString(outtree);
+        if (nexus == null)
+            throw new SplitsException(getClass().getName() + ": import failed");
 
         // parse trees in nexus format
         try {
@@ -337,23 +296,21 @@ public class MrBayes implements Characters2Trees {
 
 }
 
-class MrBayesOutputGobbler extends Thread {
-	boolean stopped = false;
-	final Process process;
-	final InputStream inputStream;
+/**
+ * follows the output of MrBayes and reports the progress of the chain
+ */
+class MrBayesProgressListener implements Consumer<String> {
 	final int numGens;
 	final Document doc;
-
+	boolean inChain = false;
+	boolean finishedChain = false;
 
 	/**
-	 * construct a gobbler
+	 * construct a listener
 	 *
-	 * @param process the process that MrBayes is running in.
 	 * @param numGens number of generations in the chain
 	 */
-	public MrBayesOutputGobbler(Process process, int numGens, final Document doc) {
-        this.process = process;
-        this.inputStream = process.getInputStream();
+	public MrBayesProgressListener(int numGens, final Document doc) {
         this.numGens = numGens;
         this.doc = doc;
     }
@@ -381,57 +338,32 @@ class MrBayesOutputGobbler extends Thread {
     }
 
     /**
-     * the run method
+     * process a line of output
      */
-    public void run() {
-        try {
-            InputStreamReader isr = new InputStreamReader(inputStream);
-            BufferedReader br = new BufferedReader(isr);
-            String line;
-            boolean inChain = false;
-            boolean finishedChain = false;
-            while ((line = br.readLine()) != null) {
-                if (!inChain && !finishedChain && line.endsWith("Chain results:")) {
-                    System.err.println(line);
-                    inChain = true;
-                } else {
-                    if (inChain) {
-                        int step = getStep(line);
-                        //TODO: Add other diagnostics here.
-                        if (step > 0) {
-                            System.err.println("STEP = " + step);
-                            try {
-                                doc.notifySetProgress(step);
-                            } catch (CanceledException e) {
-                                process.destroy();
-                                //throw new CanceledException("Cancelled MrBayes Run");
-                                return;
-                            }
-                        }
-                        if (step >= numGens) {
-                            inChain = false;
-                            finishedChain = true;
-                        }
-
+    public void accept(String line) {
+        if (!inChain && !finishedChain && line.endsWith("Chain results:")) {
+            System.err.println(line);
+            inChain = true;
+        } else {
+            if (inChain) {
+                int step = getStep(line);
+                //TODO: Add other diagnostics here.
+                if (step > 0) {
+                    System.err.println("STEP = " + step);
+                    try {
+                        doc.notifySetProgress(step);
+                    } catch (CanceledException e) {
+                        // the process is destroyed by the external program runner
                     }
-                    System.err.println(line);
-
+                }
+                if (step >= numGens) {
+                    inChain = false;
+                    finishedChain = true;
                 }
 
-
-                if (stopped)
-                    break;
             }
-        } catch (IOException ex) {
-            System.err.println("Catching basic in Gobbler");
-            Basic.caught(ex);
-        }
-    }
+            System.err.println(line);
 
-    /**
-     * finish gobbling
-     */
-    public void finish() {
-        stopped = true;
+        }
     }
 }
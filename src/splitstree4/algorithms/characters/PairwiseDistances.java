@@ -0,0 +1,30 @@
+/*
+ * PairwiseDistances.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.algorithms.characters;
+
+/**
+ * marker interface for methods that compute the distance between two taxa from their two sequences alone.
+ * Hiding taxa does not change the distances between the remaining taxa, so these can be obtained from
+ * the previously computed distances, if the masking of characters does not depend on the taxa either
+ *
+ * @author huson
+ * Date: 2022
+ */
+public interface PairwiseDistances {
+}
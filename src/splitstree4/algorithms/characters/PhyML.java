@@ -18,10 +18,10 @@
  */
 package splitstree4.algorithms.characters;
 
-import jloda.swing.util.Alert;
 import jloda.swing.util.ProgramProperties;
-import jloda.util.StreamGobbler;
+import jloda.util.CanceledException;
 import jloda.util.parse.NexusStreamParser;
+import splitstree4.algorithms.util.ExternalProgram;
 import splitstree4.core.Document;
 import splitstree4.core.SplitsException;
 import splitstree4.externalIO.exports.ExportManager;
@@ -32,9 +32,10 @@ import splitstree4.nexus.Trees;
 
 import javax.swing.*;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -163,10 +164,10 @@ public class PhyML implements Characters2Trees {
 
     //	 exporter (phylip sequential format)
     private final String exportFormat = "PhylipSequences";
-    private static final int LINUX = 0;
-    private static final int REDMOND = 1;
-    private static final int MAC_OS = 2;
-    private int os = 0;
+    // phylip infile which the sequence data is written to (as PHYML uses phylip input files)
+    private static final String INFILE = "infile";
+    // phylip outtree: where trees are written to in newick-format.
+    private static final String OUTTREE = "infile_phyml_tree.txt";
 
 
     /* (non-Javadoc)
@@ -200,58 +201,34 @@ public class PhyML implements Characters2Trees {
             throw new SplitsException(getClass().getName() + ": File not found: " + getOptionPHYMLPath());
         }
 
-        // get os 
-        if (System.getProperty("os.name").matches(".*[Ll]inux.*")) os = LINUX;
-        if (System.getProperty("os.name").matches(".*[Ww]indows.*")) os = REDMOND;
-        if (System.getProperty("os.name").matches(".*[Mm]ac.*")) os = MAC_OS;
-
-        /* prepare files:
-         * infile, input (options), outtree */
-        final String dir = System.getProperty("user.dir") + File.separator;
-        // phylip infile which the sequence data will be written to (as PHYML uses phylip input files)
-        final File infile = new File(dir + "infile");
-
-        // phyML outfiles: just delete it so phyML
-        // always asks the same questions.
-        final File outfileLk = new File(dir + "infile_phyml_lk.txt");
-        final File outfileStat = new File(dir + "infile_phyml_stat.txt");
-        final File outfileBootTrees = new File(dir + "infile_phyml_boot_trees.txt");
-        final File outfileBootStats = new File(dir + "infile_phyml_boot_stats.txt");
-        // phylip outtree: where trees are written to in newick-format.
-        final File outtree = new File(dir + "infile_phyml_tree.txt");
-        // standard input is redirected to this file for phylip.
-        final File st_options = new File(dir + "st_options");
-        // remove existing files
-        if (!removeFiles(new File[]{infile, outfileBootStats, outfileBootTrees, outfileLk, outfileStat, outtree, st_options}))
-            throw new SplitsException(getClass().getName() + ": could not remove files.");
-
         /* write phylip-infile */
         doc.notifySubtask("exporting data");
 
         // taxa-names may be truncated for phylip
         Map exportName2OrigName;
+        final String infile;
         try {
-            exportName2OrigName = writeInfile(doc, infile, taxa, chars);
+            final File exportFile = File.createTempFile("phyml", ".phy");
+            try {
+                exportName2OrigName = writeInfile(doc, exportFile, taxa, chars);
+                infile = Files.readString(exportFile.toPath());
+            } finally {
+                if (!exportFile.delete())
+                    System.err.println("Failed to delete: " + exportFile);
+            }
         } catch (Exception e) {
             throw new SplitsException(getClass().getName() + ": Export failed: " + e.getMessage());
         }
 
-        /* execute phyml */
+        /* execute phyml, in its own directory, so that several runs can take place at the same time */
         doc.notifySubtask("run " + getOptionPHYMLPath());
-        // write phyml-options
-        writeOptionFile(infile, st_options, doc);
-        executePhyML(st_options, phylipBin);
+        final String outtree = executePhyML(infile, getOptions(doc), phylipBin, doc);
 
         /* import computed trees */
         doc.notifySubtask("import computed trees");
 
         Trees trees = parseTrees(outtree, exportName2OrigName, taxa);
 
-        /* remove files */
-        doc.notifySubtask("cleaning up");
-        if (!removeFiles(new File[]{infile, outfileBootStats, outfileBootTrees, outfileLk, outfileStat, outtree, st_options}))
-            throw new SplitsException(getClass().getName() + ": could not remove files.");
-
         return trees;
 
     }
@@ -259,23 +236,21 @@ public class PhyML implements Characters2Trees {
     /**
      * parse computed output
      *
-     * @param outtree             phylip outtree-file
+     * @param outtree             content of the phylip outtree-file
      * @param exportName2OrigName maps truncated taxa-names to original ones
      * @param taxa                original taxa
      * @return the parsed Trees-block
      * @throws Exception SplitsException, if import or parsing fails
      */
-    private Trees parseTrees(File outtree, Map exportName2OrigName, Taxa taxa) throws IOException {
+    private Trees parseTrees(String outtree, Map exportName2OrigName, Taxa taxa) throws IOException {
 
         Trees trees = new Trees();
         String nexus;
 
         // convert newick to nexus format
-        try {
-            nexus = ImportManager.importData(outtree);
-        } catch (Exception e) {
-            throw new SplitsException(getClass().getName() + ": import failed: " + e.getMessage());
-        }
+        nexus = ImportManager.importDataFromString(outtree);
+        if (nexus == null)
+            throw new SplitsException(getClass().getName() + ": import failed");
 
         // parse trees in nexus format
         try {
@@ -301,22 +276,17 @@ public class PhyML implements Characters2Trees {
 
 
     /**
-     * write chosen options in an input file for PHYML
+     * get the chosen options, as they are entered into PHYML's menu
      *
-     * @param st_options the input-file
+     * @return the answers, one per line
      */
-    private void writeOptionFile(File infile, File st_options, Document doc) throws IOException {
+    private String getOptions(Document doc) {
 
-        FileWriter fw;
-        try {
-            fw = new FileWriter(st_options);
-        } catch (IOException e) {
-            throw new SplitsException(getClass().getName() + ": could not write to file: " + e.getMessage());
-        }
+        final StringWriter fw = new StringWriter();
 
         /* SEQUENCE FILE*/
 
-        fw.write(infile.getAbsolutePath() + "\n");
+        fw.write(INFILE + "\n");
 
         /* DATA TYPE */
 
@@ -434,65 +404,36 @@ public class PhyML implements Characters2Trees {
         /* INPUT TREE */
         if (!getOptionUseBioNJstart()) {
             fw.write("U\n");
-            fw.write(ProgramProperties.get(PHYML_USRTREE, " ") + "\n");
+            fw.write(getUserTreeFile().getAbsolutePath() + "\n"); // phyml is run in a directory of its own
         }
 
 
         fw.write("Y\n");
 
-
-        fw.flush();
-        fw.close();
-
+        return fw.toString();
     }
 
     /**
-     * execute the phyml executable using Runtime.exec
+     * execute the phyml executable in a directory of its own, entering the options on standard input
      *
-     * @param optionfile the input file for phylip
-     */
-    private void executePhyML(File optionfile, File phylMLBin) throws IOException {
-        String shell = (os == REDMOND) ? "cmd.exe" : "sh";
-        String readCmdStringOpt = (os == REDMOND) ? "/c" : "-c";
-        String phyMLCmd = phylMLBin.getAbsolutePath()
-                          + " < "
-                          + optionfile.getAbsolutePath();
-        if (phylMLBin.getAbsolutePath().contains(" "))
-            new Alert("Path contains space, this won't work");
-
-        String[] commands = new String[]
-                {
-                        shell,
-                        readCmdStringOpt,
-                        phyMLCmd
-                };
+     * @param infile  content of the phylip infile
+     * @param options the answers to PHYML's menu
+     * @return content of the phylip outtree-file
+     */
+    private String executePhyML(String infile, String options, File phylMLBin, Document doc) throws IOException {
+        final ExternalProgram.Invocation invocation = new ExternalProgram.Invocation(List.of(phylMLBin.getAbsolutePath()))
+                .addInputFile(INFILE, infile).setStandardInput(options).addOutputFile(OUTTREE);
+        if (!getOptionUseBioNJstart())
+            invocation.addDependency(getUserTreeFile());
+        final ExternalProgram.Result result;
         try {
-            System.out.print("Executing: ");
-            for (String command : commands) System.out.println("\t" + command);
-            Process proc = Runtime.getRuntime().exec(commands);
-
-// any error message?
-            StreamGobbler errorGobbler = new
-                    StreamGobbler(proc.getErrorStream(), "ERROR");
-
-// any output?
-            StreamGobbler outputGobbler = new
-                    StreamGobbler(proc.getInputStream(), null);
-
-// kick them off
-            errorGobbler.start();
-            outputGobbler.start();
-
-            System.err.println("### Started external command ###");
-            int exitVal = proc.waitFor();
-            System.err.println("### Finished external command ###");
-// any error???
-            if (exitVal != 0)
-                throw new SplitsException("Return value=" + exitVal);
-
-        } catch (Exception e) {
-            throw new SplitsException(getClass().getName() + ": " + e.getMessage());
+            result = ExternalProgram.getInstance().run(invocation, doc);
+        } catch (CanceledException e) {
+            throw new SplitsException(getClass().getName() + ": canceled");
         }
+        if (result.getExitCode() != 0)
+            throw new SplitsException(getClass().getName() + ": Return value=" + result.getExitCode());
+        return result.getRequiredOutputFile(OUTTREE);
     }
 
     /**
@@ -522,19 +463,6 @@ public class PhyML implements Characters2Trees {
         return exportName2OrigName;
     }
 
-    /**
-     * remove Files
-     *
-     * @return false if delete failed.
-     */
-    private boolean removeFiles(File[] files) {
-        boolean success = true;
-        for (File file : files)
-            if (file.exists() && !file.delete())
-                success = false;
-        return success;
-    }
-
     /* (non-Javadoc)
      * @see splits.algorithms.Transformation#getVersion()
      */
@@ -581,6 +509,15 @@ public class PhyML implements Characters2Trees {
         return ProgramProperties.get(PHYML_USRTREE, " ");
     }
 
+    /**
+     * the user starting tree file
+     *
+     * @return file
+     */
+    private File getUserTreeFile() {
+        return new File(getOptionTreePath().trim());
+    }
+
     /**
      * Use bootstrap?
      *
@@ -18,10 +18,10 @@
  */
 package splitstree4.algorithms.characters;
 
-import jloda.swing.util.Alert;
 import jloda.swing.util.ProgramProperties;
-import jloda.util.StreamGobbler;
+import jloda.util.CanceledException;
 import jloda.util.parse.NexusStreamParser;
+import splitstree4.algorithms.util.ExternalProgram;
 import splitstree4.core.Document;
 import splitstree4.core.SplitsException;
 import splitstree4.externalIO.exports.ExportManager;
@@ -32,9 +32,10 @@ import splitstree4.nexus.Trees;
 
 import javax.swing.*;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -98,10 +99,10 @@ public class PhylipParsimony implements Characters2Trees {
 
     //	 exporter (phylip sequential format)
     private final String exportFormat = "PhylipSequences";
-    private static final int LINUX = 0;
-    private static final int REDMOND = 1;
-    private static final int MAC_OS = 2;
-    private int os = 0;
+    // phylip infile which the sequence data is written to
+    private static final String INFILE = "infile";
+    // phylip outtree: where trees are written to in newick-format.
+    private static final String OUTTREE = "outtree";
 
     /* (non-Javadoc)
      * @see splits.algorithms.characters.CharactersTransform#isApplicable(splits.core.Document, splits.nexus.Taxa, splits.nexus.Characters)
@@ -126,53 +127,33 @@ public class PhylipParsimony implements Characters2Trees {
             throw new SplitsException("Program not found: " + getOptionPhylipPath());
         }
 
-        // get os 
-        if (System.getProperty("os.name").matches(".*[Ll]inux.*")) os = LINUX;
-        if (System.getProperty("os.name").matches(".*[Ww]indows.*")) os = REDMOND;
-        if (System.getProperty("os.name").matches(".*[Mm]ac.*")) os = MAC_OS;
-
-        /* prepare files:
-         * infile, input (options), outtree */
-        final String dir = System.getProperty("user.dir") + File.separator;
-        // phylip infile which the sequence data will be written to
-        final File infile = new File(dir + "infile");
-        // phylip outfile: just delete it so phylip
-        // always asks the same questions.
-        final File outfile = new File(dir + "outfile");
-        // phylip outtree: where trees are written to in newick-format.
-        final File outtree = new File(dir + "outtree");
-        // standard input is redirected to this file for phylip.
-        final File st_options = new File(dir + "st_options");
-        // remove existing files
-        if (!removeFiles(new File[]{infile, outfile, outtree, st_options}))
-            throw new SplitsException(getClass().getName() + ": could not remove files.");
-
         /* write phylip-infile */
         doc.notifySubtask("exporting data");
 
         // taxa-names may be truncated for phylip
         Map exportName2OrigName;
+        final String infile;
         try {
-            exportName2OrigName = writeInfile(doc, infile, taxa, chars);
+            final File exportFile = File.createTempFile("phylip", ".phy");
+            try {
+                exportName2OrigName = writeInfile(doc, exportFile, taxa, chars);
+                infile = Files.readString(exportFile.toPath());
+            } finally {
+                if (!exportFile.delete())
+                    System.err.println("Failed to delete: " + exportFile);
+            }
         } catch (Exception e) {
             throw new SplitsException(getClass().getName() + ": Export failed: " + e.getMessage());
         }
 
-        /* execute phylip */
+        /* execute phylip, in its own directory, so that several runs can take place at the same time */
         doc.notifySubtask("run " + getOptionPhylipPath());
-        // write phylip-options
-        writeOptionFile(st_options, doc);
-        executePhylip(st_options, phylipBin);
+        final String outtree = executePhylip(infile, getOptions(doc), phylipBin, doc);
 
         /* import computed trees */
         doc.notifySubtask("import computed trees");
         Trees trees = parseTrees(outtree, exportName2OrigName, taxa);
 
-        /* remove files */
-        doc.notifySubtask("cleaning up");
-        if (!removeFiles(new File[]{infile, outfile, outtree, st_options}))
-            throw new SplitsException(getClass().getName() + ": could not remove files.");
-
         return trees;
 
     }
@@ -180,23 +161,21 @@ public class PhylipParsimony implements Characters2Trees {
     /**
      * parse computed output
      *
-     * @param outtree             phylip outtree-file
+     * @param outtree             content of the phylip outtree-file
      * @param exportName2OrigName maps truncated taxa-names to original ones
      * @param taxa                original taxa
      * @return the parsed Trees-block
      * @throws Exception SplitsException, if import or parsing fails
      */
-    private Trees parseTrees(File outtree, Map exportName2OrigName, Taxa taxa) throws IOException {
+    private Trees parseTrees(String outtree, Map exportName2OrigName, Taxa taxa) throws IOException {
 
         Trees trees = new Trees();
         String nexus;
 
         // convert newick to nexus format
-        try {
-            nexus = ImportManager.importData(outtree);
-        } catch (Exception e) {
-            throw new SplitsException(getClass().getName() + ": import failed: " + e.getMessage());
-        }
+        nexus = ImportManager.importDataFromString(outtree);
+        if (nexus == null)
+            throw new SplitsException(getClass().getName() + ": import failed");
 
         // parse trees in nexus format
         try {
@@ -219,18 +198,13 @@ public class PhylipParsimony implements Characters2Trees {
 
 
     /**
-     * write chosen options in an input file for phylip
+     * get the chosen options, as they are entered into phylip's menu
      *
-     * @param st_options the input-file
+     * @return the answers, one per line
      */
-    private void writeOptionFile(File st_options, Document doc) throws IOException {
+    private String getOptions(Document doc) throws IOException {
 
-        FileWriter fw;
-        try {
-            fw = new FileWriter(st_options);
-        } catch (IOException e) {
-            throw new SplitsException(getClass().getName() + ": could not write to file: " + e.getMessage());
-        }
+        final StringWriter fw = new StringWriter();
 
         /* USER TREE */
 //		if(!getOptionUserTree().equals("")) {
@@ -299,64 +273,40 @@ public class PhylipParsimony implements Characters2Trees {
         fw.write("Y\n");
         if (!getOptionWeightsFile().equals("weights") &&
                 !getOptionWeightsFile().equals("")) {
-            fw.write(getOptionWeightsFile() + "\n");
+            fw.write(new File(getOptionWeightsFile()).getAbsolutePath() + "\n");
         }
 
 //	    if(!getOptionUserTree().equals("") && !getOptionUserTree().equals(System.getProperty("user.dir")+File.separator+"intree")) {
 //			
 //			fw.write(getOptionUserTree()+"\n");
 //		}
-        fw.flush();
-        fw.close();
-
+        return fw.toString();
     }
 
     /**
-     * execute the phylip executable using Runtime.exec
+     * execute the phylip executable in a directory of its own, entering the options on standard input
      *
-     * @param optionfile the input file for phylip
-     */
-    private void executePhylip(File optionfile, File phylipBin) throws IOException {
-        String shell = (os == REDMOND) ? "cmd.exe" : "sh";
-        String readCmdStringOpt = (os == REDMOND) ? "/c" : "-c";
-        String phylipCmd = phylipBin.getAbsolutePath()
-                           + " < "
-                           + optionfile.getAbsolutePath();
-        if (os == REDMOND && phylipBin.getAbsolutePath().contains(" "))
-            new Alert("Path contains space, this won't work");
-        String[] commands = new String[]
-                {
-                        shell,
-                        readCmdStringOpt,
-                        phylipCmd
-                };
+     * @param infile  content of the phylip infile
+     * @param options the answers to phylip's menu
+     * @return content of the phylip outtree-file
+     */
+    private String executePhylip(String infile, String options, File phylipBin, Document doc) throws IOException {
+        final ExternalProgram.Invocation invocation = new ExternalProgram.Invocation(List.of(phylipBin.getAbsolutePath()))
+                .addInputFile(INFILE, infile).setStandardInput(options).addOutputFile(OUTTREE);
+        // phylip reads a weights file of this name from the current directory:
+        if (getOptionWeightsFile().equals("weights"))
+            invocation.addInputFile("weights", Files.readString(new File(System.getProperty("user.dir"), "weights").toPath()));
+        else if (!getOptionWeightsFile().equals(""))
+            invocation.addDependency(new File(getOptionWeightsFile()));
+        final ExternalProgram.Result result;
         try {
-            System.out.print("Executing: ");
-            for (String command : commands) System.out.println("\t" + command);
-            Process proc = Runtime.getRuntime().exec(commands, null, new File(System.getProperty(("user.dir"))));
-
-// any error message?
-            StreamGobbler errorGobbler = new
-                    StreamGobbler(proc.getErrorStream(), "ERROR");
-
-// any output?
-            StreamGobbler outputGobbler = new
-                    StreamGobbler(proc.getInputStream(), null);
-
-// kick them off
-            errorGobbler.start();
-            outputGobbler.start();
-
-            System.err.println("### Started external command ###");
-            int exitVal = proc.waitFor();
-            System.err.println("### Finished external command ###");
-// any error???
-            if (exitVal != 0)
-                throw new SplitsException("Return value=" + exitVal);
-
-        } catch (Exception e) {
-            throw new SplitsException(getClass().getName() + ": " + e.getMessage());
+            result = ExternalProgram.getInstance().run(invocation, doc);
+        } catch (CanceledException e) {
+            throw new SplitsException(getClass().getName() + ": canceled");
         }
+        if (result.getExitCode() != 0)
+            throw new SplitsException(getClass().getName() + ": Return value=" + result.getExitCode());
+        return result.getRequiredOutputFile(OUTTREE);
     }
 
     /**
@@ -386,19 +336,6 @@ public class PhylipParsimony implements Characters2Trees {
         return exportName2OrigName;
     }
 
-    /**
-     * remove Files
-     *
-     * @return false if delete failed.
-     */
-    private boolean removeFiles(File[] files) {
-        boolean success = true;
-        for (File file : files)
-            if (file.exists() && !file.delete())
-                success = false;
-        return success;
-    }
-
     /* (non-Javadoc)
      * @see splits.algorithms.Transformation#getVersion()
      */
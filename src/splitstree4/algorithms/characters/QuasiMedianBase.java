@@ -20,6 +20,7 @@ package splitstree4.algorithms.characters;
 
 import jloda.graph.Edge;
 import jloda.graph.Node;
+import jloda.graph.NodeIntArray;
 import jloda.phylo.PhyloSplitsGraph;
 import jloda.swing.graphview.NodeView;
 import jloda.swing.graphview.PhyloGraphView;
@@ -27,6 +28,7 @@ import jloda.util.Basic;
 import jloda.util.CanceledException;
 import jloda.util.StringUtils;
 import jloda.util.progress.ProgressListener;
+import splitstree4.algorithms.util.BarnesHutSpringEmbedder;
 import splitstree4.core.Document;
 import splitstree4.nexus.Characters;
 import splitstree4.nexus.Network;
@@ -45,6 +47,7 @@ public abstract class QuasiMedianBase {
     private boolean optionLabelEdges = false;
     private boolean optionShowHaplotypes = false;
     private int optionSpringEmbedderIterations = 2000;
+    private String optionSpringEmbedderMethod = BarnesHutSpringEmbedder.EXACT;
     private boolean optionSubdivideEdges = false;
     private boolean optionScaleNodesByTaxa = false;
 
@@ -198,10 +201,52 @@ public abstract class QuasiMedianBase {
 
             }
         }
-        view.computeSpringEmbedding(optionSpringEmbedderIterations, false);
+        if (getOptionSpringEmbedderMethod().equalsIgnoreCase(BarnesHutSpringEmbedder.BARNES_HUT))
+            computeSpringEmbedding(doc, view, optionSpringEmbedderIterations);
+        else
+            view.computeSpringEmbedding(optionSpringEmbedderIterations, false);
         return new Network(taxa, view);
     }
 
+    /**
+     * computes a spring embedding using the Barnes-Hut approximation, starting with all nodes on a circle
+     *
+     */
+    private void computeSpringEmbedding(Document doc, PhyloGraphView view, int iterations) throws CanceledException {
+        PhyloSplitsGraph graph = view.getPhyloGraph();
+        int n = graph.getNumberOfNodes();
+        if (n < 2)
+            return;
+
+        NodeIntArray node2index = new NodeIntArray(graph);
+        Node[] nodes = new Node[n];
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double width = 400;
+        double height = 400;
+        int count = 0;
+        for (Node v = graph.getFirstNode(); v != null; v = v.getNext()) {
+            x[count] = width / 2 * (1 + Math.sin(2 * Math.PI * count / n));
+            y[count] = height / 2 * (1 + Math.cos(2 * Math.PI * count / n));
+            nodes[count] = v;
+            node2index.set(v, count++);
+        }
+        int[] sources = new int[graph.getNumberOfEdges()];
+        int[] targets = new int[graph.getNumberOfEdges()];
+        count = 0;
+        for (Edge e = graph.getFirstEdge(); e != null; e = e.getNext()) {
+            sources[count] = node2index.get(e.getSource());
+            targets[count++] = node2index.get(e.getTarget());
+        }
+
+        doc.notifySubtask("Spring embedder");
+        BarnesHutSpringEmbedder embedder = new BarnesHutSpringEmbedder(n, sources, targets);
+        embedder.setMethod(BarnesHutSpringEmbedder.BARNES_HUT);
+        embedder.apply(x, y, width, height, iterations, doc.getProgressListener());
+        for (int i = 0; i < n; i++)
+            view.setLocation(nodes[i], x[i], y[i]);
+    }
+
     /**
      * compute the matrix of unmasked characters
      *
@@ -403,36 +448,24 @@ public abstract class QuasiMedianBase {
      */
     private String[] condenseCharacters(int ntax, int nchar, char[][] chars, int[] origPos2CondensedPos, int[] origTaxa2CondensedTaxa,
                                         Translator translator) {
-        // check that all columns differ:
+        // check that all columns differ. Two columns are the same if their states are related by a bijection,
+        // that is, if their state patterns agree after renaming states in order of first occurrence:
         int[] samePosAs = new int[nchar + 1];
+        Map<String, Integer> pattern2pos = new HashMap<>();
+        char[] pattern = new char[ntax];
+        Map<Character, Character> state2canonical = new HashMap<>();
         for (int i = 1; i <= nchar; i++) {
-            samePosAs[i] = i;
-        }
-
-        for (int i = 1; i <= nchar; i++) {
-            for (int j = i + 1; j <= nchar; j++) {
-                boolean same = true;
-                char[] i2j = new char[256];
-                char[] j2i = new char[256];
-
-                for (int t = 1; same && t <= ntax; t++) {
-                    char chari = chars[t][i];
-                    char charj = chars[t][j];
-
-                    if (i2j[chari] == (char) 0) {
-                        i2j[chari] = charj;
-                        if (j2i[charj] == (char) 0)
-                            j2i[charj] = chari;
-                        else if (j2i[charj] != chari)
-                            same = false; // differ
-                    } else if (i2j[chari] != charj)
-                        same = false; // differ
-                }
-                if (same) {
-                    samePosAs[j] = samePosAs[i];
-                    break;
-                }
+            state2canonical.clear();
+            for (int t = 1; t <= ntax; t++) {
+                pattern[t - 1] = state2canonical.computeIfAbsent(chars[t][i], c -> (char) state2canonical.size());
             }
+            String key = new String(pattern);
+            Integer first = pattern2pos.get(key);
+            if (first == null) {
+                pattern2pos.put(key, i);
+                samePosAs[i] = i;
+            } else
+                samePosAs[i] = first;
         }
 
         StringBuffer[] buffers = new StringBuffer[ntax + 1];
@@ -467,12 +500,11 @@ public abstract class QuasiMedianBase {
             sameTaxonAs[s] = s;
         }
 
-        for (int s = 1; s <= ntax; s++) {
-            String seqS = buffers[s].toString();
-            for (int t = s + 1; t <= ntax; t++) {
-                if (seqS.equals(buffers[t].toString()))
-                    sameTaxonAs[t] = sameTaxonAs[s];
-            }
+        Map<String, Integer> sequence2taxon = new HashMap<>();
+        for (int t = 1; t <= ntax; t++) {
+            Integer s = sequence2taxon.putIfAbsent(buffers[t].toString(), t);
+            if (s != null)
+                sameTaxonAs[t] = s;
         }
 
         int count = 0;
@@ -516,6 +548,26 @@ public abstract class QuasiMedianBase {
         this.optionSpringEmbedderIterations = optionSpringEmbedderIterations;
     }
 
+    public String getOptionSpringEmbedderMethod() {
+        return optionSpringEmbedderMethod;
+    }
+
+    public void setOptionSpringEmbedderMethod(String optionSpringEmbedderMethod) {
+        this.optionSpringEmbedderMethod = optionSpringEmbedderMethod;
+    }
+
+    /**
+     * return the possible choices for optionSpringEmbedderMethod
+     *
+     * @return list of choices
+     */
+    public List selectionOptionSpringEmbedderMethod(Document doc) {
+        List list = new LinkedList();
+        list.add(BarnesHutSpringEmbedder.EXACT);
+        list.add(BarnesHutSpringEmbedder.BARNES_HUT);
+        return list;
+    }
+
     public boolean getOptionShowHaplotypes() {
         return optionShowHaplotypes;
     }
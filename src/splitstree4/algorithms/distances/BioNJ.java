@@ -25,6 +25,7 @@ import jloda.graph.Node;
 import jloda.phylo.PhyloTree;
 import jloda.util.Basic;
 import jloda.util.CanceledException;
+import splitstree4.algorithms.CacheableTransform;
 import splitstree4.core.Document;
 import splitstree4.nexus.Distances;
 import splitstree4.nexus.Taxa;
@@ -36,7 +37,7 @@ import java.util.HashMap;
 /**
  * Implementation of the Bio-Neighbor-Joining algorithm (Gascuel 1997)
  */
-public class BioNJ implements Distances2Trees {
+public class BioNJ implements Distances2Trees, CacheableTransform {
     public final static String DESCRIPTION = "Computes the Bio-NJ tree (Gascuel 1997)";
 
     /**
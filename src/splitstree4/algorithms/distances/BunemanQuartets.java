@@ -20,7 +20,6 @@ package splitstree4.algorithms.distances;
 
 import jloda.util.CanceledException;
 import splitstree4.core.Document;
-import splitstree4.core.Quartet;
 import splitstree4.nexus.Distances;
 import splitstree4.nexus.Quartets;
 import splitstree4.nexus.Taxa;
@@ -64,7 +63,7 @@ public class BunemanQuartets implements Distances2Quartets {
                         for (int m = k; m <= taxa.getNtax(); m++) {
                             double alpha = BunemanTree.getIsolationIndex(i, j, k, m, distances);
                             if (alpha > threshold) {
-                                quartets.add(new Quartet(i, j, k, m, alpha, null));
+                                quartets.add(i, j, k, m, alpha);
                             }
                         }
                     }
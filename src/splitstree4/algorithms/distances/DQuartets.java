@@ -19,7 +19,6 @@
 package splitstree4.algorithms.distances;
 
 import splitstree4.core.Document;
-import splitstree4.core.Quartet;
 import splitstree4.nexus.Distances;
 import splitstree4.nexus.Quartets;
 import splitstree4.nexus.Taxa;
@@ -60,7 +59,7 @@ public class DQuartets implements Distances2Quartets {
                         for (int m = k; m <= taxa.getNtax(); m++) {
                             double alpha = SplitDecomposition.getIsolationIndex(i, j, k, m, distances);
                             if (alpha > threshold) {
-                                quartets.add(new Quartet(i, j, k, m, alpha, null));
+                                quartets.add(i, j, k, m, alpha);
                             }
                         }
                     }
@@ -25,6 +25,7 @@ import jloda.graph.Node;
 import jloda.phylo.PhyloTree;
 import jloda.util.Basic;
 import jloda.util.CanceledException;
+import splitstree4.algorithms.CacheableTransform;
 import splitstree4.core.Document;
 import splitstree4.nexus.Distances;
 import splitstree4.nexus.Taxa;
@@ -35,7 +36,7 @@ import java.util.HashMap;
 /**
  * Implements the  Neighbor-Joining algorithm of Saitou and Nei (1987).
  */
-public class NJ implements Distances2Trees {
+public class NJ implements Distances2Trees, CacheableTransform {
     public final static String DESCRIPTION = "Computes the Neighbour-Joining tree (Saitou and Nei 1987)";
 
     /**
@@ -19,6 +19,7 @@
 package splitstree4.algorithms.distances;
 
 import jloda.util.CanceledException;
+import splitstree4.algorithms.CacheableTransform;
 import splitstree4.algorithms.util.NeighborNetSplitWeightOptimizer;
 import splitstree4.core.Document;
 import splitstree4.nexus.Distances;
@@ -34,7 +35,7 @@ import java.util.Stack;
 /**
  * Implements Neighbor Net method of Bryant and Moulton (2004).
  */
-public class NeighborNet implements Distances2Splits {
+public class NeighborNet implements Distances2Splits, CacheableTransform {
     private final double optionThreshold = 0.000001; // min weight of split that we consider
     private double optionLambdaFrac = 1.0;
     private final boolean makeSplits = true;
@@ -30,11 +30,12 @@ import splitstree4.core.Document;
 import splitstree4.nexus.Distances;
 import splitstree4.nexus.Network;
 import splitstree4.nexus.Taxa;
+import splitstree4.util.matrix.LanczosEigenSolver;
+import splitstree4.util.matrix.PackedSymmetricMatrix;
 
 import java.awt.*;
-import java.io.PrintWriter;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.*;
 
 /**
  * principle coordinate analysis
@@ -42,7 +43,11 @@ import java.util.Map;
  */
 public class PCoA implements Distances2Network {
     public final static String DESCRIPTION = "Performs Principle Coordinates Analysis (Gower, J.C. (1966))";
+    public final static String DENSE = "Dense";
+    public final static String LANCZOS = "Lanczos";
+
     private Matrix distanceMatrix;
+    private PackedSymmetricMatrix packedDistanceMatrix; // float storage, only used by the Lanczos method
     private double totalSquaredDistance;
     private int rank;
     int numberOfPositiveEigenValues;
@@ -53,6 +58,7 @@ public class PCoA implements Distances2Network {
 
     private int optionFirstCoordinate = 1;
     private int optionSecondCoordinate = 2;
+    private String optionMethod = DENSE;
 
 
     /**
@@ -99,44 +105,83 @@ public class PCoA implements Distances2Network {
 	 */
     private void run(Taxa taxa, Distances distances, PhyloGraphView graphView) {
         rank = taxa.getNtax();
-        distanceMatrix = new Matrix(rank, rank);
+        final boolean useLanczos = getOptionMethod().equalsIgnoreCase(LANCZOS);
+        if (useLanczos) {
+            distanceMatrix = null;
+            packedDistanceMatrix = new PackedSymmetricMatrix(rank);
+        } else {
+            distanceMatrix = new Matrix(rank, rank);
+            packedDistanceMatrix = null;
+        }
         double sum = 0;
         for (int i = 0; i < rank; i++) {
-            for (int j = 0; j < rank; j++) {
-                if (i == j)
-                    distanceMatrix.set(i, j, 0);
+            for (int j = 0; j < i; j++) {
+                double d = distances.get(i + 1, j + 1);
+                if (useLanczos)
+                    packedDistanceMatrix.set(i, j, d);
                 else {
-                    double d = distances.get(i + 1, j + 1);
                     distanceMatrix.set(i, j, d);
-                    sum += d * d;
+                    distanceMatrix.set(j, i, d);
                 }
+                sum += 2 * d * d;
             }
         }
         totalSquaredDistance = 2 * sum;
         vectors = new double[rank][];
 
-        PrintWriter pw = new PrintWriter(System.err);
-        /*
-        System.err.println("distanceMatrix:");
-        distanceMatrix.print(pw, rank, rank);
-        pw.flush();
-        */
+        if (useLanczos) {
+            if (!computeTopEigenVectors(Math.max(3, Math.max(getOptionFirstCoordinate(), getOptionSecondCoordinate()) + 1)))
+                return; // interrupted
+        } else
+            computeAllEigenVectors();
 
-        Matrix centered = computeDoubleCenteringOfSquaredMatrix(distanceMatrix);
+		System.err.println("Positive eigenvalues:");
+		System.err.println(StringUtils.toString(eigenValues, ", "));
+
+        for (int i = 0; i < rank; i++) {
+            name2vector.put(taxa.getLabel(i + 1), vectors[i]);
+        }
+        done = true;
+        final PhyloSplitsGraph graph = graphView.getPhyloGraph();
+
+        // the stress of the projection is accumulated while placing the nodes, comparing each taxon to all previous ones:
+        final double[][] projected = new double[rank][];
+        double squaredSum = 0;
+        for (int t = 1; t <= taxa.getNtax(); t++) {
+            String name = taxa.getLabel(t);
+            double[] coordinates = getProjection(getOptionFirstCoordinate(), getOptionSecondCoordinate(), name);
+            projected[t - 1] = coordinates;
+            for (int b = 0; b < t - 1; b++) {
+                final double dx = coordinates[0] - projected[b][0], dy = coordinates[1] - projected[b][1];
+                final double d = Math.sqrt(dx * dx + dy * dy) - getDistance(t - 1, b);
+                squaredSum += 2 * d * d;
+            }
+            Node v = graph.newNode();
+            graph.setLabel(v, name);
+            graphView.setLabel(v, name);
+            graphView.setLocation(v, 100 * coordinates[0], 100 * coordinates[1]);
+            graphView.fitGraphToWindow();
+            graphView.setWidth(v, 3);
+            graphView.setHeight(v, 3);
+            graphView.setColor(v, Color.BLACK);
+            graphView.setBackgroundColor(v, Color.BLACK);
+            graphView.setShape(v, NodeView.OVAL_NODE);
+        }
+        System.err.println("Stress: " + Math.sqrt(squaredSum / totalSquaredDistance));
+        graphView.trans.setCoordinateRect(graphView.getBBox());
+        graphView.fitGraphToWindow();
+        graphView.getScrollPane().revalidate();
+    }
 
-        /*
-        System.err.println("centered:");
-        centered.print(pw, rank, rank);
-        pw.flush();
-        */
+    /**
+     * computes all eigenvalues and eigenvectors of the double-centered matrix using a dense decomposition
+     *
+	 */
+    private void computeAllEigenVectors() {
+        Matrix centered = computeDoubleCenteringOfSquaredMatrix(distanceMatrix);
 
         EigenvalueDecomposition eigenValueDecomposition = centered.eig();
         Matrix eigenVectors = eigenValueDecomposition.getV();
-        /*
-        System.err.println("eigenVectors:");
-        eigenVectors.print(pw, rank, rank);
-        pw.flush();
-        */
 
         numberOfPositiveEigenValues = 0;
         Matrix positiveEigenValues = eigenValueDecomposition.getD();
@@ -146,71 +191,85 @@ public class PCoA implements Distances2Network {
             else
                 positiveEigenValues.set(i, i, 0);
         }
-        /*
-        System.err.println("positiveEigenValues:");
-        positiveEigenValues.print(pw, rank, rank);
-        pw.flush();
-        */
-
-        // multiple eigenvectors by sqrt of eigenvalues
-        Matrix scaledEigenVectors = (Matrix) eigenVectors.clone();
-        for (int i = 0; i < rank; i++) {
-            for (int j = 0; j < rank; j++) {
-                double v = scaledEigenVectors.get(i, j);
-                v = v * Math.sqrt(positiveEigenValues.get(j, j));
-                scaledEigenVectors.set(i, j, v);
-            }
-        }
-        /*
-        System.err.println("scaledEigenVectors:");
-        scaledEigenVectors.print(pw, rank, rank);
-        pw.flush();
-        */
 
         // sort indices by eigenValues
         int[] indices = sortValues(positiveEigenValues);
-        // System.err.println("indices: " + Basic.toString(indices));
 
         eigenValues = new double[numberOfPositiveEigenValues];
         for (int j = 0; j < numberOfPositiveEigenValues; j++) {
             eigenValues[j] = positiveEigenValues.get(indices[j], indices[j]);
         }
-		System.err.println("Positive eigenvalues:");
-		System.err.println(StringUtils.toString(eigenValues, ", "));
-
 
+        // multiply eigenvectors by sqrt of eigenvalues
         for (int i = 0; i < rank; i++) {
-            String name = taxa.getLabel(i + 1);
             double[] vector = new double[numberOfPositiveEigenValues];
-            name2vector.put(name, vector);
             vectors[i] = vector;
             for (int j = 0; j < numberOfPositiveEigenValues; j++) {
-                vector[j] = scaledEigenVectors.get(i, indices[j]);
+                vector[j] = eigenVectors.get(i, indices[j]) * Math.sqrt(eigenValues[j]);
             }
         }
-        done = true;
-        final PhyloSplitsGraph graph = graphView.getPhyloGraph();
+    }
 
-        System.err.println("Stress: " + getStress(getOptionFirstCoordinate(), getOptionSecondCoordinate()));
-        for (int t = 1; t <= taxa.getNtax(); t++) {
-            String name = taxa.getLabel(t);
-            double[] coordinates = getProjection(getOptionFirstCoordinate(), getOptionSecondCoordinate(), name);
-            Node v = graph.newNode();
-            graph.setLabel(v, name);
-            graphView.setLabel(v, name);
-            graphView.setLocation(v, 100 * coordinates[0], 100 * coordinates[1]);
-            graphView.fitGraphToWindow();
-            graphView.setWidth(v, 3);
-            graphView.setHeight(v, 3);
-            graphView.setColor(v, Color.BLACK);
-            graphView.setBackgroundColor(v, Color.BLACK);
-            graphView.setShape(v, NodeView.OVAL_NODE);
+    /**
+     * computes only the k leading eigenvalues and eigenvectors using the Lanczos method. The double-centered
+     * matrix is never formed, rather it is applied implicitly as -1/2 J D^2 J, where J is the centering operator.
+     * Distances are kept in packed float storage, so this is meant for large inputs
+     *
+     * @return false, if interrupted
+     */
+    private boolean computeTopEigenVectors(int k) {
+        final double[] tmp = new double[rank];
+        LanczosEigenSolver.SymmetricOperator operator = new LanczosEigenSolver.SymmetricOperator() {
+            public int size() {
+                return rank;
+            }
+
+            public void apply(double[] x, double[] y) {
+                center(x, tmp);
+                packedDistanceMatrix.multiplySquared(tmp, y);
+                center(y, y);
+                for (int i = 0; i < rank; i++)
+                    y[i] *= -0.5;
+            }
+        };
+
+        LanczosEigenSolver solver = new LanczosEigenSolver();
+        try {
+            solver.compute(operator, k);
+        } catch (InterruptedException ex) {
+            return false;
         }
-        graphView.trans.setCoordinateRect(graphView.getBBox());
-        graphView.fitGraphToWindow();
-        graphView.getScrollPane().revalidate();
+        System.err.println("Lanczos iterations: " + solver.getNumberOfIterations());
+
+        numberOfPositiveEigenValues = 0;
+        for (double value : solver.getEigenValues()) {
+            if (value > 0)
+                numberOfPositiveEigenValues++;
+        }
+        eigenValues = Arrays.copyOf(solver.getEigenValues(), numberOfPositiveEigenValues);
+
+        for (int i = 0; i < rank; i++) {
+            double[] vector = new double[numberOfPositiveEigenValues];
+            vectors[i] = vector;
+            for (int j = 0; j < numberOfPositiveEigenValues; j++) {
+                vector[j] = solver.getEigenVectors()[j][i] * Math.sqrt(eigenValues[j]);
+            }
+        }
+        return true;
     }
 
+    /**
+     * subtracts the mean from all entries
+     *
+	 */
+    private static void center(double[] x, double[] y) {
+        double mean = 0;
+        for (double value : x)
+            mean += value;
+        mean /= x.length;
+        for (int i = 0; i < x.length; i++)
+            y[i] = x[i] - mean;
+    }
 
     /**
      * Determine whether given method can be applied to given data.
@@ -277,26 +336,20 @@ public class PCoA implements Distances2Network {
      * @return new matrix
      */
     private Matrix computeDoubleCenteringOfSquaredMatrix(Matrix matrix) {
-        int size = matrix.getColumnDimension();
-        Matrix result = new Matrix(matrix.getColumnDimension(), matrix.getRowDimension());
+        int size = matrix.getRowDimension();
+        double[] rowMeans = new double[size];
+        double grandMean = 0;
+        for (int i = 0; i < size; i++) {
+            for (int k = 0; k < size; k++) {
+                rowMeans[i] += matrix.get(i, k) * matrix.get(i, k) / size;
+            }
+            grandMean += rowMeans[i] / size;
+        }
+        Matrix result = new Matrix(size, size);
         for (int i = 0; i < size; i++) {
             for (int j = 0; j < size; j++) {
-                double v1 = 0;
-                for (int k = 0; k < size; k++) {
-                    v1 += matrix.get(k, j) * matrix.get(k, j) / size;
-                }
-                double v2 = 0;
-                for (int k = 0; k < size; k++) {
-                    v2 += matrix.get(i, k) * matrix.get(i, k) / size;
-                }
-                double v3 = 0;
-                for (int k = 0; k < size; k++) {
-                    for (int l = 0; l < size; l++) {
-                        v3 += matrix.get(k, l) * matrix.get(k, l) / (size * size);
-                    }
-                }
                 double v4 = matrix.get(i, j);
-                result.set(i, j, 0.5 * (v1 + v2 - v3 - (v4 * v4)));
+                result.set(i, j, 0.5 * (rowMeans[j] + rowMeans[i] - grandMean - (v4 * v4)));
             }
         }
         return result;
@@ -351,20 +404,27 @@ public class PCoA implements Distances2Network {
     public double getStress(int[] indices) {
         double squaredSum = 0;
         for (int a = 0; a < rank; a++) {
-            for (int b = 0; b < rank; b++) {
-                if (a != b) {
-                    double d = 0;
-                    for (int z : indices) {
-                        d += (vectors[a][z] - vectors[b][z]) * (vectors[a][z] - vectors[b][z]);
-                    }
-                    d = Math.sqrt(d);
-                    squaredSum += (d - distanceMatrix.get(a, b)) * (d - distanceMatrix.get(a, b));
+            for (int b = 0; b < a; b++) {
+                double d = 0;
+                for (int z : indices) {
+                    d += (vectors[a][z] - vectors[b][z]) * (vectors[a][z] - vectors[b][z]);
                 }
+                d = Math.sqrt(d) - getDistance(a, b);
+                squaredSum += 2 * d * d;
             }
         }
         return Math.sqrt(squaredSum / totalSquaredDistance);
     }
 
+    /**
+     * get the input distance between a and b
+     *
+     * @return distance
+     */
+    private double getDistance(int a, int b) {
+        return distanceMatrix != null ? distanceMatrix.get(a, b) : packedDistanceMatrix.get(a, b);
+    }
+
     public int getOptionFirstCoordinate() {
         return optionFirstCoordinate;
     }
@@ -382,4 +442,24 @@ public class PCoA implements Distances2Network {
         if (optionSecondCoordinate > 0)
             this.optionSecondCoordinate = optionSecondCoordinate;
     }
+
+    public String getOptionMethod() {
+        return optionMethod;
+    }
+
+    public void setOptionMethod(String optionMethod) {
+        this.optionMethod = optionMethod;
+    }
+
+    /**
+     * return the possible choices for optionMethod
+     *
+     * @return list of choices
+     */
+    public List selectionOptionMethod(Document doc) {
+        List list = new LinkedList();
+        list.add(DENSE);
+        list.add(LANCZOS);
+        return list;
+    }
 }
@@ -19,6 +19,7 @@
 package splitstree4.algorithms.distances;
 
 import jloda.util.CanceledException;
+import splitstree4.algorithms.CacheableTransform;
 import splitstree4.core.Document;
 import splitstree4.core.SplitsSet;
 import splitstree4.core.TaxaSet;
@@ -30,7 +31,7 @@ import splitstree4.util.SplitsUtilities;
 /**
  * Implements the split decomposition method of Bandelt and Dress (1992).
  */
-public class SplitDecomposition implements Distances2Splits {
+public class SplitDecomposition implements Distances2Splits, CacheableTransform {
     public final static String DESCRIPTION = "Computes the split decomposition (Bandelt and Dress 1992)";
 
     /**
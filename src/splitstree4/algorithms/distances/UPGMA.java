@@ -24,6 +24,7 @@ import jloda.graph.Edge;
 import jloda.graph.Node;
 import jloda.phylo.PhyloTree;
 import jloda.util.CanceledException;
+import splitstree4.algorithms.CacheableTransform;
 import splitstree4.core.Document;
 import splitstree4.nexus.Distances;
 import splitstree4.nexus.Taxa;
@@ -32,7 +33,7 @@ import splitstree4.nexus.Trees;
 /**
  * classic n³ version implemented by Dave Bryant.
  */
-public class UPGMA implements Distances2Trees {
+public class UPGMA implements Distances2Trees, CacheableTransform {
     public final static String DESCRIPTION = "Computes the UPGMA (Unweighted Pair Group Method using Arithmetic averages) tree";
 
     /**
@@ -0,0 +1,366 @@
+/*
+ * CherryIndex.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.algorithms.quartets;
+
+import splitstree4.nexus.Quartets;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * index used by the coalescent method to find cherries. For each pair of taxa, it keeps the number of quartets
+ * that separate the two taxa, and, for each taxon, the number of other taxa that it is not separated from.
+ * Both are updated incrementally when a cherry is coalesced, so the quartets are never rescanned.
+ * <p/>
+ * Taxa that have been created by coalescing are ranked after all existing ones, so the cherry returned is the
+ * same as found by testing all pairs of taxa in order of their ids
+ *
+ * @author huson
+ * Date: 2022
+ */
+class CherryIndex {
+    private final int[] quartetTaxa; // a1,a2,b1,b2 for each quartet
+    private final boolean[] alive;
+
+    private final int[][] quartetsOf; // quartets that contain a taxon, may include quartets that have been removed
+    private final int[] numberOfQuartetsOf;
+
+    private final PairCounts separating; // for each pair of taxa, the number of separating quartets, if positive
+    private final int[] numberSeparated; // for each taxon, number of other taxa that it is separated from
+    private final int[] notSeparated; // for each valid taxon, number of other valid taxa that it is not separated from
+
+    private int numberOfValid;
+
+    private final int[] rank; // taxa are tested in order of rank, coalesced taxa get new ranks
+    private final int[] rank2taxon;
+    private int nextRank;
+
+    private final TreeSet<Integer> validRanks = new TreeSet<>();
+    private final TreeSet<Integer> candidateRanks = new TreeSet<>(); // ranks of valid taxa that are not separated from some other
+
+    /**
+     * constructor
+     *
+     * @param ntax     number of taxa
+     * @param quartets quartets on taxa 1..ntax
+     */
+    CherryIndex(int ntax, Quartets quartets) {
+        final int nquartets = quartets.size();
+        quartetTaxa = new int[4 * nquartets];
+        alive = new boolean[nquartets];
+        quartetsOf = new int[ntax + 1][];
+        numberOfQuartetsOf = new int[ntax + 1];
+        separating = new PairCounts(ntax, nquartets);
+        numberSeparated = new int[ntax + 1];
+        notSeparated = new int[ntax + 1];
+        rank = new int[ntax + 1];
+        rank2taxon = new int[2 * ntax + 1];
+
+        for (int t = 1; t <= ntax; t++) {
+            quartetsOf[t] = new int[4];
+            rank[t] = t;
+            rank2taxon[t] = t;
+            validRanks.add(t);
+        }
+        numberOfValid = ntax;
+        nextRank = ntax + 1;
+
+        for (int q = 0; q < nquartets; q++) {
+            for (int pos = 0; pos < 4; pos++) {
+                quartetTaxa[4 * q + pos] = quartets.getTaxon(q + 1, pos);
+                if (!contains(q, pos, quartetTaxa[4 * q + pos]))
+                    addQuartetOf(quartetTaxa[4 * q + pos], q);
+            }
+            alive[q] = true;
+            changeSeparating(q, 1);
+        }
+
+        for (int t = 1; t <= ntax; t++) {
+            notSeparated[t] = ntax - 1 - numberSeparated[t];
+            if (notSeparated[t] > 0)
+                candidateRanks.add(rank[t]);
+        }
+    }
+
+    /**
+     * number of taxa that have not been coalesced into others
+     *
+     * @return number of valid taxa
+     */
+    int getNumberOfValid() {
+        return numberOfValid;
+    }
+
+    /**
+     * finds the first pair of valid taxa, in order of rank, that is not separated by any quartet
+     *
+     * @return the two taxa, or null
+     */
+    int[] findCherry() {
+        if (candidateRanks.size() == 0)
+            return null;
+        final int x = rank2taxon[candidateRanks.first()];
+        for (int r : validRanks.tailSet(rank[x], false)) {
+            final int y = rank2taxon[r];
+            if (separating.get(x, y) == 0)
+                return new int[]{x, y};
+        }
+        return null; // can't happen, a partner of lower rank would have made that partner a candidate first
+    }
+
+    /**
+     * coalesces a cherry. Quartets that contain both taxa are removed. The coalesced taxon takes the place of
+     * the taxon that is contained in more quartets, which replaces the other taxon in all remaining quartets,
+     * so that each quartet is only rewritten a few times. The coalesced taxon is ranked after all other taxa
+     *
+     * @param x first taxon of cherry
+     * @param y second taxon of cherry
+     * @return the coalesced taxon, x or y
+     */
+    int coalesce(int x, int y) {
+        if (numberOfQuartetsOf[y] > numberOfQuartetsOf[x]) {
+            final int tmp = x;
+            x = y;
+            y = tmp;
+        }
+
+        // remove the contributions of the pairs that involve x or y:
+        for (int r : validRanks) {
+            final int t = rank2taxon[r];
+            if (t != x && t != y)
+                notSeparated[t] -= (separating.get(t, x) > 0 ? 0 : 1) + (separating.get(t, y) > 0 ? 0 : 1);
+        }
+
+        // all quartets that contain both taxa are also quartets of y, so only those need to be looked at:
+        for (int i = 0; i < numberOfQuartetsOf[y]; i++) {
+            final int q = quartetsOf[y][i];
+            if (alive[q]) {
+                changeSeparating(q, -1);
+                if (contains(q, x))
+                    alive[q] = false;
+                else {
+                    for (int pos = 0; pos < 4; pos++) {
+                        if (quartetTaxa[4 * q + pos] == y)
+                            quartetTaxa[4 * q + pos] = x;
+                    }
+                    changeSeparating(q, 1);
+                    addQuartetOf(x, q);
+                }
+            }
+        }
+        quartetsOf[y] = null;
+        numberOfQuartetsOf[y] = 0;
+
+        validRanks.remove(rank[y]);
+        candidateRanks.remove(rank[y]);
+        validRanks.remove(rank[x]);
+        candidateRanks.remove(rank[x]);
+        numberOfValid--;
+        rank[x] = nextRank++;
+        rank2taxon[rank[x]] = x;
+        validRanks.add(rank[x]);
+
+        // add the contributions of the pairs that involve the coalesced taxon:
+        notSeparated[x] = numberOfValid - 1 - numberSeparated[x];
+        if (notSeparated[x] > 0)
+            candidateRanks.add(rank[x]);
+        for (int r : validRanks) {
+            final int t = rank2taxon[r];
+            if (t != x) {
+                if (separating.get(t, x) == 0)
+                    notSeparated[t]++;
+                if (notSeparated[t] > 0)
+                    candidateRanks.add(r);
+                else
+                    candidateRanks.remove(r);
+            }
+        }
+        return x;
+    }
+
+    /**
+     * does the quartet contain the taxon?
+     */
+    private boolean contains(int q, int t) {
+        return contains(q, 4, t);
+    }
+
+    /**
+     * does the quartet contain the taxon among its first positions?
+     */
+    private boolean contains(int q, int positions, int t) {
+        for (int pos = 0; pos < positions; pos++) {
+            if (quartetTaxa[4 * q + pos] == t)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * adds or removes the contribution of a quartet to the counts of the pairs that it separates
+     */
+    private void changeSeparating(int q, int delta) {
+        final int a1 = quartetTaxa[4 * q], a2 = quartetTaxa[4 * q + 1], b1 = quartetTaxa[4 * q + 2], b2 = quartetTaxa[4 * q + 3];
+        changeSeparating(a1, b1, delta);
+        if (b2 != b1)
+            changeSeparating(a1, b2, delta);
+        if (a2 != a1) {
+            changeSeparating(a2, b1, delta);
+            if (b2 != b1)
+                changeSeparating(a2, b2, delta);
+        }
+    }
+
+    /**
+     * changes the number of quartets that separate x and y
+     */
+    private void changeSeparating(int x, int y, int delta) {
+        if (x == y)
+            return;
+        final int count = separating.add(x, y, delta);
+        if (count > 0 && count == delta) { // pair has become separated
+            numberSeparated[x]++;
+            numberSeparated[y]++;
+        } else if (count <= 0 && count != delta) {
+            numberSeparated[x]--;
+            numberSeparated[y]--;
+        }
+    }
+
+    /**
+     * records that a quartet contains a taxon
+     */
+    private void addQuartetOf(int t, int q) {
+        if (numberOfQuartetsOf[t] == quartetsOf[t].length) { // remove quartets that are no longer alive before growing
+            int count = 0;
+            for (int i = 0; i < numberOfQuartetsOf[t]; i++) {
+                if (alive[quartetsOf[t][i]])
+                    quartetsOf[t][count++] = quartetsOf[t][i];
+            }
+            numberOfQuartetsOf[t] = count;
+            if (2 * count > quartetsOf[t].length)
+                quartetsOf[t] = Arrays.copyOf(quartetsOf[t], 2 * quartetsOf[t].length);
+        }
+        quartetsOf[t][numberOfQuartetsOf[t]++] = q;
+    }
+
+    /**
+     * counts for pairs of taxa, kept in an open addressing hash table, only positive counts are stored
+     */
+    private static class PairCounts {
+        private final long ntax;
+        private long[] keys;
+        private int[] counts;
+        private int size;
+
+        PairCounts(int ntax, int expectedSize) {
+            this.ntax = ntax;
+            int capacity = 16;
+            while (capacity < 2L * expectedSize && capacity < (1 << 30))
+                capacity <<= 1;
+            keys = new long[capacity];
+            counts = new int[capacity];
+        }
+
+        /**
+         * gets the count for a pair
+         */
+        int get(int x, int y) {
+            final long key = key(x, y);
+            for (int i = slot(key); keys[i] != 0; i = (i + 1) & (keys.length - 1)) {
+                if (keys[i] == key)
+                    return counts[i];
+            }
+            return 0;
+        }
+
+        /**
+         * adds to the count for a pair
+         *
+         * @return new count
+         */
+        int add(int x, int y, int delta) {
+            final long key = key(x, y);
+            int i = slot(key);
+            while (keys[i] != 0 && keys[i] != key)
+                i = (i + 1) & (keys.length - 1);
+            final int count = (keys[i] == key ? counts[i] : 0) + delta;
+            if (count > 0) {
+                if (keys[i] == 0) {
+                    keys[i] = key;
+                    if (++size > keys.length / 2) {
+                        counts[i] = count;
+                        grow();
+                        return count;
+                    }
+                }
+                counts[i] = count;
+            } else if (keys[i] == key)
+                remove(i);
+            return count;
+        }
+
+        /**
+         * removes the entry in the given slot, moving back entries of the same probe sequence
+         */
+        private void remove(int i) {
+            final int mask = keys.length - 1;
+            size--;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (keys[j] == 0)
+                    break;
+                final int home = slot(keys[j]);
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys[i] = keys[j];
+                    counts[i] = counts[j];
+                    i = j;
+                }
+            }
+            keys[i] = 0;
+            counts[i] = 0;
+        }
+
+        private void grow() {
+            final long[] oldKeys = keys;
+            final int[] oldCounts = counts;
+            keys = new long[2 * oldKeys.length];
+            counts = new int[2 * oldKeys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int j = slot(oldKeys[i]);
+                    while (keys[j] != 0)
+                        j = (j + 1) & (keys.length - 1);
+                    keys[j] = oldKeys[i];
+                    counts[j] = oldCounts[i];
+                }
+            }
+        }
+
+        private long key(int x, int y) {
+            return (x < y ? x * (ntax + 1) + y : y * (ntax + 1) + x);
+        }
+
+        private int slot(long key) {
+            final long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & (keys.length - 1);
+        }
+    }
+}
@@ -20,15 +20,11 @@ package splitstree4.algorithms.quartets;
 
 
 import splitstree4.core.Document;
-import splitstree4.core.Quartet;
-import splitstree4.core.SplitsException;
 import splitstree4.core.TaxaSet;
 import splitstree4.nexus.Quartets;
 import splitstree4.nexus.Splits;
 import splitstree4.nexus.Taxa;
 
-import java.util.Hashtable;
-
 /**
  * Transforms a set of quartets Q to a set of splits S representing a
  * resolved binary phylogenetic tree by applying the
@@ -49,6 +45,8 @@ import java.util.Hashtable;
  * if none exists then a cherry is found => 2)
  * 1b) try two different taxa and check, repeat
  * 1c) if no taxa are left and no cherry has been found, STOP.
+ * (to avoid testing all pairs against all quartets, a CherryIndex keeps the number of
+ * quartets that separate each pair and is updated when taxa are coalesced)
  * 2) coalesce the two taxa into one new taxon and report the split found
  * 3) repeat 1)
  */
@@ -56,14 +54,6 @@ public class Coalescent implements Quartets2Splits {
 
     public static final String DESCRIPTION = "Computes a tree by applying the \"coalescent\" method E. Mossel and M. Steel (2003)";
     private final boolean logging = false;
-    //global fields for return value exchange with submethods
-    private int cherryPartX = -1; //one taxon of a found cherry
-    private int cherryPartY = -1; //one taxon of a found cherry
-    /**
-     * Since taxa are coalesced the two old taxa are declared invalid and
-     * the freshly added one is made valid.
-     */
-    private TaxaSet validTaxa = null;
 
     /**
      * Determine whether given method can be applied to given data.
@@ -84,102 +74,42 @@ public class Coalescent implements Quartets2Splits {
      * @return the computed quartets
      */
     public Splits apply(Document doc, Taxa taxa, Quartets quartets) {
-        taxa = (Taxa) taxa.clone();
-        try {
-            Splits splits = new Splits(taxa.getNtax());
-            int originalNumberOfTaxa = taxa.getNtax();
-
-			for (int i = 1; i <= taxa.getNtax(); i++) {
-				TaxaSet ts = new TaxaSet();
-				ts.set(i);
-				splits.add(ts);
-			}
-
-            //at the beginning all taxa are valid
-            validTaxa = new TaxaSet();
-            validTaxa.set(1, taxa.getNtax());
-
-            //maps coalesced taxa to the contained singletons (TaxaSet)
-            Hashtable coalescenceMap = new Hashtable();
-
-            boolean foundCherry = findACherry(taxa, quartets);
-            while (foundCherry) {
-
-				//create new valid taxon z for this cherry
-                int z = taxa.getNtax() + 1;
-                taxa.setNtax(z);
-                taxa.setLabel(taxa.getNtax()
-                        , "[" + taxa.getLabel(cherryPartX) + "+" + taxa.getLabel(cherryPartY) + "]");
-                validTaxa.set(z);
+        final int ntax = taxa.getNtax();
+        final Splits splits = new Splits(ntax);
+
+        //maps each valid taxon to the contained original taxa, a coalesced taxon takes the place of one taxon of its cherry
+        final TaxaSet[] coalescedTaxa = new TaxaSet[ntax + 1];
+        for (int i = 1; i <= ntax; i++) {
+            coalescedTaxa[i] = new TaxaSet();
+            coalescedTaxa[i].set(i);
+            splits.add(coalescedTaxa[i]);
+        }
 
-                //update coalescenceMap
-                TaxaSet coalescedTaxa = new TaxaSet();
-                if (cherryPartX > originalNumberOfTaxa)
-					coalescedTaxa.or((TaxaSet) coalescenceMap.get(cherryPartX));
-                else
-                    coalescedTaxa.set(cherryPartX);
-                if (cherryPartY > originalNumberOfTaxa)
-					coalescedTaxa.or((TaxaSet) coalescenceMap.get(cherryPartY));
-                else
-                    coalescedTaxa.set(cherryPartY);
-                coalescenceMap.put(z, coalescedTaxa);
-                if (logging)
-					System.out.println("creating new taxon: " + z + " containing: " + coalescedTaxa);
+        //the index keeps, for each pair of taxa, the number of separating quartets and is updated as taxa are coalesced
+        final CherryIndex cherryIndex = new CherryIndex(ntax, quartets);
 
-                //insert the new split
-                splits.add(coalescedTaxa);
-				if (logging) System.out.println("+ adding split: " + coalescedTaxa);
+        int[] cherry = (cherryIndex.getNumberOfValid() >= 4 ? cherryIndex.findCherry() : null);
+        while (cherry != null) {
+            final int x = cherry[0];
+            final int y = cherry[1];
+            if (logging) System.out.println("** found cherry: " + coalescedTaxa[x] + "," + coalescedTaxa[y]);
 
-                //delete these taxa from the valid ones since they have been
-                //replaced by the new taxon
-                validTaxa.unset(cherryPartX);
-                validTaxa.unset(cherryPartY);
+            final TaxaSet union = new TaxaSet();
+            union.or(coalescedTaxa[x]);
+            union.or(coalescedTaxa[y]);
 
-                //update references to the old taxa in all quartets
-                //and kick out superfluous quartets
-                Quartets newQuartets = new Quartets();
-                for (int i = 1; i <= quartets.size(); i++) {
-                    Quartet q = quartets.get(i);
-                    if (q.isXYonSameSides(cherryPartX, cherryPartY)) {
-                        //do not add to new quartets since superfluous
-						if (logging) System.out.println("dropping: " + q);
-                    } else {
-                        //update references to cherryPartX or cherryPartY
-                        //to the new taxon z and then insert the quartet into
-                        //newQuartets
-                        int a1, a2, b1, b2;
-                        if ((q.getA1() == cherryPartX) || (q.getA1() == cherryPartY)) {
-                            a1 = z;
-                        } else
-                            a1 = q.getA1();
-                        if ((q.getA2() == cherryPartX) || (q.getA2() == cherryPartY)) {
-                            a2 = z;
-                        } else
-                            a2 = q.getA2();
-                        if ((q.getB1() == cherryPartX) || (q.getB1() == cherryPartY)) {
-                            b1 = z;
-                        } else
-                            b1 = q.getB1();
-                        if ((q.getB2() == cherryPartX) || (q.getB2() == cherryPartY)) {
-                            b2 = z;
-                        } else
-                            b2 = q.getB2();
-                        Quartet qNew = new Quartet(a1, a2, b1, b2, q.getWeight(), q.getLabel());
-						if (logging) System.out.println("adding: " + qNew);
-                        newQuartets.add(qNew);
-                    }
-                }
-                quartets = newQuartets;
-				if (logging) System.out.println();
-                foundCherry = findACherry(taxa, quartets);
+            //insert the new split
+            splits.add(union);
+            if (logging) System.out.println("+ adding split: " + union);
 
-            }
+            //drop quartets that contain both taxa and replace one taxon by the other in all others
+            final int z = cherryIndex.coalesce(x, y);
+            coalescedTaxa[x] = coalescedTaxa[y] = null;
+            coalescedTaxa[z] = union;
 
-            return splits;
-        } catch (SplitsException e) {
-            e.printStackTrace();
-            return null;
+            cherry = (cherryIndex.getNumberOfValid() >= 4 ? cherryIndex.findCherry() : null);
         }
+        return splits;
     }
 
     /**
@@ -190,47 +120,6 @@ public class Coalescent implements Quartets2Splits {
     public String getDescription() {
         return DESCRIPTION;
     }
-
-    /**
-     * Tries to find a cherry among the taxa which is compatible
-     * with the given set of quartets.
-     * If a cherry exists it is found and is returned in the global
-     * cherryPartX and cherryPartY fields.
-     *
-     * @return returns wheather a cherry was found
-     */
-    private boolean findACherry(Taxa taxa, Quartets quartets) {
-        try {
-            if (validTaxa.cardinality() < 4) return false;
-            for (int i = 1; i <= taxa.getNtax(); i++) {
-                //if this taxon has been deleted then continue
-                if (!validTaxa.get(i)) continue;
-                for (int j = i + 1; j <= taxa.getNtax(); j++) {
-                    if (!validTaxa.get(j)) continue;
-                    boolean cherryFound = true;
-                    for (int q = 1; q <= quartets.size(); q++) {
-                        Quartet quart = quartets.get(q);
-						if (quart.isXYonDifferentSides(i, j)) {
-							cherryFound = false;
-							break;
-						}
-                    }
-                    if (cherryFound) {
-                        cherryPartX = i;
-                        cherryPartY = j;
-                        if (logging) System.out.println("** found cherry: " + i + "," + j);
-                        return true;
-                    }
-                }
-            }
-        } catch (SplitsException e) {
-            e.printStackTrace();
-        }
-
-        return false;
-
-    }
-
 }
 
 // EOF
@@ -25,6 +25,7 @@ import jloda.swing.util.Geometry;
 import jloda.util.CanceledException;
 import jloda.util.IteratorUtils;
 import jloda.util.Pair;
+import splitstree4.algorithms.util.BarnesHutSpringEmbedder;
 import splitstree4.core.Document;
 import splitstree4.core.SplitsException;
 import splitstree4.core.TaxaSet;
@@ -47,11 +48,15 @@ import java.util.*;
 public class EqualAngle implements Splits2Network {
     public final static String DESCRIPTION = "Equal angle algorithm (Dress & Huson 2004) with equal-daylight &" +
             "  box-opening optimization (Gambette & Huson 2005)";
+    private static final double MIN_DAYLIGHT_ROTATION = 0.0001; // stop daylight optimization when no node rotates more than this
+    private static final double MIN_BOXES_GAIN = 0.0001; // stop box optimization when the relative gain in area falls below this
+
     private int optionDaylightIterations = 0;
     private int optionOptimizeBoxesIterations = 0;
     private boolean optionUseWeights = true;
     private boolean optionRunConvexHull = true;
     private int optionSpringEmbedderIterations = 0;
+    private String optionSpringEmbedderMethod = BarnesHutSpringEmbedder.EXACT;
     private PhyloGraphView phyloGraphView = null;
     Document doc;
 
@@ -211,6 +216,11 @@ public class EqualAngle implements Splits2Network {
         doc.notifyTasks("Equal Angle", null); // in case this was reset by convex hull
 
         if (getOptimizeDaylight()) {
+            if (doc.hasIntermediateNetworkListener()) { // show the layout while it is being optimized
+                rotateToFirstTaxon(graph);
+                assignCoordinatesToNodes(optionUseWeights, phyloGraphView);
+                doc.notifyIntermediateNetwork(new Network(taxa, phyloGraphView));
+            }
             doc.notifySetProgress(80);
             runOptimizeDayLight(taxa, phyloGraphView);
         }
@@ -226,16 +236,7 @@ public class EqualAngle implements Splits2Network {
         }
         */
 
-        // rotateAbout so that edge leaving first taxon ist pointing at 9 o'clock
-        if (graph.getNumberOfNodes() > 0 && graph.getNumberOfEdges() > 0) {
-            Node v = graph.getTaxon2Node(1);
-            Edge e = graph.getFirstAdjacentEdge(v);
-            double angle = Math.PI + graph.getAngle(e); // add pi to be consist with Embed
-            for (e = graph.getFirstEdge(); e != null; e = graph.getNextEdge(e)) {
-                graph.setAngle(e, graph.getAngle(e) - angle);
-            }
-            assignCoordinatesToNodes(optionUseWeights, phyloGraphView); // need coordinates
-        }
+        rotateToFirstTaxon(graph);
         assignCoordinatesToNodes(optionUseWeights, phyloGraphView);
 
         doc.notifySetProgress(100);   //set progress to 100%
@@ -325,8 +326,6 @@ public class EqualAngle implements Splits2Network {
      */
     public void computeSpringEmbedding(Document doc, PhyloGraphView phyloGraphView, int iterations) {
         Graph G = phyloGraphView.getGraph();
-        NodeDoubleArray xPos = new NodeDoubleArray(G);
-        NodeDoubleArray yPos = new NodeDoubleArray(G);
 
         Rectangle2D rect = phyloGraphView.getBBox();
         double width = rect.getWidth();
@@ -335,113 +334,38 @@ public class EqualAngle implements Splits2Network {
         if (G.getNumberOfNodes() < 2)
             return;
 
+        // copy graph and coordinates to primitive arrays:
+        NodeIntArray node2index = new NodeIntArray(G);
+        Node[] nodes = new Node[G.getNumberOfNodes()];
+        double[] xPos = new double[nodes.length];
+        double[] yPos = new double[nodes.length];
+        int count = 0;
+        for (Node v = G.getFirstNode(); v != null; v = G.getNextNode(v)) {
+            Point2D p = phyloGraphView.getLocation(v);
+            xPos[count] = p.getX();
+            yPos[count] = p.getY();
+            nodes[count] = v;
+            node2index.set(v, count++);
+        }
+        int[] sources = new int[G.getNumberOfEdges()];
+        int[] targets = new int[G.getNumberOfEdges()];
+        count = 0;
+        for (Edge e = G.getFirstEdge(); e != null; e = G.getNextEdge(e)) {
+            sources[count] = node2index.get(G.getSource(e));
+            targets[count++] = node2index.get(G.getTarget(e));
+        }
+
         try {
             doc.notifyTasks("Equal Angle", "Spring embedder");
-            doc.notifySetMaximumProgress(iterations);    //initialize maximum progress
-            doc.notifySetProgress(0);
-
-
-            for (Node v = G.getFirstNode(); v != null; v = G.getNextNode(v)) {
-                Point2D p = phyloGraphView.getLocation(v);
-                xPos.put(v, p.getX());
-                yPos.put(v, p.getY());
-            }
-
-            // run iterations of spring embedding:
-            double log2 = Math.log(2);
-            for (int count = 1; count <= iterations; count++) {
-                double k = Math.sqrt(width * height / G.getNumberOfNodes()) / 2;
-
-                double l2 = 25 * log2 * Math.log(1 + count);
-
-                double tx = width / l2;
-                double ty = height / l2;
-
-                NodeDoubleArray xDispl = new NodeDoubleArray(G);
-                NodeDoubleArray yDispl = new NodeDoubleArray(G);
-
-                // repulsive forces
-
-                for (Node v = G.getFirstNode(); v != null; v = G.getNextNode(v)) {
-                    double xv = xPos.get(v);
-                    double yv = yPos.get(v);
-
-                    for (Node u = G.getFirstNode(); u != null; u = G.getNextNode(u)) {
-                        if (u == v)
-                            continue;
-                        double xdist = xv - xPos.get(u);
-                        double ydist = yv - yPos.get(u);
-                        double dist = xdist * xdist + ydist * ydist;
-                        if (dist < 1e-3)
-                            dist = 1e-3;
-                        double frepulse = k * k / dist;
-                        xDispl.put(v, xDispl.get(v) + frepulse * xdist);
-                        yDispl.put(v, yDispl.get(v) + frepulse * ydist);
-                    }
-
-                    for (Edge e = G.getFirstEdge(); e != null; e = G.getNextEdge(e)) {
-                        Node a = G.getSource(e);
-                        Node b = G.getTarget(e);
-                        if (a == v || b == v)
-                            continue;
-                        double xdist = xv -
-                                (xPos.get(a) + xPos.get(b)) / 2;
-                        double ydist = yv -
-                                (yPos.get(a) + yPos.get(b)) / 2;
-                        double dist = xdist * xdist + ydist * ydist;
-                        if (dist < 1e-3) dist = 1e-3;
-                        double frepulse = k * k / dist;
-                        xDispl.put(v, xDispl.get(v) + frepulse * xdist);
-                        yDispl.put(v, yDispl.get(v) + frepulse * ydist);
-                    }
-                }
-
-                // attractive forces
-
-                for (Edge e = G.getFirstEdge(); e != null; e = G.getNextEdge(e)) {
-                    Node u = G.getSource(e);
-                    Node v = G.getTarget(e);
-
-                    double xdist = xPos.get(v) - xPos.get(u);
-                    double ydist = yPos.get(v) - yPos.get(u);
-
-                    double dist = Math.sqrt(xdist * xdist + ydist * ydist);
-
-                    double f = ((G.getDegree(u) + G.getDegree(v)) / 16.0);
-
-                    dist /= f;
-
-                    xDispl.put(v, xDispl.get(v) - xdist * dist / k);
-                    yDispl.put(v, yDispl.get(v) - ydist * dist / k);
-                    xDispl.put(u, xDispl.get(u) + xdist * dist / k);
-                    yDispl.put(u, yDispl.get(u) + ydist * dist / k);
-                }
-
-                // preventions
-
-                for (Node v = G.getFirstNode(); v != null; v = G.getNextNode(v)) {
-                    double xd = xDispl.get(v);
-                    double yd = yDispl.get(v);
-
-                    double dist = Math.sqrt(xd * xd + yd * yd);
-
-                    xd = tx * xd / dist;
-                    yd = ty * yd / dist;
-
-                    double xp = xPos.get(v) + xd;
-                    double yp = yPos.get(v) + yd;
-
-                    xPos.put(v, xp);
-                    yPos.put(v, yp);
-                }
-                doc.notifySetProgress(count);
-            }
+            BarnesHutSpringEmbedder embedder = new BarnesHutSpringEmbedder(nodes.length, sources, targets);
+            embedder.setMethod(getOptionSpringEmbedderMethod());
+            embedder.apply(xPos, yPos, width, height, iterations, doc.getProgressListener());
         } catch (CanceledException ex) {
             doc.getProgressListener().setUserCancelled(false);
         } finally {
             // set node positions
-            for (Node v = G.getFirstNode(); v != null; v = G.getNextNode(v)) {
-                phyloGraphView.setLocation(v, xPos.get(v), yPos.get(v));
+            for (int i = 0; i < nodes.length; i++) {
+                phyloGraphView.setLocation(nodes[i], xPos[i], yPos[i]);
             }
         }
     }
@@ -744,17 +668,35 @@ public class EqualAngle implements Splits2Network {
     }
 
     /**
-     * runs the optimize daylight algorithm
+     * rotates the angles of all edges so that edge leaving first taxon ist pointing at 9 o'clock
+     */
+    private void rotateToFirstTaxon(PhyloSplitsGraph graph) {
+        if (graph.getNumberOfNodes() > 0 && graph.getNumberOfEdges() > 0) {
+            Node v = graph.getTaxon2Node(1);
+            Edge e = graph.getFirstAdjacentEdge(v);
+            double angle = Math.PI + graph.getAngle(e); // add pi to be consist with Embed
+            for (e = graph.getFirstEdge(); e != null; e = graph.getNextEdge(e)) {
+                graph.setAngle(e, graph.getAngle(e) - angle);
+            }
+        }
+    }
+
+    /**
+     * runs the optimize daylight algorithm. Coordinates are assigned once and then updated incrementally
+     * for the rotated components only. Stops early once no node is rotated by more than MIN_DAYLIGHT_ROTATION
      *
 	 */
     private void runOptimizeDayLight(Taxa taxa, PhyloGraphView graphView) throws NotOwnerException {
 
         PhyloSplitsGraph graph = graphView.getPhyloGraph();
         NodeSet ignore = new NodeSet(graph);
+        EdgeIntArray edge2comp = new EdgeIntArray(graph);
         try {
             doc.notifySubtask("optimize daylight");
             doc.notifySetMaximumProgress(graph.getNumberOfNodes());
             doc.notifySetProgress(0);
+            assignCoordinatesToNodes(optionUseWeights, graphView); // need coordinates, these are maintained incrementally below
+
             for (int i = 1; i <= getOptionDaylightIterations(); i++) {
 
                 doc.notifySubtask("optimize daylight (" + i + ")");
@@ -762,17 +704,25 @@ public class EqualAngle implements Splits2Network {
                 doc.notifySetProgress(0);
 
                 int count = 0;
-
+                int rotated = 0;
+                double maxRotation = 0;
 				Iterator it = IteratorUtils.randomize(graph.nodes().iterator(), 77L * i);
                 while (it.hasNext()) {
                     Node v = (Node) it.next();
                     doc.notifySetProgress(++count);
                     if (graph.getDegree(v) > 1 && !ignore.contains(v)) {
-                        assignCoordinatesToNodes(optionUseWeights, graphView); // need coordinates
-                        if (!optimizeDaylightNode(taxa, v, graphView))
+                        double rotation = optimizeDaylightNode(v, graphView, edge2comp);
+                        if (rotation < 0)
                             ignore.add(v);
+                        else if (rotation > 0) {
+                            rotated++;
+                            maxRotation = Math.max(maxRotation, rotation);
+                        }
                     }
                 }
+                doc.notifySubtask("optimize daylight (" + i + "): " + rotated + " nodes rotated");
+                if (maxRotation < MIN_DAYLIGHT_ROTATION)
+                    break;
             }
         } catch (CanceledException e) {
             doc.getProgressListener().setUserCancelled(false);
@@ -780,64 +730,88 @@ public class EqualAngle implements Splits2Network {
     }
 
     /**
-     * optimize the daylight angles of the graph
+     * optimize the daylight angles around the given node. The largest component stays fixed, all other components
+     * are rotated about v and only their coordinates are updated
      *
+     * @param edge2comp all zero on entry and on exit
+     * @return max rotation applied to a component, or -1, if node is to be ignored in future
 	 */
-    private boolean optimizeDaylightNode(Taxa taxa, Node v, PhyloGraphView graphView) throws NotOwnerException, CanceledException {
+    private double optimizeDaylightNode(Node v, PhyloGraphView graphView, EdgeIntArray edge2comp) throws NotOwnerException, CanceledException {
         PhyloSplitsGraph graph = graphView.getPhyloGraph();
 
         int numComp = 0;
-        EdgeIntArray edge2comp = new EdgeIntArray(graph);
-        double[] comp2MinAngle = new double[taxa.getNtax() + 1];
-        double[] comp2MaxAngle = new double[taxa.getNtax() + 1];
+        double[] comp2MinAngle = new double[graph.getDegree(v) + 1];
+        double[] comp2MaxAngle = new double[graph.getDegree(v) + 1];
+        List<List<Edge>> comp2Edges = new ArrayList<>();
+        comp2Edges.add(null);
+        int largestComp = 0;
 
-        for (Edge e : v.adjacentEdges()) {
-            doc.getProgressListener().checkForCancel();
+        try {
+            for (Edge e : v.adjacentEdges()) {
+                doc.getProgressListener().checkForCancel();
 
-            if (edge2comp.getInt(e) == 0) {
-                edge2comp.set(e, ++numComp);
-                Node w = graph.getOpposite(v, e);
+                if (edge2comp.getInt(e) == 0) {
+                    edge2comp.set(e, ++numComp);
+                    List<Edge> edges = new ArrayList<>();
+                    edges.add(e);
+                    comp2Edges.add(edges);
+                    Node w = graph.getOpposite(v, e);
 
-                // as observed from v
-                double angle;
-                {
-                    Point2D vp = graphView.getLocation(v);
-                    Point2D wp = graphView.getLocation(w);
-                    angle = Geometry.computeAngle(Geometry.diff(wp, vp));
-                }
-                Pair<Double, Double> minMaxAngle = new Pair<>(angle, angle); // will contain min and max angles of component
+                    // as observed from v
+                    double angle;
+                    {
+                        Point2D vp = graphView.getLocation(v);
+                        Point2D wp = graphView.getLocation(w);
+                        angle = Geometry.computeAngle(Geometry.diff(wp, vp));
+                    }
+                    Pair<Double, Double> minMaxAngle = new Pair<>(angle, angle); // will contain min and max angles of component
 
-                NodeSet visited = new NodeSet(graph);
-                visitComponentRec(v, w, null, edge2comp, numComp, graph, graphView, visited, angle, minMaxAngle);
-                if (visited.size() == graph.getNumberOfNodes())
-                    return false; // visited all nodes, forget it.
+                    NodeSet visited = new NodeSet(graph);
+                    visitComponentRec(v, w, null, edge2comp, numComp, graph, graphView, visited, angle, minMaxAngle, edges);
+                    if (visited.size() == graph.getNumberOfNodes())
+                        return -1; // visited all nodes, forget it.
 
-                comp2MinAngle[numComp] = minMaxAngle.getFirstDouble();
-                comp2MaxAngle[numComp] = minMaxAngle.getSecondDouble();
-            }
-        }
-        if (numComp > 1) {
-            double total = 0;
-            for (int c = 1; c <= numComp; c++) {
-                total += comp2MaxAngle[c] - comp2MinAngle[c];
+                    comp2MinAngle[numComp] = minMaxAngle.getFirstDouble();
+                    comp2MaxAngle[numComp] = minMaxAngle.getSecondDouble();
+                    if (largestComp == 0 || edges.size() > comp2Edges.get(largestComp).size())
+                        largestComp = numComp;
+                }
             }
-            if (total < 2 * Math.PI) {
-                double daylightGap = (2 * Math.PI - total) / numComp;
-                double[] comp2epsilon = new double[numComp + 1];
+            double maxRotation = 0;
+            if (numComp > 1) {
+                double total = 0;
                 for (int c = 1; c <= numComp; c++) {
-                    double alpha = 0;
-                    for (int i = 1; i < c; i++)
-                        alpha += comp2MaxAngle[i] - comp2MinAngle[i];
-                    alpha += (c - 1) * daylightGap;
-                    comp2epsilon[c] = alpha - comp2MinAngle[c];
+                    total += comp2MaxAngle[c] - comp2MinAngle[c];
                 }
-                for (Edge e = graph.getFirstEdge(); e != null; e = graph.getNextEdge(e)) {
-                    int c = edge2comp.getInt(e);
-                    graph.setAngle(e, graph.getAngle(e) + comp2epsilon[c]);
+                if (total < 2 * Math.PI) {
+                    double daylightGap = (2 * Math.PI - total) / numComp;
+                    double[] comp2epsilon = new double[numComp + 1];
+                    for (int c = 1; c <= numComp; c++) {
+                        double alpha = 0;
+                        for (int i = 1; i < c; i++)
+                            alpha += comp2MaxAngle[i] - comp2MinAngle[i];
+                        alpha += (c - 1) * daylightGap;
+                        comp2epsilon[c] = alpha - comp2MinAngle[c];
+                    }
+                    for (int c = 1; c <= numComp; c++) {
+                        double epsilon = comp2epsilon[c] - comp2epsilon[largestComp]; // keep the largest component fixed
+                        double rotation = Math.abs(Geometry.moduloTwoPI(epsilon + Math.PI) - Math.PI);
+                        if (rotation > 0) {
+                            for (Edge e : comp2Edges.get(c))
+                                graph.setAngle(e, graph.getAngle(e) + epsilon);
+                            assignCoordinatesToComponentRec(v, new BitSet(), new NodeSet(graph), edge2comp, c, graphView);
+                            maxRotation = Math.max(maxRotation, rotation);
+                        }
+                    }
                 }
             }
+            return maxRotation;
+        } finally {
+            for (int c = 1; c <= numComp; c++) {
+                for (Edge e : comp2Edges.get(c))
+                    edge2comp.set(e, 0);
+            }
         }
-        return true;
     }
 
 
@@ -846,7 +820,7 @@ public class EqualAngle implements Splits2Network {
      *
 	 */
     private void visitComponentRec(Node root, Node v, Edge e, EdgeIntArray edge2comp, int numComp, PhyloSplitsGraph graph, PhyloGraphView graphView, NodeSet visited,
-                                   double angle, Pair<Double, Double> minMaxAngle) throws NotOwnerException, CanceledException {
+                                   double angle, Pair<Double, Double> minMaxAngle, List<Edge> edges) throws NotOwnerException, CanceledException {
 
         if (v != root && !visited.contains(v)) {
             doc.getProgressListener().checkForCancel();
@@ -855,6 +829,7 @@ public class EqualAngle implements Splits2Network {
             for (Edge f = graph.getFirstAdjacentEdge(v); f != null; f = graph.getNextAdjacentEdge(f, v)) {
                 if (f != e && edge2comp.getInt(f) == 0) {
                     edge2comp.set(f, numComp);
+                    edges.add(f);
                     Node w = graph.getOpposite(v, f);
                     double newAngle = angle + Geometry.computeObservedAngle(graphView.getLocation(root),
                             graphView.getLocation(v), graphView.getLocation(w));
@@ -863,12 +838,35 @@ public class EqualAngle implements Splits2Network {
                     if (newAngle > minMaxAngle.getSecondDouble())
                         minMaxAngle.setSecond(newAngle);
                     visitComponentRec(root, w, f, edge2comp, numComp, graph, graphView, visited,
-                            newAngle, minMaxAngle);
+                            newAngle, minMaxAngle, edges);
                 }
             }
         }
     }
 
+    /**
+     * recursively reassigns coordinates to all nodes of the given component, keeping v fixed
+     *
+	 */
+    private void assignCoordinatesToComponentRec(Node v, BitSet splitsInPath, NodeSet nodesVisited, EdgeIntArray edge2comp, int comp, PhyloGraphView graphView) {
+        PhyloSplitsGraph graph = graphView.getPhyloGraph();
+
+        if (!nodesVisited.contains(v)) {
+            nodesVisited.add(v);
+            for (Edge e : v.adjacentEdges()) {
+                int s = graph.getSplit(e);
+                if (edge2comp.getInt(e) == comp && !splitsInPath.get(s)) {
+                    Node w = graph.getOpposite(v, e);
+                    Point2D p = Geometry.translateByAngle(graphView.getLocation(v),
+                            graph.getAngle(e), optionUseWeights ? graph.getWeight(e) : 1);
+                    graphView.setLocation(w, p);
+                    splitsInPath.set(s, true);
+                    assignCoordinatesToComponentRec(w, splitsInPath, nodesVisited, edge2comp, comp, graphView);
+                    splitsInPath.set(s, false);
+                }
+            }
+        }
+    }
 
     /**
      * optimize the boxes of the graph
@@ -887,13 +885,9 @@ public class EqualAngle implements Splits2Network {
 			doc.notifySetProgress(1);
 			int counter = 0;
 
-			Set<Integer> SplitsSet = EdgeSplits.keySet();
-			double totalSize = 0;
-			for (Integer aSplitsSet : SplitsSet) {
-				int CurrentSplit = aSplitsSet;
-				currentEdges = EdgeSplits.get(CurrentSplit);
-				totalSize += maximizeArea(currentEdges, graph, graph.getAngle((Edge) currentEdges.get(0)), graph.getAngle((Edge) currentEdges.get(0))).getFirstDouble();
-			}
+			Set<Integer> SplitsSet;
+			// the gain is always measured over the same splits, namely those that are moved below:
+			double totalSize = computeMovableBoxesArea(graph, EdgeSplits, forbiddenSplits);
 
 			double originalSize = totalSize;
 			double previousSize = totalSize;
@@ -922,10 +916,11 @@ public class EqualAngle implements Splits2Network {
 						doc.notifySubtask("box optim.: " + score + "%  (" + (compteur) + ":" + miniScore + "%)");
 					}
 				}
+				if (compteur > 0 && previousSize > 0 && (totalSize - previousSize) / previousSize < MIN_BOXES_GAIN)
+					break;
 				previousSize = totalSize;
 
 				SplitsSet = EdgeSplits.keySet();
-				totalSize = 0;
 
 				//Iterator allSplits=SplitsSet.iterator();
 				for (Integer aSplitsSet : SplitsSet) {
@@ -969,12 +964,14 @@ public class EqualAngle implements Splits2Network {
 
                                 graph.setAngle(currentEdge, optimized.getSecondDouble());
                             }
-                            totalSize += optimized.getFirstDouble();
+                            if (optimized.getSecondDouble() != oldAngle)
+                                translateSplitSide(currentEdges, oldAngle, optimized.getSecondDouble(), graphView);
                         } else {
                             //The split only has one edge, we do not move it
                         }
                     }
                 }
+                totalSize = computeMovableBoxesArea(graph, EdgeSplits, forbiddenSplits);
             }
         } catch (CanceledException e) {
             doc.getProgressListener().setUserCancelled(false);
@@ -982,6 +979,72 @@ public class EqualAngle implements Splits2Network {
     }
 
 
+    /**
+     * computes the total area of the boxes of all splits that box optimization may move, in their current positions
+     *
+     * @return total area
+     */
+    private double computeMovableBoxesArea(PhyloSplitsGraph graph, HashMap<Integer, List<Edge>> edgeSplits, HashSet forbiddenSplits) {
+        double totalSize = 0;
+        for (Integer split : edgeSplits.keySet()) {
+            final List<Edge> edges = edgeSplits.get(split);
+            if (!forbiddenSplits.contains(split) && edges.size() > 1)
+                totalSize += maximizeArea(edges, graph, graph.getAngle(edges.get(0)), graph.getAngle(edges.get(0))).getFirstDouble();
+        }
+        return totalSize;
+    }
+
+    /**
+     * after changing the angle of a split, translates all nodes on the side of the split that does not contain
+     * the node of taxon 1, which is where assignCoordinatesToNodes starts
+     *
+	 */
+    private void translateSplitSide(List splitEdges, double oldAngle, double newAngle, PhyloGraphView graphView) {
+        PhyloSplitsGraph graph = graphView.getPhyloGraph();
+        Edge first = (Edge) splitEdges.get(0);
+        EdgeSet separator = new EdgeSet(graph);
+        for (Object e : splitEdges)
+            separator.add((Edge) e);
+
+        Node root = graph.getTaxon2Node(1);
+        List<Node> side = collectSide(graph, first.getSource(), separator, root);
+        if (side == null)
+            side = collectSide(graph, first.getTarget(), separator, null);
+
+        double weight = optionUseWeights ? graph.getWeight(first) : 1;
+        for (Node v : side) {
+            Point2D p = Geometry.translateByAngle(graphView.getLocation(v), oldAngle + Math.PI, weight);
+            graphView.setLocation(v, Geometry.translateByAngle(p, newAngle, weight));
+        }
+    }
+
+    /**
+     * collects all nodes reachable from start without using a separator edge
+     *
+     * @return nodes, or null, if forbidden node was reached
+	 */
+    private List<Node> collectSide(PhyloSplitsGraph graph, Node start, EdgeSet separator, Node forbidden) {
+        List<Node> result = new ArrayList<>();
+        NodeSet seen = new NodeSet(graph);
+        Stack<Node> stack = new Stack<>();
+        stack.push(start);
+        seen.add(start);
+        while (!stack.isEmpty()) {
+            Node v = stack.pop();
+            if (v == forbidden)
+                return null;
+            result.add(v);
+            for (Edge e : v.adjacentEdges()) {
+                Node w = e.getOpposite(v);
+                if (!separator.contains(e) && !seen.contains(w)) {
+                    seen.add(w);
+                    stack.push(w);
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * returns (Max(splitArea),argMax(splitArea)) where the split is defined by its SplitEdges and the
      * split angle has to be between minAngle and maxAngle
@@ -1282,7 +1345,7 @@ public class EqualAngle implements Splits2Network {
             previousNode1 = currentNode1;
             previousNode2 = currentNode2;
         }
-        assignCoordinatesToNodes(optionUseWeights, phyloGraphView); // we need this to detect collisions
+        // coordinates are maintained incrementally by runOptimizeBoxes
         double firstBoxAngle = Geometry.moduloTwoPI(Geometry.basicComputeAngle(graphView.getLocation(ZeNode1), graphView.getLocation(ZeNode2), graphView.getLocation(previousNode1)));
 
         //We go through the 2 parts of the graph to find "defender" and "striker" nodes
@@ -1634,6 +1697,26 @@ public class EqualAngle implements Splits2Network {
         this.optionSpringEmbedderIterations = optionSpringEmbedderIterations;
     }
 
+    public String getOptionSpringEmbedderMethod() {
+        return optionSpringEmbedderMethod;
+    }
+
+    public void setOptionSpringEmbedderMethod(String optionSpringEmbedderMethod) {
+        this.optionSpringEmbedderMethod = optionSpringEmbedderMethod;
+    }
+
+    /**
+     * return the possible choices for optionSpringEmbedderMethod
+     *
+     * @return list of choices
+     */
+    public List selectionOptionSpringEmbedderMethod(Document doc) {
+        List list = new LinkedList();
+        list.add(BarnesHutSpringEmbedder.EXACT);
+        list.add(BarnesHutSpringEmbedder.BARNES_HUT);
+        return list;
+    }
+
     public boolean getRunSpringEmbedder() {
         return optionSpringEmbedderIterations > 0;
     }
@@ -19,6 +19,7 @@
 package splitstree4.algorithms.trees;
 
 import jloda.util.CanceledException;
+import splitstree4.algorithms.CacheableTransform;
 import splitstree4.core.Document;
 import splitstree4.core.TaxaSet;
 import splitstree4.nexus.Splits;
@@ -30,7 +31,7 @@ import java.util.*;
 /**
  * implements consensus networks from splits Holland and Moulton (2003).
  */
-public class ConsensusNetwork implements Trees2Splits {
+public class ConsensusNetwork implements Trees2Splits, CacheableTransform {
     public final static String MEDIAN = "median";
     public final static String MEAN = "mean";
     public final static String COUNT = "count";
@@ -20,6 +20,7 @@ package splitstree4.algorithms.trees;
 
 import jloda.swing.util.Alert;
 import jloda.util.CanceledException;
+import splitstree4.algorithms.CacheableTransform;
 import splitstree4.core.Document;
 import splitstree4.core.SplitsException;
 import splitstree4.nexus.Splits;
@@ -35,7 +36,7 @@ import java.util.List;
  * @author huson
  * Date: 21-Mar-2005
  */
-public class ConsensusTree implements Trees2Splits {
+public class ConsensusTree implements Trees2Splits, CacheableTransform {
     public final static String DESCRIPTION = "Tree consensus methods";
 
     final String MAJORITY = "Majority";
@@ -36,6 +36,7 @@ import splitstree4.nexus.Trees;
 import splitstree4.util.TreesUtilities;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * compute network from partial trees
@@ -350,34 +351,52 @@ public class SuperNetwork implements Trees2Splits {
     Random rand = null;
 
     /**
-     * runs the closure method. Does this multiple times, if desired
+     * runs the closure method. Does this multiple times, if desired, each run on a different random
+     * order of the partial splits. Runs are executed concurrently
      *
 	 */
     private void computeClosureOuterLoop(Document doc, Taxa taxa, Set partialSplits) {
         this.rand = new Random(this.optionSeed);
 
+        final int numberOfThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        final ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
         try {
             Set allEverComputed = new HashSet(partialSplits);
 
+            final List<List<PartialSplit>> orders = new ArrayList<>();
             for (int i = 0; i < this.optionNumberOfRuns; i++) {
-                doc.notifySubtask("compute closure" + (i == 0 ? "" : "(" + (i + 1) + ")"));
-
-                Set clone = new LinkedHashSet(partialSplits);
+                final List<PartialSplit> order = new ArrayList<>(partialSplits);
+                Collections.shuffle(order, rand);
+                orders.add(order);
+            }
 
-                {
-                    Vector tmp = new Vector(clone);
-                    Collections.shuffle(tmp, rand);
-                    clone = new LinkedHashSet(tmp);
-                    computeClosure(doc, clone);
+            if (orders.size() == 1) {
+                doc.notifySubtask("compute closure");
+                allEverComputed.addAll(new ZClosure(taxa.getNtax(), orders.get(0)).compute(doc, executor));
+            } else {
+                // each run evaluates its pairs sequentially, the runs are executed in parallel
+                doc.notifySubtask("compute closure (" + orders.size() + " runs)");
+                doc.notifySetMaximumProgress(orders.size());
+                final List<Future<List<PartialSplit>>> futures = new ArrayList<>();
+                for (List<PartialSplit> order : orders)
+                    futures.add(executor.submit(() -> new ZClosure(taxa.getNtax(), order).compute(null, null)));
+                for (int i = 0; i < futures.size(); i++) {
+                    while (true) {
+                        try {
+                            allEverComputed.addAll(futures.get(i).get(100, TimeUnit.MILLISECONDS));
+                            break;
+                        } catch (TimeoutException ex) {
+                            doc.notifySetProgress(i);
+                        }
+                    }
                 }
-
-                allEverComputed.addAll(clone);
-
             }
             partialSplits.clear();
             partialSplits.addAll(allEverComputed);
         } catch (Exception ex) {
             Basic.caught(ex);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
@@ -396,110 +415,6 @@ public class SuperNetwork implements Trees2Splits {
     }
 
 
-    /**
-     * computes the split closure obtained using the zig-zap rule
-     *
-     * @param doc           the document
-	 */
-    private void computeClosure(Document doc, Set partialSplits) throws CanceledException {
-
-        PartialSplit[] splits;
-        Set seniorSplits = new LinkedHashSet();
-        Set activeSplits = new LinkedHashSet();
-        Set newSplits = new LinkedHashSet();
-        {
-            splits = new PartialSplit[partialSplits.size()];
-            Iterator it = partialSplits.iterator();
-            int pos = 0;
-            while (it.hasNext()) {
-                splits[pos] = (PartialSplit) it.next();
-                seniorSplits.add(pos);
-                doc.notifySetProgress(-1);
-                pos++;
-            }
-        }
-
-        // init:
-        {
-            for (int pos1 = 0; pos1 < splits.length; pos1++) {
-
-                for (int pos2 = pos1 + 1; pos2 < splits.length; pos2++) {
-                    PartialSplit ps1 = splits[pos1];
-                    PartialSplit ps2 = splits[pos2];
-                    PartialSplit qs1 = new PartialSplit();
-                    PartialSplit qs2 = new PartialSplit();
-                    if (PartialSplit.applyZigZagRule(ps1, ps2, qs1, qs2)) {
-                        splits[pos1] = qs1;
-                        splits[pos2] = qs2;
-                        newSplits.add(pos1);
-                        newSplits.add(pos2);
-                    }
-                    doc.notifySetProgress(-1);
-                }
-            }
-        }
-
-        // main loop:
-        {
-            while (newSplits.size() != 0) {
-                seniorSplits.addAll(activeSplits);
-                activeSplits = newSplits;
-                newSplits = new HashSet();
-
-                Iterator it1 = seniorSplits.iterator();
-                while (it1.hasNext()) {
-                    Integer pos1 = ((Integer) it1.next());
-
-                    for (Object activeSplit : activeSplits) {
-                        Integer pos2 = ((Integer) activeSplit);
-                        PartialSplit ps1 = splits[pos1];
-                        PartialSplit ps2 = splits[pos2];
-                        PartialSplit qs1 = new PartialSplit();
-                        PartialSplit qs2 = new PartialSplit();
-                        if (PartialSplit.applyZigZagRule(ps1, ps2, qs1, qs2)) {
-                            splits[pos1] = qs1;
-                            splits[pos2] = qs2;
-                            newSplits.add(pos1);
-                            newSplits.add(pos2);
-                        }
-                        doc.notifySetProgress(-1);
-                    }
-                }
-                it1 = activeSplits.iterator();
-                while (it1.hasNext()) {
-                    Integer pos1 = ((Integer) it1.next());
-
-                    for (Object activeSplit : activeSplits) {
-                        Integer pos2 = ((Integer) activeSplit);
-                        PartialSplit ps1 = splits[pos1];
-                        PartialSplit ps2 = splits[pos2];
-                        PartialSplit qs1 = new PartialSplit();
-                        PartialSplit qs2 = new PartialSplit();
-                        if (PartialSplit.applyZigZagRule(ps1, ps2, qs1, qs2)) {
-                            splits[pos1] = qs1;
-                            splits[pos2] = qs2;
-                            newSplits.add(pos1);
-                            newSplits.add(pos2);
-                        }
-                        doc.notifySetProgress(-1);
-                    }
-                }
-            }
-        }
-
-        partialSplits.clear();
-        Iterator it = seniorSplits.iterator();
-        while (it.hasNext()) {
-            Integer pos1 = (Integer) it.next();
-            partialSplits.add(splits[pos1]);
-        }
-        it = activeSplits.iterator();
-        while (it.hasNext()) {
-            Integer pos1 = (Integer) it.next();
-            partialSplits.add(splits[pos1]);
-        }
-    }
-
     /**
      * applies a simple refinement heuristic
      *
@@ -0,0 +1,338 @@
+/*
+ * ZClosure.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.algorithms.trees;
+
+import jloda.util.CanceledException;
+import splitstree4.core.Document;
+import splitstree4.core.TaxaSet;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.LongStream;
+
+/**
+ * computes the closure of a set of partial splits under the zig-zag rule.
+ * Partial splits are kept as packed bit sets, both sides stored in one array of words, with the side
+ * containing the smallest taxon first, so that equal partial splits have equal words and duplicates can be dropped.
+ * <p/>
+ * The closure is computed in rounds. In each round, all pairs of partial splits that must be tested are
+ * evaluated, in parallel, against the splits as they were at the start of the round. The pairs that change are
+ * then applied sequentially, in a fixed order, so the result does not depend on the number of threads
+ *
+ * @author huson
+ * Date: 2022
+ */
+class ZClosure {
+    private final int n;
+    private final int words; // number of words per side
+    private final long[] data; // partial split p: side A at 2*p*words, side B at (2*p+1)*words
+    private final PartialSplit[] input;
+    private final BitSet changed = new BitSet();
+    private final BitSet dead = new BitSet(); // positions whose partial split duplicates another one
+    private final Map<Key, Integer> key2pos = new HashMap<>();
+
+    /**
+     * constructor
+     *
+     * @param ntax          number of taxa
+     * @param partialSplits the partial splits, in the order in which they are to be processed
+     */
+    ZClosure(int ntax, Collection<PartialSplit> partialSplits) {
+        n = partialSplits.size();
+        words = (ntax + 64) / 64;
+        data = new long[2 * n * words];
+        input = partialSplits.toArray(new PartialSplit[0]);
+        for (int p = 0; p < n; p++) {
+            final long[] a = input[p].getA().getBits().toLongArray();
+            final long[] b = input[p].getB().getBits().toLongArray();
+            if (a.length > words || b.length > words)
+                throw new IllegalArgumentException("Partial split contains taxon > ntax: " + input[p]);
+            System.arraycopy(a, 0, data, side(p, 0), a.length);
+            System.arraycopy(b, 0, data, side(p, 1), b.length);
+            if (key2pos.putIfAbsent(new Key(data, 2 * p * words, 2 * words), p) != null)
+                dead.set(p);
+        }
+    }
+
+    /**
+     * computes the closure
+     *
+     * @param doc      used for progress and cancellation, may be null
+     * @param executor used to evaluate pairs in parallel, or null
+     * @return the partial splits of the closure
+     */
+    List<PartialSplit> compute(Document doc, ExecutorService executor) throws CanceledException {
+        final BitSet senior = new BitSet();
+        senior.set(0, n);
+        senior.andNot(dead);
+        BitSet active = new BitSet();
+        BitSet fresh = new BitSet();
+
+        // init: test all pairs
+        final int[] all = toArray(senior);
+        apply(doc, findChangingPairs(doc, executor, all, all, true), senior, active, fresh);
+
+        // main loop: test all pairs that involve a partial split that changed in the previous round
+        while (!fresh.isEmpty()) {
+            senior.or(active);
+            active = fresh;
+            fresh = new BitSet();
+            final int[] activeArray = toArray(active);
+            apply(doc, findChangingPairs(doc, executor, toArray(senior), activeArray, false), senior, active, fresh);
+            apply(doc, findChangingPairs(doc, executor, toArray(active), toArray(active), false), senior, active, fresh);
+        }
+
+        final BitSet result = (BitSet) senior.clone();
+        result.or(active);
+        result.andNot(dead);
+        final List<PartialSplit> partialSplits = new ArrayList<>(result.cardinality());
+        for (int p = result.nextSetBit(0); p >= 0; p = result.nextSetBit(p + 1)) {
+            if (changed.get(p))
+                partialSplits.add(new PartialSplit(getTaxaSet(p, 0), getTaxaSet(p, 1)));
+            else
+                partialSplits.add(input[p]);
+        }
+        return partialSplits;
+    }
+
+    /**
+     * applies the zig-zag rule to the given pairs, in the given order. Pairs whose partial splits have
+     * changed earlier in the same round are tested again
+     */
+    private void apply(Document doc, long[] pairs, BitSet senior, BitSet active, BitSet fresh) throws CanceledException {
+        final long[] q1 = new long[2 * words];
+        final long[] q2 = new long[2 * words];
+        for (long pair : pairs) {
+            final int p1 = (int) (pair >>> 32);
+            final int p2 = (int) pair;
+            if (dead.get(p1) || dead.get(p2))
+                continue;
+            if (applyZigZagRule(p1, p2, q1, q2)) {
+                replace(p1, q1, senior, active, fresh);
+                replace(p2, q2, senior, active, fresh);
+            }
+            if (doc != null)
+                doc.notifySetProgress(-1);
+            else if (Thread.currentThread().isInterrupted())
+                throw new CanceledException();
+        }
+    }
+
+    /**
+     * replaces the partial split at the given position
+     */
+    private void replace(int p, long[] split, BitSet senior, BitSet active, BitSet fresh) {
+        final int offset = 2 * p * words;
+        final Key oldKey = new Key(data, offset, 2 * words);
+        if (Objects.equals(key2pos.get(oldKey), p))
+            key2pos.remove(oldKey);
+        System.arraycopy(split, 0, data, offset, 2 * words);
+        changed.set(p);
+        if (key2pos.putIfAbsent(new Key(data, offset, 2 * words), p) != null) {
+            dead.set(p);
+            senior.clear(p);
+            active.clear(p);
+            fresh.clear(p);
+        } else
+            fresh.set(p);
+    }
+
+    /**
+     * determines all pairs (p1,p2), p1 from outer, p2 from inner and p1!=p2, to which the zig-zag rule applies and changes them.
+     *
+     * @param increasing only consider pairs with p1<p2
+     * @return pairs, p1 in the high and p2 in the low bits, in the order of outer and then inner
+     */
+    private long[] findChangingPairs(Document doc, ExecutorService executor, int[] outer, int[] inner, boolean increasing) throws CanceledException {
+        if (executor == null || outer.length < 2)
+            return findChangingPairs(outer, 0, outer.length, inner, increasing);
+
+        final int chunkSize = Math.max(1, outer.length / (16 * Runtime.getRuntime().availableProcessors()));
+        final List<Future<long[]>> futures = new ArrayList<>();
+        for (int start = 0; start < outer.length; start += chunkSize) {
+            final int from = start;
+            final int to = Math.min(outer.length, start + chunkSize);
+            futures.add(executor.submit(() -> findChangingPairs(outer, from, to, inner, increasing)));
+        }
+        try {
+            final LongStream.Builder builder = LongStream.builder();
+            for (Future<long[]> future : futures) {
+                while (true) {
+                    try {
+                        for (long pair : future.get(100, TimeUnit.MILLISECONDS))
+                            builder.add(pair);
+                        break;
+                    } catch (TimeoutException ex) {
+                        if (doc != null)
+                            doc.notifySetProgress(-1);
+                    }
+                }
+            }
+            return builder.build().toArray();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CanceledException();
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            for (Future<long[]> future : futures)
+                future.cancel(true);
+        }
+    }
+
+    /**
+     * determines the changing pairs for outer[from..to-1]
+     */
+    private long[] findChangingPairs(int[] outer, int from, int to, int[] inner, boolean increasing) {
+        final LongStream.Builder builder = LongStream.builder();
+        for (int i = from; i < to && !Thread.currentThread().isInterrupted(); i++) {
+            final int p1 = outer[i];
+            for (int p2 : inner) {
+                if (p1 != p2 && (!increasing || p1 < p2) && changesZigZagRule(p1, p2))
+                    builder.add(((long) p1 << 32) | p2);
+            }
+        }
+        return builder.build().toArray();
+    }
+
+    /**
+     * does the zig-zag rule apply to the two partial splits and change them? Does not allocate.
+     * The rule replaces A1/B1 and A2/B2 by A1/(B1uB2) and (A1uA2)/B2, which changes them unless B2 is contained
+     * in B1 and A1 is contained in A2
+     *
+     * @return true, if rule applies and changes the partial splits
+     */
+    private boolean changesZigZagRule(int p1, int p2) {
+        for (int i = 0; i <= 1; i++) {
+            final int a1 = side(p1, i);
+            final int b1 = side(p1, 1 - i);
+            for (int j = 0; j <= 1; j++) {
+                final int a2 = side(p2, j);
+                final int b2 = side(p2, 1 - j);
+                if (intersects(a1, a2) && intersects(a2, b1) && intersects(b1, b2) && !intersects(a1, b2))
+                    return !(contains(b1, b2) && contains(a2, a1));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * applies the zig-zag rule, as in PartialSplit.applyZigZagRule
+     *
+     * @param q1 the new first partial split is returned here
+     * @param q2 the new second partial split is returned here
+     * @return true, if the rule applies and changes the partial splits
+     */
+    private boolean applyZigZagRule(int p1, int p2, long[] q1, long[] q2) {
+        for (int i = 0; i <= 1; i++) {
+            final int a1 = side(p1, i);
+            final int b1 = side(p1, 1 - i);
+            for (int j = 0; j <= 1; j++) {
+                final int a2 = side(p2, j);
+                final int b2 = side(p2, 1 - j);
+                if (intersects(a1, a2) && intersects(a2, b1) && intersects(b1, b2) && !intersects(a1, b2)) {
+                    if (contains(b1, b2) && contains(a2, a1))
+                        return false;
+                    for (int w = 0; w < words; w++) {
+                        q1[w] = data[a1 + w];
+                        q1[words + w] = data[b1 + w] | data[b2 + w];
+                        q2[w] = data[a1 + w] | data[a2 + w];
+                        q2[words + w] = data[b2 + w];
+                    }
+                    normalize(q1);
+                    normalize(q2);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * puts the side that contains the smallest taxon first. Sides are disjoint, so this is the same order as PartialSplit.compareSides
+     */
+    private void normalize(long[] split) {
+        for (int w = 0; w < words; w++) {
+            final long a = split[w];
+            final long b = split[words + w];
+            if (a != 0 || b != 0) {
+                if (Long.numberOfTrailingZeros(b) < Long.numberOfTrailingZeros(a)) {
+                    for (int v = 0; v < words; v++) {
+                        final long tmp = split[v];
+                        split[v] = split[words + v];
+                        split[words + v] = tmp;
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    private int side(int p, int i) {
+        return (2 * p + i) * words;
+    }
+
+    private boolean intersects(int offset1, int offset2) {
+        for (int w = 0; w < words; w++) {
+            if ((data[offset1 + w] & data[offset2 + w]) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * does the set at offset1 contain the set at offset2?
+     */
+    private boolean contains(int offset1, int offset2) {
+        for (int w = 0; w < words; w++) {
+            if ((data[offset2 + w] & ~data[offset1 + w]) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    private TaxaSet getTaxaSet(int p, int i) {
+        return new TaxaSet(BitSet.valueOf(Arrays.copyOfRange(data, side(p, i), side(p, i) + words)));
+    }
+
+    private static int[] toArray(BitSet set) {
+        return set.stream().toArray();
+    }
+
+    /**
+     * hash key for a packed partial split
+     */
+    private static class Key {
+        private final long[] words;
+        private final int hashCode;
+
+        Key(long[] data, int offset, int length) {
+            words = Arrays.copyOfRange(data, offset, offset + length);
+            hashCode = Arrays.hashCode(words);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object other) {
+            return other instanceof Key && Arrays.equals(words, ((Key) other).words);
+        }
+    }
+}
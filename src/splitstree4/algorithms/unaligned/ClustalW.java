@@ -19,8 +19,8 @@
 package splitstree4.algorithms.unaligned;
 
 import jloda.swing.util.ProgramProperties;
-import jloda.util.StreamGobbler;
 import jloda.util.parse.NexusStreamParser;
+import splitstree4.algorithms.util.ExternalProgram;
 import splitstree4.core.Document;
 import splitstree4.externalIO.exports.ExportManager;
 import splitstree4.externalIO.imports.ImportManager;
@@ -28,10 +28,10 @@ import splitstree4.nexus.Characters;
 import splitstree4.nexus.Taxa;
 import splitstree4.nexus.Unaligned;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
+import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.Files;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -82,11 +82,16 @@ public class ClustalW implements Unaligned2Characters {
      */
     public Characters apply(Document doc, Taxa taxa, Unaligned unaligned) throws Exception {
 
-        //setup send file
-        File sendFile = new File("infile.fa");
-
-        //Export unaligned sequences into sendFile
-        ExportManager.exportData(sendFile, false, true, "FastASequencesUnaligned", null, doc);
+        //Export unaligned sequences into send file
+        final String sendFile;
+        final File exportFile = File.createTempFile("clustalw", ".fa");
+        try {
+            ExportManager.exportData(exportFile, false, true, "FastASequencesUnaligned", null, doc);
+            sendFile = Files.readString(exportFile.toPath());
+        } finally {
+            if (!exportFile.delete())
+                System.err.println("Failed to delete: " + exportFile);
+        }
 
         // put names of send and return file into shell command:
         String shellCmd = this.getOptionPathToCommand() + "clustalw -infile=infile.fa -outfile=outfile.fa";
@@ -103,28 +108,13 @@ public class ClustalW implements Unaligned2Characters {
         //add optional command line parameter
         if (!optionOptionalParameter.equals("")) shellCmd += " " + optionOptionalParameter;
 
-        //run the external script:
-        try {
-            System.out.println("Executing: " + shellCmd);
-            System.err.println("### Started external command ###");
-            Process p = Runtime.getRuntime().exec(shellCmd);
-            //BufferedReader err = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-            BufferedReader out = new BufferedReader(new InputStreamReader(p.getInputStream()));
-			try {
-				String tmp;
-				while ((tmp = out.readLine()) != null) System.err.println("out: " + tmp);
-				p.waitFor();
-			} catch (InterruptedException ignored) {
-			}
-
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        //setup return file
-        File returnFile = new File("outfile.fa");
-        String input = ImportManager.importData(returnFile, unaligned.getFormat().getDatatype());
+        //run the external program in a directory of its own:
+        final ExternalProgram.Invocation invocation = ExternalProgram.Invocation.parse(shellCmd)
+                .addInputFile("infile.fa", sendFile).addOutputFile("outfile.fa");
+        final ExternalProgram.Result result = ExternalProgram.getInstance().run(invocation, doc);
+        String input = ImportManager.importDataFromString(result.getRequiredOutputFile("outfile.fa"), unaligned.getFormat().getDatatype());
+        if (input == null)
+            throw new IOException("Failed to import output of clustalw");
 
         //parse return file
         Taxa tax = new Taxa();
@@ -132,44 +122,9 @@ public class ClustalW implements Unaligned2Characters {
         Characters returnChar = new Characters();
         returnChar.read(new NexusStreamParser(new StringReader(input.substring(input.indexOf("begin characters")))), tax);
 
-        //remove files
-        doCleanup();
-
         return returnChar;
     }
 
-    private void doCleanup() {
-        String cleanup = "rm -f infile.fa outfile.fa infile.dnd";
-
-        //cleanup = cleanup+= (" " + getOptionSendFile().substring(0,getOptionSendFile().indexOf(".")+1) + "dnd");
-
-        if (cleanup.length() > 0)
-            try {
-                Process proc = Runtime.getRuntime().exec(cleanup);
-                System.out.println("Executing: " + cleanup);
-
-                // any error message?
-                StreamGobbler errorGobbler = new
-                        StreamGobbler(proc.getErrorStream(), "ERROR");
-
-                // any output?
-                StreamGobbler outputGobbler = new
-                        StreamGobbler(proc.getInputStream(), "OUTPUT");
-
-                // kick them off
-                errorGobbler.start();
-                outputGobbler.start();
-
-                int exitVal = proc.waitFor();
-                // any error???
-                if (exitVal != 0)
-                    throw new Exception("Return value=" + exitVal);
-            } catch (Exception ex) {
-                System.err.println("Cleanup failed: " + ex.getMessage());
-            }
-    }
-
-
     /**
      * gap opening penalty (default 10)
      *
@@ -19,8 +19,8 @@
 package splitstree4.algorithms.unaligned;
 
 import jloda.swing.util.ProgramProperties;
-import jloda.util.StreamGobbler;
 import jloda.util.parse.NexusStreamParser;
+import splitstree4.algorithms.util.ExternalProgram;
 import splitstree4.core.Document;
 import splitstree4.externalIO.exports.ExportManager;
 import splitstree4.externalIO.imports.ImportManager;
@@ -28,10 +28,10 @@ import splitstree4.nexus.Characters;
 import splitstree4.nexus.Taxa;
 import splitstree4.nexus.Unaligned;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
+import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.Files;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -90,11 +90,16 @@ public class Muscle implements Unaligned2Characters {
      */
     public Characters apply(Document doc, Taxa taxa, Unaligned unaligned) throws Exception {
 
-        //setup send file
-        File sendFile = new File("infile.fa");
-
-        //Export unaligned sequences into sendFile
-        ExportManager.exportData(sendFile, false, true, "FastASequencesUnaligned", null, doc);
+        //Export unaligned sequences into send file
+        final String sendFile;
+        final File exportFile = File.createTempFile("muscle", ".fa");
+        try {
+            ExportManager.exportData(exportFile, false, true, "FastASequencesUnaligned", null, doc);
+            sendFile = Files.readString(exportFile.toPath());
+        } finally {
+            if (!exportFile.delete())
+                System.err.println("Failed to delete: " + exportFile);
+        }
 
         // put names of send and return file into shell command:
         if (!this.getOptionPathToCommand().endsWith("/")) setOptionPathToCommand(this.getOptionPathToCommand() + "/");
@@ -118,32 +123,18 @@ public class Muscle implements Unaligned2Characters {
         if (!objectiveScore.equals("spm")) shellCmd += " -objscore " + objectiveScore;
 
         //set Log File Option
-        if (optionLogFile) shellCmd += " -log " + optionLogFileName;
+        if (optionLogFile) shellCmd += " -log " + new File(optionLogFileName).getAbsolutePath();
 
         //add optional parameter
         if (!optionOptionalParameter.equals("")) shellCmd += " " + optionOptionalParameter;
 
-        //run the external script:
-        try {
-            System.out.println("Executing: " + shellCmd);
-            System.err.println("### Started external command ###");
-            Process p = Runtime.getRuntime().exec(shellCmd);
-            BufferedReader err = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-			try {
-				String tmp;
-				while ((tmp = err.readLine()) != null) System.err.println("out: " + tmp);
-				p.waitFor();
-			} catch (InterruptedException ignored) {
-			}
-
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        //setup return file
-        File returnFile = new File("outfile.fa");
-        String input = ImportManager.importData(returnFile, unaligned.getFormat().getDatatype());
+        //run the external program in a directory of its own:
+        final ExternalProgram.Invocation invocation = ExternalProgram.Invocation.parse(shellCmd)
+                .addInputFile("infile.fa", sendFile).addOutputFile("outfile.fa").setCacheable(!optionLogFile);
+        final ExternalProgram.Result result = ExternalProgram.getInstance().run(invocation, doc);
+        String input = ImportManager.importDataFromString(result.getRequiredOutputFile("outfile.fa"), unaligned.getFormat().getDatatype());
+        if (input == null)
+            throw new IOException("Failed to import output of muscle");
 
         //parse return file
         Taxa tax = new Taxa();
@@ -151,42 +142,9 @@ public class Muscle implements Unaligned2Characters {
         Characters returnChar = new Characters();
         returnChar.read(new NexusStreamParser(new StringReader(input.substring(input.indexOf("begin characters")))), tax);
 
-        //remove files
-        doCleanup();
-
         return returnChar;
     }
 
-    private void doCleanup() {
-        String cleanup = "rm -f infile.fa outfile.fa";
-
-        if (cleanup.length() > 0)
-            try {
-                Process proc = Runtime.getRuntime().exec(cleanup);
-                System.out.println("Executing: " + cleanup);
-
-                // any error message?
-                StreamGobbler errorGobbler = new
-                        StreamGobbler(proc.getErrorStream(), "ERROR");
-
-                // any output?
-                StreamGobbler outputGobbler = new
-                        StreamGobbler(proc.getInputStream(), "OUTPUT");
-
-                // kick them off
-                errorGobbler.start();
-                outputGobbler.start();
-
-                int exitVal = proc.waitFor();
-                // any error???
-                if (exitVal != 0)
-                    throw new Exception("Return value=" + exitVal);
-            } catch (Exception ex) {
-                System.err.println("Cleanup failed: " + ex.getMessage());
-            }
-    }
-
-
     /**
      * maximum number of iterations
      * iteration 1: k-mer distance matrix, estimate tree, progressive alignment
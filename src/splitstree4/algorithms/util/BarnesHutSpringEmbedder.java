@@ -0,0 +1,418 @@
+/*
+ * BarnesHutSpringEmbedder.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.algorithms.util;
+
+import jloda.util.CanceledException;
+import jloda.util.progress.ProgressListener;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * spring embedder operating on primitive coordinate arrays. Repulsion between nodes and between nodes and edge midpoints
+ * is approximated using a Barnes-Hut quadtree and accumulated in parallel. With theta=0 all forces are computed exactly,
+ * which reproduces the classic all-pairs embedder.
+ * All buffers are allocated once and reused across iterations
+ * <p/>
+ * Daniel Huson, 2022
+ */
+public class BarnesHutSpringEmbedder {
+    public static final String EXACT = "Exact";
+    public static final String BARNES_HUT = "BarnesHut";
+
+    private static final int MAX_DEPTH = 48;
+    private static final int MAX_LEAF_SIZE = 4;
+
+    private final int numNodes;
+    private final int numEdges;
+    private final int[] sources;
+    private final int[] targets;
+    private final int[] adjacentStart; // CSR representation of incident edges
+    private final int[] adjacentEdges;
+
+    private double theta = 0.8;
+
+    // bodies are nodes 0..numNodes-1 followed by edge midpoints
+    private final double[] bodyX;
+    private final double[] bodyY;
+    private final double[] dispX;
+    private final double[] dispY;
+    private final int[] order;
+    private final int[] tmpOrder;
+    private final int[] position; // position of each body in order
+
+    // work arrays used when splitting a cell into quadrants, one set per depth
+    private int[] quadrantCounts;
+    private int[] quadrantStarts;
+    private int[] quadrantPos;
+
+    // quadtree cells
+    private int numCells;
+    private int[] cellLo;
+    private int[] cellHi;
+    private int[] cellChildren;
+    private boolean[] cellIsLeaf;
+    private double[] cellX;
+    private double[] cellY;
+    private double[] cellMinX;
+    private double[] cellMinY;
+    private double[] cellSize;
+
+    /**
+     * constructor
+     *
+     * @param numNodes number of nodes, numbered 0..numNodes-1
+     * @param sources  source node of each edge
+     * @param targets  target node of each edge
+     */
+    public BarnesHutSpringEmbedder(int numNodes, int[] sources, int[] targets) {
+        this.numNodes = numNodes;
+        this.numEdges = sources.length;
+        this.sources = sources;
+        this.targets = targets;
+
+        adjacentStart = new int[numNodes + 1];
+        for (int e = 0; e < numEdges; e++) {
+            adjacentStart[sources[e] + 1]++;
+            adjacentStart[targets[e] + 1]++;
+        }
+        for (int v = 0; v < numNodes; v++)
+            adjacentStart[v + 1] += adjacentStart[v];
+        adjacentEdges = new int[2 * numEdges];
+        final int[] pos = Arrays.copyOf(adjacentStart, numNodes);
+        for (int e = 0; e < numEdges; e++) {
+            adjacentEdges[pos[sources[e]]++] = e;
+            adjacentEdges[pos[targets[e]]++] = e;
+        }
+
+        final int numBodies = numNodes + numEdges;
+        bodyX = new double[numBodies];
+        bodyY = new double[numBodies];
+        dispX = new double[numNodes];
+        dispY = new double[numNodes];
+        order = new int[numBodies];
+        tmpOrder = new int[numBodies];
+        position = new int[numBodies];
+        ensureCellCapacity(Math.max(16, 2 * numBodies));
+    }
+
+    /**
+     * gets the opening criterion. A cell is approximated by its center of mass if size/distance is below theta
+     *
+     * @return theta
+     */
+    public double getTheta() {
+        return theta;
+    }
+
+    /**
+     * sets the opening criterion, 0 means exact computation
+     *
+     */
+    public void setTheta(double theta) {
+        this.theta = theta;
+    }
+
+    /**
+     * sets the opening criterion by method name
+     *
+     */
+    public void setMethod(String method) {
+        setTheta(BARNES_HUT.equalsIgnoreCase(method) ? 0.8 : 0);
+    }
+
+    /**
+     * runs the spring embedder
+     *
+     * @param x          x-coordinates of nodes, are modified
+     * @param y          y-coordinates of nodes, are modified
+     * @param width      width of the layout area
+     * @param height     height of the layout area
+     * @param iterations number of iterations
+     * @param progress   progress listener or null
+     */
+    public void apply(double[] x, double[] y, double width, double height, int iterations, ProgressListener progress) throws CanceledException {
+        if (numNodes < 2)
+            return;
+        if (progress != null) {
+            progress.setMaximum(iterations);
+            progress.setProgress(0);
+        }
+
+        quadrantCounts = new int[4 * MAX_DEPTH];
+        quadrantStarts = new int[5 * MAX_DEPTH];
+        quadrantPos = new int[4 * MAX_DEPTH];
+
+        final double log2 = Math.log(2);
+        final double k = Math.sqrt(width * height / numNodes) / 2;
+        final double k2 = k * k;
+
+        for (int count = 1; count <= iterations; count++) {
+            final double l2 = 25 * log2 * Math.log(1 + count);
+            final double tx = width / l2;
+            final double ty = height / l2;
+
+            // repulsive forces
+            System.arraycopy(x, 0, bodyX, 0, numNodes);
+            System.arraycopy(y, 0, bodyY, 0, numNodes);
+            for (int e = 0; e < numEdges; e++) {
+                bodyX[numNodes + e] = (x[sources[e]] + x[targets[e]]) / 2;
+                bodyY[numNodes + e] = (y[sources[e]] + y[targets[e]]) / 2;
+            }
+            buildTree();
+
+            // midpoints of incident edges don't repel, they are excluded during the traversal
+            IntStream.range(0, numNodes).parallel().forEach(v -> {
+                dispX[v] = 0;
+                dispY[v] = 0;
+                if (theta > 0)
+                    accumulateRepulsion(0, v, k2);
+                else
+                    accumulateRepulsionExact(v, k2);
+            });
+
+            // attractive forces
+            for (int e = 0; e < numEdges; e++) {
+                final int u = sources[e];
+                final int v = targets[e];
+                final double xdist = x[v] - x[u];
+                final double ydist = y[v] - y[u];
+                final double f = (getDegree(u) + getDegree(v)) / 16.0;
+                final double dist = Math.sqrt(xdist * xdist + ydist * ydist) / f;
+
+                dispX[v] -= xdist * dist / k;
+                dispY[v] -= ydist * dist / k;
+                dispX[u] += xdist * dist / k;
+                dispY[u] += ydist * dist / k;
+            }
+
+            // preventions
+            for (int v = 0; v < numNodes; v++) {
+                final double dist = Math.sqrt(dispX[v] * dispX[v] + dispY[v] * dispY[v]);
+                if (dist > 0) {
+                    x[v] += tx * dispX[v] / dist;
+                    y[v] += ty * dispY[v] / dist;
+                }
+            }
+            if (progress != null)
+                progress.setProgress(count);
+        }
+    }
+
+    /**
+     * gets the degree of a node
+     *
+     * @return degree
+     */
+    private int getDegree(int v) {
+        return adjacentStart[v + 1] - adjacentStart[v];
+    }
+
+    /**
+     * adds the repulsion of all bodies to the displacement of node v
+     */
+    private void accumulateRepulsionExact(int v, double k2) {
+        final double xv = bodyX[v];
+        final double yv = bodyY[v];
+        double dx = 0, dy = 0;
+        for (int b = 0; b < bodyX.length; b++) {
+            if (b != v && !isIncidentMidpoint(b, v)) {
+                final double xdist = xv - bodyX[b];
+                final double ydist = yv - bodyY[b];
+                final double frepulse = k2 / Math.max(1e-3, xdist * xdist + ydist * ydist);
+                dx += frepulse * xdist;
+                dy += frepulse * ydist;
+            }
+        }
+        dispX[v] += dx;
+        dispY[v] += dy;
+    }
+
+    /**
+     * adds the repulsion of all bodies in the given cell to the displacement of node v
+     */
+    private void accumulateRepulsion(int c, int v, double k2) {
+        final double xv = bodyX[v];
+        final double yv = bodyY[v];
+        if (cellIsLeaf[c]) {
+            for (int i = cellLo[c]; i < cellHi[c]; i++) {
+                final int b = order[i];
+                if (b != v && !isIncidentMidpoint(b, v)) {
+                    final double xdist = xv - bodyX[b];
+                    final double ydist = yv - bodyY[b];
+                    final double frepulse = k2 / Math.max(1e-3, xdist * xdist + ydist * ydist);
+                    dispX[v] += frepulse * xdist;
+                    dispY[v] += frepulse * ydist;
+                }
+            }
+        } else {
+            final double xdist = xv - cellX[c];
+            final double ydist = yv - cellY[c];
+            final double dist = xdist * xdist + ydist * ydist;
+            final boolean inside = (xv >= cellMinX[c] && xv <= cellMinX[c] + cellSize[c] && yv >= cellMinY[c] && yv <= cellMinY[c] + cellSize[c]);
+            if (!inside && cellSize[c] * cellSize[c] < theta * theta * dist) {
+                // remove midpoints of incident edges from the aggregate of the cell:
+                int count = cellHi[c] - cellLo[c];
+                double sumX = count * cellX[c];
+                double sumY = count * cellY[c];
+                for (int i = adjacentStart[v]; i < adjacentStart[v + 1]; i++) {
+                    final int b = numNodes + adjacentEdges[i];
+                    if (position[b] >= cellLo[c] && position[b] < cellHi[c]) {
+                        count--;
+                        sumX -= bodyX[b];
+                        sumY -= bodyY[b];
+                    }
+                }
+                if (count > 0) {
+                    final double xdistc = xv - sumX / count;
+                    final double ydistc = yv - sumY / count;
+                    final double frepulse = count * k2 / Math.max(1e-3, xdistc * xdistc + ydistc * ydistc);
+                    dispX[v] += frepulse * xdistc;
+                    dispY[v] += frepulse * ydistc;
+                }
+            } else {
+                for (int q = 0; q < 4; q++) {
+                    if (cellChildren[4 * c + q] != -1)
+                        accumulateRepulsion(cellChildren[4 * c + q], v, k2);
+                }
+            }
+        }
+    }
+
+    /**
+     * is body b the midpoint of an edge incident to node v?
+     *
+     * @return true, if incident midpoint
+     */
+    private boolean isIncidentMidpoint(int b, int v) {
+        return b >= numNodes && (sources[b - numNodes] == v || targets[b - numNodes] == v);
+    }
+
+    /**
+     * builds the quadtree over all bodies
+     */
+    private void buildTree() {
+        final int numBodies = bodyX.length;
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int b = 0; b < numBodies; b++) {
+            order[b] = b;
+            minX = Math.min(minX, bodyX[b]);
+            maxX = Math.max(maxX, bodyX[b]);
+            minY = Math.min(minY, bodyY[b]);
+            maxY = Math.max(maxY, bodyY[b]);
+        }
+        numCells = 0;
+        buildCell(0, numBodies, minX, minY, Math.max(maxX - minX, maxY - minY), 0);
+        for (int i = 0; i < numBodies; i++)
+            position[order[i]] = i;
+    }
+
+    /**
+     * recursively builds a cell for the bodies in order[lo..hi)
+     *
+     * @return cell index
+     */
+    private int buildCell(int lo, int hi, double minX, double minY, double size, int depth) {
+        final int c = numCells++;
+        ensureCellCapacity(numCells);
+        cellLo[c] = lo;
+        cellHi[c] = hi;
+        cellMinX[c] = minX;
+        cellMinY[c] = minY;
+        cellSize[c] = size;
+        Arrays.fill(cellChildren, 4 * c, 4 * c + 4, -1);
+        cellIsLeaf[c] = (hi - lo <= MAX_LEAF_SIZE || depth >= MAX_DEPTH);
+
+        double sumX = 0, sumY = 0;
+        for (int i = lo; i < hi; i++) {
+            sumX += bodyX[order[i]];
+            sumY += bodyY[order[i]];
+        }
+        cellX[c] = sumX / (hi - lo);
+        cellY[c] = sumY / (hi - lo);
+
+        if (!cellIsLeaf[c]) {
+            final double half = size / 2;
+            final double midX = minX + half;
+            final double midY = minY + half;
+            // the work arrays of this depth are not used by the children, which are one level deeper
+            final int countsOffset = 4 * depth;
+            final int startsOffset = 5 * depth;
+            Arrays.fill(quadrantCounts, countsOffset, countsOffset + 4, 0);
+            for (int i = lo; i < hi; i++)
+                quadrantCounts[countsOffset + quadrant(order[i], midX, midY)]++;
+            quadrantStarts[startsOffset] = lo;
+            for (int q = 0; q < 4; q++) {
+                quadrantStarts[startsOffset + q + 1] = quadrantStarts[startsOffset + q] + quadrantCounts[countsOffset + q];
+                quadrantPos[countsOffset + q] = quadrantStarts[startsOffset + q];
+            }
+            for (int i = lo; i < hi; i++) {
+                final int b = order[i];
+                tmpOrder[quadrantPos[countsOffset + quadrant(b, midX, midY)]++] = b;
+            }
+            System.arraycopy(tmpOrder, lo, order, lo, hi - lo);
+            for (int q = 0; q < 4; q++) {
+                if (quadrantCounts[countsOffset + q] > 0) {
+                    final int child = buildCell(quadrantStarts[startsOffset + q], quadrantStarts[startsOffset + q + 1], minX + (q & 1) * half, minY + (q >> 1) * half, half, depth + 1);
+                    cellChildren[4 * c + q] = child;
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * determines the quadrant of a body
+     *
+     * @return 0-3
+     */
+    private int quadrant(int b, double midX, double midY) {
+        return (bodyX[b] >= midX ? 1 : 0) + (bodyY[b] >= midY ? 2 : 0);
+    }
+
+    /**
+     * grows the cell arrays, if necessary
+     */
+    private void ensureCellCapacity(int capacity) {
+        if (cellLo == null || capacity > cellLo.length) {
+            final int newCapacity = (cellLo == null ? capacity : Math.max(capacity, 2 * cellLo.length));
+            if (cellLo == null) {
+                cellLo = new int[newCapacity];
+                cellHi = new int[newCapacity];
+                cellChildren = new int[4 * newCapacity];
+                cellIsLeaf = new boolean[newCapacity];
+                cellX = new double[newCapacity];
+                cellY = new double[newCapacity];
+                cellMinX = new double[newCapacity];
+                cellMinY = new double[newCapacity];
+                cellSize = new double[newCapacity];
+            } else {
+                cellLo = Arrays.copyOf(cellLo, newCapacity);
+                cellHi = Arrays.copyOf(cellHi, newCapacity);
+                cellChildren = Arrays.copyOf(cellChildren, 4 * newCapacity);
+                cellIsLeaf = Arrays.copyOf(cellIsLeaf, newCapacity);
+                cellX = Arrays.copyOf(cellX, newCapacity);
+                cellY = Arrays.copyOf(cellY, newCapacity);
+                cellMinX = Arrays.copyOf(cellMinX, newCapacity);
+                cellMinY = Arrays.copyOf(cellMinY, newCapacity);
+                cellSize = Arrays.copyOf(cellSize, newCapacity);
+            }
+        }
+    }
+}
@@ -0,0 +1,571 @@
+/*
+ * ExternalProgram.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.algorithms.util;
+
+import jloda.swing.util.ProgramProperties;
+import jloda.util.CanceledException;
+import splitstree4.core.Document;
+import splitstree4.main.SplitsTreeProperties;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * runs external programs such as PhyML, MrBayes or Muscle, shared by all documents.
+ * Each invocation runs in its own temporary directory, into which its input files are written and from which
+ * its output files are read back, so that several invocations can run at the same time. Standard input is
+ * streamed to the process, if given. At most a fixed number of processes run at the same time, further
+ * invocations wait for a free slot.
+ * <p/>
+ * Successful results are cached, keyed by a hash of the command line, the executable and any other existing
+ * files named on the command line or added as dependencies, standard input and the input files.
+ * <p/>
+ * For testing, a program can be substituted by a stub executable, see substituteProgram()
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class ExternalProgram {
+    private static ExternalProgram instance;
+
+    private final Semaphore slots;
+    private final int maxProcesses;
+
+    private boolean cacheEnabled = true;
+    private long maxCacheSize = 50000000; // total number of characters of cached results
+    private long cacheSize = 0;
+    private int hits = 0;
+    private int misses = 0;
+    private final LinkedHashMap<String, Result> key2result = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, String> program2substitute = new HashMap<>();
+
+    /**
+     * constructor
+     *
+     * @param maxProcesses maximal number of processes running at the same time
+     */
+    public ExternalProgram(int maxProcesses) {
+        this.maxProcesses = Math.max(1, maxProcesses);
+        slots = new Semaphore(this.maxProcesses, true);
+    }
+
+    /**
+     * gets the shared instance
+     *
+     * @return instance
+     */
+    public static synchronized ExternalProgram getInstance() {
+        if (instance == null) {
+            instance = new ExternalProgram(ProgramProperties.get(SplitsTreeProperties.EXTERNAL_PROCESSES, Runtime.getRuntime().availableProcessors()));
+            instance.setMaxCacheSize(ProgramProperties.get(SplitsTreeProperties.EXTERNAL_CACHE_SIZE, 50000000));
+        }
+        return instance;
+    }
+
+    /**
+     * runs an invocation, or returns its cached result
+     *
+     * @param invocation the invocation
+     * @param doc        used to check for cancellation, may be null
+     * @return result
+     */
+    public Result run(Invocation invocation, Document doc) throws IOException, CanceledException {
+        final List<String> command = getCommand(invocation);
+        final String key = (invocation.cacheable ? computeKey(invocation, command) : null);
+        if (key != null) {
+            final Result result = getCached(key);
+            if (result != null) {
+                System.err.println("Using cached result for: " + invocation);
+                return result;
+            }
+        }
+
+        // wait for a free slot:
+        try {
+            while (!slots.tryAcquire(100, TimeUnit.MILLISECONDS))
+                checkForCancel(doc);
+        } catch (InterruptedException ex) {
+            throw new CanceledException();
+        }
+        final Result result;
+        try {
+            result = execute(invocation, command, doc);
+        } finally {
+            slots.release();
+        }
+
+        if (key != null && result.getExitCode() == 0)
+            putCached(key, result);
+        return result;
+    }
+
+    /**
+     * gets the command line to execute. The program is replaced by its substitute, if any, and every argument that names
+     * an existing file, other than an input or output file, is resolved against the current working directory,
+     * as the program is run in a different directory
+     *
+     * @return command line
+     */
+    private List<String> getCommand(Invocation invocation) {
+        final List<String> command = new ArrayList<>(invocation.command);
+        final String substitute = getSubstitute(command.get(0));
+        if (substitute != null)
+            command.set(0, substitute);
+        for (int i = 0; i < command.size(); i++) {
+            final String arg = command.get(i);
+            final File file = new File(arg);
+            if (!file.isAbsolute() && (i > 0 || arg.contains(File.separator)) && !invocation.inputFiles.containsKey(arg)
+                    && !invocation.outputFiles.contains(arg) && file.exists())
+                command.set(i, file.getAbsolutePath());
+        }
+        return command;
+    }
+
+    /**
+     * executes an invocation
+     *
+     * @return result
+     */
+    private Result execute(Invocation invocation, List<String> command, Document doc) throws IOException, CanceledException {
+        final File directory = (invocation.directory != null ? invocation.directory : Files.createTempDirectory("splitstree").toFile());
+        try {
+            for (String name : invocation.inputFiles.keySet())
+                Files.writeString(new File(directory, name).toPath(), invocation.inputFiles.get(name));
+
+            System.err.println("Executing: " + String.join(" ", command));
+            final Process process = new ProcessBuilder(command).directory(directory).start();
+
+            final StringBuilder output = new StringBuilder();
+            final StringBuilder error = new StringBuilder();
+            final Thread outputReader = startReader(process.getInputStream(), output, invocation.outputListener, null);
+            final Thread errorReader = startReader(process.getErrorStream(), error, null, "ERROR> ");
+            try (Writer w = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)) {
+                if (invocation.standardInput != null)
+                    w.write(invocation.standardInput);
+            } catch (IOException ex) {
+                // process does not read all of its input
+            }
+
+            try {
+                while (!process.waitFor(100, TimeUnit.MILLISECONDS)) {
+                    try {
+                        checkForCancel(doc);
+                    } catch (CanceledException ex) {
+                        process.destroyForcibly();
+                        throw ex;
+                    }
+                }
+                outputReader.join();
+                errorReader.join();
+            } catch (InterruptedException ex) {
+                process.destroyForcibly();
+                throw new CanceledException();
+            }
+
+            final Map<String, String> outputFiles = new HashMap<>();
+            for (String name : invocation.outputFiles) {
+                final File file = new File(directory, name);
+                if (file.isFile())
+                    outputFiles.put(name, Files.readString(file.toPath()));
+            }
+            System.err.println("Finished: " + command.get(0) + ", exit value: " + process.exitValue());
+            return new Result(process.exitValue(), output.toString(), error.toString(), outputFiles);
+        } finally {
+            if (invocation.directory == null)
+                delete(directory);
+        }
+    }
+
+    /**
+     * starts a thread that reads a stream of the process
+     *
+     * @param buffer   the text read is appended here
+     * @param listener if non-null, is given each line
+     * @param echo     if non-null, each line is echoed to stderr with this prefix
+     */
+    private static Thread startReader(InputStream ins, StringBuilder buffer, Consumer<String> listener, String echo) {
+        final Thread thread = new Thread(() -> {
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(ins))) {
+                String aLine;
+                while ((aLine = r.readLine()) != null) {
+                    buffer.append(aLine).append("\n");
+                    if (listener != null)
+                        listener.accept(aLine);
+                    if (echo != null)
+                        System.err.println(echo + aLine);
+                }
+            } catch (IOException ignored) {
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void checkForCancel(Document doc) throws CanceledException {
+        if (doc != null && doc.getProgressListener() != null)
+            doc.getProgressListener().checkForCancel();
+    }
+
+    /**
+     * recursively deletes a temporary directory
+     */
+    private static void delete(File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files)
+                delete(child);
+        }
+        if (!file.delete())
+            System.err.println("Failed to delete: " + file);
+    }
+
+    /**
+     * computes the cache key of an invocation
+     *
+     * @return key
+     */
+    private static String computeKey(Invocation invocation, List<String> command) throws IOException {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final Consumer<String> update = str -> {
+                final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+                digest.update((bytes.length + ":").getBytes(StandardCharsets.UTF_8));
+                digest.update(bytes);
+            };
+            for (String arg : command)
+                update.accept(arg);
+            // a new version of the program or a modified file argument invalidates cached results:
+            for (int i = 0; i < command.size(); i++) {
+                final File file = (i == 0 ? findExecutable(command.get(0)) : new File(command.get(i)));
+                if (file != null && file.exists())
+                    update.accept("file:" + i + ":" + file.length() + ":" + file.lastModified());
+            }
+            for (File file : invocation.dependencies)
+                update.accept("dependency:" + file.getPath() + ":" + file.length() + ":" + file.lastModified());
+            update.accept("directory:" + invocation.directory);
+            update.accept("stdin:" + invocation.standardInput);
+            for (String name : invocation.inputFiles.keySet()) {
+                update.accept(name);
+                update.accept(invocation.inputFiles.get(name));
+            }
+            for (String name : invocation.outputFiles)
+                update.accept("output:" + name);
+
+            final StringBuilder buf = new StringBuilder();
+            for (byte b : digest.digest())
+                buf.append(String.format("%02x", b));
+            return buf.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * finds the file of an executable, looking it up in the PATH, if it is given by name only
+     *
+     * @return file or null
+     */
+    private static File findExecutable(String program) {
+        if (program.contains(File.separator))
+            return new File(program);
+        final String path = System.getenv("PATH");
+        if (path != null) {
+            for (String dir : path.split(File.pathSeparator)) {
+                final File file = new File(dir, program);
+                if (file.isFile())
+                    return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * substitutes a program by another executable, typically a stub that writes fixed output files, so that
+     * algorithms that run external programs can be tested without installing the programs
+     *
+     * @param program    the program, given by name or path, as it appears in invocations
+     * @param substitute the executable to run instead, or null to remove the substitution
+     */
+    public synchronized void substituteProgram(String program, String substitute) {
+        if (substitute == null)
+            program2substitute.remove(program);
+        else
+            program2substitute.put(program, substitute);
+        clearCache();
+    }
+
+    /**
+     * gets the substitute of a program, matched by its path or its name
+     *
+     * @return substitute or null
+     */
+    private synchronized String getSubstitute(String program) {
+        if (program2substitute.containsKey(program))
+            return program2substitute.get(program);
+        return program2substitute.get(new File(program).getName());
+    }
+
+    private synchronized Result getCached(String key) {
+        if (!cacheEnabled)
+            return null;
+        final Result result = key2result.get(key);
+        if (result != null)
+            hits++;
+        else
+            misses++;
+        return result;
+    }
+
+    private synchronized void putCached(String key, Result result) {
+        if (!cacheEnabled || result.size() > maxCacheSize)
+            return;
+        final Result old = key2result.put(key, result);
+        if (old != null)
+            cacheSize -= old.size();
+        cacheSize += result.size();
+        evict();
+    }
+
+    /**
+     * evicts least recently used results until the cache is within its size bound
+     */
+    private void evict() {
+        for (Iterator<Map.Entry<String, Result>> it = key2result.entrySet().iterator(); cacheSize > maxCacheSize && it.hasNext(); ) {
+            cacheSize -= it.next().getValue().size();
+            it.remove();
+        }
+    }
+
+    /**
+     * clears the cache
+     */
+    public synchronized void clearCache() {
+        key2result.clear();
+        cacheSize = 0;
+    }
+
+    public int getMaxProcesses() {
+        return maxProcesses;
+    }
+
+    public synchronized boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    public synchronized void setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+        if (!cacheEnabled)
+            clearCache();
+    }
+
+    public synchronized long getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    /**
+     * sets the maximal total number of characters of cached results
+     */
+    public synchronized void setMaxCacheSize(long maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+        evict();
+    }
+
+    /**
+     * gets a summary of the state of the cache
+     *
+     * @return summary
+     */
+    public synchronized String toString() {
+        return "External programs: max processes: " + maxProcesses + ", cached results: " + key2result.size() + ", " + cacheSize + " chars, hits: " + hits + ", misses: " + misses;
+    }
+
+    /**
+     * an invocation of an external program
+     */
+    public static class Invocation {
+        private final List<String> command;
+        private File directory;
+        private String standardInput;
+        private final Map<String, String> inputFiles = new TreeMap<>();
+        private final List<String> outputFiles = new ArrayList<>();
+        private final List<File> dependencies = new ArrayList<>();
+        private Consumer<String> outputListener;
+        private boolean cacheable = true;
+
+        /**
+         * constructor
+         *
+         * @param command the program and its arguments. Input and output files are referred to by their names,
+         *                relative to the directory in which the program is run. All other relative paths of existing
+         *                files are resolved against the current working directory, when the program is run
+         */
+        public Invocation(List<String> command) {
+            if (command.size() == 0)
+                throw new IllegalArgumentException("Empty command");
+            this.command = new ArrayList<>(command);
+        }
+
+        /**
+         * constructs an invocation from a command line, split at white space as in Runtime.exec(String)
+         *
+         * @return invocation
+         */
+        public static Invocation parse(String commandLine) {
+            final List<String> command = new ArrayList<>();
+            for (StringTokenizer tokenizer = new StringTokenizer(commandLine); tokenizer.hasMoreTokens(); )
+                command.add(tokenizer.nextToken());
+            return new Invocation(command);
+        }
+
+        /**
+         * adds an input file that is written to the directory in which the program is run
+         */
+        public Invocation addInputFile(String name, String content) {
+            inputFiles.put(name, content);
+            return this;
+        }
+
+        /**
+         * adds an output file that is read back after the program has finished
+         */
+        public Invocation addOutputFile(String name) {
+            outputFiles.add(name);
+            return this;
+        }
+
+        /**
+         * adds a file that the program reads, but that is not named on the command line, e.g. a file named on
+         * standard input. Its length and time of last modification are part of the cache key
+         */
+        public Invocation addDependency(File file) {
+            dependencies.add(file.getAbsoluteFile());
+            return this;
+        }
+
+        /**
+         * sets the text that is streamed to the standard input of the program
+         */
+        public Invocation setStandardInput(String standardInput) {
+            this.standardInput = standardInput;
+            return this;
+        }
+
+        /**
+         * sets a listener that is given each line written by the program to standard output
+         */
+        public Invocation setOutputListener(Consumer<String> outputListener) {
+            this.outputListener = outputListener;
+            return this;
+        }
+
+        /**
+         * run the program in the given directory, rather than in a new temporary directory. Input and output files
+         * are then written to and read from this directory
+         */
+        public Invocation setDirectory(File directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * may the result be cached? Should be false, if the program depends on anything other than its command line,
+         * standard input and input files, or if it has side effects
+         */
+        public Invocation setCacheable(boolean cacheable) {
+            this.cacheable = cacheable;
+            return this;
+        }
+
+        public String toString() {
+            return String.join(" ", command);
+        }
+    }
+
+    /**
+     * the result of running an external program
+     */
+    public static class Result {
+        private final int exitCode;
+        private final String output;
+        private final String error;
+        private final Map<String, String> outputFiles;
+
+        Result(int exitCode, String output, String error, Map<String, String> outputFiles) {
+            this.exitCode = exitCode;
+            this.output = output;
+            this.error = error;
+            this.outputFiles = outputFiles;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        /**
+         * gets the text written to standard output
+         */
+        public String getOutput() {
+            return output;
+        }
+
+        /**
+         * gets the text written to standard error
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * gets the content of an output file
+         *
+         * @return content, or null, if the program did not write the file
+         */
+        public String getOutputFile(String name) {
+            return outputFiles.get(name);
+        }
+
+        /**
+         * gets the content of an output file
+         *
+         * @return content
+         * @throws IOException if the program did not write the file
+         */
+        public String getRequiredOutputFile(String name) throws IOException {
+            final String content = outputFiles.get(name);
+            if (content == null)
+                throw new IOException("External program did not write file: " + name + (error.length() > 0 ? ": " + error.trim() : ""));
+            return content;
+        }
+
+        long size() {
+            long size = output.length() + error.length();
+            for (String content : outputFiles.values())
+                size += content.length();
+            return size;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * ImplicitLeastSquares.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.algorithms.util;
+
+import splitstree4.core.TaxaSet;
+import splitstree4.nexus.Distances;
+import splitstree4.nexus.Splits;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * Least squares split weights for an arbitrary set of splits, without forming the topological matrix A or A'WA.
+ * A and A' are applied implicitly using the splits packed as bit words, and the (optionally non-negative)
+ * weighted least squares problem is solved by an active set method with conjugate gradients, as in
+ * NeighborNetSplitWeightOptimizer. Memory is O(n^2 + S) for n taxa and S splits.
+ * <p/>
+ * Vectors indexed by pairs use the canonical ordering (0,1),(0,2),...,(0,n-1),(1,2),...,(n-2,n-1)
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class ImplicitLeastSquares {
+    /* Epsilon constant for the conjugate gradient algorithm */
+    private static final double CG_EPSILON = 0.0001;
+
+    private final int ntax;
+    private final int nsplits;
+    private final int npairs;
+    private final int numWords;
+    private final long[] bits; // bits[s*numWords+w] contains the taxa 0..ntax-1 on one side of split s
+    private final int[] rowStart;
+
+    /**
+     * constructor
+     *
+     * @param splits the splits
+     */
+    private ImplicitLeastSquares(Splits splits) {
+        ntax = splits.getNtax();
+        nsplits = splits.getNsplits();
+        npairs = ntax * (ntax - 1) / 2;
+        numWords = (ntax + 63) / 64;
+        bits = new long[nsplits * numWords];
+        for (int s = 0; s < nsplits; s++) {
+            TaxaSet set = splits.get(s + 1); //Note - indices off by one.
+            BitSet taxa = set.getBits();
+            for (int t = taxa.nextSetBit(1); t != -1 && t <= ntax; t = taxa.nextSetBit(t + 1)) {
+                bits[s * numWords + (t - 1) / 64] |= (1L << ((t - 1) % 64));
+            }
+        }
+        rowStart = new int[ntax];
+        for (int a = 1; a < ntax; a++)
+            rowStart[a] = rowStart[a - 1] + ntax - a;
+    }
+
+    /**
+     * Computes the optimal least squares values for split weights, with or without a positivity constraint.
+     * Variances are taken from the distances block
+     *
+     * @param splits    Splits block
+     * @param dist      Distances block (with same number of taxa as splits block)
+     * @param constrain Flag indicating whether to constrain to non-negative weights (true) or allow negative values
+     * @return weights, indexed 0..nsplits-1
+     */
+    static public double[] optimize(Splits splits, Distances dist, boolean constrain) {
+        if (splits.getNtax() != dist.getNtax())
+            throw new IllegalArgumentException("Splits and distances have different numbers of taxa");
+
+        final ImplicitLeastSquares ls = new ImplicitLeastSquares(splits);
+        final int ntax = ls.ntax;
+
+        final double[] d = new double[ls.npairs];
+        final double[] W = new double[ls.npairs];
+        final boolean ols = dist.getFormat().getVarType().equalsIgnoreCase("ols");
+        int index = 0;
+        for (int a = 1; a <= ntax; a++) {
+            for (int b = a + 1; b <= ntax; b++) {
+                d[index] = dist.get(a, b);
+                W[index] = (ols ? 1.0 : 1.0 / dist.getVar(a, b));
+                index++;
+            }
+        }
+
+        final double[] x = new double[ls.nsplits];
+        if (constrain)
+            ls.runActiveConjugate(d, W, x);
+        else {
+            final double[] AtWd = new double[ls.nsplits];
+            ls.calculateAtWd(d, W, AtWd);
+            ls.conjugateGrads(W, AtWd, new boolean[ls.nsplits], x);
+        }
+        return x;
+    }
+
+    /**
+     * computes y=Ax, where A is the topological matrix. In parallel over the first taxon of each pair
+     *
+     * @param x vector indexed by splits
+     * @param y vector indexed by pairs
+     */
+    private void calculateAx(final double[] x, final double[] y) {
+        Arrays.fill(y, 0);
+        IntStream.range(0, ntax - 1).parallel().forEach(a -> {
+            final int offset = rowStart[a] - a - 1;
+            for (int s = 0; s < nsplits; s++) {
+                final double xs = x[s];
+                if (xs == 0)
+                    continue;
+                final int base = s * numWords;
+                final boolean aInSplit = (bits[base + a / 64] & (1L << (a % 64))) != 0;
+                for (int w = a / 64; w < numWords; w++) {
+                    long separated = getSeparated(base, a, aInSplit, w);
+                    while (separated != 0) {
+                        y[offset + w * 64 + Long.numberOfTrailingZeros(separated)] += xs;
+                        separated &= separated - 1;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * computes x=A'y, where A is the topological matrix. In parallel over splits
+     *
+     * @param y vector indexed by pairs
+     * @param x vector indexed by splits
+     */
+    private void calculateAty(final double[] y, final double[] x) {
+        IntStream.range(0, nsplits).parallel().forEach(s -> {
+            final int base = s * numWords;
+            double sum = 0;
+            for (int a = 0; a < ntax - 1; a++) {
+                final int offset = rowStart[a] - a - 1;
+                final boolean aInSplit = (bits[base + a / 64] & (1L << (a % 64))) != 0;
+                for (int w = a / 64; w < numWords; w++) {
+                    long separated = getSeparated(base, a, aInSplit, w);
+                    while (separated != 0) {
+                        sum += y[offset + w * 64 + Long.numberOfTrailingZeros(separated)];
+                        separated &= separated - 1;
+                    }
+                }
+            }
+            x[s] = sum;
+        });
+    }
+
+    /**
+     * gets the w-th word of the set of taxa b&gt;a that are separated from a by the split starting at base
+     *
+     * @return bits
+     */
+    private long getSeparated(int base, int a, boolean aInSplit, int w) {
+        long separated = (aInSplit ? ~bits[base + w] : bits[base + w]);
+        if (w == a / 64)
+            separated &= (a % 64 == 63 ? 0 : -(1L << (a % 64 + 1))); // only b>a
+        if (w == numWords - 1 && ntax % 64 != 0)
+            separated &= (1L << (ntax % 64)) - 1; // only b<ntax
+        return separated;
+    }
+
+    /**
+     * computes A'Wd
+     */
+    private void calculateAtWd(double[] d, double[] W, double[] AtWd) {
+        final double[] y = new double[npairs];
+        for (int k = 0; k < npairs; k++)
+            y[k] = W[k] * d[k];
+        calculateAty(y, AtWd);
+    }
+
+    /**
+     * computes r=A'WAx, using y as workspace
+     */
+    private void calculateAtWAx(double[] x, double[] W, double[] y, double[] r) {
+        calculateAx(x, y);
+        for (int k = 0; k < npairs; k++)
+            y[k] *= W[k];
+        calculateAty(y, r);
+    }
+
+    /**
+     * Conjugate gradient algorithm solving A'WA x = A'Wd, with all active variables held at zero.
+     * x is used as starting point
+     */
+    private void conjugateGrads(double[] W, double[] AtWd, boolean[] active, double[] x) {
+        final double[] r = new double[nsplits];
+        final double[] p = new double[nsplits];
+        final double[] q = new double[nsplits];
+        final double[] y = new double[npairs];
+
+        for (int i = 0; i < nsplits; i++) {
+            if (active[i])
+                x[i] = 0;
+        }
+        calculateAtWAx(x, W, y, r);
+        double rs = 0;
+        double norm = 0;
+        for (int i = 0; i < nsplits; i++) {
+            r[i] = (active[i] ? 0 : AtWd[i] - r[i]);
+            p[i] = r[i];
+            rs += r[i] * r[i];
+            norm += AtWd[i] * AtWd[i];
+        }
+        final double threshold = CG_EPSILON * CG_EPSILON * Math.max(norm, 1e-20);
+
+        for (int k = 0; k < nsplits && rs > threshold; k++) {
+            calculateAtWAx(p, W, y, q);
+            double pq = 0;
+            for (int i = 0; i < nsplits; i++) {
+                if (active[i])
+                    q[i] = 0;
+                pq += p[i] * q[i];
+            }
+            if (pq <= 0)
+                break;
+            final double alpha = rs / pq;
+            double rsNew = 0;
+            for (int i = 0; i < nsplits; i++) {
+                x[i] += alpha * p[i];
+                r[i] -= alpha * q[i];
+                rsNew += r[i] * r[i];
+            }
+            final double beta = rsNew / rs;
+            for (int i = 0; i < nsplits; i++)
+                p[i] = r[i] + beta * p[i];
+            rs = rsNew;
+        }
+    }
+
+    /**
+     * Active set method for non-negative least squares, as in NeighborNetSplitWeightOptimizer.runActiveConjugate
+     */
+    private void runActiveConjugate(double[] d, double[] W, double[] x) {
+        final double[] AtWd = new double[nsplits];
+        calculateAtWd(d, W, AtWd);
+
+        final boolean[] active = new boolean[nsplits];
+
+        /* First evaluate the unconstrained optimum. If this is feasible then we don't have to do anything more! */
+        conjugateGrads(W, AtWd, active, x);
+
+        final double[] oldX = new double[nsplits];
+        Arrays.fill(oldX, 1.0);
+        final double[] r = new double[nsplits];
+        final double[] y = new double[npairs];
+
+        /* Typically, a large number of weights are negative, so we add the worst 60% to the active set */
+        final int[] entriesToContract = NeighborNetSplitWeightOptimizer.worstIndices(x, 0.6);
+        if (entriesToContract != null) {
+            for (int index : entriesToContract) {
+                x[index] = 0.0;
+                active[index] = true;
+            }
+            conjugateGrads(W, AtWd, active, x);
+        }
+
+        while (true) {
+            while (true) /* Inner loop: find the next feasible optimum */ {
+                int minI = -1;
+                double minXi = -1.0;
+                for (int i = 0; i < nsplits; i++) {
+                    if (x[i] < 0.0) {
+                        double xi = (oldX[i]) / (oldX[i] - x[i]);
+                        if ((minI == -1) || (xi < minXi)) {
+                            minI = i;
+                            minXi = xi;
+                        }
+                    }
+                }
+
+                if (minI == -1) /* This is a feasible solution - go to the next stage to check if its also optimal */
+                    break;
+                else {
+                    /* Move to the last feasible solution on the path from oldX to x */
+                    for (int i = 0; i < nsplits; i++)
+                        if (!active[i])
+                            oldX[i] += minXi * (x[i] - oldX[i]);
+                    active[minI] = true; /* Add the first constraint met to the active set */
+                    System.arraycopy(oldX, 0, x, 0, nsplits);
+                    x[minI] = 0.0;
+                    conjugateGrads(W, AtWd, active, x);
+                }
+            }
+            System.arraycopy(x, 0, oldX, 0, nsplits);
+
+            /* Find i that minimizes the gradient over all i in the active set. Note that grad = (AtWAx-AtWd)  */
+            calculateAtWAx(x, W, y, r);
+            int minI = -1;
+            double minGrad = 1.0;
+            for (int i = 0; i < nsplits; i++) {
+                if (active[i]) {
+                    double grad = r[i] - AtWd[i];
+                    if ((minI == -1) || (grad < minGrad)) {
+                        minI = i;
+                        minGrad = grad;
+                    }
+                }
+            }
+            if ((minI == -1) || (minGrad > -0.0001))
+                return; /* We have arrived at the constrained optimum */
+            else {
+                active[minI] = false;
+                conjugateGrads(W, AtWd, active, x);
+            }
+        }
+    }
+}
@@ -25,7 +25,8 @@
  * 		makeTopoMatrix		Computes topological matrix, which is then available through
  * 		getTopoMatrix. NOTE: rows and columns are indexed 0...n-1
  * 		optimizeLS(constrain)  Replaces values in weights to optimal WLS weights, constrained
- * 			to be non-negative if constrain is set to true.
+ * 			to be non-negative if constrain is set to true. Large sets of splits are handled
+ * 			by ImplicitLeastSquares.
  *
  *
  */
@@ -48,6 +49,9 @@ public class LeastSquares {
 
     static final double EPSILON = 1e-10;
 
+    /* Larger sets of splits are optimized implicitly, without forming A'WA, see ImplicitLeastSquares */
+    static final int MAX_SPLITS_DENSE = 200;
+
 
     /**
      * Return matrix A'A, where A is the topological matrix for the set of splits.
@@ -291,6 +295,18 @@ public class LeastSquares {
         if (splits.getNtax() != dist.getNtax())
             throw new IllegalArgumentException("Splits and distances have different numbers of taxa");
 
+        int nsplits = splits.getNsplits();
+        if (nsplits > MAX_SPLITS_DENSE) {
+            double[] weights = ImplicitLeastSquares.optimize(splits, dist, constrain);
+            splits.getFormat().setWeights(true);
+            for (int i = 1; i <= nsplits; i++) {
+                splits.setWeight(i, (float) (constrain ? Math.max(0, weights[i - 1]) : weights[i - 1]));
+            }
+            splits.getProperties().setFit(-1);
+            splits.getProperties().setLSFit(-1);
+            return;
+        }
+
         //First compute the matrices AtWA and vector AtWd
         Matrix Amat;
         if (dist.getFormat().getVarType().equalsIgnoreCase("ols"))
@@ -301,7 +317,6 @@ public class LeastSquares {
 
         //Now apply the active set method to compute the optimal weights
         ActiveSet Aset = new ActiveSet(Amat, AtWd, constrain);
-        int nsplits = splits.getNsplits();
         splits.getFormat().setWeights(true);
         for (int i = 1; i <= nsplits; i++) {
             splits.setWeight(i, (float) Aset.getSoln(i - 1));
@@ -19,14 +19,18 @@
 package splitstree4.algorithms.util;
 
 import jloda.util.CanceledException;
+import jloda.util.progress.ProgressSilent;
 import splitstree4.core.Document;
 import splitstree4.core.SplitsException;
+import splitstree4.core.TransformMetrics;
+import splitstree4.nexus.Splits;
 import splitstree4.nexus.Taxa;
-import splitstree4.util.CharactersUtilities;
+import splitstree4.util.PackedAlignment;
 import splitstree4.util.Partition;
 import splitstree4.util.SplitMatrix;
 
-import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by IntelliJ IDEA.
@@ -36,6 +40,20 @@ import java.util.Set;
  * To change this template use File | Settings | File Templates.
  */
 public class MultiGeneAnalysis {
+    /**
+     * listener that is notified of each completed gene, in the order of the blocks of the partition
+     */
+    public interface GeneListener {
+        /**
+         * called when the splits for a block have been added to the split matrix
+         *
+         * @param block       the block, 1..nblocks
+         * @param splits      the splits computed for the block
+         * @param splitMatrix the split matrix, containing all blocks up to this one
+         */
+        void geneCompleted(int block, Splits splits, SplitMatrix splitMatrix);
+    }
+
     /**
      * Conducts separate analysis on different blocks in the given character site position. The splits
      * from these analysis are stored in a SplitMatrix object, which is returned.
@@ -45,37 +63,130 @@ public class MultiGeneAnalysis {
      * @throws splitstree4.core.SplitsException A problem with the analysis, or the partition was not valid.
      */
     static public SplitMatrix multiGene(Document doc, Partition partition) throws CanceledException, SplitsException {
-        int nblocks = partition.getNumBlocks();
-        int ntax = doc.getTaxa().getNtax();
-        SplitMatrix splitMatrix = new SplitMatrix(ntax);
+        return multiGene(doc, partition, null);
+    }
+
+    /**
+     * Conducts separate analysis on different blocks in the given character site position. The blocks are
+     * analysed concurrently, each worker thread running its own sub-document on characters extracted from
+     * a shared snapshot of the alignment. The splits are added to the SplitMatrix in the order of the blocks,
+     * by the calling thread, as soon as all preceding blocks are done
+     *
+     * @param listener is notified of each completed block, or null
+     * @return SplitMatrix splits returned by the different analyses.
+     * @throws jloda.util.CanceledException     The user pressed cancel in the progress bar.
+     * @throws splitstree4.core.SplitsException A problem with the analysis, or the partition was not valid.
+     */
+    static public SplitMatrix multiGene(final Document doc, Partition partition, GeneListener listener) throws CanceledException, SplitsException {
+        final int nblocks = partition.getNumBlocks();
+        final int ntax = doc.getTaxa().getNtax();
+        final SplitMatrix splitMatrix = new SplitMatrix(ntax);
+
+        final PackedAlignment alignment = new PackedAlignment(doc.getCharacters());
+        final int[][] block2sites = new int[nblocks + 1][];
+        for (int block = 1; block <= nblocks; block++) {
+            block2sites[block] = partition.getBlock(block).stream().mapToInt(Integer::intValue).toArray();
+        }
 
-        Document subDoc = new Document();
-        subDoc.setTaxa((Taxa) doc.getTaxa().clone());
-        subDoc.setAssumptions(doc.getAssumptions().clone(subDoc.getTaxa()));
-        subDoc.getAssumptions().setExTaxa(null);
-        subDoc.setInBootstrap(true);
         doc.notifySetMaximumProgress(nblocks);
         doc.notifyTasks("Multigene Analysis", "");
-        //PrintStream ps = null;
+
+        final int numberOfWorkers = Math.max(1, Math.min(nblocks, Runtime.getRuntime().availableProcessors()));
+        final Document[] subDocs = new Document[numberOfWorkers];
+        for (int i = 0; i < numberOfWorkers; i++)
+            subDocs[i] = createSubDocument(doc);
+
+        final AtomicInteger nextBlock = new AtomicInteger(1);
+        final BlockingQueue<GeneResult> completed = new LinkedBlockingQueue<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(numberOfWorkers);
 
         try {
-            for (int block = 1; block <= nblocks; block++) {
-                Set subset = partition.getBlock(block);
-                subDoc.setCharacters(CharactersUtilities.characterSubset(doc.getCharacters(), subset));
-                //ps = jloda.util.Basic.hideSystemErr();//disable syserr.
-                subDoc.update();
-                //jloda.util.Basic.restoreSystemErr(ps);   //enable syserr
+            for (final Document subDoc : subDocs) {
+                executor.submit(() -> {
+                    int block;
+                    while (!Thread.currentThread().isInterrupted() && (block = nextBlock.getAndIncrement()) <= nblocks) {
+                        final GeneResult result = new GeneResult(block);
+                        try {
+                            subDoc.setCharacters(alignment.createCharacters(block2sites[block]));
+                            final TransformMetrics.Measurement measurement = doc.getMetrics().start("MultiGene", "Block " + block, subDoc.getTaxa(), subDoc.getCharacters());
+                            try {
+                                subDoc.update();
+                                result.splits = subDoc.getSplits();
+                            } finally {
+                                doc.getMetrics().stop(measurement, result.splits);
+                            }
+                        } catch (Throwable ex) { // also errors, otherwise the merge loop waits for this block forever
+                            result.exception = ex;
+                        } finally {
+                            completed.add(result);
+                        }
+                    }
+                });
+            }
 
-                splitMatrix.add(subDoc.getSplits());  //Store the splits recovered.
-                doc.notifySetProgress(block);
+            // merge results in order of blocks:
+            final GeneResult[] results = new GeneResult[nblocks + 1];
+            int nextToMerge = 1;
+            while (nextToMerge <= nblocks) {
+                final GeneResult result = completed.poll(100, TimeUnit.MILLISECONDS);
+                if (doc.getProgressListener() != null)
+                    doc.getProgressListener().checkForCancel();
+                if (result == null)
+                    continue;
+                if (result.exception instanceof Error)
+                    throw (Error) result.exception;
+                else if (result.exception != null)
+                    throw (Exception) result.exception;
+                results[result.block] = result;
+                while (nextToMerge <= nblocks && results[nextToMerge] != null) {
+                    final Splits splits = results[nextToMerge].splits;
+                    results[nextToMerge] = null;
+                    splitMatrix.add(splits);  //Store the splits recovered.
+                    if (listener != null)
+                        listener.geneCompleted(nextToMerge, splits, splitMatrix);
+                    doc.notifySetProgress(nextToMerge);
+                    nextToMerge++;
+                }
             }
         } catch (CanceledException ex) {
             throw ex;
+        } catch (InterruptedException ex) {
+            throw new CanceledException();
         } catch (Exception ex) {
             ex.printStackTrace(System.err);
             throw new SplitsException("Multigene analysis failed:" + ex);
+        } finally {
+            executor.shutdownNow();
         }
         return splitMatrix;
     }
 
+    /**
+     * creates a sub-document for running the analysis on a single block
+     *
+     * @return sub-document
+     */
+    private static Document createSubDocument(Document doc) {
+        final Document subDoc = new Document();
+        subDoc.setTaxa((Taxa) doc.getTaxa().clone());
+        subDoc.setAssumptions(doc.getAssumptions().clone(subDoc.getTaxa()));
+        subDoc.getAssumptions().setExTaxa(null);
+        subDoc.setInBootstrap(true);
+        subDoc.setProgressListener(new ProgressSilent());
+        subDoc.setMetrics(doc.getMetrics());
+        return subDoc;
+    }
+
+    /**
+     * result of the analysis of a single block
+     */
+    private static class GeneResult {
+        final int block;
+        Splits splits;
+        Throwable exception;
+
+        GeneResult(int block) {
+            this.block = block;
+        }
+    }
 }
@@ -245,7 +245,7 @@ public class NeighborNetSplitWeightOptimizer {
      * @param propKept the
      * @return int[] array of indices
      */
-    static private int[] worstIndices(double[] x, double propKept) {
+    static int[] worstIndices(double[] x, double propKept) {
 
 
         if (propKept == 0)
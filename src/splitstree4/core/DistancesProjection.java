@@ -0,0 +1,143 @@
+/*
+ * DistancesProjection.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.core;
+
+import splitstree4.algorithms.characters.CharactersTransform;
+import splitstree4.algorithms.characters.PairwiseDistances;
+import splitstree4.algorithms.util.Configurator;
+import splitstree4.nexus.Assumptions;
+import splitstree4.nexus.Characters;
+import splitstree4.nexus.Distances;
+import splitstree4.nexus.Taxa;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * keeps the distances last computed from the characters by a pairwise method, so that hiding or unhiding taxa
+ * can be handled by restricting them to the visible taxa, rather than by recomputing them from the characters.
+ * This is possible as long as the visible taxa are a subset of the taxa that the distances were computed for
+ *
+ * @author huson
+ * Date: 2022
+ */
+class DistancesProjection {
+    private Characters characters;
+    private String key;
+    private Distances distances;
+    private final Map<String, Integer> label2id = new HashMap<>();
+
+    /**
+     * can distances computed by the given transform be restricted to a subset of the taxa?
+     *
+     * @return true, if the transform is pairwise and no characters are masked based on the states of all taxa
+     */
+    static boolean isApplicable(Assumptions assumptions, CharactersTransform trans) {
+        return trans instanceof PairwiseDistances
+                && assumptions.getExcludeConstant() != Characters.EXCLUDE_ALL_CONSTANT && assumptions.getExcludeMissing() >= 1.0
+                && !assumptions.getExcludeGaps() && !assumptions.getExcludeNonParsimony();
+    }
+
+    /**
+     * remember distances just computed from the characters
+     */
+    void record(Assumptions assumptions, CharactersTransform trans, Taxa taxa, Characters characters, Distances distances) {
+        clear();
+        if (distances == null || !isApplicable(assumptions, trans))
+            return;
+        this.characters = characters;
+        this.key = computeKey(assumptions, trans, characters);
+        final int[] ids = new int[taxa.getNtax() + 1];
+        for (int t = 1; t <= taxa.getNtax(); t++) {
+            label2id.put(taxa.getLabel(t), t);
+            ids[t] = t;
+        }
+        this.distances = copy(distances, ids);
+    }
+
+    /**
+     * gets the distances for the given taxa by restricting the recorded ones
+     *
+     * @return distances, or null, if the recorded distances were computed differently or do not cover all given taxa
+     */
+    Distances project(Assumptions assumptions, CharactersTransform trans, Taxa taxa, Characters characters) {
+        if (distances == null || characters != this.characters || !isApplicable(assumptions, trans)
+                || !key.equals(computeKey(assumptions, trans, characters)))
+            return null;
+
+        final int ntax = taxa.getNtax();
+        final int[] ids = new int[ntax + 1];
+        for (int t = 1; t <= ntax; t++) {
+            final Integer id = label2id.get(taxa.getLabel(t));
+            if (id == null)
+                return null; // a taxon that was hidden when the distances were computed
+            ids[t] = id;
+        }
+
+        return copy(distances, ids);
+    }
+
+    /**
+     * copies the given rows and columns of a distance matrix
+     *
+     * @param ids the row of the source for each row of the copy, 1-based
+     * @return copy
+     */
+    private static Distances copy(Distances source, int[] ids) {
+        final int ntax = ids.length - 1;
+        final Distances result = new Distances(ntax);
+        try {
+            result.getFormat().setTriangle(source.getFormat().getTriangle());
+        } catch (SplitsException ignored) {
+        }
+        result.getFormat().setLabels(source.getFormat().getLabels());
+        result.getFormat().setDiagonal(source.getFormat().getDiagonal());
+        result.getFormat().setVarType(source.getFormat().getVarType());
+        final boolean userVariances = source.getFormat().getVarType().equalsIgnoreCase("user");
+        for (int s = 1; s <= ntax; s++) {
+            for (int t = 1; t <= ntax; t++) {
+                result.set(s, t, source.get(ids[s], ids[t]));
+                if (userVariances)
+                    result.setVar(s, t, source.getVar(ids[s], ids[t]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * forget the recorded distances
+     */
+    void clear() {
+        characters = null;
+        key = null;
+        distances = null;
+        label2id.clear();
+    }
+
+    /**
+     * the transform and all assumptions that determine which characters are used
+     *
+     * @return key
+     */
+    private static String computeKey(Assumptions assumptions, CharactersTransform trans, Characters characters) {
+        return trans.getClass().getName() + " " + Configurator.getOptions(trans) + " nchar=" + characters.getNchar()
+                + " exchar=" + assumptions.getExChar() + " codons=" + assumptions.getExcludeCodon1() + assumptions.getExcludeCodon2()
+                + assumptions.getExcludeCodon3() + " usecharsets=" + assumptions.getUseCharSets();
+    }
+}
@@ -66,6 +66,7 @@ import java.awt.*;
 import java.io.*;
 import java.util.List;
 import java.util.*;
+import java.util.function.Consumer;
 
 //TODO: keepSplits should perhaps be incorporated better. ALSO, we could consider fixing trees as well
 
@@ -80,6 +81,16 @@ public class Document extends DocumentData {
     private String topComments = null; // the first comment in a nexus file is kept
 
     private ProgressListener progressListener = new ProgressCmdLine(); // for efficienty, allow only one
+    private Consumer<Network> intermediateNetworkListener = null;
+    private String interruptedUpdate = null; // first block of an update of assumptions that was canceled
+
+    private TransformMetrics metrics = new TransformMetrics();
+    private final DistancesProjection distancesProjection = new DistancesProjection();
+
+    private SnapshotReader snapshotReader = null; // open while blocks of a snapshot remain to be read
+    private final Set<String> deferredBlocks = new HashSet<>(); // blocks still to be read from the snapshot
+    private boolean readingSnapshot = false;
+    private IOException snapshotReadError = null; // set, if a deferred block could not be read
 
 
     // this is used to buffer node modifications between recomputes
@@ -99,6 +110,11 @@ public class Document extends DocumentData {
      * @param name the name of the block, or null to do all blocks
      */
     void deleteDependentBlocks(String name) {
+        if (name == null) {
+            closeSnapshot();
+            snapshotReadError = null;
+        } else
+            loadDeferredBlocks();
         boolean found = name == null;
 
         // null: delete all
@@ -190,6 +206,9 @@ public class Document extends DocumentData {
      * update all date that depends on the named block
      */
     public void update(String name) throws SplitsException, IOException {
+        loadDeferredBlocks();
+        if (snapshotReadError != null)
+            throw new IOException("Block missing from snapshot: " + snapshotReadError.getMessage());
         boolean found = false;  // found block to begin updating at?
         setValid(true); // if update fails, will be set to false
 
@@ -207,6 +226,8 @@ public class Document extends DocumentData {
             taxa.hideTaxa(assumptions.getExTaxa());
             name = getNameTop();  // need to update from top valid block
             // below, we will hide taxa in top block
+            if (Characters.NAME.equals(name) && projectDistances())
+                name = Distances.NAME; // distances of the visible taxa are known, update from there
         }
 
         if (!inBootstrap) {
@@ -267,61 +288,83 @@ public class Document extends DocumentData {
                             ("Unaligned: transform not applicable: " + assumptions.getUnalignedTransformName());
                 }
 
-                if (trans instanceof Unaligned2Characters) {
-                    Unaligned2Characters unalign2char = (Unaligned2Characters) trans;
+                final TransformMetrics.Measurement measurement = metrics.start("Unaligned", assumptions.getUnalignedTransformName(), taxa, unaligned);
+                NexusBlock output = null;
 
-                    System.err.println("Computing UNALIGNED to CHARACTERS: " +
-                            Configurator.getOptions(unalign2char));
-                    try {
-                        characters = unalign2char.apply(this, taxa, unaligned);
-                    } catch (CanceledException ex) {
-                        throw new CanceledException(Unaligned.NAME);
-                    } catch (Exception ex) {
-                        throw new SplitsException("Algorithm failed: " + ex.getMessage());
-                    }
-                } else if (trans instanceof Unaligned2Distances) {
-                    Unaligned2Distances unalign2dist = (Unaligned2Distances) trans;
+                try {
+                    if (trans instanceof Unaligned2Characters) {
+                        Unaligned2Characters unalign2char = (Unaligned2Characters) trans;
 
-                    System.err.println("Computing UNALIGNED to DISTANCES: " +
-                            Configurator.getOptions(unalign2dist));
-                    try {
-                        distances = unalign2dist.apply(this, taxa, unaligned);
-                    } catch (CanceledException ex) {
-                        throw new CanceledException(Unaligned.NAME);
-                    } catch (Exception ex) {
-                        throw new SplitsException("Algorithm failed: " + ex.getMessage());
-                    }
-                } else if (trans instanceof Unaligned2Quartets) {
-                    Unaligned2Quartets unalign2quart = (Unaligned2Quartets) trans;
+                        System.err.println("Computing UNALIGNED to CHARACTERS: " +
+                                Configurator.getOptions(unalign2char));
+                        try {
+                            String key = getTransformCacheKey(unalign2char, unaligned);
+                            characters = getCachedTransformResult(key, new Characters());
+                            if (characters == null) {
+                                characters = unalign2char.apply(this, taxa, unaligned);
+                                putCachedTransformResult(key, characters);
+                            }
+                            output = characters;
+                        } catch (CanceledException ex) {
+                            throw new CanceledException(Unaligned.NAME);
+                        } catch (Exception ex) {
+                            throw new SplitsException("Algorithm failed: " + ex.getMessage());
+                        }
+                    } else if (trans instanceof Unaligned2Distances) {
+                        Unaligned2Distances unalign2dist = (Unaligned2Distances) trans;
 
-                    System.err.println("Computing UNALIGNED to QUARTETS: " +
-                            Configurator.getOptions(unalign2quart));
-                    try {
-                        quartets = unalign2quart.apply(this, taxa, unaligned);
-                    } catch (Exception ex) {
-                        throw new SplitsException("Algorithm failed: " + ex.getMessage());
-                    }
-                } else if (trans instanceof Unaligned2Splits) {
-                    Unaligned2Splits unalign2splits = (Unaligned2Splits) trans;
-                    System.err.println("Computing UNALIGNED to SPLITS: " +
-                            Configurator.getOptions(unalign2splits));
-                    try {
-                        if (!fixSplits())
-                            splits = unalign2splits.apply(this, taxa, unaligned);
-                    } catch (Exception ex) {
-                        throw new SplitsException("Algorithm failed: " + ex.getMessage());
-                    }
-                } else if (trans instanceof Unaligned2Tree) {
-                    Unaligned2Tree unalign2tree = (Unaligned2Tree) trans;
-                    System.err.println("Computing UNALIGNED to TREES: " +
-                            Configurator.getOptions(unalign2tree));
-                    try {
-                        trees = unalign2tree.apply(this, taxa, unaligned);
-                    } catch (Exception ex) {
-                        throw new SplitsException("Algorithm failed: " + ex.getMessage());
-                    }
-                } else
-                    throw new SplitsException("update failed for UNALIGNED");
+                        System.err.println("Computing UNALIGNED to DISTANCES: " +
+                                Configurator.getOptions(unalign2dist));
+                        try {
+                            String key = getTransformCacheKey(unalign2dist, unaligned);
+                            distances = getCachedTransformResult(key, new Distances());
+                            if (distances == null) {
+                                distances = unalign2dist.apply(this, taxa, unaligned);
+                                putCachedTransformResult(key, distances);
+                            }
+                            output = distances;
+                        } catch (CanceledException ex) {
+                            throw new CanceledException(Unaligned.NAME);
+                        } catch (Exception ex) {
+                            throw new SplitsException("Algorithm failed: " + ex.getMessage());
+                        }
+                    } else if (trans instanceof Unaligned2Quartets) {
+                        Unaligned2Quartets unalign2quart = (Unaligned2Quartets) trans;
+
+                        System.err.println("Computing UNALIGNED to QUARTETS: " +
+                                Configurator.getOptions(unalign2quart));
+                        try {
+                            quartets = unalign2quart.apply(this, taxa, unaligned);
+                            output = quartets;
+                        } catch (Exception ex) {
+                            throw new SplitsException("Algorithm failed: " + ex.getMessage());
+                        }
+                    } else if (trans instanceof Unaligned2Splits) {
+                        Unaligned2Splits unalign2splits = (Unaligned2Splits) trans;
+                        System.err.println("Computing UNALIGNED to SPLITS: " +
+                                Configurator.getOptions(unalign2splits));
+                        try {
+                            if (!fixSplits())
+                                splits = unalign2splits.apply(this, taxa, unaligned);
+                            output = splits;
+                        } catch (Exception ex) {
+                            throw new SplitsException("Algorithm failed: " + ex.getMessage());
+                        }
+                    } else if (trans instanceof Unaligned2Tree) {
+                        Unaligned2Tree unalign2tree = (Unaligned2Tree) trans;
+                        System.err.println("Computing UNALIGNED to TREES: " +
+                                Configurator.getOptions(unalign2tree));
+                        try {
+                            trees = unalign2tree.apply(this, taxa, unaligned);
+                            output = trees;
+                        } catch (Exception ex) {
+                            throw new SplitsException("Algorithm failed: " + ex.getMessage());
+                        }
+                    } else
+                        throw new SplitsException("update failed for UNALIGNED");
+                } finally {
+                    metrics.stop(measurement, output);
+                }
             }
 
             // update all depending on characters
@@ -365,62 +408,92 @@ public class Document extends DocumentData {
                             ("Characters: transform not applicable: " + assumptions.getCharactersTransformName());
                 }
 
-                if (trans instanceof Characters2Distances) {
-                    Characters2Distances char2dist = (Characters2Distances) trans;
+                final TransformMetrics.Measurement measurement = metrics.start("Characters", assumptions.getCharactersTransformName(), taxa, characters);
+                NexusBlock output = null;
 
-                    System.err.println("Computing CHARACTERS to DISTANCES: " +
-                            Configurator.getOptions(char2dist));
-                    try {
-                        distances = char2dist.apply(this, taxa, characters);
-                    } catch (CanceledException ex) {
-                        throw new CanceledException(Characters.NAME);
-                    } catch (Exception ex) {
-                        throw new SplitsException("Algorithm failed: " + ex.getMessage());
-                    }
-                } else if (trans instanceof Characters2Quartets) {
-                    Characters2Quartets char2quart = (Characters2Quartets) trans;
+                try {
+                    if (trans instanceof Characters2Distances) {
+                        Characters2Distances char2dist = (Characters2Distances) trans;
 
-                    System.err.println("Computing CHARACTERS to QUARTETS: " +
-                            Configurator.getOptions(char2quart));
-                    try {
-                        quartets = char2quart.apply(this, taxa, characters);
-                    } catch (Exception ex) {
-                        throw new SplitsException("Algorithm failed: " + ex.getMessage());
-                    }
-                } else if (trans instanceof Characters2Splits) {
-                    Characters2Splits char2splits = (Characters2Splits) trans;
-                    System.err.println("Computing CHARACTERS to SPLITS: " + Configurator.getOptions(char2splits));
-                    try {
-                        if (!fixSplits())
-                            splits = char2splits.apply(this, taxa, characters);
-                    } catch (CanceledException ex) {
-                        throw new CanceledException(Characters.NAME);
-                    } catch (Exception ex) {
-                        Basic.caught(ex);
-                        throw new SplitsException("Algorithm failed: " + ex);
-                    }
-                } else if (trans instanceof Characters2Trees) {
-                    Characters2Trees char2tree = (Characters2Trees) trans;
-                    System.err.println("Computing CHARACTERS to TREES: " +
-                            Configurator.getOptions(char2tree));
-                    trees = char2tree.apply(this, taxa, characters);
-                    System.err.println("done");
-                    if (assumptions.getTreesTransformName() == null) {
-                        assumptions.setTreesTransformName("TreeSelector");
-                    }
-                } else if (trans instanceof Characters2Network) {
-                    Characters2Network chars2network = (Characters2Network) trans;
-                    System.err.println("Computing CHARACTERS to NETWORK: " +
-                            Configurator.getOptions(chars2network));
-                    try {
-                        network = chars2network.apply(this, taxa, characters);
-                    } catch (CanceledException ex) {
-                        throw new CanceledException(Characters.NAME);
-                    } catch (Exception ex) {
-                        Basic.caught(ex);
-                    }
-                } else
-                    throw new SplitsException("update failed for CHARACTERS");
+                        System.err.println("Computing CHARACTERS to DISTANCES: " +
+                                Configurator.getOptions(char2dist));
+                        try {
+                            String key = getTransformCacheKey(char2dist, characters);
+                            distances = getCachedTransformResult(key, new Distances());
+                            if (distances == null) {
+                                distances = char2dist.apply(this, taxa, characters);
+                                putCachedTransformResult(key, distances);
+                            }
+                            output = distances;
+                        } catch (CanceledException ex) {
+                            throw new CanceledException(Characters.NAME);
+                        } catch (Exception ex) {
+                            throw new SplitsException("Algorithm failed: " + ex.getMessage());
+                        }
+                    } else if (trans instanceof Characters2Quartets) {
+                        Characters2Quartets char2quart = (Characters2Quartets) trans;
+
+                        System.err.println("Computing CHARACTERS to QUARTETS: " +
+                                Configurator.getOptions(char2quart));
+                        try {
+                            quartets = char2quart.apply(this, taxa, characters);
+                            output = quartets;
+                        } catch (Exception ex) {
+                            throw new SplitsException("Algorithm failed: " + ex.getMessage());
+                        }
+                    } else if (trans instanceof Characters2Splits) {
+                        Characters2Splits char2splits = (Characters2Splits) trans;
+                        System.err.println("Computing CHARACTERS to SPLITS: " + Configurator.getOptions(char2splits));
+                        try {
+                            if (!fixSplits()) {
+                                String key = getTransformCacheKey(char2splits, characters);
+                                splits = getCachedTransformResult(key, new Splits());
+                                if (splits == null) {
+                                    splits = char2splits.apply(this, taxa, characters);
+                                    putCachedTransformResult(key, splits);
+                                }
+                            }
+                            output = splits;
+                        } catch (CanceledException ex) {
+                            throw new CanceledException(Characters.NAME);
+                        } catch (Exception ex) {
+                            Basic.caught(ex);
+                            throw new SplitsException("Algorithm failed: " + ex);
+                        }
+                    } else if (trans instanceof Characters2Trees) {
+                        Characters2Trees char2tree = (Characters2Trees) trans;
+                        System.err.println("Computing CHARACTERS to TREES: " +
+                                Configurator.getOptions(char2tree));
+                        String key = getTransformCacheKey(char2tree, characters);
+                        trees = getCachedTransformResult(key, new Trees());
+                        if (trees == null) {
+                            trees = char2tree.apply(this, taxa, characters);
+                            putCachedTransformResult(key, trees);
+                        }
+                        output = trees;
+                        System.err.println("done");
+                        if (assumptions.getTreesTransformName() == null) {
+                            assumptions.setTreesTransformName("TreeSelector");
+                        }
+                    } else if (trans instanceof Characters2Network) {
+                        Characters2Network chars2network = (Characters2Network) trans;
+                        System.err.println("Computing CHARACTERS to NETWORK: " +
+                                Configurator.getOptions(chars2network));
+                        try {
+                            network = chars2network.apply(this, taxa, characters);
+                            output = network;
+                        } catch (CanceledException ex) {
+                            throw new CanceledException(Characters.NAME);
+                        } catch (Exception ex) {
+                            Basic.caught(ex);
+                        }
+                    } else
+                        throw new SplitsException("update failed for CHARACTERS");
+                } finally {
+                    metrics.stop(measurement, output);
+                }
+                if (!inBootstrap)
+                    distancesProjection.record(assumptions, trans, taxa, characters, distances);
 
             }
 
@@ -456,42 +529,64 @@ public class Document extends DocumentData {
                             ("Distances: transform not applicable: " + assumptions.getDistancesTransformName());
                 }
 
-                if (trans instanceof Distances2Quartets) {
-                    Distances2Quartets dist2quart = (Distances2Quartets) trans;
-                    System.err.println("Computing DISTANCES to QUARTETS: " + Configurator.getOptions(dist2quart));
-                    try {
-                        quartets = dist2quart.apply(this, taxa, distances);
-                    } catch (Exception ex) {
-                        throw new SplitsException("Algorithm failed: " + ex.getMessage());
-                    }
-                } else if (trans instanceof Distances2Splits) {
-                    Distances2Splits dist2splits = (Distances2Splits) trans;
-                    System.err.println("Computing DISTANCES to SPLITS: " + Configurator.getOptions(dist2splits));
-                    try {
-                        if (!fixSplits())
-                            splits = dist2splits.apply(this, taxa, distances);
-                    } catch (CanceledException ex) {
-                        throw new CanceledException(Distances.NAME);
-                    } catch (IOException ex) {
-                        ex.printStackTrace(); //TODO: FIX.
-                        //throw new SplitsException("Algorithm failed: " + ex.getMessage());
-                        throw ex;
-                    }
-                } else if (trans instanceof Distances2Trees) {
-                    Distances2Trees dist2tree = (Distances2Trees) trans;
-                    System.err.println("Computing DISTANCES to TREES: " + Configurator.getOptions(dist2tree));
-                    trees = dist2tree.apply(this, taxa, distances);
-                    System.err.println("done");
-                    if (assumptions.getTreesTransformName() == null)
-                        assumptions.setTreesTransformName("TreeSelector");
-                } else if (trans instanceof Distances2Network) {
-                    Distances2Network distances2Network = (Distances2Network) trans;
-                    System.err.println("Computing DISTANCES to NETWORK: " +
-                            Configurator.getOptions(distances2Network));
-                    network = distances2Network.apply(this, taxa, distances);
-                    System.err.println("done");
-                } else
-                    throw new SplitsException("update failed for DISTANCES");
+                final TransformMetrics.Measurement measurement = metrics.start("Distances", assumptions.getDistancesTransformName(), taxa, distances);
+                NexusBlock output = null;
+
+                try {
+                    if (trans instanceof Distances2Quartets) {
+                        Distances2Quartets dist2quart = (Distances2Quartets) trans;
+                        System.err.println("Computing DISTANCES to QUARTETS: " + Configurator.getOptions(dist2quart));
+                        try {
+                            quartets = dist2quart.apply(this, taxa, distances);
+                            output = quartets;
+                        } catch (Exception ex) {
+                            throw new SplitsException("Algorithm failed: " + ex.getMessage());
+                        }
+                    } else if (trans instanceof Distances2Splits) {
+                        Distances2Splits dist2splits = (Distances2Splits) trans;
+                        System.err.println("Computing DISTANCES to SPLITS: " + Configurator.getOptions(dist2splits));
+                        try {
+                            if (!fixSplits()) {
+                                String key = getTransformCacheKey(dist2splits, distances);
+                                splits = getCachedTransformResult(key, new Splits());
+                                if (splits == null) {
+                                    splits = dist2splits.apply(this, taxa, distances);
+                                    putCachedTransformResult(key, splits);
+                                }
+                            }
+                            output = splits;
+                        } catch (CanceledException ex) {
+                            throw new CanceledException(Distances.NAME);
+                        } catch (IOException ex) {
+                            ex.printStackTrace(); //TODO: FIX.
+                            //throw new SplitsException("Algorithm failed: " + ex.getMessage());
+                            throw ex;
+                        }
+                    } else if (trans instanceof Distances2Trees) {
+                        Distances2Trees dist2tree = (Distances2Trees) trans;
+                        System.err.println("Computing DISTANCES to TREES: " + Configurator.getOptions(dist2tree));
+                        String key = getTransformCacheKey(dist2tree, distances);
+                        trees = getCachedTransformResult(key, new Trees());
+                        if (trees == null) {
+                            trees = dist2tree.apply(this, taxa, distances);
+                            putCachedTransformResult(key, trees);
+                        }
+                        output = trees;
+                        System.err.println("done");
+                        if (assumptions.getTreesTransformName() == null)
+                            assumptions.setTreesTransformName("TreeSelector");
+                    } else if (trans instanceof Distances2Network) {
+                        Distances2Network distances2Network = (Distances2Network) trans;
+                        System.err.println("Computing DISTANCES to NETWORK: " +
+                                Configurator.getOptions(distances2Network));
+                        network = distances2Network.apply(this, taxa, distances);
+                        output = network;
+                        System.err.println("done");
+                    } else
+                        throw new SplitsException("update failed for DISTANCES");
+                } finally {
+                    metrics.stop(measurement, output);
+                }
 
             }
 
@@ -526,14 +621,26 @@ public class Document extends DocumentData {
                             ("Quartets: transform not applicable: " + assumptions.getQuartetsTransformName());
                 }
 
-                if (trans instanceof Quartets2Splits) {
-                    Quartets2Splits quart2splits = (Quartets2Splits) trans;
-                    System.err.println("Computing QUARTETS to SPLITS: " +
-                            Configurator.getOptions(quart2splits));
-                    if (!fixSplits())
-                        splits = quart2splits.apply(this, taxa, quartets);
-                } else
-                    throw new SplitsException("update failed for QUARTETS");
+                final TransformMetrics.Measurement measurement = metrics.start("Quartets", assumptions.getQuartetsTransformName(), taxa, quartets);
+
+                try {
+                    if (trans instanceof Quartets2Splits) {
+                        Quartets2Splits quart2splits = (Quartets2Splits) trans;
+                        System.err.println("Computing QUARTETS to SPLITS: " +
+                                Configurator.getOptions(quart2splits));
+                        if (!fixSplits()) {
+                            String key = getTransformCacheKey(quart2splits, quartets);
+                            splits = getCachedTransformResult(key, new Splits());
+                            if (splits == null) {
+                                splits = quart2splits.apply(this, taxa, quartets);
+                                putCachedTransformResult(key, splits);
+                            }
+                        }
+                    } else
+                        throw new SplitsException("update failed for QUARTETS");
+                } finally {
+                    metrics.stop(measurement, splits);
+                }
 
 
             }
@@ -570,21 +677,36 @@ public class Document extends DocumentData {
                             ("Trees: transform not applicable: " + assumptions.getTreesTransformName());
                 }
 
-                if (trans instanceof Trees2Splits) {
-                    Trees2Splits tree2splits = (Trees2Splits) trans;
-                    System.err.println("Computing TREES to SPLITS: " +
-                            Configurator.getOptions(tree2splits));
-                    if (!fixSplits())
-                        splits = tree2splits.apply(this, taxa, trees);
-                    System.err.println("done");
-                } else if (trans instanceof Trees2Network) {
-                    Trees2Network trees2network = (Trees2Network) trans;
-                    System.err.println("Computing TREES to NETWORK: " +
-                            Configurator.getOptions(trees2network));
-                    network = trees2network.apply(this, taxa, trees);
-                    System.err.println("done");
-                } else
-                    throw new SplitsException("update failed for TREES");
+                final TransformMetrics.Measurement measurement = metrics.start("Trees", assumptions.getTreesTransformName(), taxa, trees);
+                NexusBlock output = null;
+
+                try {
+                    if (trans instanceof Trees2Splits) {
+                        Trees2Splits tree2splits = (Trees2Splits) trans;
+                        System.err.println("Computing TREES to SPLITS: " +
+                                Configurator.getOptions(tree2splits));
+                        if (!fixSplits()) {
+                            String key = getTransformCacheKey(tree2splits, trees);
+                            splits = getCachedTransformResult(key, new Splits());
+                            if (splits == null) {
+                                splits = tree2splits.apply(this, taxa, trees);
+                                putCachedTransformResult(key, splits);
+                            }
+                        }
+                        output = splits;
+                        System.err.println("done");
+                    } else if (trans instanceof Trees2Network) {
+                        Trees2Network trees2network = (Trees2Network) trans;
+                        System.err.println("Computing TREES to NETWORK: " +
+                                Configurator.getOptions(trees2network));
+                        network = trees2network.apply(this, taxa, trees);
+                        output = network;
+                        System.err.println("done");
+                    } else
+                        throw new SplitsException("update failed for TREES");
+                } finally {
+                    metrics.stop(measurement, output);
+                }
 
             }
 
@@ -595,8 +717,14 @@ public class Document extends DocumentData {
                     throw new SplitsException("Splits failed: null block");
             }
             //  modify splits
-            if (found && splits != null)
-                updateSplitsPostModification(taxa, splits, name);
+            if (found && splits != null) {
+                final TransformMetrics.Measurement measurement = metrics.start("Splits", "PostProcess", taxa, splits);
+                try {
+                    updateSplitsPostModification(taxa, splits, name);
+                } finally {
+                    metrics.stop(measurement, splits);
+                }
+            }
 
             // apply transformation to splits:
             if (found && splits != null && !isInBootstrap()) {
@@ -617,19 +745,25 @@ public class Document extends DocumentData {
                             ("Splits: transform not applicable: " + assumptions.getSplitsTransformName());
                 }
 
-                if (trans instanceof Splits2Network) {
-                    Splits2Network splits2network = (Splits2Network) trans;
-                    System.err.println("Computing SPLITS to NETWORK: " +
-                            Configurator.getOptions(splits2network));
-                    try {
-                        network = splits2network.apply(this, taxa, splits);
-                    } catch (CanceledException ex) {
-                        throw new CanceledException(Splits.NAME);
-                    } catch (Exception ex) {
-                        Basic.caught(ex);
-                    }
-                } else
-                    throw new SplitsException("update failed for SPLITS");
+                final TransformMetrics.Measurement measurement = metrics.start("Splits", assumptions.getSplitsTransformName(), taxa, splits);
+
+                try {
+                    if (trans instanceof Splits2Network) {
+                        Splits2Network splits2network = (Splits2Network) trans;
+                        System.err.println("Computing SPLITS to NETWORK: " +
+                                Configurator.getOptions(splits2network));
+                        try {
+                            network = splits2network.apply(this, taxa, splits);
+                        } catch (CanceledException ex) {
+                            throw new CanceledException(Splits.NAME);
+                        } catch (Exception ex) {
+                            Basic.caught(ex);
+                        }
+                    } else
+                        throw new SplitsException("update failed for SPLITS");
+                } finally {
+                    metrics.stop(measurement, network);
+                }
             }
 
             if (SplitsTreeProperties.ALLOW_RETICULATE) {
@@ -656,18 +790,23 @@ public class Document extends DocumentData {
                     if (!trans.isApplicable(this, taxa, reticulate)) {
                         throw new SplitsException("Reticulate: tranform not applicable: " + assumptions.getReticulateTransformName());
                     }
-                    if (trans instanceof Reticulate2Network) {
-                        Reticulate2Network ret2graph = (Reticulate2Network) trans;
-                        System.err.println("Computing Reticulate to Network: " + Configurator.getOptions(ret2graph));
-                        try {
-                            network = ret2graph.apply(this, taxa, reticulate);
-                        } catch (CanceledException ex) {
-                            throw new CanceledException(Splits.NAME);
-                        } catch (Exception ex) {
-                            Basic.caught(ex);
-                        }
-                    } else
-                        throw new SplitsException("update failed for Reticulate");
+                    final TransformMetrics.Measurement measurement = metrics.start("Reticulate", assumptions.getReticulateTransformName(), taxa, reticulate);
+                    try {
+                        if (trans instanceof Reticulate2Network) {
+                            Reticulate2Network ret2graph = (Reticulate2Network) trans;
+                            System.err.println("Computing Reticulate to Network: " + Configurator.getOptions(ret2graph));
+                            try {
+                                network = ret2graph.apply(this, taxa, reticulate);
+                            } catch (CanceledException ex) {
+                                throw new CanceledException(Splits.NAME);
+                            } catch (Exception ex) {
+                                Basic.caught(ex);
+                            }
+                        } else
+                            throw new SplitsException("update failed for Reticulate");
+                    } finally {
+                        metrics.stop(measurement, network);
+                    }
                 }
             }
 
@@ -721,6 +860,95 @@ public class Document extends DocumentData {
         //assumptions.setUptodate(true);
     }
 
+    /**
+     * gets the key under which the result of applying the transform to the input block is cached
+     *
+     * @return key or null, if the cache is not to be used, e.g. because the transform is not cacheable
+     */
+    private String getTransformCacheKey(Object trans, NexusBlock input) {
+        if (inBootstrap || !TransformCache.getInstance().isCacheable(trans))
+            return null;
+        try {
+            return TransformCache.getInstance().computeKey(taxa, assumptions, trans, input);
+        } catch (IOException ex) {
+            Basic.caught(ex);
+            return null;
+        }
+    }
+
+    /**
+     * reads a cached transform result into the given empty block
+     *
+     * @return the block or null, if no result is cached
+     */
+    private <T extends NexusBlock> T getCachedTransformResult(String key, T block) {
+        if (key == null)
+            return null;
+        String text = TransformCache.getInstance().get(key);
+        if (text == null)
+            return null;
+        try {
+            NexusStreamParser np = new NexusStreamParser(new StringReader(text));
+            if (block instanceof Characters)
+                ((Characters) block).read(np, taxa);
+            else if (block instanceof Distances)
+                ((Distances) block).read(np, taxa);
+            else if (block instanceof Quartets)
+                ((Quartets) block).read(np, taxa);
+            else if (block instanceof Trees)
+                ((Trees) block).read(np, taxa);
+            else if (block instanceof Splits)
+                ((Splits) block).read(np, taxa);
+            else
+                return null;
+            System.err.println("Using cached result");
+            return block;
+        } catch (Exception ex) {
+            Basic.caught(ex);
+            TransformCache.getInstance().remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * caches a transform result
+     */
+    private void putCachedTransformResult(String key, NexusBlock result) {
+        if (key != null && result != null) {
+            try {
+                TransformCache.getInstance().put(key, taxa, result);
+            } catch (IOException ex) {
+                Basic.caught(ex);
+            }
+        }
+    }
+
+    /**
+     * after hiding or unhiding taxa, obtains the distances by restricting those previously computed from the characters,
+     * if the characters transform computes each distance from two sequences alone
+     *
+     * @return true, if the distances were obtained. The characters are then restricted to the visible taxa, too
+     */
+    private boolean projectDistances() {
+        if (inBootstrap || analysis != null || characters == null || taxa.getOriginalTaxa() == null || assumptions.getCharactersTransformName() == null)
+            return false;
+        final CharactersTransform trans = assumptions.getCharactersTransform();
+        if (!DistancesProjection.isApplicable(assumptions, trans))
+            return false;
+        characters.hideTaxa(taxa.getOriginalTaxa(), assumptions.getExTaxa());
+        final Distances projected = distancesProjection.project(assumptions, trans, taxa, characters);
+        if (projected == null)
+            return false;
+        System.err.println("Restricting DISTANCES to " + taxa.getNtax() + " taxa");
+        CharactersUtilities.maskCharacters(assumptions, sets, characters);
+        distances = projected;
+        quartets = null;
+        if (!fixSplits())
+            splits = null;
+        trees = null;
+        return true;
+    }
+
     /**
      * does it look like hidden taxa choice has changed?
      *
@@ -929,7 +1157,8 @@ public class Document extends DocumentData {
 
             // if we are reading new data, clobber the sets block!
             sets = null;
-        }
+        } else if (!readingSnapshot)
+            loadDeferredBlocks(); // existing blocks are modified, so all must be present
         if (taxa == null)
             throw new SplitsException("No valid taxa block");
         // read all other blocks
@@ -1136,6 +1365,7 @@ public class Document extends DocumentData {
      * @return true, if the named block is valid and was successfully written
      */
     public boolean write(Writer w, String name) throws java.io.IOException {
+        loadDeferredBlock(name);
         if (name.equalsIgnoreCase(Taxa.NAME) && taxa != null) {
             //w.write("#nexus\n");
             taxa.write(w);
@@ -1181,6 +1411,8 @@ public class Document extends DocumentData {
      * @return true, if the named block is valid and was successfully written
      */
     public String getNameForDataTree(String name) {
+        if (isDeferredByName(name)) // not read just to be listed
+            return name;
         StringWriter w = new StringWriter();
         if (name.equalsIgnoreCase(Taxa.NAME) && taxa != null) {
             w.write("Taxa <font color=#a0a0a0>(" + taxa.getNtax() + ")");
@@ -1344,6 +1576,22 @@ public class Document extends DocumentData {
         this.inBootstrap = inBootstrap;
     }
 
+    /**
+     * gets the timing and allocation metrics of transforms applied by this document
+     *
+     * @return metrics
+     */
+    public TransformMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * sets the metrics, e.g. so that a bootstrap document reports to the metrics of its parent document
+     */
+    public void setMetrics(TransformMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Checks a flag indicating whether we should leave the splits as is (used
      * during some bootstrap routines)
@@ -1402,6 +1650,111 @@ public class Document extends DocumentData {
     }
 
 
+    /**
+     * Reads a binary snapshot, replacing the current content. The data blocks are only read when first accessed,
+     * until then the snapshot file is kept open
+     *
+     * @param file the snapshot file
+     */
+    public void readSnapshot(File file) throws IOException, CanceledException {
+        final SnapshotReader reader = new SnapshotReader(file);
+        final List<String> deferred;
+        snapshotReadError = null;
+        readingSnapshot = true;
+        try {
+            deferred = reader.read(this, true);
+        } catch (IOException ex) {
+            reader.close();
+            throw ex;
+        } finally {
+            readingSnapshot = false;
+        }
+        synchronized (deferredBlocks) {
+            if (deferred.size() > 0) {
+                snapshotReader = reader;
+                deferredBlocks.addAll(deferred);
+            } else
+                reader.close();
+        }
+    }
+
+    /**
+     * reads the named block from the snapshot, if it has not been read yet
+     *
+     * @param name the name of the block
+     */
+    protected void loadDeferredBlock(String name) {
+        synchronized (deferredBlocks) {
+            if (snapshotReader == null || name == null || !deferredBlocks.remove(name))
+                return;
+            readingSnapshot = true;
+            try {
+                snapshotReader.readBlock(this, name);
+            } catch (IOException ex) {
+                // the block is lost, so the document is no longer valid and updates fail:
+                Basic.caught(ex);
+                snapshotReadError = ex;
+                setValid(false);
+                new Alert(parent, "Failed to read " + name + " block from snapshot: " + ex.getMessage());
+            } finally {
+                readingSnapshot = false;
+                if (deferredBlocks.isEmpty())
+                    closeSnapshot();
+            }
+        }
+    }
+
+    /**
+     * reads all blocks from the snapshot that have not been read yet
+     */
+    void loadDeferredBlocks() {
+        synchronized (deferredBlocks) {
+            for (String name : SnapshotReader.DEFERRABLE_NAMES)
+                loadDeferredBlock(name);
+        }
+    }
+
+    /**
+     * is the named block still to be read from the snapshot?
+     *
+     * @param name the name of the block
+     * @return true, if deferred
+     */
+    public boolean isDeferredByName(String name) {
+        synchronized (deferredBlocks) {
+            return snapshotReader != null && deferredBlocks.contains(name);
+        }
+    }
+
+    /**
+     * the named block is being replaced, so it must not be read from the snapshot later
+     *
+     * @param name the name of the block
+     */
+    protected void discardDeferredBlock(String name) {
+        synchronized (deferredBlocks) {
+            if (deferredBlocks.remove(name) && deferredBlocks.isEmpty())
+                closeSnapshot();
+        }
+    }
+
+    /**
+     * closes the snapshot, dropping all blocks that have not been read
+     */
+    private void closeSnapshot() {
+        synchronized (deferredBlocks) {
+            deferredBlocks.clear();
+            if (snapshotReader != null) {
+                try {
+                    snapshotReader.close();
+                } catch (IOException ex) {
+                    Basic.caught(ex);
+                }
+                snapshotReader = null;
+            }
+        }
+    }
+
     /**
      * Open a new file
      *
@@ -1410,16 +1763,23 @@ public class Document extends DocumentData {
     public void open(Component parent, File file) throws IOException {
         clear();
 
-        setNumberLines(countNumberLines(file));
+        final boolean snapshot = SnapshotReader.isSnapshotFile(file);
         NexusStreamParser fp = null;
-        try {
-            fp = new NexusStreamParser(new FileReader(file));
-        } catch (FileNotFoundException e) {
-            new Alert(parent, "File open failed: " + e.getMessage());
+        if (!snapshot) {
+            setNumberLines(countNumberLines(file));
+            try {
+                fp = new NexusStreamParser(new FileReader(file));
+            } catch (FileNotFoundException e) {
+                new Alert(parent, "File open failed: " + e.getMessage());
+            }
         }
 
         try {
-            if (fp != null) {
+            if (snapshot) {
+                setFile(file);
+                setDirty(false);
+                readSnapshot(file);
+            } else if (fp != null) {
                 setFile(file);
                 setDirty(false);
                 fp.matchIgnoreCase("#nexus");
@@ -1567,6 +1927,31 @@ public class Document extends DocumentData {
         progressListener.setTasks(task, subtask);
     }
 
+    /**
+     * reports an intermediate network, such as a layout before it is optimized, so that it can be shown while
+     * the computation continues. The network must not be changed after it has been reported. Ignored in bootstrapping
+     */
+    public void notifyIntermediateNetwork(Network network) {
+        if (intermediateNetworkListener != null && !isInBootstrap())
+            intermediateNetworkListener.accept(network);
+    }
+
+    /**
+     * is anyone listening for intermediate networks?
+     *
+     * @return true, if intermediate networks are used
+     */
+    public boolean hasIntermediateNetworkListener() {
+        return intermediateNetworkListener != null && !isInBootstrap();
+    }
+
+    /**
+     * set the listener for intermediate networks, or null
+     */
+    public void setIntermediateNetworkListener(Consumer<Network> intermediateNetworkListener) {
+        this.intermediateNetworkListener = intermediateNetworkListener;
+    }
+
     /**
      * get the set progress listener
      *
@@ -1585,7 +1970,8 @@ public class Document extends DocumentData {
     }
 
     /**
-     * returns true, if given transform is applicable at current state of document
+     * returns true, if given transform is applicable at current state of document. Only the input block of
+     * the transform is read, if it is still to be read from a snapshot
      *
      * @return true, if transform applicable
      */
@@ -1593,26 +1979,26 @@ public class Document extends DocumentData {
         if (transform == null)
             return false;
         if (UnalignedTransform.class.isAssignableFrom(transform.getClass())) {
-            return taxa != null && unaligned != null &&
-                    ((UnalignedTransform) transform).isApplicable(this, taxa, unaligned);
+            return taxa != null && getUnaligned() != null &&
+                    ((UnalignedTransform) transform).isApplicable(this, taxa, getUnaligned());
         } else if (CharactersTransform.class.isAssignableFrom(transform.getClass())) {
-            return taxa != null && characters != null &&
-                    ((CharactersTransform) transform).isApplicable(this, taxa, characters);
+            return taxa != null && getCharacters() != null &&
+                    ((CharactersTransform) transform).isApplicable(this, taxa, getCharacters());
         } else if (DistancesTransform.class.isAssignableFrom(transform.getClass())) {
-            return taxa != null && distances != null &&
-                    ((DistancesTransform) transform).isApplicable(this, taxa, distances);
+            return taxa != null && getDistances() != null &&
+                    ((DistancesTransform) transform).isApplicable(this, taxa, getDistances());
         } else if (TreesTransform.class.isAssignableFrom(transform.getClass())) {
-            return taxa != null && trees != null &&
-                    ((TreesTransform) transform).isApplicable(this, taxa, trees);
+            return taxa != null && getTrees() != null &&
+                    ((TreesTransform) transform).isApplicable(this, taxa, getTrees());
         } else if (QuartetsTransform.class.isAssignableFrom(transform.getClass())) {
-            return taxa != null && quartets != null &&
-                    ((QuartetsTransform) transform).isApplicable(this, taxa, quartets);
+            return taxa != null && getQuartets() != null &&
+                    ((QuartetsTransform) transform).isApplicable(this, taxa, getQuartets());
         } else if (SplitsTransform.class.isAssignableFrom(transform.getClass())) {
-            return taxa != null && splits != null &&
-                    ((SplitsTransform) transform).isApplicable(this, taxa, splits);
+            return taxa != null && getSplits() != null &&
+                    ((SplitsTransform) transform).isApplicable(this, taxa, getSplits());
         } else if (ReticulateTransform.class.isAssignableFrom(transform.getClass())) {
-            return taxa != null && reticulate != null &&
-                    ((ReticulateTransform) transform).isApplicable(this, taxa, reticulate);
+            return taxa != null && getReticulate() != null &&
+                    ((ReticulateTransform) transform).isApplicable(this, taxa, getReticulate());
         } else
             return false;
     }
@@ -1883,6 +2269,7 @@ public class Document extends DocumentData {
                     throw new SplitsException("SAVE: Must specify FILE=filename");
                 boolean replace = np.findIgnoreCase(tokens, "replace=", "yes no", "no").equals("yes");
                 boolean append = np.findIgnoreCase(tokens, "append=", "yes no", "no").equals("yes");
+                boolean snapshot = np.findIgnoreCase(tokens, "format=", "nexus snapshot", "nexus").equals("snapshot");
 
                 List<String> blocks = null;
                 if (!np.findIgnoreCase(tokens, "data=all", true, false)) {
@@ -1894,7 +2281,21 @@ public class Document extends DocumentData {
                 if (!replace && file.exists())
                     throw new SplitsException("File exists: " + fname + ", use REPLACE=yes to overwrite");
 
-                if (blocks == null) // save all blocks
+                if (snapshot) // save all blocks as binary snapshot
+                {
+                    if (blocks != null || append)
+                        throw new SplitsException("SAVE: FORMAT=SNAPSHOT always saves all blocks, can't use DATA= or APPEND=");
+                    assumptions.setUptodate(true);
+                    try {
+                        SnapshotWriter.write(this, file);
+                    } catch (IOException ex) {
+                        assumptions.setUptodate(false);
+                        throw ex;
+                    }
+                    System.err.print(" all valid data (snapshot)\n");
+                    setFile(file);
+                    setDirty(false);
+                } else if (blocks == null) // save all blocks
                 {
                     FileWriter fw = new FileWriter(file, append);
                     assumptions.setUptodate(true);
@@ -1930,6 +2331,32 @@ public class Document extends DocumentData {
                 } finally {
                     jloda.util.Basic.restoreSystemErr(ps);
                 }
+            } else if (np.peekMatchIgnoreCase("show metrics")) // show transform metrics, or write them as JSON
+            {
+                List<String> tokens;
+                try {
+                    np.pushPunctuationCharacters("=;"); // filename punctuation
+                    tokens = np.getTokensRespectCase("show metrics", ";");
+                } catch (IOException ex) {
+                    np.popPunctuationCharacters();
+                    throw ex;
+                }
+                String fname = np.findIgnoreCase(tokens, "file=", null, null);
+                boolean clear = np.findIgnoreCase(tokens, "clear=", "yes no", "no").equals("yes");
+                np.checkFindDone(tokens);
+
+                if (fname != null) {
+                    try (FileWriter fw = new FileWriter(fname)) {
+                        getMetrics().writeJSON(fw);
+                    }
+                    System.err.println("Metrics written to: " + fname);
+                } else {
+                    StringWriter sw = new StringWriter();
+                    getMetrics().write(sw);
+                    System.out.print(sw);
+                }
+                if (clear)
+                    getMetrics().clear();
             } else if (np.peekMatchIgnoreCase("show")) // show named blocks to standard output
             {
                 np.matchIgnoreCase("show data");
@@ -2002,17 +2429,24 @@ public class Document extends DocumentData {
             {
                 np.matchIgnoreCase("open file=");
                 File file = new File(np.getWordFileNamePunctuation());
-                var fp = new NexusStreamParser(new FileReader(file));
-                setFile(file);
-                setDirty(false);
-                np.matchIgnoreCase(";");
-                try {
-                    fp.matchIgnoreCase("#nexus");
-                } catch (IOException ex) {
-                    throw new SplitsException
-                            ("NexusBlock file must start with #nexus");
+                if (SnapshotReader.isSnapshotFile(file)) {
+                    np.matchIgnoreCase(";");
+                    readSnapshot(file);
+                    setFile(file);
+                    setDirty(false);
+                } else {
+                    var fp = new NexusStreamParser(new FileReader(file));
+                    setFile(file);
+                    setDirty(false);
+                    np.matchIgnoreCase(";");
+                    try {
+                        fp.matchIgnoreCase("#nexus");
+                    } catch (IOException ex) {
+                        throw new SplitsException
+                                ("NexusBlock file must start with #nexus");
+                    }
+                    readNexus(fp);
                 }
-                readNexus(fp);
             } else if (np.peekMatchIgnoreCase("import")) // import a file with no update
             {
                 np.matchIgnoreCase("import file=");
@@ -2045,7 +2479,12 @@ public class Document extends DocumentData {
                     File file = new File(fname);
                     FileReader reader = new FileReader(file);
                     np.matchIgnoreCase(";");
-                    if (!NexusFileFilter.isNexusFile(file)) {
+                    if (SnapshotReader.isSnapshotFile(file)) {
+                        reader.close();
+                        readSnapshot(file);
+                        setFile(file);
+                        setDirty(false);
+                    } else if (!NexusFileFilter.isNexusFile(file)) {
                         reader.close();
                         String input = ImportManager.importData(new File(fname));
                         readNexus(new StringReader(input));
@@ -2186,8 +2625,8 @@ public class Document extends DocumentData {
             } else if (np.peekMatchIgnoreCase("update cycle;")) // update the cycle
             {
                 np.matchIgnoreCase("update cycle;");
-                if (taxa != null && splits != null) {
-                    SplitsUtilities.computeCycle(this, taxa, splits, assumptions.getLayoutStrategy());
+                if (taxa != null && getSplits() != null) {
+                    SplitsUtilities.computeCycle(this, taxa, getSplits(), assumptions.getLayoutStrategy());
                     update(Splits.NAME);
                 }
             } else if (np.peekMatchIgnoreCase("update")) // update a specific block
@@ -2200,8 +2639,18 @@ public class Document extends DocumentData {
             {
                 String block = np.convertToBlock("assume", ";", Assumptions.NAME);
                 readNexus(new StringReader(block));
+                // if the previous update was canceled, e.g. because it was superseded, must also redo its part:
+                if (interruptedUpdate != null) {
+                    assumptions.updateFirstDirtyBlock(interruptedUpdate);
+                    interruptedUpdate = null;
+                }
                 // System.err.println("first dirty: "+assumptions.getFirstDirtyBlock());
-                update(assumptions.getFirstDirtyBlock());
+                try {
+                    update(assumptions.getFirstDirtyBlock());
+                } catch (CanceledException ex) {
+                    interruptedUpdate = assumptions.getFirstDirtyBlock();
+                    throw ex;
+                }
             } else if (np.peekMatchIgnoreCase("cycle")) // set the cycle
             {
                 np.matchIgnoreCase("cycle");
@@ -2413,7 +2862,7 @@ public class Document extends DocumentData {
 
             } else if (isExpert && np.peekMatchIgnoreCase("haplotypes")) {
                 np.matchIgnoreCase("haplotypes");
-                Document newDoc = CharactersUtilities.collapseByType(taxa, characters, distances, this);
+                Document newDoc = CharactersUtilities.collapseByType(taxa, getCharacters(), getDistances(), this);
                 setTaxa(newDoc.getTaxa());
                 setCharacters(newDoc.getCharacters());
                 setDistances(newDoc.getDistances());
@@ -2430,7 +2879,8 @@ public class Document extends DocumentData {
                     if (partition == null)
                         new Alert("There is no partition with name " + name);
                     else {
-                        SplitMatrix M = MultiGeneAnalysis.multiGene(this, partition);
+                        SplitMatrix M = MultiGeneAnalysis.multiGene(this, partition, (block, blockSplits, splitMatrix) ->
+                                System.err.println("Gene " + partition.getBlockName(block) + ": " + blockSplits.getNsplits() + " splits"));
                         for (int j = 1; j <= M.getNblocks(); j++)
                             System.out.print("\t" + partition.getBlockName(j));
                         for (int i = 1; i <= M.getNsplits(); i++) {
@@ -2507,13 +2957,13 @@ public class Document extends DocumentData {
     public static void showUsage(PrintStream ps) {
         ps.println("Summary of commands applicable in commandline-mode:");
         ps.println("\tEXECUTE FILE=file - open and execute a file in Nexus-format");
-        ps.println("\tOPEN FILE=file - open (but don't execute) a file in Nexus-format");
+        ps.println("\tOPEN FILE=file - open (but don't execute) a file in Nexus-format or a snapshot");
         ps.println("\tIMPORT FILE=file [DATATYPE={PROTEIN|RNA|DNA|STANDARD|UNKNOWN}]");
         ps.println("\t\t- open (but don't execute) a file in non-Nexus or old-Nexus format");
         ps.println("\tLOAD FILE=file - open or import a file");
         ps.println("\tLOAD TREEFILES=file1 .. filen - load trees from a list of files");
         ps.println("\tLOAD CHARFILES=file1 .. filen - concatenate sequences from a list of files");
-        ps.println("\tSAVE FILE=file [REPLACE={YES|NO}] [APPEND={YES|NO}] [DATA={ALL|list-of-blocks}]");
+        ps.println("\tSAVE FILE=file [REPLACE={YES|NO}] [APPEND={YES|NO}] [DATA={ALL|list-of-blocks}] [FORMAT={NEXUS|SNAPSHOT}]");
         ps.println("\t\t- save all data or named blocks to a file in Nexus format");
         ps.println("\tEXPORT FILE=file FORMAT=format [REPLACE={YES|NO}] [APPEND={YES|NO}] [DATA=list-of-blocks]");
         ps.println("\t\t - export data in the named format");
@@ -2526,6 +2976,7 @@ public class Document extends DocumentData {
         ps.println("\tDELETEEXCLUDED; - delete all sites from characters block that are currently excluded");
         ps.println("\tASSUME assumption - set an assumption, which can be anything contained in the ST_ASSUMPTIONS block");
         ps.println("\tSHOW [DATA=list-of-blocks] - show the named data blocks");
+        ps.println("\tSHOW METRICS [FILE=file] [CLEAR={YES|NO}] - show time and memory used by transforms, or save as JSON report");
         ps.println("\tCYCLE {KEEP|cycle} - set the graph layout cycle to KEEP or to a given cycle");
         ps.println("\tHELP - show this info");
         ps.println("\tHELP DATA=list-of-blocks - show syntax of named blocks");
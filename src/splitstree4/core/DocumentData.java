@@ -106,6 +106,7 @@ public class DocumentData {
      */
 
     public void setUnaligned(Unaligned unaligned) {
+        discardDeferredBlock(Unaligned.NAME);
         this.unaligned = unaligned;
     }
 
@@ -116,6 +117,7 @@ public class DocumentData {
      */
 
     public Unaligned getUnaligned() {
+        loadDeferredBlock(Unaligned.NAME);
         return this.unaligned;
     }
 
@@ -126,6 +128,7 @@ public class DocumentData {
      */
 
     public void setCharacters(Characters characters) {
+        discardDeferredBlock(Characters.NAME);
         this.characters = characters;
     }
 
@@ -136,6 +139,7 @@ public class DocumentData {
      */
 
     public Characters getCharacters() {
+        loadDeferredBlock(Characters.NAME);
         return this.characters;
     }
 
@@ -146,6 +150,7 @@ public class DocumentData {
      */
 
     public Distances getDistances() {
+        loadDeferredBlock(Distances.NAME);
         return this.distances;
     }
 
@@ -156,6 +161,7 @@ public class DocumentData {
      */
 
     public void setDistances(Distances distances) {
+        discardDeferredBlock(Distances.NAME);
         this.distances = distances;
     }
 
@@ -166,6 +172,7 @@ public class DocumentData {
      */
 
     public void setQuartets(Quartets quartets) {
+        discardDeferredBlock(Quartets.NAME);
         this.quartets = quartets;
     }
 
@@ -177,6 +184,7 @@ public class DocumentData {
      */
 
     public void setSplits(Splits splits) {
+        discardDeferredBlock(Splits.NAME);
         this.splits = splits;
     }
 
@@ -202,6 +210,7 @@ public class DocumentData {
      *
      */
     public void setTrees(Trees trees) {
+        discardDeferredBlock(Trees.NAME);
         this.trees = trees;
     }
 
@@ -212,6 +221,7 @@ public class DocumentData {
      */
 
     public Quartets getQuartets() {
+        loadDeferredBlock(Quartets.NAME);
         return this.quartets;
     }
 
@@ -222,6 +232,7 @@ public class DocumentData {
      */
 
     public Splits getSplits() {
+        loadDeferredBlock(Splits.NAME);
         return this.splits;
     }
 
@@ -236,6 +247,7 @@ public class DocumentData {
      * @return trees
      */
     public Trees getTrees() {
+        loadDeferredBlock(Trees.NAME);
         return trees;
     }
 
@@ -264,6 +276,7 @@ public class DocumentData {
      *
      */
     public Reticulate getReticulate() {
+        loadDeferredBlock(Reticulate.NAME);
         return reticulate;
     }
 
@@ -272,6 +285,7 @@ public class DocumentData {
      *
      */
     public void setReticulate(Reticulate reticulate) {
+        discardDeferredBlock(Reticulate.NAME);
         this.reticulate = reticulate;
     }
 
@@ -322,6 +336,32 @@ public class DocumentData {
         return traits;
     }
 
+    /**
+     * loads the named block, if it is still to be read from a snapshot. Nothing to do here, see Document
+     *
+     * @param name the name of the block
+     */
+    protected void loadDeferredBlock(String name) {
+    }
+
+    /**
+     * forgets that the named block is still to be read from a snapshot, as it is being replaced. Nothing to do here, see Document
+     *
+     * @param name the name of the block
+     */
+    protected void discardDeferredBlock(String name) {
+    }
+
+    /**
+     * is the named block still to be read from a snapshot? Nothing deferred here, see Document
+     *
+     * @param name the name of the block
+     * @return true, if deferred
+     */
+    public boolean isDeferredByName(String name) {
+        return false;
+    }
+
     /**
      * is this block valid?
      *
@@ -338,6 +378,7 @@ public class DocumentData {
      * @return NexusBlock block with that name, or null if there is none.
      */
     public NexusBlock getBlockByName(String name) {
+        loadDeferredBlock(name);
         if (Assumptions.NAME.equalsIgnoreCase(name))
             return assumptions;
         if (Taxa.NAME.equalsIgnoreCase(name))
@@ -370,12 +411,23 @@ public class DocumentData {
     }
 
     /**
-     * returns true, if named block is valid, false, else
+     * returns true, if named block is valid, false, else. A block that is still to be read from a snapshot
+     * counts as valid and is not read
      *
      * @return block is valid
      */
     public boolean isValidByName(String name) {
-        return isValid(getBlockByName(name));
+        return isDeferredByName(name) || isValid(getBlockByName(name));
+    }
+
+    /**
+     * returns true, if named block is present, valid or not. A block that is still to be read from a snapshot
+     * counts as present and is not read
+     *
+     * @return block is present
+     */
+    public boolean isPresentByName(String name) {
+        return isDeferredByName(name) || getBlockByName(name) != null;
     }
 
 
@@ -385,19 +437,19 @@ public class DocumentData {
      * @return top valid block or null
      */
     public String getNameTop() {
-        if (isValid(unaligned))
+        if (isValidByName(Unaligned.NAME))
             return Unaligned.NAME;
-        if (isValid(characters))
+        if (isValidByName(Characters.NAME))
             return Characters.NAME;
-        if (isValid(distances))
+        if (isValidByName(Distances.NAME))
             return Distances.NAME;
-        if (isValid(trees))
+        if (isValidByName(Trees.NAME))
             return Trees.NAME;
-        if (isValid(quartets))
+        if (isValidByName(Quartets.NAME))
             return Quartets.NAME;
-        if (isValid(splits))
+        if (isValidByName(Splits.NAME))
             return Splits.NAME;
-        if (isValid(reticulate))
+        if (isValidByName(Reticulate.NAME))
             return Reticulate.NAME;
         // sets can't be top, only data blocks
         //  if (isValid(sets))
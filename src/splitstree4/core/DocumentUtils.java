@@ -18,9 +18,11 @@
  */
 package splitstree4.core;
 
+import jloda.phylo.PhyloTree;
 import jloda.swing.util.Alert;
 import jloda.util.Basic;
-import splitstree4.externalIO.exports.NewickTree;
+import jloda.util.parse.NexusStreamParser;
+import jloda.util.progress.ProgressSilent;
 import splitstree4.externalIO.imports.ImportManager;
 import splitstree4.nexus.Characters;
 import splitstree4.nexus.Sets;
@@ -29,10 +31,12 @@ import splitstree4.nexus.Trees;
 import splitstree4.util.NexusFileFilter;
 import splitstree4.util.Partition;
 
-import java.io.File;
-import java.io.StringReader;
-import java.io.StringWriter;
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * some additional commands
@@ -40,207 +44,406 @@ import java.util.*;
  */
 public class DocumentUtils {
     /**
-     * load trees from multiple files
+     * load trees from multiple files. A first pass determines the taxa of all files, in parallel, reading only
+     * the taxa block where present. The files are then parsed one after the other, and the trees of each file are
+     * added directly to a single trees block, in the order of the files
      *
 	 */
     static public void loadMultipleTreeFiles(List<String> files, Document doc) {
         if (files == null || files.size() == 0)
             return;
-        final StringBuilder buf = new StringBuilder();
-        for (var fileName : files) {
-            final File file = new File(fileName);
-            if (!file.exists() || !file.canRead()) {
-                new Alert("Cannot open: " + fileName);
-                continue;
-            }
-            try {
-                Document doci = new Document();
-                if (NexusFileFilter.isNexusFile(file)) {
-                    System.err.println("Attempting to read tree in format: NEXUS");
-                    doci.open(null, file);
-                    System.err.println("done");
-                } else
-                    doci.readNexus(new StringReader(ImportManager.importData(file)));
-
-                final NewickTree exporter = new NewickTree();
-                final List<String> list = new ArrayList<>();
-                list.add(Trees.NAME);
-                StringWriter sw = new StringWriter();
-                if (exporter.isApplicable(doci, list)) {
-					exporter.apply(sw, doci, list);
-					buf.append(sw);
-                } else
-                    throw new Exception("No trees");
-            } catch (Exception ex) {
-                Basic.caught(ex);
-                new Alert("Import trees failed for file=" + fileName + ": " + ex.getMessage());
-            }
-        }
-        if (buf.toString().length() > 0) {
-            try {
-                doc.readNexus(new StringReader(ImportManager.importDataFromString(buf.toString())));
-                System.err.println("Number of trees loaded: " + (doc.isValidByName(Trees.NAME) ?
-                        doc.getTrees().getNtrees() : 0));
-
-            } catch (Exception ex) {
-                new Alert("Import trees failed: " + ex.getMessage());
+        final List<File> inputFiles = getReadableFiles(files);
+        final Exception[] errors = new Exception[inputFiles.size()];
+
+        // first pass: taxa are all labels found in any file, in order of first occurrence
+        final List<List<String>> file2labels = applyInParallel(inputFiles, errors, (index, file) -> readTreesTaxa(file));
+        reportErrors(inputFiles, errors, "Import trees failed");
+
+        final Set<String> labels = new LinkedHashSet<>();
+        final List<File> usedFiles = new ArrayList<>();
+        for (int i = 0; i < inputFiles.size(); i++) {
+            if (file2labels.get(i) != null) {
+                labels.addAll(file2labels.get(i));
+                usedFiles.add(inputFiles.get(i));
+            }
+        }
+        if (labels.size() == 0)
+            return;
+
+        try {
+            final Taxa taxa = new Taxa();
+            final Map<String, String> translate = new HashMap<>();
+            for (String label : labels) {
+                taxa.add(label);
+                translate.put(label, label);
+            }
+            final Trees trees = new Trees();
+            trees.setTranslate(translate);
+            trees.setRooted(true);
+
+            // second pass: parse the files in order, adding their trees as they are read
+            int count = 0;
+            for (File file : usedFiles) {
+                final Document doci;
+                try {
+                    doci = readFile(file);
+                    if (!doci.isValidByName(Trees.NAME))
+                        throw new Exception("No trees");
+                } catch (Exception ex) {
+                    Basic.caught(ex);
+                    new Alert("Import trees failed for file=" + file + ": " + ex.getMessage());
+                    continue;
+                }
+                final Trees treesi = doci.getTrees();
+                for (int i = 1; i <= treesi.getNtrees(); i++) {
+                    final PhyloTree tree = treesi.getTree(i);
+                    // label nodes by taxa, rather than by the node labels used in the file
+                    int treeLabels = 0;
+                    for (var v : tree.nodes()) {
+                        final String label = tree.getLabel(v);
+                        if (label != null && treesi.getTranslate().get(label) != null)
+                            tree.setLabel(v, treesi.getTranslate().get(label));
+                        if (tree.getLabel(v) != null)
+                            treeLabels++;
+                    }
+                    if (treeLabels < labels.size())
+                        trees.setPartial(true);
+                    trees.addTree("t" + (++count), tree, taxa);
+                }
             }
+            if (count == 0)
+                return;
+            setTaxa(doc, taxa);
+            doc.setTrees(trees);
+            System.err.println("Number of trees loaded: " + trees.getNtrees());
+        } catch (Exception ex) {
+            Basic.caught(ex);
+            new Alert("Import trees failed: " + ex.getMessage());
         }
     }
 
     /**
-     * concatenates the sequences found in the different files. Each file must contain precisely the
-     * same set of taxa
+     * concatenates the sequences found in the different files. Taxa not present in all files are omitted.
+     * The files are read twice, in parallel: the first pass only parses the taxa block and the dimensions and format
+     * of the characters block of each file, the second copies the sequences directly into the concatenated block
      *
 	 */
-    static public void concatenateSequences(List files, Document doc) {
+    static public void concatenateSequences(List<String> files, Document doc) {
         if (files == null || files.size() == 0)
             return;
 
-        int count = 0;        //Number of files read in so far.
-        final Map taxon2sequence = new HashMap(); // maps taxa to sequences
-
-        int currentPos = 1;
-        final Partition partition = new Partition();
-        final Sets sets = new Sets();
+        final List<File> inputFiles = getReadableFiles(files);
+        final Exception[] errors = new Exception[inputFiles.size()];
 
-        final Set usedNames = new HashSet();
-        final Map taxaOmitted = new TreeMap();
+        // first pass: determine taxa, number of characters and format of each file, without reading the matrices
+        final List<CharactersInfo> infos = applyInParallel(inputFiles, errors, (index, file) -> readCharactersHeader(file));
+        reportErrors(inputFiles, errors, "Concatenate sequences failed");
 
-        for (Object file1 : files) {
-            final String fileName = (String) file1;
-            final File file = new File(fileName);
-            if (!file.exists() || !file.canRead()) {
-                new Alert("Cannot open: " + fileName);
-                continue;
-            }
-
-            try {
-                Document doci = new Document();
-                if (NexusFileFilter.isNexusFile(file)) {
-                    System.err.println("Attempting to read characters in format: NEXUS");
-                    doci.open(null, file);
-                    System.err.println("done");
-                } else
-                    doci.readNexus(new StringReader(ImportManager.importData(file)));
-
-                if (!doci.isValidByName(Taxa.NAME)
-                        || !doci.isValidByName(Characters.NAME))
-                    throw new Exception("No character sequences found in file");
-
-                //Extract a valid block name from the filename, dealing with duplicate files\
-                //as necessary.
-                String name = file.getName();
-                int pos = name.lastIndexOf('.');
-                if (pos > 0)
-                    name = name.substring(0, pos);
-
-                int copyNumber = 2;
-                while (usedNames.contains(name)) {
-                    if (name.lastIndexOf('_') != -1)
-                        name = name.substring(0, name.lastIndexOf('_'));
-                    name = name + "_" + copyNumber;
-                    copyNumber++;
-                }
-                usedNames.add(name);
-
-                //Check the taxa... that there are no duplicates and that
-                //every taxa was present in the first file.
-                //If there are taxa that are not present, they are recorded in taxaOmitted.
-                //Valid taxa have their sequences stored in geneSequences.
-                HashMap geneSequences = new HashMap();
-
-                Set seen = new HashSet();
-                for (int t = 1; t <= doci.getTaxa().getNtax(); t++) {
-                    String label = doci.getTaxa().getLabel(t);
-                    if (count == 0)
-                        taxon2sequence.put(label, new StringBuffer());
-                    if (count > 0 && taxon2sequence.get(label) == null) {
-                        String geneList = ((String) taxaOmitted.get(label));
-                        if (geneList == null)
-                            geneList = "";
-                        else
-                            geneList += ", ";
-                        taxaOmitted.put(label, geneList + name);
-                    } else
-                        geneSequences.put(label, doci.getCharacters().getRowAsString(t));
-                    if (seen.contains(label))
-                        throw new Exception("Multple occurrence of taxon: " + label);
-                    seen.add(label);
-                }
+        final List<File> usedFiles = new ArrayList<>();
+        final List<CharactersInfo> usedInfos = new ArrayList<>();
+        for (int i = 0; i < inputFiles.size(); i++) {
+            if (infos.get(i) != null) {
+                usedFiles.add(inputFiles.get(i));
+                usedInfos.add(infos.get(i));
+            }
+        }
+        if (usedInfos.size() == 0)
+            return;
 
-                count++;
-
-                //Above we looped through taxa in the gene. Now we loop through taxa present
-                //in previous genes. If there are any that are not present in this gene then they
-                //must be removed. Note sure how to manage the iterator, so I just keep a list of those
-                //to remove and delete them in a second pass.
-
-                List taxaToRemove = new LinkedList();
-
-                for (Object o : taxon2sequence.keySet()) {
-                    String label = (String) o;
-                    String seq = (String) geneSequences.get(label);
-                    if (seq != null) {
-                        StringBuffer bufi = (StringBuffer) taxon2sequence.get(label);
-                        bufi.append(seq);
-                        taxon2sequence.put(label, bufi);
-                    } else {
-                        //label not present in this gene. Should be omitted from all preceeding genes.
-                        String geneList = "";
-                        for (Iterator it2 = usedNames.iterator(); it2.hasNext(); ) {
-                            String gname = (String) it2.next();
-                            if (gname.equals(name))   //Don't put the current gene.
-                                continue;
-                            if (geneList.length() > 0)
-                                geneList += ", ";
-                            geneList += (String) it2.next();
-                        }
-                        taxaOmitted.put(label, geneList);
-                        taxaToRemove.add(label);
-                    }
-                }
+        //Extract a valid block name from each filename, dealing with duplicate files
+        //as necessary, and determine the position of each file in the concatenated sequences.
+        final List<String> names = new ArrayList<>();
+        final int[] offsets = new int[usedInfos.size()];
+        final Partition partition = new Partition();
+        final Sets sets = new Sets();
+        int currentPos = 1;
+        for (int i = 0; i < usedFiles.size(); i++) {
+            final String fileName = usedFiles.get(i).getName();
+            String name = (fileName.lastIndexOf('.') > 0 ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName);
+            final String baseName = name;
+            int copyNumber = 2;
+            while (names.contains(name))
+                name = baseName + "_" + (copyNumber++);
+            names.add(name);
 
-                for (Object aTaxaToRemove : taxaToRemove) taxon2sequence.remove(aTaxaToRemove);
+            offsets[i] = currentPos - 1;
+            final int newPos = currentPos + usedInfos.get(i).nchar - 1;
+            partition.addBlock(currentPos, newPos, fileName);
+            sets.addCharSet(name, currentPos, newPos);
+            currentPos = newPos + 1;
+        }
+        sets.addCharPartition("input", partition);
+        final int nchar = currentPos - 1;
 
-                //Add the block into the character partition.
-                int newPos = currentPos + doci.getCharacters().getNchar() - 1;
-                partition.addBlock(currentPos, newPos, file.getName());
-                sets.addCharSet(name, currentPos, newPos);
-                currentPos = newPos + 1;
+        // taxa are those present in all files, in the order of the first file:
+        final Map<String, String> taxaOmitted = new TreeMap<>();
+        final Taxa taxa = new Taxa();
+        final Set<String> allLabels = new LinkedHashSet<>();
+        for (CharactersInfo info : usedInfos)
+            allLabels.addAll(Arrays.asList(info.labels));
+        for (String label : allLabels) {
+            final StringBuilder missing = new StringBuilder();
+            for (int i = 0; i < usedInfos.size(); i++) {
+                if (!usedInfos.get(i).labelSet.contains(label))
+                    missing.append(missing.length() > 0 ? ", " : "").append(names.get(i));
+            }
+            if (missing.length() == 0)
+                taxa.add(label);
+            else
+                taxaOmitted.put(label, "missing from " + missing);
+        }
+        if (taxa.getNtax() == 0) {
+            new Alert("Concatenate sequences failed: no taxa present in all files");
+            return;
+        }
 
+        // gap and missing characters are determined by the headers, datatype and symbols once the sequences are known
+        final Characters.Format format = (Characters.Format) usedInfos.get(0).format.clone();
+        final Characters characters = new Characters(taxa.getNtax(), nchar, format);
 
-            } catch (Exception ex) {
-                Basic.caught(ex);
-                new Alert("Concatenate sequences failed for file=" + fileName + ": " + ex.getMessage());
+        // second pass: copy the sequences of each file into its range of columns
+        final Exception[] copyErrors = new Exception[usedFiles.size()];
+        final List<Characters.Format> formats = applyInParallel(usedFiles, copyErrors, (index, file) -> {
+            final Document doci = readFile(file);
+            if (!doci.isValidByName(Characters.NAME) || doci.getCharacters().getNchar() != usedInfos.get(index).nchar)
+                throw new IOException("File changed while reading");
+            final Characters charactersi = doci.getCharacters();
+            final char gap = charactersi.getFormat().getGap();
+            final char missing = charactersi.getFormat().getMissing();
+            for (int t = 1; t <= taxa.getNtax(); t++) {
+                final int ti = doci.getTaxa().indexOf(taxa.getLabel(t));
+                if (ti <= 0)
+                    throw new IOException("File changed while reading, taxon not found: " + taxa.getLabel(t));
+                for (int c = 1; c <= charactersi.getNchar(); c++) {
+                    final char ch = charactersi.get(ti, c);
+                    characters.set(t, offsets[index] + c, ch == gap ? format.getGap() : ch == missing ? format.getMissing() : ch);
+                }
+            }
+            return charactersi.getFormat();
+        });
+        for (int i = 0; i < copyErrors.length; i++) {
+            if (copyErrors[i] != null) {
+                Basic.caught(copyErrors[i]);
+                new Alert("Concatenate sequences failed for file=" + usedFiles.get(i) + ": " + copyErrors[i].getMessage());
+                return;
             }
         }
-        sets.addCharPartition("input", partition);
-        if (taxon2sequence.size() != 0) {
-            try {
-                StringBuilder buf = new StringBuilder();
-                for (Object o : taxon2sequence.keySet()) {
-                    String label = (String) o;
-                    buf.append("> ").append(label).append("\n");
-                    buf.append(taxon2sequence.get(label)).append("\n");
-                }
-                doc.readNexus(new StringReader(ImportManager.importDataFromString(buf.toString())));
-                doc.setSets(sets);
 
-                System.err.println("Number of sequence files concatenated: " + count);
-            } catch (Exception ex) {
-                new Alert("Concatenate sequences failed: " + ex.getMessage());
+        // an unknown datatype is only resolved when the matrix is read, so combine the formats obtained in the second pass:
+        characters.getFormat().setDatatype(formats.get(0).getDatatype());
+        characters.getFormat().setSymbols(formats.get(0).getSymbols());
+        for (Characters.Format formati : formats) {
+            if (!formati.getDatatype().equals(formats.get(0).getDatatype())) {
+                final StringBuilder symbols = new StringBuilder();
+                for (Characters.Format other : formats)
+                    symbols.append(other.getSymbols());
+                characters.getFormat().setDatatype(Characters.Datatypes.UNKNOWN);
+                characters.getFormat().setSymbols(symbols.toString());
+                break;
             }
         }
+        characters.computeColors();
+
+        try {
+            setTaxa(doc, taxa);
+            doc.setCharacters(characters);
+            doc.setSets(sets);
+            System.err.println("Number of sequence files concatenated: " + usedFiles.size());
+        } catch (Exception ex) {
+            new Alert("Concatenate sequences failed: " + ex.getMessage());
+        }
+
         if (!taxaOmitted.isEmpty()) {
             String alert = "Omitted " + taxaOmitted.size() + " taxa that were not present in all files. ";
-            alert += "" + doc.getTaxa().getNtax() + " taxa remain.";
+            alert += "" + taxa.getNtax() + " taxa remain.";
             new Alert(alert);
             System.err.println("Taxa Omitted\n============\n");
-            for (Object o : taxaOmitted.keySet()) {
-                String label = (String) o;
+            for (String label : taxaOmitted.keySet()) {
                 System.err.println(label + "\t:\t" + taxaOmitted.get(label));
             }
         }
     }
+
+    /**
+     * replaces all data in the document by the given taxa
+     */
+    private static void setTaxa(Document doc, Taxa taxa) throws IOException {
+        final StringWriter w = new StringWriter();
+        taxa.write(w);
+        doc.readNexus(new StringReader(w.toString()));
+    }
+
+    /**
+     * reads a nexus file or imports a file in some other format into a new document, without updating it
+     *
+     * @return document
+     */
+    private static Document readFile(File file) throws IOException {
+        final Document doc = new Document();
+        doc.setProgressListener(new ProgressSilent());
+        if (NexusFileFilter.isNexusFile(file)) {
+            try (Reader r = new BufferedReader(new FileReader(file))) {
+                doc.readNexus(r);
+            }
+        } else
+            doc.readNexus(new StringReader(ImportManager.importData(file)));
+        return doc;
+    }
+
+    /**
+     * determines the taxa, number of characters and format of a file, parsing only the taxa block and the
+     * dimensions and format of the characters block. Falls back to reading the whole file, if the characters block
+     * does not immediately follow the taxa block, or if the taxon labels must be detected from the matrix
+     *
+     * @return taxa and dimensions of the characters
+     */
+    private static CharactersInfo readCharactersHeader(File file) throws Exception {
+        try (Reader r = (NexusFileFilter.isNexusFile(file) ? new BufferedReader(new FileReader(file)) : new StringReader(ImportManager.importData(file)))) {
+            final NexusStreamParser np = new NexusStreamParser(r);
+            if (np.peekMatchIgnoreCase("#nexus"))
+                np.matchIgnoreCase("#nexus");
+            if (np.peekMatchBeginBlock(Taxa.NAME)) {
+                final Taxa taxa = new Taxa();
+                taxa.read(np);
+                if (!taxa.getMustDetectLabels() && np.peekMatchBeginBlock(Characters.NAME)) {
+                    final Characters characters = new Characters();
+                    characters.readDimensionsAndFormat(np, taxa);
+                    return new CharactersInfo(taxa, characters);
+                }
+            }
+        }
+        final Document doc = readFile(file);
+        if (!doc.isValidByName(Taxa.NAME) || !doc.isValidByName(Characters.NAME))
+            throw new Exception("No character sequences found in file");
+        return new CharactersInfo(doc.getTaxa(), doc.getCharacters());
+    }
+
+    /**
+     * determines the taxon labels of a file of trees. Only the taxa block is parsed, if the file starts with one
+     * that lists the labels, otherwise the file is read and the labels are collected from its trees
+     *
+     * @return labels
+     */
+    private static List<String> readTreesTaxa(File file) throws Exception {
+        try (Reader r = (NexusFileFilter.isNexusFile(file) ? new BufferedReader(new FileReader(file)) : new StringReader(ImportManager.importData(file)))) {
+            final NexusStreamParser np = new NexusStreamParser(r);
+            if (np.peekMatchIgnoreCase("#nexus"))
+                np.matchIgnoreCase("#nexus");
+            if (np.peekMatchBeginBlock(Taxa.NAME)) {
+                final Taxa taxa = new Taxa();
+                taxa.read(np);
+                if (!taxa.getMustDetectLabels()) {
+                    final List<String> labels = new ArrayList<>(taxa.getNtax());
+                    for (int t = 1; t <= taxa.getNtax(); t++)
+                        labels.add(taxa.getLabel(t));
+                    return labels;
+                }
+            }
+        }
+        final Document doc = readFile(file);
+        if (!doc.isValidByName(Trees.NAME))
+            throw new Exception("No trees");
+        final Trees trees = doc.getTrees();
+        final Set<String> labels = new LinkedHashSet<>();
+        for (int i = 1; i <= trees.getNtrees(); i++) {
+            final PhyloTree tree = trees.getTree(i);
+            for (var v : tree.nodes()) {
+                final String label = tree.getLabel(v);
+                if (label != null)
+                    labels.add(trees.getTranslate().get(label) != null ? trees.getTranslate().get(label) : label);
+            }
+        }
+        return new ArrayList<>(labels);
+    }
+
+    /**
+     * gets all files that can be read, alerting for all others
+     *
+     * @return readable files
+     */
+    private static List<File> getReadableFiles(List<String> fileNames) {
+        final List<File> files = new ArrayList<>();
+        for (String fileName : fileNames) {
+            final File file = new File(fileName);
+            if (!file.exists() || !file.canRead())
+                new Alert("Cannot open: " + fileName);
+            else
+                files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * applies a task to all files, in parallel
+     *
+     * @param errors for each file, the exception thrown by the task, or null
+     * @return for each file, in the same order, the result of the task, or null
+     */
+    private static <T> List<T> applyInParallel(List<File> files, Exception[] errors, FileTask<T> task) {
+        final int numberOfWorkers = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        final ExecutorService executor = Executors.newFixedThreadPool(numberOfWorkers);
+        final List<T> results = new ArrayList<>(files.size());
+        try {
+            final List<Future<T>> futures = new ArrayList<>(files.size());
+            for (int i = 0; i < files.size(); i++) {
+                final int index = i;
+                futures.add(executor.submit(() -> task.apply(index, files.get(index))));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                T result = null;
+                try {
+                    result = futures.get(i).get();
+                } catch (ExecutionException ex) {
+                    errors[i] = (ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    errors[i] = ex;
+                }
+                results.add(result);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * reports the files for which a task failed
+     */
+    private static void reportErrors(List<File> files, Exception[] errors, String message) {
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] != null) {
+                Basic.caught(errors[i]);
+                new Alert(message + " for file=" + files.get(i) + ": " + errors[i].getMessage());
+            }
+        }
+    }
+
+    /**
+     * a task applied to a single file
+     */
+    private interface FileTask<T> {
+        T apply(int index, File file) throws Exception;
+    }
+
+    /**
+     * taxa, number of characters and format of a file, as determined in the first pass of concatenation
+     */
+    private static class CharactersInfo {
+        final String[] labels;
+        final Set<String> labelSet = new HashSet<>();
+        final int nchar;
+        final Characters.Format format;
+
+        CharactersInfo(Taxa taxa, Characters characters) throws IOException {
+            labels = new String[taxa.getNtax()];
+            for (int t = 1; t <= taxa.getNtax(); t++) {
+                labels[t - 1] = taxa.getLabel(t);
+                if (!labelSet.add(labels[t - 1]))
+                    throw new IOException("Multiple occurrence of taxon: " + labels[t - 1]);
+            }
+            nchar = characters.getNchar();
+            format = characters.getFormat();
+        }
+    }
 }
@@ -0,0 +1,269 @@
+/*
+ * SnapshotReader.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.core;
+
+import jloda.util.CanceledException;
+import splitstree4.nexus.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * reads a binary snapshot of a document, as written by SnapshotWriter. The file is memory-mapped and blocks
+ * can be read one at a time, as needed. Document reads the network and the small blocks when opening a snapshot
+ * and the data blocks only when they are first accessed. Nexus remains the format for exchanging data, snapshots are only
+ * meant for reopening large projects quickly.
+ * <p/>
+ * Format: the magic bytes, the version (int) and the offset of the table of sections (long), followed by
+ * the sections and the table. The table consists of the number of sections (int) and, for each section,
+ * its name (UTF), encoding (byte), offset (long) and length (long). A section either contains the nexus
+ * text of a block, in UTF-8, or the block in the binary format written by its writeBinary method
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class SnapshotReader implements Closeable {
+    static final byte[] MAGIC = {'S', 'T', '4', 'S', 'N', 'A', 'P', '\n'};
+    static final int VERSION = 1;
+    static final byte TEXT = 0;
+    static final byte BINARY = 1;
+    static final String TOP_COMMENTS = "TopComments";
+
+    /**
+     * the blocks, in the order in which they are written and read
+     */
+    static final String[] BLOCK_NAMES = {Taxa.NAME, Unaligned.NAME, Characters.NAME, Distances.NAME, Sets.NAME, Quartets.NAME,
+            Trees.NAME, Splits.NAME, Reticulate.NAME, Network.NAME, Bootstrap.NAME, Traits.NAME, Analysis.NAME, Assumptions.NAME};
+
+    /**
+     * the data blocks whose reading can be deferred until they are needed
+     */
+    static final String[] DEFERRABLE_NAMES = {Unaligned.NAME, Characters.NAME, Distances.NAME, Quartets.NAME, Trees.NAME,
+            Splits.NAME, Reticulate.NAME};
+
+    private final FileChannel channel;
+    private final int version;
+    private final List<Section> sections = new ArrayList<>();
+
+    /**
+     * opens a snapshot file and reads its table of sections
+     *
+     * @param file the file
+     */
+    public SnapshotReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 12);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < header.capacity() || !Arrays.equals(MAGIC, get(header, new byte[MAGIC.length])))
+                throw new IOException("Not a snapshot file: " + file);
+            version = header.getInt();
+            if (version > VERSION)
+                throw new IOException("Unsupported snapshot version: " + version);
+            final long tableOffset = header.getLong();
+
+            final ByteBuffer table = map(tableOffset, channel.size() - tableOffset);
+            final DataInputStream ins = new DataInputStream(new ByteArrayInputStream(get(table, new byte[table.remaining()])));
+            final int count = ins.readInt();
+            for (int i = 0; i < count; i++) {
+                sections.add(new Section(ins.readUTF(), ins.readByte(), ins.readLong(), ins.readLong()));
+            }
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * does the file look like a snapshot?
+     *
+     * @return true, if the file starts with the snapshot magic bytes
+     */
+    public static boolean isSnapshotFile(File file) {
+        try (InputStream ins = new FileInputStream(file)) {
+            final byte[] magic = new byte[MAGIC.length];
+            return ins.read(magic) == magic.length && Arrays.equals(magic, MAGIC);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * gets the names of all blocks contained in the snapshot
+     *
+     * @return block names
+     */
+    public List<String> getBlockNames() {
+        final List<String> names = new ArrayList<>();
+        for (Section section : sections) {
+            if (!section.name.equals(TOP_COMMENTS))
+                names.add(section.name);
+        }
+        return names;
+    }
+
+    /**
+     * reads all blocks into the document, replacing its current content
+     *
+     * @param doc the document
+     */
+    public void read(Document doc) throws IOException, CanceledException {
+        read(doc, false);
+    }
+
+    /**
+     * reads blocks into the document, replacing its current content
+     *
+     * @param doc   the document
+     * @param defer if true, data blocks are not read, unless the sets or bootstrap blocks depend on them
+     * @return the names of the blocks that were not read, to be read later using readBlock
+     */
+    public List<String> read(Document doc, boolean defer) throws IOException, CanceledException {
+        final Section comments = getSection(TOP_COMMENTS);
+        if (getSection(Taxa.NAME) == null)
+            throw new SplitsException("Snapshot contains no TAXA block");
+
+        final List<String> deferred = new ArrayList<>();
+        if (defer) {
+            for (String name : DEFERRABLE_NAMES) {
+                if (getSection(name) != null)
+                    deferred.add(name);
+            }
+            if (getSection(Sets.NAME) != null || getSection(Bootstrap.NAME) != null)
+                deferred.remove(Characters.NAME); // sets and bootstrap are read relative to the characters
+            if (getSection(Bootstrap.NAME) != null)
+                deferred.remove(Splits.NAME);
+        }
+
+        for (Section section : sections) {
+            if (section != comments && !deferred.contains(section.name))
+                readBlock(doc, section);
+        }
+        doc.setTopComments(comments != null ? StandardCharsets.UTF_8.decode(map(comments.offset, comments.length)).toString() : null);
+        return deferred;
+    }
+
+    /**
+     * reads a single block into the document. If the document does not have a taxa block yet, then the taxa are read first
+     *
+     * @param doc  the document
+     * @param name the name of the block
+     * @return true, if the block is contained in the snapshot
+     */
+    public boolean readBlock(Document doc, String name) throws IOException, CanceledException {
+        final Section section = getSection(name);
+        if (section == null)
+            return false;
+        if (doc.getTaxa() == null && !name.equalsIgnoreCase(Taxa.NAME) && !readBlock(doc, Taxa.NAME))
+            throw new SplitsException("Snapshot contains no TAXA block");
+        readBlock(doc, section);
+        return true;
+    }
+
+    /**
+     * reads a section into the document
+     */
+    private void readBlock(Document doc, Section section) throws IOException, CanceledException {
+        final ByteBuffer buffer = map(section.offset, section.length);
+        if (section.encoding == TEXT)
+            doc.readNexus(new StringReader(StandardCharsets.UTF_8.decode(buffer).toString()));
+        else if (section.name.equals(Characters.NAME)) {
+            final Characters characters = new Characters();
+            characters.readBinary(buffer, doc.getTaxa());
+            doc.setCharacters(characters);
+        } else if (section.name.equals(Distances.NAME)) {
+            final Distances distances = new Distances();
+            distances.readBinary(buffer, doc.getTaxa());
+            doc.setDistances(distances);
+        } else if (section.name.equals(Splits.NAME)) {
+            final Splits splits = new Splits();
+            splits.readBinary(buffer, doc.getTaxa());
+            doc.setSplits(splits);
+        } else if (section.name.equals(Network.NAME)) {
+            final Network network = new Network();
+            network.readBinary(buffer, doc.getTaxa());
+            doc.setNetwork(network);
+        } else
+            throw new IOException("Snapshot: unsupported encoding for block " + section.name);
+        System.err.println("Read " + section.name.toUpperCase() + " from snapshot");
+    }
+
+    /**
+     * gets the section for the named block
+     *
+     * @return section or null
+     */
+    private Section getSection(String name) {
+        for (Section section : sections) {
+            if (section.name.equalsIgnoreCase(name))
+                return section;
+        }
+        return null;
+    }
+
+    /**
+     * maps a part of the file into memory
+     *
+     * @return read-only buffer
+     */
+    private ByteBuffer map(long offset, long length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > channel.size())
+            throw new IOException("Snapshot: corrupt section at offset " + offset);
+        if (length > Integer.MAX_VALUE)
+            throw new IOException("Snapshot: section too large to map: " + length);
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    private static byte[] get(ByteBuffer buffer, byte[] bytes) {
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * a section of the snapshot
+     */
+    static class Section {
+        final String name;
+        final byte encoding;
+        final long offset;
+        final long length;
+
+        Section(String name, byte encoding, long offset, long length) {
+            this.name = name;
+            this.encoding = encoding;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
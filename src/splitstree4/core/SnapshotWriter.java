@@ -0,0 +1,114 @@
+/*
+ * SnapshotWriter.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.core;
+
+import splitstree4.main.SplitsTreeProperties;
+import splitstree4.nexus.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * writes a document as a binary snapshot, see SnapshotReader for the format.
+ * Characters, distances, splits and networks are written in binary format, all other blocks as nexus text
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class SnapshotWriter {
+    /**
+     * writes the document to a snapshot file
+     *
+     * @param doc  the document
+     * @param file the file
+     */
+    public static void write(Document doc, File file) throws IOException {
+        doc.loadDeferredBlocks(); // the file may be the snapshot that they are to be read from
+        final List<SnapshotReader.Section> sections = new ArrayList<>();
+
+        try (FileOutputStream outs = new FileOutputStream(file)) {
+            final FileChannel channel = outs.getChannel();
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outs, 1 << 16));
+            out.write(SnapshotReader.MAGIC);
+            out.writeInt(SnapshotReader.VERSION);
+            out.writeLong(0); // offset of table, written below
+
+            if (doc.getTopComments() != null) {
+                final long offset = getPosition(out, channel);
+                out.write(doc.getTopComments().getBytes(StandardCharsets.UTF_8));
+                sections.add(new SnapshotReader.Section(SnapshotReader.TOP_COMMENTS, SnapshotReader.TEXT, offset, getPosition(out, channel) - offset));
+            }
+
+            for (String name : SnapshotReader.BLOCK_NAMES) {
+                if (name.equals(Reticulate.NAME) && !SplitsTreeProperties.ALLOW_RETICULATE)
+                    continue;
+                final long offset = getPosition(out, channel);
+                final byte encoding;
+                if (name.equals(Characters.NAME) && doc.getCharacters() != null && doc.getCharacters().canWriteBinary()) {
+                    doc.getCharacters().writeBinary(out, doc.getTaxa());
+                    encoding = SnapshotReader.BINARY;
+                } else if (name.equals(Distances.NAME) && doc.getDistances() != null) {
+                    doc.getDistances().writeBinary(out, doc.getTaxa());
+                    encoding = SnapshotReader.BINARY;
+                } else if (name.equals(Splits.NAME) && doc.getSplits() != null) {
+                    doc.getSplits().writeBinary(out, doc.getTaxa());
+                    encoding = SnapshotReader.BINARY;
+                } else if (name.equals(Network.NAME) && doc.getNetwork() != null) {
+                    doc.getNetwork().writeBinary(out, doc.getTaxa());
+                    encoding = SnapshotReader.BINARY;
+                } else {
+                    final Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                    if (!doc.write(w, name))
+                        continue;
+                    w.flush();
+                    encoding = SnapshotReader.TEXT;
+                }
+                sections.add(new SnapshotReader.Section(name, encoding, offset, getPosition(out, channel) - offset));
+            }
+
+            final long tableOffset = getPosition(out, channel);
+            out.writeInt(sections.size());
+            for (SnapshotReader.Section section : sections) {
+                out.writeUTF(section.name);
+                out.writeByte(section.encoding);
+                out.writeLong(section.offset);
+                out.writeLong(section.length);
+            }
+            out.flush();
+
+            final ByteBuffer buffer = ByteBuffer.allocate(8);
+            buffer.putLong(tableOffset).flip();
+            channel.write(buffer, SnapshotReader.MAGIC.length + 4);
+        }
+    }
+
+    /**
+     * gets the current position in the file
+     *
+     * @return position
+     */
+    private static long getPosition(DataOutputStream out, FileChannel channel) throws IOException {
+        out.flush();
+        return channel.position();
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * TransformCache.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.core;
+
+import jloda.swing.util.ProgramProperties;
+import jloda.util.Basic;
+import splitstree4.algorithms.CacheableTransform;
+import splitstree4.algorithms.util.Configurator;
+import splitstree4.main.SplitsTreeProperties;
+import splitstree4.nexus.Assumptions;
+import splitstree4.nexus.NexusBlock;
+import splitstree4.nexus.Taxa;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * content-addressed cache for the results of transforms, shared by all documents. The cache is off, unless
+ * enabled in the program properties, and only holds results of transforms that implement CacheableTransform.
+ * A result is keyed by a hash of the taxa, the input block, the hidden taxa, the excluded characters and all
+ * other assumptions that mask characters, the transform and its options. Results are kept as nexus text, so that each lookup returns a fresh block.
+ * The memory tier is a size-bounded LRU, results can optionally also be kept in a directory
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class TransformCache {
+    private static TransformCache instance;
+
+    private boolean enabled = false;
+    private long maxSize = 50000000; // total number of characters kept in memory
+    private long size = 0;
+    private File directory = null;
+
+    private int hits = 0;
+    private int misses = 0;
+
+    private final LinkedHashMap<String, String> key2text = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * gets the cache instance
+     *
+     * @return instance
+     */
+    public static synchronized TransformCache getInstance() {
+        if (instance == null) {
+            instance = new TransformCache();
+            instance.setEnabled(ProgramProperties.get(SplitsTreeProperties.TRANSFORM_CACHE_ENABLED, false));
+            instance.setMaxSize(ProgramProperties.get(SplitsTreeProperties.TRANSFORM_CACHE_SIZE, 50000000));
+            final String directory = ProgramProperties.get(SplitsTreeProperties.TRANSFORM_CACHE_DIRECTORY, "");
+            if (directory.length() > 0)
+                instance.setDirectory(new File(directory));
+        }
+        return instance;
+    }
+
+    /**
+     * does the cache hold results of the given transform?
+     *
+     * @return true, if enabled and the transform is cacheable
+     */
+    public synchronized boolean isCacheable(Object transform) {
+        return enabled && transform instanceof CacheableTransform;
+    }
+
+    /**
+     * computes the key for applying a transform to an input block
+     *
+     * @return key
+     */
+    public String computeKey(Taxa taxa, Assumptions assumptions, Object transform, NexusBlock input) throws IOException {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (Writer w = new OutputStreamWriter(new DigestOutputStream(OutputStream.nullOutputStream(), digest), StandardCharsets.UTF_8)) {
+                w.write(transform.getClass().getName() + "\n");
+                w.write(Configurator.getOptions(transform) + "\n");
+                if (assumptions != null) {
+                    w.write("extaxa=" + assumptions.getExTaxa() + "\n");
+                    w.write("exchar=" + assumptions.getExChar() + "\n");
+                    // the character mask is not part of the written characters block:
+                    w.write("gaps=" + assumptions.getExcludeGaps() + " constant=" + assumptions.getExcludeConstant()
+                            + " missing=" + assumptions.getExcludeMissing() + " nonparsimony=" + assumptions.getExcludeNonParsimony()
+                            + " codons=" + assumptions.getExcludeCodon1() + assumptions.getExcludeCodon2() + assumptions.getExcludeCodon3()
+                            + " usecharsets=" + assumptions.getUseCharSets() + "\n");
+                }
+                taxa.write(w, taxa);
+                input.write(w, taxa);
+            }
+            final StringBuilder buf = new StringBuilder();
+            for (byte b : digest.digest())
+                buf.append(String.format("%02x", b));
+            return buf.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * gets the nexus text of a cached result. Looks in memory first, then in the cache directory, if set
+     *
+     * @return text or null
+     */
+    public synchronized String get(String key) {
+        if (!enabled)
+            return null;
+        String text = key2text.get(key);
+        if (text == null && directory != null) {
+            final File file = new File(directory, key + ".nex");
+            if (file.exists()) {
+                try {
+                    text = Files.readString(file.toPath());
+                    putInMemory(key, text);
+                } catch (IOException ex) {
+                    Basic.caught(ex);
+                }
+            }
+        }
+        if (text != null)
+            hits++;
+        else
+            misses++;
+        return text;
+    }
+
+    /**
+     * caches a result
+     */
+    public synchronized void put(String key, Taxa taxa, NexusBlock result) throws IOException {
+        if (!enabled || result == null)
+            return;
+        final StringWriter w = new StringWriter();
+        result.write(w, taxa);
+        final String text = w.toString();
+        putInMemory(key, text);
+        if (directory != null) {
+            if (!directory.exists() && !directory.mkdirs())
+                throw new IOException("Failed to create directory: " + directory);
+            Files.writeString(new File(directory, key + ".nex").toPath(), text);
+        }
+    }
+
+    /**
+     * removes a result, e.g. if it cannot be parsed
+     */
+    public synchronized void remove(String key) {
+        final String text = key2text.remove(key);
+        if (text != null)
+            size -= text.length();
+        if (directory != null) {
+            final File file = new File(directory, key + ".nex");
+            if (file.exists() && !file.delete())
+                System.err.println("Failed to delete: " + file);
+        }
+    }
+
+    /**
+     * adds to the memory tier and evicts least recently used entries, if necessary
+     */
+    private void putInMemory(String key, String text) {
+        if (text.length() > maxSize)
+            return;
+        final String old = key2text.put(key, text);
+        if (old != null)
+            size -= old.length();
+        size += text.length();
+        evict();
+    }
+
+    /**
+     * evicts least recently used entries until the memory tier is within its size bound
+     */
+    private void evict() {
+        for (Iterator<Map.Entry<String, String>> it = key2text.entrySet().iterator(); size > maxSize && it.hasNext(); ) {
+            final Map.Entry<String, String> entry = it.next();
+            size -= entry.getValue().length();
+            it.remove();
+        }
+    }
+
+    /**
+     * clears the memory tier
+     */
+    public synchronized void clear() {
+        key2text.clear();
+        size = 0;
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled)
+            clear();
+    }
+
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * sets the maximal total number of characters kept in memory
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    public synchronized File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * sets the directory in which results are also kept, or null
+     */
+    public synchronized void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * gets a summary of the state of the cache
+     *
+     * @return summary
+     */
+    public synchronized String toString() {
+        return "Transform cache: " + key2text.size() + " results, " + size + " chars, hits: " + hits + ", misses: " + misses
+                + (directory != null ? ", directory: " + directory : "");
+    }
+}
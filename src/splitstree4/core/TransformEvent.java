@@ -0,0 +1,56 @@
+/*
+ * TransformEvent.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.core;
+
+import jdk.jfr.*;
+
+/**
+ * flight recorder event for a single transform invocation, recorded by TransformMetrics
+ *
+ * @author huson
+ * Date: 2022
+ */
+@Name("splitstree4.Transform")
+@Label("Transform")
+@Category("SplitsTree")
+@Description("Application of a transform or analysis step to a block")
+class TransformEvent extends Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Transform")
+    String transform;
+
+    @Label("CPU Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long cpuTime;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+
+    @Label("Taxa")
+    int ntax;
+
+    @Label("Characters")
+    int nchar;
+
+    @Label("Splits")
+    int nsplits;
+}
@@ -0,0 +1,304 @@
+/*
+ * TransformMetrics.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.core;
+
+import splitstree4.nexus.Characters;
+import splitstree4.nexus.NexusBlock;
+import splitstree4.nexus.Splits;
+import splitstree4.nexus.Taxa;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * records wall time, CPU time, allocated bytes and input sizes of transform invocations.
+ * Each measurement is also emitted as a flight recorder event. A document shares its metrics
+ * with the sub-documents used in bootstrapping and multi-gene analysis, so measurements may be
+ * taken by several threads at the same time
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class TransformMetrics {
+    public final static int MAX_RECORDS = 10000; // at most this many individual records are kept, totals are always kept
+
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private boolean enabled = true;
+    private final List<Record> records = new ArrayList<>();
+    private final Map<String, Total> totals = new LinkedHashMap<>();
+    private int dropped = 0;
+
+    /**
+     * starts a measurement. Must be stopped by the same thread
+     *
+     * @param stage     the stage, e.g. Characters
+     * @param transform the name of the transform
+     * @param taxa      the taxa, or null
+     * @param input     the input block, or null
+     * @return measurement or null, if disabled
+     */
+    public Measurement start(String stage, String transform, Taxa taxa, NexusBlock input) {
+        if (!isEnabled())
+            return null;
+        final Measurement measurement = new Measurement(stage, transform);
+        measurement.ntax = (taxa != null ? taxa.getNtax() : -1);
+        if (input instanceof Characters)
+            measurement.nchar = ((Characters) input).getNchar();
+        else if (input instanceof Splits)
+            measurement.nsplits = ((Splits) input).getNsplits();
+        measurement.event.begin();
+        measurement.startTime = System.currentTimeMillis();
+        measurement.startCpu = getCpuTime();
+        measurement.startAllocated = getAllocatedBytes();
+        measurement.startNanos = System.nanoTime();
+        return measurement;
+    }
+
+    /**
+     * stops a measurement and records it
+     *
+     * @param measurement the measurement, may be null
+     * @param output      the output block, or null. If it is a splits block, the number of splits is recorded
+     */
+    public void stop(Measurement measurement, NexusBlock output) {
+        if (measurement == null)
+            return;
+        final long wallTime = System.nanoTime() - measurement.startNanos;
+        final long cpuTime = (measurement.startCpu >= 0 ? getCpuTime() - measurement.startCpu : -1);
+        final long allocatedBytes = (measurement.startAllocated >= 0 ? getAllocatedBytes() - measurement.startAllocated : -1);
+        if (output instanceof Splits)
+            measurement.nsplits = ((Splits) output).getNsplits();
+
+        final TransformEvent event = measurement.event;
+        event.end();
+        if (event.shouldCommit()) {
+            event.stage = measurement.stage;
+            event.transform = measurement.transform;
+            event.cpuTime = cpuTime;
+            event.allocatedBytes = allocatedBytes;
+            event.ntax = measurement.ntax;
+            event.nchar = measurement.nchar;
+            event.nsplits = measurement.nsplits;
+            event.commit();
+        }
+
+        final Record record = new Record(measurement.stage, measurement.transform, Thread.currentThread().getName(),
+                measurement.startTime, wallTime, cpuTime, allocatedBytes, measurement.ntax, measurement.nchar, measurement.nsplits);
+        synchronized (this) {
+            if (records.size() < MAX_RECORDS)
+                records.add(record);
+            else
+                dropped++;
+            totals.computeIfAbsent(record.stage + "\t" + record.transform, k -> new Total(record.stage, record.transform)).add(record);
+        }
+    }
+
+    /**
+     * erase all records
+     */
+    public synchronized void clear() {
+        records.clear();
+        totals.clear();
+        dropped = 0;
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * gets a copy of the individual records, in the order in which they were completed
+     *
+     * @return records
+     */
+    public synchronized List<Record> getRecords() {
+        return new ArrayList<>(records);
+    }
+
+    /**
+     * writes a table of totals per transform, followed by the individual records
+     */
+    public synchronized void write(Writer w) throws IOException {
+        w.write(String.format("%-12s %-28s %6s %12s %12s %12s%n", "Stage", "Transform", "Calls", "Wall(ms)", "CPU(ms)", "Alloc(MB)"));
+        for (Total total : totals.values()) {
+            w.write(String.format("%-12s %-28s %6d %12.1f %12s %12s%n", total.stage, total.transform, total.count, total.wallTime / 1000000.0,
+                    (total.cpuTime >= 0 ? String.format("%.1f", total.cpuTime / 1000000.0) : "?"),
+                    (total.allocatedBytes >= 0 ? String.format("%.1f", total.allocatedBytes / 1048576.0) : "?")));
+        }
+        w.write(String.format("%nRecords: %d%s%n", records.size(), (dropped > 0 ? " (" + dropped + " not kept)" : "")));
+        for (Record record : records) {
+            w.write(String.format("%-12s %-28s %10.1fms ntax=%d nchar=%d nsplits=%d [%s]%n", record.stage, record.transform,
+                    record.wallTime / 1000000.0, record.ntax, record.nchar, record.nsplits, record.thread));
+        }
+        w.flush();
+    }
+
+    /**
+     * writes a machine-readable run report in JSON format. Times are in nanoseconds, -1 indicates a value that is not available
+     */
+    public synchronized void writeJSON(Writer w) throws IOException {
+        w.write("{\n");
+        w.write("  \"totals\": [");
+        boolean first = true;
+        for (Total total : totals.values()) {
+            w.write(first ? "\n" : ",\n");
+            first = false;
+            w.write(String.format("    {\"stage\": %s, \"transform\": %s, \"calls\": %d, \"wallNanos\": %d, \"cpuNanos\": %d, \"allocatedBytes\": %d}",
+                    quote(total.stage), quote(total.transform), total.count, total.wallTime, total.cpuTime, total.allocatedBytes));
+        }
+        w.write("\n  ],\n");
+        w.write("  \"dropped\": " + dropped + ",\n");
+        w.write("  \"records\": [");
+        first = true;
+        for (Record record : records) {
+            w.write(first ? "\n" : ",\n");
+            first = false;
+            w.write(String.format("    {\"stage\": %s, \"transform\": %s, \"thread\": %s, \"start\": %d, \"wallNanos\": %d, \"cpuNanos\": %d, " +
+                            "\"allocatedBytes\": %d, \"ntax\": %d, \"nchar\": %d, \"nsplits\": %d}",
+                    quote(record.stage), quote(record.transform), quote(record.thread), record.startTime, record.wallTime, record.cpuTime,
+                    record.allocatedBytes, record.ntax, record.nchar, record.nsplits));
+        }
+        w.write("\n  ]\n}\n");
+        w.flush();
+    }
+
+    /**
+     * quotes a string for JSON
+     *
+     * @return quoted string
+     */
+    private static String quote(String str) {
+        if (str == null)
+            return "null";
+        final StringBuilder buf = new StringBuilder("\"");
+        for (int i = 0; i < str.length(); i++) {
+            final char ch = str.charAt(i);
+            if (ch == '"' || ch == '\\')
+                buf.append('\\').append(ch);
+            else if (ch < ' ')
+                buf.append(String.format("\\u%04x", (int) ch));
+            else
+                buf.append(ch);
+        }
+        return buf.append('"').toString();
+    }
+
+    private static long getCpuTime() {
+        return (threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : -1);
+    }
+
+    private static long getAllocatedBytes() {
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        else
+            return -1;
+    }
+
+    /**
+     * a running measurement
+     */
+    public static class Measurement {
+        private final String stage;
+        private final String transform;
+        private final TransformEvent event = new TransformEvent();
+        private int ntax = -1;
+        private int nchar = -1;
+        private int nsplits = -1;
+        private long startTime;
+        private long startNanos;
+        private long startCpu;
+        private long startAllocated;
+
+        private Measurement(String stage, String transform) {
+            this.stage = stage;
+            this.transform = transform;
+        }
+    }
+
+    /**
+     * a completed measurement. Times are in nanoseconds, -1 indicates a value that is not available
+     */
+    public static class Record {
+        public final String stage;
+        public final String transform;
+        public final String thread;
+        public final long startTime;
+        public final long wallTime;
+        public final long cpuTime;
+        public final long allocatedBytes;
+        public final int ntax;
+        public final int nchar;
+        public final int nsplits;
+
+        Record(String stage, String transform, String thread, long startTime, long wallTime, long cpuTime, long allocatedBytes,
+               int ntax, int nchar, int nsplits) {
+            this.stage = stage;
+            this.transform = transform;
+            this.thread = thread;
+            this.startTime = startTime;
+            this.wallTime = wallTime;
+            this.cpuTime = cpuTime;
+            this.allocatedBytes = allocatedBytes;
+            this.ntax = ntax;
+            this.nchar = nchar;
+            this.nsplits = nsplits;
+        }
+    }
+
+    /**
+     * totals for one transform at one stage
+     */
+    private static class Total {
+        final String stage;
+        final String transform;
+        int count;
+        long wallTime;
+        long cpuTime;
+        long allocatedBytes;
+
+        Total(String stage, String transform) {
+            this.stage = stage;
+            this.transform = transform;
+        }
+
+        void add(Record record) {
+            count++;
+            wallTime += record.wallTime;
+            if (record.cpuTime < 0 || cpuTime < 0)
+                cpuTime = -1;
+            else
+                cpuTime += record.cpuTime;
+            if (record.allocatedBytes < 0 || allocatedBytes < 0)
+                allocatedBytes = -1;
+            else
+                allocatedBytes += record.allocatedBytes;
+        }
+    }
+}
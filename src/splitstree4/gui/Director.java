@@ -44,6 +44,7 @@ import java.awt.*;
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -62,6 +63,9 @@ public class Director implements IDirector {
 	private int ID;
 
 	private Thread executionWorkerThread = null;
+	private final LinkedList<ExecuteRequest> executeRequests = new LinkedList<>(); // commands waiting to be executed
+	private ExecuteRequest runningRequest = null;
+	private volatile long latestExecuteVersion = 0;
 
 	private boolean isInternalDocument = false;
 
@@ -102,57 +106,162 @@ public class Director implements IDirector {
     }
 
     /**
-     * execute a command. Lock all viewer input, then request to doc to execute command
+     * execute a command. Lock all viewer input, then request to doc to execute command.
+     * Commands are executed one after the other in a worker thread. A command that sets an assumption supersedes
+     * any commands setting the same assumption that are waiting or running, as these would only compute results
+     * that are replaced. Commands that come before some other kind of command are never superseded
      *
 	 */
     public void execute(final String command, final CommandManager commandManager, final Component parent) {
         System.err.println("executing " + command);
-        if (docInUpdate) // shouldn't happen!
-            System.err.println("Warning: execute(" + command + "): concurrent execution");
 
-        if (executionWorkerThread == null || !executionWorkerThread.isAlive()) {
-			notifyLockInput();
+        synchronized (executeRequests) {
+            final ExecuteRequest request = new ExecuteRequest(++latestExecuteVersion, command, commandManager, parent);
+            if (request.isSupersedable()) {
+                boolean onlySupersedableWaiting = true;
+                for (Iterator<ExecuteRequest> it = executeRequests.descendingIterator(); it.hasNext(); ) {
+                    final ExecuteRequest waiting = it.next();
+                    if (!waiting.isSupersedable()) {
+                        onlySupersedableWaiting = false;
+                        break;
+                    }
+                    if (waiting.assumption.equals(request.assumption))
+                        it.remove();
+                }
+                if (onlySupersedableWaiting && runningRequest != null && runningRequest.isSupersedable()
+                        && runningRequest.assumption.equals(request.assumption))
+                    runningRequest.cancel();
+            }
+            executeRequests.add(request);
+            if (executionWorkerThread == null) {
+                executionWorkerThread = new Thread(this::runExecuteRequests);
+                executionWorkerThread.setPriority(Thread.currentThread().getPriority() - 1);
+                docInUpdate = true;
+                notifyLockInput();
+                executionWorkerThread.start();
+            }
+        }
+    }
 
-			executionWorkerThread = new Thread(() -> {
-				docInUpdate = true;
-				ProgressDialog progressDialog = new ProgressDialog("", "", parent);
-				doc.setProgressListener(progressDialog);
-				try {
-					// this is used to carry over taxon and split annotations from one update to the next
-					if (doc.isValidByName(Network.NAME)) {
-						PhyloGraphView graphView = (MainViewer) getMainViewer();
-						if (graphView != null) {
-							doc.getNetwork().syncPhyloGraphView2Network(doc.getTaxa(), graphView);
-							doc.getNetwork().updateTaxon2VertexDescriptionMap(doc.taxon2VertexDescription);
-						}
-					}
+    /**
+     * runs all requested commands, then unlocks input. The viewers are updated after each command, unless it
+     * was superseded by a later one
+     */
+    private void runExecuteRequests() {
+        try {
+            ExecuteRequest request;
+            while ((request = nextExecuteRequest()) != null)
+                runExecuteRequest(request);
+        } finally {
+            synchronized (executeRequests) {
+                if (executionWorkerThread == Thread.currentThread()) { // only if left because of an error
+                    executeRequests.clear();
+                    finishExecution();
+                }
+            }
+        }
+    }
 
-					if (commandManager == null)
-						doc.execute(command);
-					else
-						commandManager.execute(command);
-				} catch (CanceledException ex) {
-					System.err.println("USER CANCELED EXECUTE");
-				} catch (OutOfMemoryError ex) {
-					System.gc();
-					new Alert("Out of memory");
-				} catch (Exception ex) {
-					Basic.caught(ex);
-					new Alert(getMainViewer().getFrame(), "Execute failed: " + ex.getMessage());
-				}
+    /**
+     * gets the next request to run
+     *
+     * @return next request or null, in which case the worker thread is done
+     */
+    private ExecuteRequest nextExecuteRequest() {
+        synchronized (executeRequests) {
+            runningRequest = executeRequests.pollFirst();
+            if (runningRequest == null)
+                finishExecution();
+            return runningRequest;
+        }
+    }
+
+    /**
+     * cleans up after the worker thread is done. Called while holding the lock on the requests, so that a new
+     * worker thread cannot start in between. Input is unlocked in the swing thread, unless a new worker thread
+     * has taken over by then
+     */
+    private void finishExecution() {
+        runningRequest = null;
+        executionWorkerThread = null;
+        doc.setProgressListener(null);
+        docInUpdate = false;
+        SwingUtilities.invokeLater(() -> {
+            synchronized (executeRequests) {
+                if (executionWorkerThread != null)
+                    return;
+                notifyUnlockInput();
+            }
+            if (getMainViewer() != null)
+                getMainViewer().getFrame().toFront();
+        });
+    }
+
+    /**
+     * runs a single requested command and then updates the viewers, unless the command has been superseded
+     */
+    private void runExecuteRequest(final ExecuteRequest request) {
+        final ProgressDialog progressDialog = new ProgressDialog("", "", request.parent);
+        request.setProgressListener(progressDialog);
+        doc.setProgressListener(progressDialog);
+        doc.setIntermediateNetworkListener(network -> showIntermediateNetwork(request, network));
+        try {
+            // this is used to carry over taxon and split annotations from one update to the next
+            if (doc.isValidByName(Network.NAME)) {
+                PhyloGraphView graphView = (MainViewer) getMainViewer();
+                if (graphView != null) {
+                    doc.getNetwork().syncPhyloGraphView2Network(doc.getTaxa(), graphView);
+                    doc.getNetwork().updateTaxon2VertexDescriptionMap(doc.taxon2VertexDescription);
+                }
+            }
+
+            if (request.commandManager == null)
+                doc.execute(request.command);
+            else
+                request.commandManager.execute(request.command);
+        } catch (CanceledException ex) {
+            System.err.println(request.isCanceled() ? "SUPERSEDED EXECUTE" : "USER CANCELED EXECUTE");
+        } catch (OutOfMemoryError ex) {
+            System.gc();
+            new Alert("Out of memory");
+        } catch (Exception ex) {
+            Basic.caught(ex);
+            new Alert(getMainViewer().getFrame(), "Execute failed: " + ex.getMessage());
+        }
+        doc.setIntermediateNetworkListener(null);
+        progressDialog.close();
+
+        if (!request.isCanceled()) { // a canceled request has been superseded by a newer one
+            notifyUpdateViewer(Director.ALL);
+            WaitUntilAllViewersAreUptoDate();
+        }
+    }
 
-				notifyUpdateViewer(Director.ALL);
-				WaitUntilAllViewersAreUptoDate();
-				notifyUnlockInput();
-
-				progressDialog.close();
-				doc.setProgressListener(null);
-				docInUpdate = false;
-				if (getMainViewer() != null)
-					getMainViewer().getFrame().toFront();
-			});
-			executionWorkerThread.setPriority(Thread.currentThread().getPriority() - 1);
-			executionWorkerThread.start();
+    /**
+     * shows an intermediate network in the main viewer, if the request that computed it is still the latest one
+     */
+    private void showIntermediateNetwork(final ExecuteRequest request, final Network network) {
+        SwingUtilities.invokeLater(() -> {
+            if (request.version == latestExecuteVersion && !request.isCanceled() && getMainViewer() != null)
+                ((MainViewer) getMainViewer()).showIntermediateNetwork(network);
+        });
+    }
+
+    /**
+     * can the currently running commands be superseded by new ones? If so, windows that set assumptions
+     * may remain enabled while the commands run
+     *
+     * @return true, if only commands that set assumptions are waiting or running
+     */
+    public boolean isSupersedableExecution() {
+        synchronized (executeRequests) {
+            if (runningRequest != null && !runningRequest.isSupersedable())
+                return false;
+            for (ExecuteRequest request : executeRequests) {
+                if (!request.isSupersedable())
+                    return false;
+            }
+            return true;
         }
     }
 
@@ -680,8 +789,9 @@ public class Director implements IDirector {
             removeViewer((IDirectableViewer) viewers.get(0));
         }
 
-        if (executionWorkerThread != null && executionWorkerThread.isAlive()) {
-            executionWorkerThread.stop();
+        final Thread thread = executionWorkerThread;
+        if (thread != null && thread.isAlive()) {
+            thread.stop();
         }
     }
 
@@ -902,4 +1012,68 @@ public class Director implements IDirector {
         this.isInternalDocument = isInternalDocument;
 
     }
+
+    /**
+     * a command requested by execute. Each request gets a new version number
+     */
+    private static class ExecuteRequest {
+        final long version;
+        final String command;
+        final CommandManager commandManager;
+        final Component parent;
+        final String assumption; // name of the assumption set by the command, or null
+        private boolean canceled = false;
+        private ProgressListener progressListener;
+
+        ExecuteRequest(long version, String command, CommandManager commandManager, Component parent) {
+            this.version = version;
+            this.command = command;
+            this.commandManager = commandManager;
+            this.parent = parent;
+            assumption = (commandManager == null ? getAssumption(command) : null);
+        }
+
+        /**
+         * a command that only sets an assumption and recomputes can be superseded by a later one that sets the same assumption
+         */
+        boolean isSupersedable() {
+            return assumption != null;
+        }
+
+        /**
+         * gets the name of the assumption set by an assume command, such as extaxa, exclude or disttransform
+         *
+         * @return name in lower case, or null, if not an assume command
+         */
+        private static String getAssumption(String command) {
+            final String text = command.trim().toLowerCase();
+            if (!text.startsWith("assume "))
+                return null;
+            final String rest = text.substring("assume ".length()).trim();
+            int start = (rest.startsWith("'") ? 1 : 0);
+            int end = start;
+            while (end < rest.length() && Character.isLetterOrDigit(rest.charAt(end)))
+                end++;
+            return (end > start ? rest.substring(start, end) : null);
+        }
+
+        /**
+         * cancels the request, stopping the computation at the next check for cancel
+         */
+        synchronized void cancel() {
+            canceled = true;
+            if (progressListener != null)
+                progressListener.setUserCancelled(true);
+        }
+
+        synchronized boolean isCanceled() {
+            return canceled;
+        }
+
+        synchronized void setProgressListener(ProgressListener progressListener) {
+            this.progressListener = progressListener;
+            if (canceled)
+                progressListener.setUserCancelled(true);
+        }
+    }
 }
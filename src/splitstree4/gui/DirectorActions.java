@@ -29,6 +29,7 @@ import jloda.util.Basic;
 import jloda.util.CanceledException;
 import splitstree4.algorithms.Transformation;
 import splitstree4.core.Document;
+import splitstree4.core.SnapshotReader;
 import splitstree4.externalIO.imports.ImportManager;
 import splitstree4.gui.bootstrap.BootstrapDialog;
 import splitstree4.gui.bootstrap.ConfidenceNetworkDialog;
@@ -126,7 +127,8 @@ public class DirectorActions implements IDirectorListener {
 						transform = (Transformation) action.getValue(DirectorActions.TRANSFORM);
 					} catch (ClassCastException ignored) {
 					}
-                    if (transform == null || dir.getDocument().isApplicable(transform))
+                    // a block still to be read from a snapshot is not read just to enable an action:
+                    if (transform == null || dir.getDocument().isDeferredByName(name) || dir.getDocument().isApplicable(transform))
                         enable = true;
                     if (transform != null && action.getValue(DirectorActions.JCHECKBOX) != null) {
                         JCheckBoxMenuItem cbox = (JCheckBoxMenuItem) action.getValue(DirectorActions.JCHECKBOX);
@@ -299,7 +301,7 @@ public class DirectorActions implements IDirectorListener {
                         lastOpenFile = file;
                         ProgramProperties.put("OpenFile", lastOpenFile.getAbsolutePath());
                         SplitsTreeProperties.addRecentFile(lastOpenFile);
-                        if (NexusFileFilter.isNexusFile(file)) {
+                        if (NexusFileFilter.isNexusFile(file) || SnapshotReader.isSnapshotFile(file)) {
                             dir.openFile(file);
 
                         } else {
@@ -357,7 +359,7 @@ public class DirectorActions implements IDirectorListener {
                 if (file.exists() && file.canRead()) {
                     ProgramProperties.put("OpenFile", file.getAbsolutePath());
                     SplitsTreeProperties.addRecentFile(file);
-                    if (NexusFileFilter.isNexusFile(file)) {
+                    if (NexusFileFilter.isNexusFile(file) || SnapshotReader.isSnapshotFile(file)) {
                         dir.openFile(file);
                     } else {
                         dir.getDocument().setFile(file, ".nex");
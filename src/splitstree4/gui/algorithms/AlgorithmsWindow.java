@@ -240,12 +240,15 @@ public class AlgorithmsWindow implements IDirectableViewer {
     }
 
     /**
-     * ask view to prevent user input
+     * ask view to prevent user input. While only assumptions are being applied, input remains possible,
+     * as a new request supersedes the running one
      */
     public void lockUserInput() {
         frame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-        notifyEnableCritical(false);
-        notifyEnableCritical(false);
+        if (!dir.isSupersedableExecution()) {
+            notifyEnableCritical(false);
+            notifyEnableCritical(false);
+        }
     }
 
     /**
@@ -191,6 +191,7 @@ public class SelectCharactersActions implements UpdateableActions {
                         Basic.caught(ex);
                     }
                 }
+                viewer.getLabelIndex().invalidate();
                 viewer.repaint();
             }
         };
@@ -253,6 +254,7 @@ public class SelectCharactersActions implements UpdateableActions {
                         Basic.caught(ex);
                     }
                 }
+                viewer.getLabelIndex().invalidate();
                 viewer.repaint();
             }
         };
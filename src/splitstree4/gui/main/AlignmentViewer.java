@@ -0,0 +1,200 @@
+/*
+ * AlignmentViewer.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.gui.main;
+
+import jloda.swing.commands.CommandManager;
+import jloda.swing.director.IDirectableViewer;
+import jloda.swing.util.ProgramProperties;
+import jloda.swing.util.ResourceManager;
+import jloda.swing.window.WindowListenerAdapter;
+import splitstree4.core.Document;
+import splitstree4.gui.Director;
+import splitstree4.gui.spreadsheet.AlignmentSheet;
+import splitstree4.main.SplitsTreeProperties;
+import splitstree4.nexus.Characters;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.WindowEvent;
+
+/**
+ * window showing the alignment of the characters block
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class AlignmentViewer implements IDirectableViewer {
+    private boolean uptodate = true;
+    private final JFrame frame;
+    private final Director dir;
+    private final AlignmentSheet sheet = new AlignmentSheet();
+
+    /**
+     * constructor
+     */
+    public AlignmentViewer(Director dir) {
+        this.dir = dir;
+
+        frame = new JFrame();
+        frame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        frame.setIconImages(ProgramProperties.getProgramIconImages());
+        setTitle(dir);
+        frame.setJMenuBar(setupMenuBar());
+        frame.setSize(800, 500);
+        dir.setViewerLocation(this);
+        frame.getContentPane().add(sheet.getScrollPane(), BorderLayout.CENTER);
+
+        frame.addWindowListener(new WindowListenerAdapter() {
+            public void windowClosing(WindowEvent event) {
+                getCloseAction().actionPerformed(null);
+            }
+        });
+        frame.setVisible(true);
+    }
+
+    /**
+     * setup the menu bar
+     */
+    private JMenuBar setupMenuBar() {
+        JMenuBar menuBar = new JMenuBar();
+        JMenu menu = new JMenu(dir.getActions().getMenuTitleAction("File", 'F'));
+        menu.add(getCloseAction());
+        menuBar.add(menu);
+        return menuBar;
+    }
+
+    private AbstractAction closeAction;
+
+    private AbstractAction getCloseAction() {
+        AbstractAction action = closeAction;
+        if (action != null)
+            return action;
+
+        action = new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                dir.removeViewer(AlignmentViewer.this);
+                frame.setVisible(false);
+                frame.dispose();
+            }
+        };
+        action.putValue(AbstractAction.NAME, "Close");
+        action.putValue(AbstractAction.SHORT_DESCRIPTION, "Close this window");
+        action.putValue(AbstractAction.SMALL_ICON, ResourceManager.getIcon("Close16.gif"));
+        return closeAction = action;
+    }
+
+    public boolean isUptoDate() {
+        return uptodate;
+    }
+
+    public JFrame getFrame() {
+        return frame;
+    }
+
+    public String getTitle() {
+        return frame.getTitle();
+    }
+
+    /**
+     * ask view to update itself. The alignment is read from the characters block when painted
+     *
+     * @param what is to be updated
+     */
+    public void updateView(String what) {
+        if (what.equals(Director.TITLE)) {
+            setTitle(dir);
+            return;
+        }
+        setUptoDate(false);
+        final Document doc = dir.getDocument();
+        if (doc.isValidByName(Characters.NAME))
+            sheet.setCharacters(doc.getTaxa(), doc.getCharacters());
+        else
+            sheet.setCharacters(null, null);
+        setUptoDate(true);
+    }
+
+    public void setTitle(Director dir) {
+        String newTitle;
+
+        if (dir.getID() == 1)
+            newTitle = "Alignment - " + dir.getDocument().getTitle()
+                    + " " + SplitsTreeProperties.getVersion();
+        else
+            newTitle = "Alignment - " + dir.getDocument().getTitle()
+                    + " [" + dir.getID() + "] - " + SplitsTreeProperties.getVersion();
+        if (!frame.getTitle().equals(newTitle))
+            frame.setTitle(newTitle);
+    }
+
+    /**
+     * ask view to prevent user input
+     */
+    public void lockUserInput() {
+        frame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+    }
+
+    /**
+     * ask view to allow user input
+     */
+    public void unlockUserInput() {
+        frame.setCursor(Cursor.getDefaultCursor());
+    }
+
+    public void destroyView() {
+        frame.dispose();
+    }
+
+    /**
+     * set uptodate state
+     *
+	 */
+    public void setUptoDate(boolean flag) {
+        uptodate = flag;
+    }
+
+    /**
+     * gets the associated command manager
+     *
+     * @return command manager
+     */
+    public CommandManager getCommandManager() {
+        return null;
+    }
+
+    /**
+     * is viewer currently locked?
+     *
+     * @return true, if locked
+     */
+    public boolean isLocked() {
+        return false;
+    }
+
+    /**
+     * get the name of the class
+     *
+     * @return class name
+     */
+    @Override
+    public String getClassName() {
+        return "AlignmentViewer";
+    }
+}
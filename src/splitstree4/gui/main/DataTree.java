@@ -20,30 +20,40 @@ package splitstree4.gui.main;
 
 import splitstree4.core.Document;
 import splitstree4.gui.Director;
-import splitstree4.nexus.Assumptions;
 import splitstree4.nexus.Taxa;
 
 import javax.swing.*;
-import javax.swing.event.TreeExpansionEvent;
-import javax.swing.event.TreeExpansionListener;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
-import javax.swing.tree.TreeNode;
-import javax.swing.tree.TreePath;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.io.IOException;
+import java.io.StringReader;
 import java.io.StringWriter;
-import java.util.Enumeration;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 /**
- * ad-hoc attempt to put all datatree stuff into one class
+ * source view of the document, showing one foldable entry per block.
+ * The text of a block is only written when the block is unfolded, and is then kept together with an index of its
+ * line starts, so that only the visible lines are painted. Double-clicking on the text of a block opens an editor on
+ * that block alone, and the edited block is read into the document in place of the old one
  * Daniel Huson and David Bryant, 11.2009
  */
-public class DataTree extends JTree {
-    // Things used for keeping the right branches in the JTree open
+public class DataTree extends JComponent implements Scrollable {
+    private final static Color GRAY = new Color(0xa0, 0xa0, 0xa0);
+    private final static Color GUTTER_BACKGROUND = new Color(240, 240, 240);
+    private final static int MARGIN = 5;
+
     final private Director dir;
     final private HashMap<String, Boolean> expandedRows = new HashMap<>();
-    final private MyTreeExpansionListener treeExpansionListener;
+    final private List<Block> blocks = new ArrayList<>();
+
+    private final FontMetrics fontMetrics;
+    private final FontMetrics boldFontMetrics;
+    private final int lineHeight;
+    private final int charWidth;
 
     /**
      * constructor
@@ -51,187 +61,310 @@ public class DataTree extends JTree {
 	 */
     public DataTree(Director dir) {
         super();
-        setModel(new DefaultTreeModel(new DefaultMutableTreeNode("#Nexus")));
         this.dir = dir;
-        treeExpansionListener = new MyTreeExpansionListener();
-        setRowHeight(0); //Dealing with a MAC problem. (No effect in Windows)
-        setCellRenderer(new NexusCellRenderer(dir));
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        setFont(new Font("Monospaced", Font.PLAIN, 12));
+        fontMetrics = getFontMetrics(getFont());
+        boldFontMetrics = getFontMetrics(getFont().deriveFont(Font.BOLD));
+        lineHeight = fontMetrics.getHeight();
+        charWidth = fontMetrics.charWidth('m');
 
+        addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                final int row = e.getY() / lineHeight;
+                int first = 0;
+                for (Block block : blocks) {
+                    if (row == first) {
+                        if (e.getClickCount() == 1)
+                            setExpanded(block, !block.expanded);
+                        return;
+                    } else if (row < first + block.getNumberOfRows()) {
+                        if (e.getClickCount() == 2)
+                            editBlock(block);
+                        return;
+                    }
+                    first += block.getNumberOfRows();
+                }
+            }
+        });
     }
 
     /**
-     * for some reason we need to call this
+     * Update the data view tab. Block texts are not written here, but only when they are painted
      */
-    public void resetMyTreeExpansionListener() {
-        if (getTreeExpansionListeners() != null)
-            removeTreeExpansionListener(treeExpansionListener);
-        addTreeExpansionListener(treeExpansionListener);
+    public void updateDataTreeView() {
+        blocks.clear();
+        final Document doc = dir.getDocument();
+
+        if (doc.getTopComments() != null)
+            blocks.add(new Block("Comments", "Comments"));
+
+        if (doc.isValidByName(Taxa.NAME)) {
+            for (final String name : Document.getListOfBlockNames()) {
+                if (doc.isValidByName(name))
+                    blocks.add(new Block(name, doc.getNameForDataTree(name).replaceAll("<[^>]*>", "")));
+            }
+        }
+        revalidate();
+        repaint();
     }
 
     /**
-     * Finds the path in tree as specified by the array of names.
-     * Comparison is done using String.equals().
-     *
-     * @param names is a sequence of names where names[0] is the root and names[i] is a child of names[i-1].
-     * @return null if not found.
+     * expand all blocks
      */
-    public TreePath findByName(String[] names) {
-        TreeNode root = (TreeNode) getModel().getRoot();
-        return findRec(new TreePath(root), names, 0);
+    public void expandAllNodes() {
+        for (Block block : blocks)
+            setExpanded(block, true);
     }
 
     /**
-     * recursively find a path
-     *
-     * @return path
+     * collapse all blocks
      */
-    private TreePath findRec(TreePath parent, String[] names, int depth) {
-        TreeNode node = (TreeNode) parent.getLastPathComponent();
-        String name = node.toString();
-
-        // If equal, go down the branch
-        if (name.equals(names[depth])) {
-            // If at end, return match
-            if (depth == names.length - 1) {
-                return parent;
-            }
-
-            // Traverse children
-            if (node.getChildCount() >= 0) {
-                for (Enumeration<? extends TreeNode> e = node.children(); e.hasMoreElements(); ) {
-                    TreeNode n = e.nextElement();
-                    TreePath path = parent.pathByAddingChild(n);
-                    TreePath result = findRec(path, names, depth + 1);
-                    // Found a match
-                    if (result != null) {
-                        return result;
-                    }
-                }
-            }
-        }
+    public void collapseAllTreeData() {
+        for (Block block : blocks)
+            setExpanded(block, false);
+    }
 
-        // No match at this branch
-        return null;
+    /**
+     * fold or unfold a block
+     */
+    private void setExpanded(Block block, boolean expanded) {
+        block.expanded = expanded;
+        expandedRows.put(block.name, expanded);
+        revalidate();
+        repaint();
     }
 
     /**
-     * expand previously expanded nodes
+     * opens an editor on the text of a single block and reads the edited block into the document.
+     * The taxa block can't be edited this way, as reading it discards all other blocks
      */
-    public void expandAllNodes() {
-        for (String name : Document.getListOfBlockNames()) {
-            if (dir.getDocument().isValidByName(name)) {
-                TreePath path = findByName(new String[]{"#Nexus", name});
-                // if (expandedRows.get(path.toString()))
-                expandPath(path);
+    private void editBlock(Block block) {
+        if (block.name.equals("Comments") || block.name.equals(Taxa.NAME) || dir.isInUpdate())
+            return;
+        final String original = block.getText().string;
+
+        final JDialog dialog = new JDialog(SwingUtilities.getWindowAncestor(this), "Edit " + block.name, Dialog.ModalityType.APPLICATION_MODAL);
+        final TextEditor editor = new TextEditor();
+        dialog.getContentPane().setLayout(new BorderLayout());
+        dialog.getContentPane().add(editor.initializeEditor((MainViewer) dir.getMainViewer()), BorderLayout.CENTER);
+        editor.setEditText(original);
+        editor.setEditTextOriginal(original);
+        editor.getInputTextArea().setCaretPosition(0);
+
+        final JPanel buttonPanel = new JPanel();
+        buttonPanel.setLayout(new BoxLayout(buttonPanel, BoxLayout.X_AXIS));
+        buttonPanel.add(Box.createHorizontalGlue());
+        final JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> dialog.setVisible(false));
+        buttonPanel.add(cancelButton);
+        final JButton applyButton = new JButton("Apply");
+        applyButton.addActionListener(e -> {
+            dialog.setVisible(false);
+            if (!editor.getEditText().equals(editor.getEditTextOriginal()))
+                dir.read(new StringReader(editor.getEditText()));
+        });
+        buttonPanel.add(applyButton);
+        dialog.getContentPane().add(buttonPanel, BorderLayout.SOUTH);
+
+        dialog.setSize(600, 600);
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+        dialog.dispose();
+    }
+
+    public void paintComponent(Graphics g) {
+        final Rectangle clip = g.getClipBounds();
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        final int firstRow = clip.y / lineHeight;
+        final int lastRow = (clip.y + clip.height) / lineHeight;
+        final int gutterX = getVisibleRect().x;
+        final int gutterWidth = getGutterWidth();
+        final int textX = gutterWidth + MARGIN;
+        final int firstColumn = Math.max(0, (clip.x - textX) / charWidth);
+        final int lastColumn = (clip.x + clip.width - textX) / charWidth + 1;
+        final int ascent = fontMetrics.getAscent();
+
+        int row = 0;
+        for (Block block : blocks) {
+            if (row > lastRow)
+                break;
+            if (row >= firstRow) {
+                g.setFont(getFont().deriveFont(Font.BOLD));
+                g.setColor(Color.BLACK);
+                g.drawString((block.expanded ? "- " : "+ ") + block.title, gutterX + MARGIN, row * lineHeight + ascent);
+                g.setFont(getFont());
+            }
+            if (block.expanded && row + block.getNumberOfRows() > firstRow) {
+                final Text text = block.getText();
+                final int first = Math.max(0, firstRow - row - 1);
+                final int last = Math.min(text.getNumberOfLines() - 1, lastRow - row - 1);
+                for (int i = first; i <= last; i++) {
+                    final int y = (row + 1 + i) * lineHeight;
+                    g.setColor(text.startsWith(i, "BEGIN") || text.startsWith(i, "END;") ? GRAY : getForeground());
+                    g.drawString(text.getLine(i, firstColumn, lastColumn), textX + firstColumn * charWidth, y + ascent);
+
+                    final String number = String.valueOf(i + 1);
+                    g.setColor(GUTTER_BACKGROUND);
+                    g.fillRect(gutterX, y, gutterWidth, lineHeight);
+                    g.setColor(GRAY);
+                    g.drawString(number, gutterX + gutterWidth - MARGIN - fontMetrics.stringWidth(number), y + ascent);
+                }
             }
+            row += block.getNumberOfRows();
         }
     }
 
     /**
-     * collapse all nodes
+     * width of the line numbers to the left of the text
      */
-    public void collapseAllTreeData() {
+    private int getGutterWidth() {
+        int maxLines = 1;
+        for (Block block : blocks) {
+            if (block.expanded)
+                maxLines = Math.max(maxLines, block.getText().getNumberOfLines());
+        }
+        return fontMetrics.stringWidth(String.valueOf(maxLines)) + 2 * MARGIN;
+    }
 
-        // loop through all possible "paths"
-        for (String name : Document.getListOfBlockNames()) {
-            if (dir.getDocument().isValidByName(name)) {
-                // Find the path (regardless of visibility) that matches the
-                // specified sequence of names
-                TreePath path = findByName(new String[]{"#Nexus", name});
-                collapsePath(path);
-            }
+    public Dimension getPreferredSize() {
+        int rows = 0;
+        int width = 0;
+        for (Block block : blocks) {
+            rows += block.getNumberOfRows();
+            width = Math.max(width, boldFontMetrics.stringWidth("- " + block.title) + 2 * MARGIN);
+            if (block.expanded)
+                width = (int) Math.min(Integer.MAX_VALUE / 2, Math.max(width, getGutterWidth() + 2 * MARGIN + (long) block.getText().maxLineLength * charWidth));
         }
+        return new Dimension(width, rows * lineHeight);
+    }
+
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return (orientation == SwingConstants.VERTICAL ? lineHeight : charWidth);
+    }
+
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        if (orientation == SwingConstants.VERTICAL)
+            return Math.max(lineHeight, visibleRect.height - lineHeight);
+        else
+            return Math.max(charWidth, visibleRect.width - charWidth);
+    }
+
+    public boolean getScrollableTracksViewportWidth() {
+        return getParent() instanceof JViewport && getParent().getWidth() > getPreferredSize().width;
+    }
+
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
     }
 
     /**
-     * Update the data view tab
+     * a block of the document, as shown in the view
      */
-    public void updateDataTreeView() {
-        // System.err.println("UPDATE");
-        DefaultMutableTreeNode treeRoot = (DefaultMutableTreeNode) getModel().getRoot();
-        treeRoot.removeAllChildren();
-        final Document doc = dir.getDocument();
+    private class Block {
+        final String name;
+        final String title;
+        boolean expanded;
+        private SoftReference<Text> text = new SoftReference<>(null);
 
-        if (doc.getTopComments() != null) {
-            String name = "Comments";
-            DefaultMutableTreeNode child = new DefaultMutableTreeNode(name);
-            DefaultMutableTreeNode desc;
-            desc = new DefaultMutableTreeNode(doc.getTopComments());
-
-            // Construct the expandedRows HashMap if necessary
-            // System.err.println("[Data, [" + name + "]]" + " just got his value updated to false");
-            expandedRows.putIfAbsent("[#Nexus, [" + name + "]]", false);
-            child.add(desc);
-            treeRoot.add(child);
+        Block(String name, String title) {
+            this.name = name;
+            this.title = title;
+            expanded = expandedRows.getOrDefault(name, false);
         }
-        // show the selected items:
-        if (doc.isValidByName(Taxa.NAME)) {
-            for (final String name : Document.getListOfBlockNames()) {
 
-                if (dir.getDocument().isValidByName(name)) {
-                    // String name2 = "[" + name + "]";
-                    DefaultMutableTreeNode child = new DefaultMutableTreeNode(name);
-                    treeRoot.add(child);
+        /**
+         * number of rows occupied by this block, that is, the title and, if expanded, all lines
+         */
+        int getNumberOfRows() {
+            return 1 + (expanded ? getText().getNumberOfLines() : 0);
+        }
 
-                    DefaultMutableTreeNode desc = null;
+        /**
+         * gets the text of the block, writing it, if it hasn't been written yet or has been discarded to free memory
+         */
+        Text getText() {
+            Text result = text.get();
+            if (result == null) {
+                final Document doc = dir.getDocument();
+                String string;
+                if (name.equals("Comments"))
+                    string = (doc.getTopComments() != null ? doc.getTopComments() : "");
+                else {
                     try {
-                        StringWriter w = new StringWriter();
-                        var block = doc.getBlockByName(name);
-                        if (block instanceof Assumptions)
-                            ((Assumptions) block).write(w, doc);
-                        else
-                            block.write(w, doc.getTaxa());
-                        desc = new DefaultMutableTreeNode(w.toString());
-                    } catch (IOException ignored) {
+                        final StringWriter w = new StringWriter();
+                        doc.write(w, name);
+                        string = w.toString();
+                    } catch (IOException ex) {
+                        string = ex.getMessage();
                     }
-
-                    // Construct the expandedRows HashMap if necessary
-                    expandedRows.putIfAbsent("[#Nexus, [" + name + "]]", false);
-                    if (desc != null)
-                        child.add(desc);
                 }
+                result = new Text(string);
+                text = new SoftReference<>(result);
             }
-
-            ((DefaultTreeModel) treeModel).reload();
-            validate();
-            // System.err.println("After reload");
-            for (String name : Document.getListOfBlockNames()) {
-                // i.e. if it is in the nexus file
-                if (dir.getDocument().isValidByName(name)) {
-                    // Find the path (regardless of visibility) that matches the
-                    // specified sequence of names
-                    TreePath path = findByName(new String[]{"#Nexus", name});
-
-                    for (String pathString : expandedRows.keySet()) {
-                        if (expandedRows.get(pathString) && path.toString().equals(pathString)) {
-                            expandPath(path);
-                        }
-                    }
-                }
-            }
-
+            return result;
         }
     }
 
-    final class MyTreeExpansionListener implements TreeExpansionListener {
+    /**
+     * the text of a block, with an index of the line starts
+     */
+    private static class Text {
+        final String string;
+        final int[] lineStarts;
+        final int maxLineLength;
+
+        Text(String string) {
+            // skip leading and trailing empty lines:
+            int start = 0;
+            while (start < string.length() && Character.isWhitespace(string.charAt(start)))
+                start++;
+            start = string.lastIndexOf('\n', start - 1) + 1;
+            int end = string.length();
+            while (end > start && Character.isWhitespace(string.charAt(end - 1)))
+                end--;
+            this.string = string.substring(start, end);
 
-        public void treeExpanded(TreeExpansionEvent e) {
-            // Set the correct Path in the JTree to true
-            for (String path : expandedRows.keySet()) {
-                if (e.getPath().toString().equals(path)) {
-                    expandedRows.put(path, true);
+            int count = 1;
+            for (int i = 0; i < this.string.length(); i++) {
+                if (this.string.charAt(i) == '\n')
+                    count++;
+            }
+            lineStarts = new int[count + 1];
+            int line = 0;
+            int longest = 0;
+            for (int i = 0; i < this.string.length(); i++) {
+                if (this.string.charAt(i) == '\n') {
+                    longest = Math.max(longest, i - lineStarts[line]);
+                    lineStarts[++line] = i + 1;
                 }
             }
+            lineStarts[count] = this.string.length() + 1;
+            maxLineLength = Math.max(longest, this.string.length() - lineStarts[count - 1]);
         }
 
-        public void treeCollapsed(TreeExpansionEvent e) {
-            // Set the correct Path in the JTree to true
-            for (String path : expandedRows.keySet()) {
-                String aPath = e.getPath().toString();
-                if (aPath.equals(path)) {
-                    expandedRows.put(path, false);
-                }
-            }
+        int getNumberOfLines() {
+            return lineStarts.length - 1;
+        }
+
+        boolean startsWith(int line, String prefix) {
+            return string.startsWith(prefix, lineStarts[line]);
+        }
+
+        /**
+         * gets the given columns of a line, tabs are replaced by spaces
+         */
+        String getLine(int line, int firstColumn, int lastColumn) {
+            final int start = Math.min(lineStarts[line] + firstColumn, lineStarts[line + 1] - 1);
+            final int end = Math.max(start, Math.min(lineStarts[line] + lastColumn, lineStarts[line + 1] - 1));
+            return string.substring(start, end).replace('\t', ' ');
         }
     }
 }
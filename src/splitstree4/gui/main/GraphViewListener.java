@@ -62,10 +62,9 @@ public class GraphViewListener implements IGraphViewListener {
     private Point endLocation;
 
     // this is where we store coordinates to be able to undo a move:
-    private NodeArray startCoordinates;
-    private NodeArray endCoordinates;
-    private EdgeArray startInternalPoints;
-    private EdgeArray endInternalPoints;
+    private NodeArray<Point2D> startCoordinates;
+    private EdgeArray<Point2D> startInternalPoints;
+    private boolean nodesMoved;
 
 
     private Rectangle selRect;
@@ -229,9 +228,8 @@ public class GraphViewListener implements IGraphViewListener {
                 current = inMoveNode;
                 viewer.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
                 startCoordinates = getAllCoordinates(viewer);
-                endCoordinates = null;
                 startInternalPoints = getAllInternalPoints(viewer);
-                endInternalPoints = null;
+                nodesMoved = false;
 
 // if no hit node selected, deselect all and then select node
                 boolean found = false;
@@ -330,11 +328,14 @@ public class GraphViewListener implements IGraphViewListener {
                 new Edit(cmd, "move label").execute(viewer.getUndoSupportNetwork());
             }
         } else if (current == inMoveNode) {
-            if (startCoordinates != null && endCoordinates != null) {
-                final ICommand cmd = new MoveNodesCommand(viewer, startCoordinates, endCoordinates, startInternalPoints, endInternalPoints);
-                new Edit(cmd, "reshape graph").execute(viewer.getUndoSupportNetwork());
+            if (startCoordinates != null && nodesMoved) {
+                final MoveNodesCommand cmd = new MoveNodesCommand(viewer, startCoordinates, startInternalPoints);
+                if (!cmd.isEmpty())
+                    new Edit(cmd, "reshape graph").execute(viewer.getUndoSupportNetwork());
                 viewer.repaint();
             }
+            startCoordinates = null;
+            startInternalPoints = null;
         }
         current = 0;
     }
@@ -422,6 +423,7 @@ public class GraphViewListener implements IGraphViewListener {
                 viewer.setInternalPoints(e, list);
             } else
                 list.add(index, aptWorld);
+            viewer.invalidateLODGrid();
         } else if (me.getClickCount() == 2
                 && ((viewer.isAllowEditNodeLabelsOnDoubleClick() && hitNodeLabels.size() > 0)
                 || (viewer.isAllowEditNodeLabelsOnDoubleClick() && hitNodes.size() > 0))) {
@@ -535,15 +537,15 @@ public class GraphViewListener implements IGraphViewListener {
             }
             {
                 for (Edge e = viewer.getGraph().getFirstEdge(); e != null; e = e.getNext()) {
-                    Point2D startPoint = (Point2D) startInternalPoints.get(e);
+                    Point2D startPoint = startInternalPoints.get(e);
                     if (startPoint != null) {
                         Node v;
-                        if (((Point2D) startCoordinates.get(e.getSource())).getY() == startPoint.getY())
+                        if (startCoordinates.get(e.getSource()).getY() == startPoint.getY())
                             v = e.getSource();
                         else
                             v = e.getTarget();
 
-                        Point2D aPt = (Point2D) startCoordinates.get(v);
+                        Point2D aPt = startCoordinates.get(v);
                         diff = Geometry.diff(viewer.getLocation(v), aPt);
                         java.util.List<Point2D> list = new LinkedList<>();
                         list.add(new Point2D.Double(startPoint.getX() + diff.getX(), startPoint.getY() + diff.getY()));
@@ -552,9 +554,9 @@ public class GraphViewListener implements IGraphViewListener {
                 }
             }
 
-            endCoordinates = getAllCoordinates(viewer);
-            endInternalPoints = getAllInternalPoints(viewer);
+            nodesMoved = true; // the command is created from the final locations when the mouse is released
 
+            viewer.invalidateLODGrid();
             viewer.repaint();
         } else if (viewer.isAllowInternalEdgePoints() && current == inMoveInternalEdgePoint) {
             Point p1 = new Point(downX, downY); // old [pos
@@ -566,6 +568,7 @@ public class GraphViewListener implements IGraphViewListener {
 
             if (e != null) {
                 viewer.getEV(e).moveInternalPoint(viewer.trans, p1, p2);
+                viewer.invalidateLODGrid();
                 viewer.repaint();
             }
         } else if (current == inMoveNodeLabel) {
@@ -723,7 +726,7 @@ public class GraphViewListener implements IGraphViewListener {
      *
      * @return snap shot of current coordinates
      */
-    private EdgeArray getAllInternalPoints(MainViewer viewer) {
+    private EdgeArray<Point2D> getAllInternalPoints(MainViewer viewer) {
         EdgeArray<Point2D> result = new EdgeArray<>(viewer.getGraph());
         for (Edge e = viewer.getGraph().getFirstEdge(); e != null; e = e.getNext()) {
             java.util.List<Point2D> internalPoints = viewer.getInternalPoints(e);
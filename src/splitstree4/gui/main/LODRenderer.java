@@ -0,0 +1,495 @@
+/*
+ * LODRenderer.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.gui.main;
+
+import jloda.graph.Edge;
+import jloda.graph.Graph;
+import jloda.graph.Node;
+import jloda.swing.graphview.EdgeView;
+import jloda.swing.graphview.NodeView;
+import jloda.swing.util.ProgramProperties;
+import splitstree4.main.SplitsTreeProperties;
+
+import javax.swing.Timer;
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.print.PrinterGraphics;
+import java.util.*;
+import java.util.List;
+
+/**
+ * level-of-detail rendering of large graphs in the main viewer. A grid over the node and edge coordinates
+ * is used to only draw what is visible. Edges are drawn as one path per color and width, edges shorter than a pixel
+ * are collected in an image. While the user pans or zooms, labels are not drawn and edges are only drawn for a limited time.
+ * Once the viewer has been idle for a moment, it is drawn again completely and with labels, skipping labels that would
+ * overlap others
+ * <p/>
+ * Only used for drawing on screen, exporting and printing always draws the full graph
+ *
+ * @author huson
+ * Date: 2022
+ */
+class LODRenderer {
+    private static final int IDLE_MILLIS = 250; // draw labels when there was no repaint for this long
+    private static final int MAX_CELLS_PER_EDGE = 256; // longer edges are not put into the grid, but tested one by one
+    private static final int FRAME_MILLIS = 30; // while the user pans or zooms, stop adding edges after this time
+    private static final Color SELECTION_COLOR = Color.RED;
+
+    private final MainViewer viewer;
+    private final Timer idleTimer;
+    private boolean drawLabels = false;
+
+    // the grid:
+    private boolean gridValid = false;
+    private Graph graph;
+    private Node[] nodes = new Node[0];
+    private float[] nodeX = new float[0];
+    private float[] nodeY = new float[0];
+    private Edge[] edges = new Edge[0];
+    private Edge[] longEdges = new Edge[0];
+    private double[] longEdgeBounds = new double[0]; // minX, minY, maxX, maxY for each long edge
+    private double minX, minY, cellWidth, cellHeight;
+    private int cols, rows;
+    private int[] cellNodesStart = new int[1];
+    private int[] cellNodes = new int[0];
+    private int[] cellEdgesStart = new int[1];
+    private int[] cellEdges = new int[0];
+    private int[] edgeMark = new int[0]; // avoids drawing an edge that lies in several visible cells more than once
+    private int mark = 0;
+
+    private BufferedImage pixels; // edges shorter than a pixel are drawn into this image, reused between repaints
+    private boolean pixelsUsed = false;
+
+    /**
+     * constructor
+     *
+     * @param viewer the viewer
+     */
+    LODRenderer(MainViewer viewer) {
+        this.viewer = viewer;
+        idleTimer = new Timer(IDLE_MILLIS, e -> {
+            drawLabels = true;
+            viewer.repaint();
+        });
+        idleTimer.setRepeats(false);
+    }
+
+    /**
+     * should the graph be drawn with this renderer? Only for large graphs and when drawing on screen
+     *
+     * @return true, if applicable
+     */
+    boolean isApplicable(Graphics g) {
+        if (!ProgramProperties.get(SplitsTreeProperties.LOD_RENDERING, true)
+                || viewer.getGraph().getNumberOfEdges() < ProgramProperties.get(SplitsTreeProperties.LOD_MIN_EDGES, 20000)
+                || !(g instanceof Graphics2D) || g instanceof PrinterGraphics || g.getClipBounds() == null)
+            return false;
+        final GraphicsConfiguration configuration = ((Graphics2D) g).getDeviceConfiguration();
+        return configuration != null && configuration.getDevice().getType() == GraphicsDevice.TYPE_RASTER_SCREEN;
+    }
+
+    /**
+     * draws the visible part of the graph
+     */
+    void paint(Graphics2D gc) {
+        final Rectangle clip = gc.getClipBounds();
+        if (!isGridValid())
+            buildGrid();
+
+        final boolean withLabels = drawLabels;
+        drawLabels = false;
+        if (!withLabels)
+            idleTimer.restart();
+
+        gc.setColor(viewer.getCanvasColor() != null ? viewer.getCanvasColor() : Color.WHITE);
+        gc.fill(clip);
+
+        // determine the visible part of the grid:
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            final Point2D corner = viewer.trans.d2w(clip.x + (i % 2 == 0 ? 0 : clip.width), clip.y + (i < 2 ? 0 : clip.height));
+            x0 = Math.min(x0, corner.getX());
+            y0 = Math.min(y0, corner.getY());
+            x1 = Math.max(x1, corner.getX());
+            y1 = Math.max(y1, corner.getY());
+        }
+        final int col0 = Math.max(0, getCol(x0)), col1 = Math.min(cols - 1, getCol(x1));
+        final int row0 = Math.max(0, getRow(y0)), row1 = Math.min(rows - 1, getRow(y1));
+
+        // edges:
+        final Map<Long, Path2D.Float> paths = new LinkedHashMap<>();
+        if (pixels == null || pixels.getWidth() < clip.width + 1 || pixels.getHeight() < clip.height + 1)
+            pixels = new BufferedImage(clip.width + 1, clip.height + 1, BufferedImage.TYPE_INT_ARGB);
+        else if (pixelsUsed)
+            Arrays.fill(((DataBufferInt) pixels.getRaster().getDataBuffer()).getData(), 0);
+        pixelsUsed = false;
+        if (++mark == Integer.MAX_VALUE) {
+            mark = 1;
+            Arrays.fill(edgeMark, 0);
+        }
+        final long deadline = (withLabels ? Long.MAX_VALUE : System.currentTimeMillis() + FRAME_MILLIS);
+        final boolean[] visibleLongEdges = new boolean[longEdges.length];
+        int count = 0;
+        for (int i = 0; i < longEdges.length; i++) {
+            if (longEdgeBounds[4 * i + 2] >= x0 && longEdgeBounds[4 * i] <= x1 && longEdgeBounds[4 * i + 3] >= y0 && longEdgeBounds[4 * i + 1] <= y1) {
+                visibleLongEdges[i] = true;
+                addEdge(longEdges[i], clip, paths);
+                if ((++count & 1023) == 0 && System.currentTimeMillis() > deadline)
+                    break;
+            }
+        }
+        loop:
+        for (int row = row0; row <= row1 && System.currentTimeMillis() <= deadline; row++) {
+            for (int col = col0; col <= col1; col++) {
+                final int cell = row * cols + col;
+                for (int i = cellEdgesStart[cell]; i < cellEdgesStart[cell + 1]; i++) {
+                    final int id = cellEdges[i];
+                    if (edgeMark[id] != mark) {
+                        edgeMark[id] = mark;
+                        addEdge(edges[id], clip, paths);
+                        if ((++count & 1023) == 0 && System.currentTimeMillis() > deadline)
+                            break loop;
+                    }
+                }
+            }
+        }
+        for (Map.Entry<Long, Path2D.Float> entry : paths.entrySet()) {
+            gc.setColor(new Color((int) (entry.getKey() >>> 8), true));
+            gc.setStroke(new BasicStroke((int) (entry.getKey() & 0xff)));
+            gc.draw(entry.getValue());
+        }
+        gc.setStroke(new BasicStroke(1));
+        if (pixelsUsed)
+            gc.drawImage(pixels, clip.x, clip.y, clip.x + clip.width + 1, clip.y + clip.height + 1, 0, 0, clip.width + 1, clip.height + 1, null);
+
+        // nodes:
+        final LabelSpace labelSpace = (withLabels ? new LabelSpace(clip) : null);
+        for (int row = row0; row <= row1 && System.currentTimeMillis() <= deadline; row++) {
+            for (int col = col0; col <= col1; col++) {
+                final int cell = row * cols + col;
+                for (int i = cellNodesStart[cell]; i < cellNodesStart[cell + 1]; i++)
+                    drawNode(gc, nodes[cellNodes[i]], clip, labelSpace);
+            }
+        }
+
+        // edge labels:
+        if (labelSpace != null) {
+            for (int i = 0; i < longEdges.length; i++) {
+                if (visibleLongEdges[i])
+                    drawEdgeLabel(gc, longEdges[i], clip, labelSpace);
+            }
+            for (int id = 0; id < edges.length; id++) {
+                if (edgeMark[id] == mark)
+                    drawEdgeLabel(gc, edges[id], clip, labelSpace);
+            }
+        }
+    }
+
+    /**
+     * adds an edge to the path for its color and width, or to the image, if it is shorter than a pixel
+     */
+    private void addEdge(Edge e, Rectangle clip, Map<Long, Path2D.Float> paths) {
+        final EdgeView ev = viewer.getEV(e);
+        final Color color = (viewer.getSelected(e) ? SELECTION_COLOR : ev.getColor());
+        if (color == null)
+            return;
+        final Point p = viewer.trans.w2d(viewer.getLocation(e.getSource()));
+        final Point q = viewer.trans.w2d(viewer.getLocation(e.getTarget()));
+        final List<Point2D> internal = viewer.getInternalPoints(e);
+
+        if ((internal == null || internal.size() == 0) && Math.abs(p.x - q.x) <= 1 && Math.abs(p.y - q.y) <= 1) {
+            if (clip.contains(p)) {
+                pixels.setRGB(p.x - clip.x, p.y - clip.y, color.getRGB());
+                pixelsUsed = true;
+            }
+            return;
+        }
+        final int width = Math.max(1, Math.min(255, viewer.getLineWidth(e) + (viewer.getSelected(e) ? 1 : 0)));
+        final Path2D.Float path = paths.computeIfAbsent(((long) color.getRGB() << 8) | width, k -> new Path2D.Float());
+        path.moveTo(p.x, p.y);
+        if (internal != null) {
+            for (Point2D point : internal) {
+                final Point r = viewer.trans.w2d(point);
+                path.lineTo(r.x, r.y);
+            }
+        }
+        path.lineTo(q.x, q.y);
+    }
+
+    /**
+     * draws a node, if it is at least two pixels wide, and its label, if it is visible and fits. Small nodes are drawn as squares
+     */
+    private void drawNode(Graphics2D gc, Node v, Rectangle clip, LabelSpace labelSpace) {
+        final NodeView nv = viewer.getNV(v);
+        final Point p = viewer.trans.w2d(viewer.getLocation(v));
+        final int width = viewer.getWidth(v);
+        final int height = viewer.getHeight(v);
+        final boolean selected = viewer.getSelected(v);
+
+        if (!selected && nv.getShape() != NodeView.NONE_NODE && width >= 2 && height >= 2 && width <= 4 && height <= 4) {
+            if (nv.getColor() != null) { // too small to see the shape
+                gc.setColor(nv.getColor());
+                gc.fillRect(p.x - width / 2, p.y - height / 2, width, height);
+            }
+        } else if ((nv.getShape() != NodeView.NONE_NODE && width >= 2 && height >= 2) || selected) {
+            final int w = Math.max(width, selected ? 4 : 0), h = Math.max(height, selected ? 4 : 0);
+            if (nv.getBackgroundColor() != null && !selected) {
+                gc.setColor(nv.getBackgroundColor());
+                if (nv.getShape() == NodeView.RECT_NODE)
+                    gc.fillRect(p.x - w / 2, p.y - h / 2, w, h);
+                else
+                    gc.fillOval(p.x - w / 2, p.y - h / 2, w, h);
+            }
+            final Color color = (selected ? SELECTION_COLOR : nv.getColor());
+            if (color != null) {
+                gc.setColor(color);
+                if (nv.getShape() == NodeView.RECT_NODE)
+                    gc.drawRect(p.x - w / 2, p.y - h / 2, w, h);
+                else
+                    gc.drawOval(p.x - w / 2, p.y - h / 2, w, h);
+            }
+        }
+
+        if (labelSpace != null && nv.isLabelVisible() && nv.getLabel() != null && nv.getLabel().length() > 0) {
+            final Point offset = nv.getLabelOffset();
+            final int x = (offset != null ? p.x + offset.x : p.x + width / 2 + 2);
+            final int y = (offset != null ? p.y + offset.y : p.y);
+            drawLabel(gc, nv.getLabel(), nv.getFont(), (selected ? SELECTION_COLOR : nv.getLabelColor()), x, y, clip, labelSpace);
+        }
+    }
+
+    /**
+     * draws the label of an edge at its midpoint, if it is visible and fits
+     */
+    private void drawEdgeLabel(Graphics2D gc, Edge e, Rectangle clip, LabelSpace labelSpace) {
+        final EdgeView ev = viewer.getEV(e);
+        if (ev.isLabelVisible() && ev.getLabel() != null && ev.getLabel().length() > 0) {
+            final Point p = viewer.trans.w2d(viewer.getLocation(e.getSource()));
+            final Point q = viewer.trans.w2d(viewer.getLocation(e.getTarget()));
+            drawLabel(gc, ev.getLabel(), ev.getFont(), ev.getLabelColor(), (p.x + q.x) / 2, (p.y + q.y) / 2, clip, labelSpace);
+        }
+    }
+
+    /**
+     * draws a label with its left side at x and vertically centered at y, unless it would overlap a label already drawn
+     */
+    private void drawLabel(Graphics2D gc, String label, Font font, Color color, int x, int y, Rectangle clip, LabelSpace labelSpace) {
+        if (color == null)
+            return;
+        gc.setFont(font != null ? font : viewer.getFont());
+        final FontMetrics metrics = gc.getFontMetrics();
+        final Rectangle rect = new Rectangle(x, y - metrics.getAscent() / 2, metrics.stringWidth(label), metrics.getHeight());
+        if (rect.intersects(clip) && labelSpace.occupy(rect)) {
+            gc.setColor(color);
+            gc.drawString(label, x, y + metrics.getAscent() / 2);
+        }
+    }
+
+    /**
+     * marks the grid as out of date, to be called whenever nodes or edges are added, removed or moved
+     */
+    void invalidateGrid() {
+        gridValid = false;
+    }
+
+    /**
+     * does the grid still match the graph? Changes of locations are not detected here, they must be reported using invalidateGrid()
+     *
+     * @return true, if the grid has not been invalidated and the graph has the same number of nodes and edges
+     */
+    private boolean isGridValid() {
+        final Graph current = viewer.getGraph();
+        return gridValid && current == graph && current.getNumberOfNodes() == nodes.length && current.getNumberOfEdges() == edges.length;
+    }
+
+    /**
+     * builds the grid over the current graph, with about four edges per cell
+     */
+    private void buildGrid() {
+        gridValid = true;
+        graph = viewer.getGraph();
+        final int nnodes = graph.getNumberOfNodes(), nedges = graph.getNumberOfEdges();
+        nodes = new Node[nnodes];
+        nodeX = new float[nnodes];
+        nodeY = new float[nnodes];
+        edges = new Edge[nedges];
+        edgeMark = new int[nedges];
+        mark = 0;
+
+        minX = Double.MAX_VALUE;
+        minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        int i = 0;
+        for (Node v = graph.getFirstNode(); v != null; v = v.getNext()) {
+            final Point2D location = viewer.getLocation(v);
+            nodes[i] = v;
+            nodeX[i] = (location != null ? (float) location.getX() : 0);
+            nodeY[i] = (location != null ? (float) location.getY() : 0);
+            minX = Math.min(minX, nodeX[i]);
+            minY = Math.min(minY, nodeY[i]);
+            maxX = Math.max(maxX, nodeX[i]);
+            maxY = Math.max(maxY, nodeY[i]);
+            i++;
+        }
+        i = 0;
+        for (Edge e = graph.getFirstEdge(); e != null; e = e.getNext()) {
+            edges[i++] = e;
+            final List<Point2D> internal = viewer.getInternalPoints(e);
+            if (internal != null) {
+                for (Point2D point : internal) {
+                    minX = Math.min(minX, point.getX());
+                    minY = Math.min(minY, point.getY());
+                    maxX = Math.max(maxX, point.getX());
+                    maxY = Math.max(maxY, point.getY());
+                }
+            }
+        }
+        if (nnodes == 0) {
+            minX = minY = 0;
+            maxX = maxY = 1;
+        }
+
+        final int size = Math.max(1, Math.min(1024, (int) Math.sqrt(Math.max(nnodes, nedges) / 4.0)));
+        cols = rows = size;
+        cellWidth = Math.max((maxX - minX) / size, 1e-9);
+        cellHeight = Math.max((maxY - minY) / size, 1e-9);
+
+        // nodes, in two passes: count, then fill
+        cellNodesStart = new int[cols * rows + 1];
+        final int[] nodeCell = new int[nnodes];
+        for (i = 0; i < nnodes; i++) {
+            nodeCell[i] = getCell(nodeX[i], nodeY[i]);
+            cellNodesStart[nodeCell[i] + 1]++;
+        }
+        for (int cell = 0; cell < cols * rows; cell++)
+            cellNodesStart[cell + 1] += cellNodesStart[cell];
+        cellNodes = new int[nnodes];
+        final int[] fill = new int[cols * rows];
+        for (i = 0; i < nnodes; i++)
+            cellNodes[cellNodesStart[nodeCell[i]] + fill[nodeCell[i]]++] = i;
+
+        // edges, by their bounding boxes, in the same way:
+        final int[] bounds = new int[4 * nedges];
+        final ArrayList<Edge> longEdgeList = new ArrayList<>();
+        final ArrayList<double[]> longEdgeBoundsList = new ArrayList<>();
+        cellEdgesStart = new int[cols * rows + 1];
+        for (i = 0; i < nedges; i++) {
+            final Edge e = edges[i];
+            final Point2D p = viewer.getLocation(e.getSource()), q = viewer.getLocation(e.getTarget());
+            double x0 = Math.min(p.getX(), q.getX()), y0 = Math.min(p.getY(), q.getY());
+            double x1 = Math.max(p.getX(), q.getX()), y1 = Math.max(p.getY(), q.getY());
+            final List<Point2D> internal = viewer.getInternalPoints(e);
+            if (internal != null) {
+                for (Point2D point : internal) {
+                    x0 = Math.min(x0, point.getX());
+                    y0 = Math.min(y0, point.getY());
+                    x1 = Math.max(x1, point.getX());
+                    y1 = Math.max(y1, point.getY());
+                }
+            }
+            bounds[4 * i] = clamp(getCol(x0), cols);
+            bounds[4 * i + 1] = clamp(getRow(y0), rows);
+            bounds[4 * i + 2] = clamp(getCol(x1), cols);
+            bounds[4 * i + 3] = clamp(getRow(y1), rows);
+            if ((long) (bounds[4 * i + 2] - bounds[4 * i] + 1) * (bounds[4 * i + 3] - bounds[4 * i + 1] + 1) > MAX_CELLS_PER_EDGE) {
+                longEdgeList.add(e);
+                longEdgeBoundsList.add(new double[]{x0, y0, x1, y1});
+                bounds[4 * i] = -1;
+                continue;
+            }
+            for (int row = bounds[4 * i + 1]; row <= bounds[4 * i + 3]; row++) {
+                for (int col = bounds[4 * i]; col <= bounds[4 * i + 2]; col++)
+                    cellEdgesStart[row * cols + col + 1]++;
+            }
+        }
+        longEdges = longEdgeList.toArray(new Edge[0]);
+        longEdgeBounds = new double[4 * longEdges.length];
+        for (i = 0; i < longEdges.length; i++)
+            System.arraycopy(longEdgeBoundsList.get(i), 0, longEdgeBounds, 4 * i, 4);
+        for (int cell = 0; cell < cols * rows; cell++)
+            cellEdgesStart[cell + 1] += cellEdgesStart[cell];
+        cellEdges = new int[cellEdgesStart[cols * rows]];
+        Arrays.fill(fill, 0);
+        for (i = 0; i < nedges; i++) {
+            if (bounds[4 * i] == -1)
+                continue;
+            for (int row = bounds[4 * i + 1]; row <= bounds[4 * i + 3]; row++) {
+                for (int col = bounds[4 * i]; col <= bounds[4 * i + 2]; col++) {
+                    final int cell = row * cols + col;
+                    cellEdges[cellEdgesStart[cell] + fill[cell]++] = i;
+                }
+            }
+        }
+    }
+
+    private int getCol(double x) {
+        return (int) Math.floor((x - minX) / cellWidth);
+    }
+
+    private int getRow(double y) {
+        return (int) Math.floor((y - minY) / cellHeight);
+    }
+
+    private int getCell(double x, double y) {
+        return clamp(getRow(y), rows) * cols + clamp(getCol(x), cols);
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+
+    /**
+     * keeps track of the screen space used by labels, in blocks of 4x4 pixels
+     */
+    private static class LabelSpace {
+        private static final int BLOCK = 4;
+        private final Rectangle clip;
+        private final int cols;
+        private final int rows;
+        private final BitSet used;
+
+        LabelSpace(Rectangle clip) {
+            this.clip = clip;
+            cols = clip.width / BLOCK + 1;
+            rows = clip.height / BLOCK + 1;
+            used = new BitSet(cols * rows);
+        }
+
+        /**
+         * occupies the space of a label, if it is free
+         *
+         * @return true, if the space was free
+         */
+        boolean occupy(Rectangle rect) {
+            final int col0 = Math.max(0, (rect.x - clip.x) / BLOCK), col1 = Math.min(cols - 1, (rect.x + rect.width - clip.x) / BLOCK);
+            final int row0 = Math.max(0, (rect.y - clip.y) / BLOCK), row1 = Math.min(rows - 1, (rect.y + rect.height - clip.y) / BLOCK);
+            for (int row = row0; row <= row1; row++) {
+                final int next = used.nextSetBit(row * cols + col0);
+                if (next != -1 && next <= row * cols + col1)
+                    return false;
+            }
+            for (int row = row0; row <= row1; row++)
+                used.set(row * cols + col0, row * cols + col1 + 1);
+            return true;
+        }
+    }
+}
@@ -104,11 +104,19 @@ public class LineNumberView extends JComponent {
         repaint();
     }
 
+    /**
+     * Are all lines of the same height? This is the case for a text area that does not wrap lines, and then
+     * the line positions are computed directly rather than by asking the text component for each line
+     */
+    private boolean hasUniformLineHeight() {
+        return text instanceof JTextArea && !((JTextArea) text).getLineWrap();
+    }
+
     /**
      * Update the line heights as needed.
      */
     private void updateSizes() {
-        if (startLine < 0) {
+        if (startLine < 0 || hasUniformLineHeight()) {
             return;
         }
 
@@ -211,6 +219,17 @@ public class LineNumberView extends JComponent {
 
         g.setColor(getForeground());
         int base = clip.y - textTopInset;
+
+        if (hasUniformLineHeight()) {
+            int first = Math.max(0, base / textFontHeight);
+            int last = Math.min(getAdjustedLineCount() - 1, (base + clip.height) / textFontHeight);
+            for (int i = first; i <= last; i++) {
+                String number = String.valueOf(i + 1);
+                int x = MARGIN + maxNumberWidth - viewFontMetrics.stringWidth(number);
+                g.drawString(number, x, i * textFontHeight + textFontAscent + textTopInset);
+            }
+            return;
+        }
         int first = sizes.getIndex(base);
         int last = sizes.getIndex(base + clip.height);
         String text;
@@ -38,6 +38,8 @@ import jloda.util.Basic;
 import jloda.util.CanceledException;
 import splitstree4.gui.Director;
 import splitstree4.gui.nodeEdge.Configurator;
+import splitstree4.gui.search.LabelIndex;
+import splitstree4.gui.undo.BoundedUndoManager;
 import splitstree4.gui.undo.UndoableEdgeLabelSearcher;
 import splitstree4.gui.undo.UndoableNodeLabelSearcher;
 import splitstree4.main.SplitsTreeProperties;
@@ -76,7 +78,7 @@ public class MainViewer extends PhyloGraphView implements IDirectableViewer, IMa
 	final TextEditor editor = new TextEditor();
 
 	// undo stuff:
-	private final UndoManager undoManagerNetwork = new UndoManager();
+	private final UndoManager undoManagerNetwork = new BoundedUndoManager();
 	private final UndoableEditSupport undoSupportNetwork = new UndoableEditSupport();
 
 	private final UndoManager undoManagerText = new UndoManager();
@@ -91,9 +93,12 @@ public class MainViewer extends PhyloGraphView implements IDirectableViewer, IMa
 
 	private boolean radiallyLayoutNodeLabels = false;
 
+	private final LODRenderer lodRenderer = new LODRenderer(this); // used to draw large graphs on screen
+
 	static private final Set<String> previouslySelectedNodeLabels = new HashSet<>(); // keep track of latest selection
 
     private ISearcher[] searchers; // searchers
+    private final LabelIndex labelIndex = new LabelIndex(this);
 
     /**
      * setup the viewer
@@ -296,6 +301,15 @@ public class MainViewer extends PhyloGraphView implements IDirectableViewer, IMa
         return editor;
     }
 
+    /**
+     * gets the index of node and edge labels used in searching
+     *
+     * @return label index
+     */
+    public LabelIndex getLabelIndex() {
+        return labelIndex;
+    }
+
 
     /**
      * gets all searchers required by this viewer
@@ -341,6 +355,7 @@ public class MainViewer extends PhyloGraphView implements IDirectableViewer, IMa
         setTitle(dir);
 
         SyncDocToViewer.syncNetworkToViewer(dir.getDocument(), this);
+        labelIndex.invalidate();
 
         setAutoLayoutLabels(dir.getDocument() != null && dir.getDocument().isValidByName(Assumptions.NAME)
                 && dir.getDocument().getAssumptions().getAutoLayoutNodeLabels());
@@ -362,17 +377,40 @@ public class MainViewer extends PhyloGraphView implements IDirectableViewer, IMa
     }
 
     /**
-     * paint the graph
+     * shows an intermediate network while the document is still being updated, e.g. a layout that is being
+     * optimized. Is replaced by the final network in the next update of the view. Call in the swing thread
+     */
+    public void showIntermediateNetwork(Network network) {
+        SyncDocToViewer.syncNetworkToViewer(dir.getDocument(), network, this);
+        labelIndex.invalidate();
+        trans.setCoordinateRect(getBBox());
+        repaint();
+    }
+
+    /**
+     * paint the graph. Large graphs are drawn on screen at a level of detail that depends on the zoom
      */
     public void paint(Graphics g) {
         trans.getMagnifier().setInRectilinearMode(!getLayoutType().equals(Network.CIRCULAR));
 
+        if (lodRenderer.isApplicable(g)) {
+            lodRenderer.paint((Graphics2D) g);
+            return;
+        }
+
         if (getRadiallyLayoutNodeLabels())
             RadiallyLayoutNodeLabels.doCircularLayoutNodeLabels(this);
 
         super.paint(g);
     }
 
+    /**
+     * tells the level-of-detail renderer that nodes or edges have been added, removed or moved
+     */
+    public void invalidateLODGrid() {
+        lodRenderer.invalidateGrid();
+    }
+
     /**
      * if we are in edit mode, make sure there is something to edit
      */
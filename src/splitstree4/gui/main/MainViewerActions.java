@@ -3193,6 +3193,39 @@ public class MainViewerActions {
         return confidenceWindow = action;
     }
 
+    private AbstractAction alignmentWindow;
+    private AlignmentViewer alignmentViewer;
+
+    /**
+     * show the alignment of the characters block
+     *
+     * @return action
+     */
+    public AbstractAction getAlignmentWindow() {
+        AbstractAction action = alignmentWindow;
+        if (action != null)
+            return action;
+
+        action = new AbstractAction() {
+            public void actionPerformed(ActionEvent event) {
+                if (dir.containsViewer(alignmentViewer)) {
+                    alignmentViewer.getFrame().setState(JFrame.NORMAL);
+                    alignmentViewer.getFrame().toFront();
+                } else {
+                    alignmentViewer = new AlignmentViewer(dir);
+                    dir.addViewer(alignmentViewer);
+                    alignmentViewer.updateView(Director.ALL);
+                }
+            }
+        };
+        action.putValue(AbstractAction.NAME, "Show Alignment...");
+        action.putValue(AbstractAction.SHORT_DESCRIPTION, "Show the alignment of the characters");
+        action.putValue(DirectorActions.CRITICAL, true);
+        action.putValue(DirectorActions.DEPENDS_ON, Characters.NAME);
+        all.add(action);
+        return alignmentWindow = action;
+    }
+
 
     private AbstractAction nodeEdgeConfigAction;
     private Configurator nodeEdgeConfigurator;
@@ -227,6 +227,7 @@ public class MainViewerMenuBar extends JMenuBar {
         //menu.add(mainViewer.getActions().getNodeEdgeConfigAction());
         menu.add(mainViewer.getActions().getNodeEdgeFormatterAction());
         menu.add(mainViewer.getActions().getConfidenceWindow());
+        menu.add(mainViewer.getActions().getAlignmentWindow());
         //menu.add(mainViewer.getActions().getMidpointRoot());
 
         //menu.add(mainViewer.getActions().getNetworkMidpoint());
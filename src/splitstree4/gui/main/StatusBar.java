@@ -64,17 +64,19 @@ public class StatusBar extends jloda.swing.util.StatusBar {
         else {
             String status = "";
             try {
+                // blocks still to be read from a snapshot are not read just to report them:
+                final boolean splitsLoaded = doc.isValidByName(Splits.NAME) && !doc.isDeferredByName(Splits.NAME);
 
                 //Check to see if the fit statistics need updating.
-                if ((fit || lsFit) && doc.isValidByName(Splits.NAME) && doc.isValidByName(Distances.NAME)) {
+                if ((fit || lsFit) && splitsLoaded && doc.isValidByName(Distances.NAME) && !doc.isDeferredByName(Distances.NAME)) {
                     if (doc.getSplits().getProperties().getFit() < 0 || doc.getSplits().getProperties().getLSFit() < 0)
                         SplitsUtilities.computeFits(true, doc.getSplits(), doc.getDistances(), null);
                 }
 
-                if (fit && doc.isValidByName(Splits.NAME) && doc.getSplits().getProperties().getFit() >= 0)
+                if (fit && splitsLoaded && doc.getSplits().getProperties().getFit() >= 0)
 					status += "Fit=" + NumberUtils.roundSigFig(doc.getSplits().getProperties().getFit(), 5);
 
-                if (lsFit && doc.isValidByName(Splits.NAME) && (doc.getSplits().getProperties().getLSFit() > 0))
+                if (lsFit && splitsLoaded && (doc.getSplits().getProperties().getLSFit() > 0))
 					status += " LSFit=" + NumberUtils.roundSigFig(doc.getSplits().getProperties().getLSFit(), 5);
 
                 if (taxa && doc.isValidByName(Taxa.NAME)) {
@@ -84,7 +86,7 @@ public class StatusBar extends jloda.swing.util.StatusBar {
                         status += " (of " + original.getNtax() + ")";
                 }
 
-                if (chars && doc.isValidByName(Characters.NAME)) {
+                if (chars && doc.isValidByName(Characters.NAME) && !doc.isDeferredByName(Characters.NAME)) {
                     if (doc.getCharacters().getNactive() == -1)
                         status += " Chars=" + doc.getCharacters().getNchar();
                     else {
@@ -94,14 +96,14 @@ public class StatusBar extends jloda.swing.util.StatusBar {
                     }
                 }
 
-                if (trees && doc.isValidByName(Trees.NAME)) {
+                if (trees && doc.isValidByName(Trees.NAME) && !doc.isDeferredByName(Trees.NAME)) {
                     status += " Trees=" + doc.getTrees().getNtrees();
                     Trees original = doc.getTrees().getOriginal();
                     if (original != null && original.getNtrees() != doc.getTrees().getNtrees())
                         status += " (of " + original.getNtrees() + ")";
                 }
 
-                if (splits && doc.isValidByName(Splits.NAME)) {
+                if (splits && splitsLoaded) {
                     status += " Splits=" + doc.getSplits().getNsplits();
                     Splits original = doc.getSplits().getOriginal();
                     if (original != null && original.getNsplits() > doc.getSplits().getNsplits())
@@ -114,27 +116,27 @@ public class StatusBar extends jloda.swing.util.StatusBar {
                     status += " [";
                     if (assumptions != null) {
                         boolean first = true;
-                        if (doc.getUnaligned() != null && assumptions.getUnalignedTransformName() != null) {
+                        if (doc.isPresentByName(Unaligned.NAME) && assumptions.getUnalignedTransformName() != null) {
                             if (first) status += Unaligned.NAME;
                             status += " > " + assumptions.getUnalignedTransformName().replaceAll(".*\\.", "");
                             first = false;
                         }
-                        if (doc.getCharacters() != null && assumptions.getCharactersTransformName() != null) {
+                        if (doc.isPresentByName(Characters.NAME) && assumptions.getCharactersTransformName() != null) {
                             if (first) status += Characters.NAME;
                             status += " > " + assumptions.getCharactersTransformName().replaceAll(".*\\.", "");
                             first = false;
                         }
-                        if (doc.getDistances() != null && assumptions.getDistancesTransformName() != null) {
+                        if (doc.isPresentByName(Distances.NAME) && assumptions.getDistancesTransformName() != null) {
                             if (first) status += Distances.NAME;
                             status += " > " + assumptions.getDistancesTransformName().replaceAll(".*\\.", "");
                             first = false;
                         }
-                        if (doc.getQuartets() != null && assumptions.getQuartetsTransformName() != null) {
+                        if (doc.isPresentByName(Quartets.NAME) && assumptions.getQuartetsTransformName() != null) {
                             if (first) status += "Quartets";
                             status += " > " + assumptions.getQuartetsTransformName().replaceAll(".*\\.", "");
                             first = false;
                         }
-                        if (doc.getTrees() != null && assumptions.getTreesTransformName() != null) {
+                        if (doc.isPresentByName(Trees.NAME) && assumptions.getTreesTransformName() != null) {
                             if (first) status += Trees.NAME;
                             status += " > " + assumptions.getTreesTransformName().replaceAll(".*\\.", "");
                             if (assumptions.getTreesTransformName().equals(Basic.getShortName(TreeSelector.class))) {
@@ -144,7 +146,7 @@ public class StatusBar extends jloda.swing.util.StatusBar {
                             }
                             first = false;
                         }
-                        if (doc.getSplits() != null && assumptions.getSplitsTransformName() != null) {
+                        if (doc.isPresentByName(Splits.NAME) && assumptions.getSplitsTransformName() != null) {
                             if (first) status += Splits.NAME;
                             status += " > " + assumptions.getSplitsTransformName().replaceAll(".*\\.", "");
                         }
@@ -33,16 +33,28 @@ import splitstree4.nexus.Network;
  */
 public class SyncDocToViewer {
     /**
-     * syncronizes the graph to viewer
+     * syncronizes the graph to viewer. If the network was last synchronized with this viewer and its nodes and
+     * edges are unchanged, then only changed nodes and edges are updated, otherwise the viewer's graph is rebuilt
      */
     public static void syncNetworkToViewer(Document doc, MainViewer viewer) {
-        if (viewer.getSelectedNodes().size() > 0) {
-            MainViewer.getPreviouslySelectedNodeLabels().clear();
-            MainViewer.getPreviouslySelectedNodeLabels().addAll(viewer.getSelectedNodeLabels());
-        }
-        viewer.resetViews();
+        syncNetworkToViewer(doc, doc.getNetwork(), viewer);
+    }
 
-        final Network network = doc.getNetwork();
+    /**
+     * syncronizes the given network to viewer, the network may be an intermediate result that is not yet
+     * contained in the document
+     */
+    public static void syncNetworkToViewer(Document doc, Network network, MainViewer viewer) {
+        final boolean rebuild = (network == null || !network.isSyncedWith(viewer));
+
+        if (rebuild) {
+            if (viewer.getSelectedNodes().size() > 0) {
+                MainViewer.getPreviouslySelectedNodeLabels().clear();
+                MainViewer.getPreviouslySelectedNodeLabels().addAll(viewer.getSelectedNodeLabels());
+            }
+            viewer.resetViews();
+        }
+        viewer.invalidateLODGrid();
 
         if (doc.isValid() && doc.getTaxa() != null && network != null) {
 
@@ -52,9 +64,10 @@ public class SyncDocToViewer {
                 //doc.taxon2VertexDescription = null; // don't reuse
             }
 
-            network.syncNetwork2PhyloGraphView(doc.getTaxa(), doc.getSplits(), viewer);
-            network.syncNetworkToEdgeLabels(viewer);
-            network.syncNetworkToNodeLabels(viewer);
+            if (network.syncNetwork2PhyloGraphView(doc.getTaxa(), doc.getSplits(), viewer)) {
+                network.syncNetworkToEdgeLabels(viewer);
+                network.syncNetworkToNodeLabels(viewer);
+            }
 
             if (doc.getAssumptions() == null)
                 doc.setAssumptions(new Assumptions());
@@ -21,8 +21,6 @@ package splitstree4.gui.main;
 import jloda.swing.util.BasicSwing;
 
 import javax.swing.*;
-import javax.swing.event.DocumentEvent;
-import javax.swing.event.DocumentListener;
 import javax.swing.event.MouseInputAdapter;
 import javax.swing.event.MouseInputListener;
 import javax.swing.text.*;
@@ -93,8 +91,6 @@ public class TextEditor extends JFrame {
 
     //ToDo: These could be system properties
     private static final Color HIGHLIGHT_COLOR = new Color(228, 228, 241);
-    private final static Color DEFAULT_BACKGROUND = new Color(230, 163, 4);
-    private final static int MARGIN = 5;
 
     private static class LineHighlightHandler extends DefaultHighlighter.DefaultHighlightPainter {
         private JTextComponent theTextComponent;
@@ -166,77 +162,6 @@ public class TextEditor extends JFrame {
         }
     }
 
-	private static class LineNumberPanel extends JPanel implements DocumentListener {
-		private final JTextComponent theTextComponent;
-		private final FontMetrics theFontMetrics;
-		private int currentRowWidth;
-
-		public LineNumberPanel(JTextComponent aTextComponent) {
-			theTextComponent = aTextComponent;
-			theTextComponent.getDocument().addDocumentListener(this);
-			setOpaque(true);
-			setBackground(DEFAULT_BACKGROUND);
-			setFont(theTextComponent.getFont());
-			theFontMetrics = getFontMetrics(getFont());
-			setForeground(theTextComponent.getForeground());
-            currentRowWidth = getDesiredRowWidth();
-        }
-
-        private void update() {
-            int desiredRowWidth = getDesiredRowWidth();
-            if (desiredRowWidth != currentRowWidth) {
-                currentRowWidth = desiredRowWidth;
-                revalidate();
-            }
-            repaint();
-        }
-
-        private int getDesiredRowWidth() {
-            Document doc = theTextComponent.getDocument();
-            int length = doc.getLength();
-            Element map = doc.getDefaultRootElement();
-            int nbLines = map.getElementIndex(length) + 1;
-            return theFontMetrics.stringWidth(Integer.toString(nbLines));
-        }
-
-        public void paintComponent(Graphics g) {
-            super.paintComponent(g);
-
-            try {
-                Document doc = theTextComponent.getDocument();
-                int length = doc.getLength();
-                Element map = doc.getDefaultRootElement();
-                int startLine = map.getElementIndex(0);
-                int endline = map.getElementIndex(length);
-                for (int line = startLine; line <= endline; line++) {
-                    int y = theTextComponent.modelToView(map.getElement(line).getStartOffset()).y + theFontMetrics.getHeight() - theFontMetrics.getDescent();
-                    String s = Integer.toString(line + 1);
-                    int width = theFontMetrics.stringWidth(s);
-                    g.drawString(s, MARGIN + currentRowWidth - width, y);
-                }
-            } catch (BadLocationException e) {
-                e.printStackTrace();
-            }
-
-        }
-
-        public Dimension getPreferredSize() {
-            return new Dimension(2 * MARGIN + currentRowWidth, theTextComponent.getHeight());
-        }
-
-        public void insertUpdate(DocumentEvent e) {
-            update();
-        }
-
-        public void removeUpdate(DocumentEvent e) {
-            update();
-        }
-
-        public void changedUpdate(DocumentEvent e) {
-            update();
-        }
-    }
-
     /**
      * gets the current editor text
      *
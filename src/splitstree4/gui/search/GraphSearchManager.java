@@ -23,11 +23,14 @@ import jloda.graph.Node;
 import splitstree4.gui.main.MainViewer;
 import splitstree4.gui.undo.ChangeEdgeLabelCommand;
 import splitstree4.gui.undo.ChangeNodeLabelCommand;
+import splitstree4.gui.undo.CompoundCommand;
 import splitstree4.gui.undo.Edit;
 import splitstree4.gui.undo.ICommand;
 
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -118,15 +121,71 @@ public class GraphSearchManager implements SearchManager {
     }
 
 
-    private boolean matchLabel(String regexp, String label, SearchOptions options) {
+    private boolean matchLabel(Pattern pattern, String label) {
 
         if (label == null)
             return false;
-        Pattern pattern = Pattern.compile(regexp);
         Matcher matcher = pattern.matcher(label);
         return matcher.find();
     }
 
+    /**
+     * gets the text that all matching labels must contain, so that the label index can be used
+     *
+     * @return text or null, if the search string is a regular expression containing special characters
+     */
+    private String getLiteral(String searchText, SearchOptions options) {
+        if (options.regExpression) {
+            for (int i = 0; i < searchText.length(); i++) {
+                if ("\\[](){}.*+?^$|".indexOf(searchText.charAt(i)) >= 0)
+                    return null;
+            }
+        }
+        return searchText;
+    }
+
+    /**
+     * gets all nodes and edges whose labels match, in the order in which they are searched
+     *
+     * @return nodes and edges, or null, if the label index can't be used
+     */
+    private List<Object> getMatches(String searchText, Pattern pattern, SearchOptions options) {
+        final String literal = getLiteral(searchText, options);
+        if (literal == null || literal.length() == 0)
+            return null;
+        final List<Object> matches = new ArrayList<>();
+        for (Object element : viewer.getLabelIndex().getCandidates(literal)) {
+            final String label = (element instanceof Node ? viewer.getLabel((Node) element) : viewer.getLabel((Edge) element));
+            if (matchLabel(pattern, label))
+                matches.add(element);
+        }
+        return matches;
+    }
+
+    /**
+     * gets the match that follows or precedes the given rank, in order of nodes and then edges
+     *
+     * @return next match or null
+     */
+    private Object getNextMatch(List<Object> matches, int rank, boolean forward, SearchOptions options) {
+        if (forward) {
+            for (Object element : matches) {
+                if (viewer.getLabelIndex().getRank(element) > rank)
+                    return element;
+            }
+            if (options.wrapSearch && matches.size() > 0)
+                return matches.get(0);
+        } else {
+            for (int i = matches.size() - 1; i >= 0; i--) {
+                if (viewer.getLabelIndex().getRank(matches.get(i)) < rank)
+                    return matches.get(i);
+            }
+            if (options.wrapSearch && matches.size() > 0)
+                return matches.get(matches.size() - 1);
+        }
+        return null;
+    }
+
 
     //Find next instance - returns true if one is found.
     private boolean singleSearch(String searchText, boolean forward, SearchOptions options) {
@@ -159,9 +218,20 @@ public class GraphSearchManager implements SearchManager {
         int count = 0;
 
         //Perform search for label matching regular expression.
-        //ToDo: For efficiency, compile pattern here.
-        String regExp = prepareRegexp(searchText, options);
-        while (!found && count < maxcount) {
+        final Pattern pattern = Pattern.compile(prepareRegexp(searchText, options));
+
+        // if possible, use the label index rather than testing all labels:
+        final List<Object> matches = getMatches(searchText, pattern, options);
+        if (matches != null) {
+            final int rank = (thisNode != null ? viewer.getLabelIndex().getRank(thisNode) :
+                    thisEdge != null ? viewer.getLabelIndex().getRank(thisEdge) : (forward ? -1 : Integer.MAX_VALUE));
+            final Object next = getNextMatch(matches, rank, forward, options);
+            found = (next != null);
+            thisNode = (next instanceof Node ? (Node) next : null);
+            thisEdge = (next instanceof Edge ? (Edge) next : null);
+        }
+
+        while (matches == null && !found && count < maxcount) {
             if (searchingNodes) {
 
                 if (thisNode != null)
@@ -184,7 +254,7 @@ public class GraphSearchManager implements SearchManager {
                 else {
                     count++;
                     String label = viewer.getLabel(thisNode);
-                    if (matchLabel(regExp, label, options))
+                    if (matchLabel(pattern, label))
                         found = true;
                 }
             } else {
@@ -210,7 +280,7 @@ public class GraphSearchManager implements SearchManager {
                 else {
                     count++;
                     String label = viewer.getLabel(thisEdge);
-                    if (matchLabel(regExp, label, options))
+                    if (matchLabel(pattern, label))
                         found = true;
                 }
             }
@@ -296,89 +366,62 @@ public class GraphSearchManager implements SearchManager {
 
     public int replaceAll(String searchText, String replaceText, SearchOptions options) {
 
-        int numNodesChanged = 0;
-        int numEdgesChanged = 0;
-
-        Iterator<Node> nodeIterator = viewer.getGraph().nodes().iterator();
-        Iterator<Edge> edgeIterator = viewer.getGraph().edges().iterator();
-
-        if (options.replaceAllSelectionOnly) {
-            nodeIterator = viewer.getSelectedNodes().iterator();
-            edgeIterator = viewer.getSelectedEdges().iterator();
-        }
-
-        String regExp = prepareRegexp(searchText, options);
-
-        //   CompoundCommand compoundCmd = new CompoundCommand();
+        final Pattern pattern = Pattern.compile(prepareRegexp(searchText, options));
+        final CompoundCommand compoundCmd = new CompoundCommand();
 
-        while (nodeIterator.hasNext()) {
-            Node thisNode = nodeIterator.next();
-            String label = viewer.getLabel(thisNode);
-            if (matchLabel(regExp, label, options)) {
-                label = label.replaceAll(regExp, replaceText);
-                final ICommand cmd = new ChangeNodeLabelCommand(viewer, thisNode, label);
-                //compoundCmd.add(cmd);
-                new Edit(cmd, "replace in node label").execute(viewer.getUndoSupportNetwork());
-                numNodesChanged++;
-            }
-        }
-
-        while (edgeIterator.hasNext()) {
-			Edge thisEdge = edgeIterator.next();
-			String label = viewer.getLabel(thisEdge);
-            if (matchLabel(regExp, label, options)) {
-                label = label.replaceAll(regExp, replaceText);
-                final ICommand cmd = new ChangeEdgeLabelCommand(viewer, thisEdge, label);
-                //compoundCmd.add(cmd);
-                new Edit(cmd, "replace in node label").execute(viewer.getUndoSupportNetwork());
-                numEdgesChanged++;
+        for (Object element : getElementsToSearch(searchText, pattern, options)) {
+            if (element instanceof Node) {
+                Node thisNode = (Node) element;
+                String label = viewer.getLabel(thisNode);
+                if (matchLabel(pattern, label))
+                    compoundCmd.add(new ChangeNodeLabelCommand(viewer, thisNode, pattern.matcher(label).replaceAll(replaceText)));
+            } else {
+                Edge thisEdge = (Edge) element;
+                String label = viewer.getLabel(thisEdge);
+                if (matchLabel(pattern, label))
+                    compoundCmd.add(new ChangeEdgeLabelCommand(viewer, thisEdge, pattern.matcher(label).replaceAll(replaceText)));
             }
         }
 
-        //new Edit(compoundCmd,"replace all").execute(viewer.getUndoSupportNetwork());
+        // all replacements are undone in a single step:
+        if (compoundCmd.size() > 0)
+            new Edit(compoundCmd, "replace all").execute(viewer.getUndoSupportNetwork());
 
-        return numNodesChanged + numEdgesChanged;  //To change body of implemented methods use File | Settings | File Templates.
+        return compoundCmd.size();
     }
 
     public void findAll(String searchText, SearchOptions options) {
         Rectangle bbox = null; // need the bbox to adjust the scrollbars
 
-        Iterator<Node> nodeIterator = viewer.getGraph().nodes().iterator();
-        Iterator<Edge> edgeIterator = viewer.getGraph().edges().iterator();
-
-        if (options.replaceAllSelectionOnly) {
-            nodeIterator = viewer.getSelectedNodes().iterator();
-            edgeIterator = viewer.getSelectedEdges().iterator();
-        }
-
-        String regExp = prepareRegexp(searchText, options);
+        final Pattern pattern = Pattern.compile(prepareRegexp(searchText, options));
+        final List<Object> elements = getElementsToSearch(searchText, pattern, options);
         viewer.selectAllNodes(false);
         viewer.selectAllEdges(false);
 
-        while (nodeIterator.hasNext()) {
-            Node thisNode = nodeIterator.next();
-            String label = viewer.getLabel(thisNode);
-            if (matchLabel(regExp, label, options)) {
-                viewer.setSelected(thisNode, true);
-                if (bbox == null)
-                    bbox = new Rectangle(viewer.trans.w2d(viewer.getLocation(thisNode)));
-                else
-                    bbox.add(viewer.trans.w2d(viewer.getLocation(thisNode)));
-            }
-        }
-
-        while (edgeIterator.hasNext()) {
-			Edge thisEdge = edgeIterator.next();
-			String label = viewer.getLabel(thisEdge);
-            if (matchLabel(regExp, label, options)) {
-                viewer.setSelected(thisEdge, true);
-                if (bbox == null) {
-                    bbox = new Rectangle(viewer.trans.w2d(viewer.getLocation(thisEdge.getSource())));
-                    bbox.add(viewer.trans.w2d(viewer.getLocation(thisEdge.getTarget())));
-                } else {
-                    bbox.add(viewer.trans.w2d(viewer.getLocation(thisEdge.getSource())));
-                    bbox.add(viewer.trans.w2d(viewer.getLocation(thisEdge.getTarget())));
-
+        for (Object element : elements) {
+            if (element instanceof Node) {
+                Node thisNode = (Node) element;
+                String label = viewer.getLabel(thisNode);
+                if (matchLabel(pattern, label)) {
+                    viewer.setSelected(thisNode, true);
+                    if (bbox == null)
+                        bbox = new Rectangle(viewer.trans.w2d(viewer.getLocation(thisNode)));
+                    else
+                        bbox.add(viewer.trans.w2d(viewer.getLocation(thisNode)));
+                }
+            } else {
+                Edge thisEdge = (Edge) element;
+                String label = viewer.getLabel(thisEdge);
+                if (matchLabel(pattern, label)) {
+                    viewer.setSelected(thisEdge, true);
+                    if (bbox == null) {
+                        bbox = new Rectangle(viewer.trans.w2d(viewer.getLocation(thisEdge.getSource())));
+                        bbox.add(viewer.trans.w2d(viewer.getLocation(thisEdge.getTarget())));
+                    } else {
+                        bbox.add(viewer.trans.w2d(viewer.getLocation(thisEdge.getSource())));
+                        bbox.add(viewer.trans.w2d(viewer.getLocation(thisEdge.getTarget())));
+
+                    }
                 }
             }
         }
@@ -390,4 +433,29 @@ public class GraphSearchManager implements SearchManager {
             viewer.repaint();
         }
     }
+
+    /**
+     * gets the nodes and edges to be searched by find all or replace all. If all nodes and edges are to be searched,
+     * only those found by the label index are returned, if possible
+     *
+     * @return nodes and edges
+     */
+    private List<Object> getElementsToSearch(String searchText, Pattern pattern, SearchOptions options) {
+        if (!options.replaceAllSelectionOnly) {
+            final List<Object> matches = getMatches(searchText, pattern, options);
+            if (matches != null)
+                return matches;
+        }
+        final List<Object> elements = new ArrayList<>();
+        if (options.replaceAllSelectionOnly) {
+            elements.addAll(viewer.getSelectedNodes());
+            elements.addAll(viewer.getSelectedEdges());
+        } else {
+            for (Node v : viewer.getGraph().nodes())
+                elements.add(v);
+            for (Edge e : viewer.getGraph().edges())
+                elements.add(e);
+        }
+        return elements;
+    }
 }
@@ -0,0 +1,255 @@
+/*
+ * LabelIndex.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.gui.search;
+
+import jloda.graph.Edge;
+import jloda.graph.Graph;
+import jloda.graph.Node;
+import jloda.swing.graphview.PhyloGraphView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * index of the node and edge labels of a graph view, used to find the labels that contain a given text without
+ * testing all labels. Labels are indexed by their trigrams, ignoring case. A query returns candidates, that is,
+ * all nodes and edges whose labels contain the text, ignoring case, and the caller must check its own match criteria.
+ * <p/>
+ * Label changes must be reported using update(). The index is rebuilt when invalidated or when the number of nodes
+ * or edges has changed
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class LabelIndex {
+    private final PhyloGraphView viewer;
+
+    private boolean valid = false;
+    private int numberOfNodes;
+    private int numberOfEdges;
+
+    // each label is stored in a slot, a changed label is given a new slot and the old one is freed
+    private Object[] slot2element = new Object[0];
+    private String[] slot2label = new String[0];
+    private int[] slot2rank = new int[0]; // position of the element in the graph, nodes come before edges
+    private int numberOfSlots;
+    private int numberOfFreeSlots;
+    private final Map<Object, Integer> element2slot = new HashMap<>();
+    private final Map<Long, Postings> trigram2slots = new HashMap<>();
+
+    /**
+     * constructor
+     */
+    public LabelIndex(PhyloGraphView viewer) {
+        this.viewer = viewer;
+    }
+
+    /**
+     * forces the index to be rebuilt before it is used next
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * reports that the label of a node has changed
+     */
+    public void update(Node v) {
+        updateElement(v, viewer.getLabel(v));
+    }
+
+    /**
+     * reports that the label of an edge has changed
+     */
+    public void update(Edge e) {
+        updateElement(e, viewer.getLabel(e));
+    }
+
+    /**
+     * gets the position of a node or edge in the graph, nodes come before edges
+     *
+     * @return rank or -1, if not indexed
+     */
+    public int getRank(Object element) {
+        ensureValid();
+        final Integer slot = element2slot.get(element);
+        return (slot != null ? slot2rank[slot] : -1);
+    }
+
+    /**
+     * gets all nodes and edges whose labels contain the given text, ignoring case
+     *
+     * @param text the text, must not be empty
+     * @return nodes and edges, ordered by rank
+     */
+    public List<Object> getCandidates(String text) {
+        ensureValid();
+        final String query = toLowerCase(text);
+
+        int[] slots;
+        int count;
+        if (query.length() < 3) {
+            slots = null;
+            count = numberOfSlots;
+        } else {
+            // intersect the slots of all trigrams of the query, starting with the rarest:
+            final Postings[] lists = new Postings[query.length() - 2];
+            for (int i = 0; i + 3 <= query.length(); i++) {
+                lists[i] = trigram2slots.get(trigram(query, i));
+                if (lists[i] == null)
+                    return new ArrayList<>();
+            }
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+            slots = Arrays.copyOf(lists[0].slots, lists[0].size);
+            count = slots.length;
+            for (int k = 1; k < lists.length && count > 0; k++)
+                count = retain(slots, count, lists[k]);
+        }
+
+        final List<Integer> found = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final int slot = (slots != null ? slots[i] : i);
+            if (slot2element[slot] != null && slot2label[slot].contains(query))
+                found.add(slot);
+        }
+        found.sort((a, b) -> Integer.compare(slot2rank[a], slot2rank[b]));
+        final List<Object> result = new ArrayList<>(found.size());
+        for (int slot : found)
+            result.add(slot2element[slot]);
+        return result;
+    }
+
+    /**
+     * rebuilds the index, if necessary
+     */
+    private void ensureValid() {
+        final Graph graph = viewer.getGraph();
+        if (valid && graph.getNumberOfNodes() == numberOfNodes && graph.getNumberOfEdges() == numberOfEdges)
+            return;
+
+        numberOfNodes = graph.getNumberOfNodes();
+        numberOfEdges = graph.getNumberOfEdges();
+        final int size = numberOfNodes + numberOfEdges;
+        slot2element = new Object[size];
+        slot2label = new String[size];
+        slot2rank = new int[size];
+        numberOfSlots = 0;
+        numberOfFreeSlots = 0;
+        element2slot.clear();
+        trigram2slots.clear();
+
+        int rank = 0;
+        for (Node v = graph.getFirstNode(); v != null; v = v.getNext())
+            addSlot(v, viewer.getLabel(v), rank++);
+        for (Edge e = graph.getFirstEdge(); e != null; e = e.getNext())
+            addSlot(e, viewer.getLabel(e), rank++);
+        valid = true;
+    }
+
+    /**
+     * moves an element to a new slot, so that the slots of each trigram remain sorted
+     */
+    private void updateElement(Object element, String label) {
+        if (!valid)
+            return;
+        final Integer slot = element2slot.get(element);
+        if (slot == null) {
+            valid = false;
+            return;
+        }
+        slot2element[slot] = null;
+        slot2label[slot] = null;
+        numberOfFreeSlots++;
+        if (numberOfFreeSlots > numberOfSlots / 2)
+            valid = false; // rebuild to get rid of the free slots
+        else
+            addSlot(element, label, slot2rank[slot]);
+    }
+
+    /**
+     * adds the label of an element to the index
+     */
+    private void addSlot(Object element, String label, int rank) {
+        if (numberOfSlots == slot2element.length) {
+            final int capacity = Math.max(16, 2 * numberOfSlots);
+            slot2element = Arrays.copyOf(slot2element, capacity);
+            slot2label = Arrays.copyOf(slot2label, capacity);
+            slot2rank = Arrays.copyOf(slot2rank, capacity);
+        }
+        final int slot = numberOfSlots++;
+        final String lowerCase = (label != null ? toLowerCase(label) : "");
+        slot2element[slot] = element;
+        slot2label[slot] = lowerCase;
+        slot2rank[slot] = rank;
+        element2slot.put(element, slot);
+
+        for (int i = 0; i + 3 <= lowerCase.length(); i++)
+            trigram2slots.computeIfAbsent(trigram(lowerCase, i), k -> new Postings()).add(slot);
+    }
+
+    /**
+     * keeps those of the first count slots that are contained in the given postings. Both are sorted
+     *
+     * @return number of slots kept
+     */
+    private static int retain(int[] slots, int count, Postings postings) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            while (j < postings.size && postings.slots[j] < slots[i])
+                j++;
+            if (j < postings.size && postings.slots[j] == slots[i])
+                slots[kept++] = slots[i];
+        }
+        return kept;
+    }
+
+    private static long trigram(String str, int i) {
+        return ((long) str.charAt(i) << 32) | ((long) str.charAt(i + 1) << 16) | str.charAt(i + 2);
+    }
+
+    /**
+     * lower case, character by character, so that positions are the same as in the original string
+     */
+    private static String toLowerCase(String str) {
+        final char[] chars = str.toCharArray();
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = Character.toLowerCase(chars[i]);
+        return new String(chars);
+    }
+
+    /**
+     * sorted list of slots
+     */
+    private static class Postings {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size > 0 && slots[size - 1] == slot)
+                return; // trigram occurs more than once in the same label
+            if (size == slots.length)
+                slots = Arrays.copyOf(slots, 2 * size);
+            slots[size++] = slot;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * AlignmentSheet.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.gui.spreadsheet;
+
+import splitstree4.nexus.Characters;
+import splitstree4.nexus.Taxa;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * spreadsheet-like view of an alignment. In contrast to SpreadSheet, no cell objects are created:
+ * the states are read directly from the characters block and only the visible cells are painted.
+ * The color of each state and whether a site is variable are computed once and cached.
+ * Variable sites are shown in color, constant ones in gray
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class AlignmentSheet extends JComponent implements Scrollable {
+    private final static Color CONSTANT_COLOR = Color.GRAY;
+    private final static Color MASKED_COLOR = new Color(200, 200, 200);
+    private final static int MARGIN = 4;
+    private final static int SITE_CHUNK = 256;
+
+    private final JScrollPane scrollPane;
+    private final RowHeader rowHeader = new RowHeader();
+    private final ColumnHeader columnHeader = new ColumnHeader();
+
+    private final int cellWidth;
+    private final int cellHeight;
+    private final int ascent;
+
+    private Taxa taxa;
+    private Characters characters;
+    private int ntax;
+    private int nchar;
+
+    private final Color[] asciiColors = new Color[128]; // cached colors of states, null means not yet computed
+    private final Map<Character, Color> otherColors = new HashMap<>();
+    private byte[] siteVariability; // 0: not yet computed, 1: constant, 2: variable
+
+    /**
+     * constructor
+     */
+    public AlignmentSheet() {
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        setFont(new Font("Monospaced", Font.PLAIN, 12));
+        final FontMetrics metrics = getFontMetrics(getFont());
+        cellWidth = metrics.charWidth('W');
+        cellHeight = metrics.getHeight();
+        ascent = metrics.getAscent();
+        setToolTipText("");
+
+        scrollPane = new JScrollPane(this);
+        scrollPane.setRowHeaderView(rowHeader);
+        scrollPane.setColumnHeaderView(columnHeader);
+    }
+
+    /**
+     * sets the alignment to be shown. Cached colors are discarded, as the block may have been changed in place
+     *
+     * @param taxa       the taxa
+     * @param characters the characters, or null
+     */
+    public void setCharacters(Taxa taxa, Characters characters) {
+        this.taxa = taxa;
+        this.characters = characters;
+        ntax = (characters != null && taxa != null ? taxa.getNtax() : 0);
+        nchar = (characters != null ? characters.getNchar() : 0);
+        Arrays.fill(asciiColors, null);
+        otherColors.clear();
+        siteVariability = new byte[nchar + 1];
+        rowHeader.updateWidth();
+        revalidate();
+        rowHeader.revalidate();
+        columnHeader.revalidate();
+        repaint();
+        rowHeader.repaint();
+        columnHeader.repaint();
+    }
+
+    /**
+     * gets the scroll pane containing the sheet and its headers
+     *
+     * @return scroll pane
+     */
+    public JScrollPane getScrollPane() {
+        return scrollPane;
+    }
+
+    public void paintComponent(Graphics g) {
+        final Rectangle clip = g.getClipBounds();
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (ntax == 0 || nchar == 0)
+            return;
+
+        final int firstSite = Math.max(1, clip.x / cellWidth + 1);
+        final int lastSite = Math.min(nchar, (clip.x + clip.width) / cellWidth + 1);
+        final int firstTaxon = Math.max(1, clip.y / cellHeight + 1);
+        final int lastTaxon = Math.min(ntax, (clip.y + clip.height) / cellHeight + 1);
+        if (firstSite > lastSite || firstTaxon > lastTaxon)
+            return;
+
+        g.setFont(getFont());
+        final char[] states = new char[lastSite - firstSite + 1];
+        for (int t = firstTaxon; t <= lastTaxon; t++) {
+            final int y = (t - 1) * cellHeight;
+            // fill runs of cells of the same color with a single rectangle:
+            Color runColor = null;
+            int runStart = firstSite;
+            for (int c = firstSite; c <= lastSite + 1; c++) {
+                final Color color;
+                if (c <= lastSite) {
+                    states[c - firstSite] = characters.get(t, c);
+                    color = getCellColor(states[c - firstSite], c);
+                } else
+                    color = null;
+                if (c == firstSite)
+                    runColor = color;
+                else if (color != runColor) {
+                    if (runColor != null) {
+                        g.setColor(runColor);
+                        g.fillRect((runStart - 1) * cellWidth, y, (c - runStart) * cellWidth, cellHeight);
+                    }
+                    runColor = color;
+                    runStart = c;
+                }
+            }
+            // draw the states of variable sites in black and of constant sites in gray:
+            for (int c = firstSite; c <= lastSite; ) {
+                final boolean variable = isVariable(c);
+                int end = c;
+                while (end + 1 <= lastSite && isVariable(end + 1) == variable)
+                    end++;
+                g.setColor(variable ? getForeground() : CONSTANT_COLOR);
+                g.drawChars(states, c - firstSite, end - c + 1, (c - 1) * cellWidth, y + ascent);
+                c = end + 1;
+            }
+        }
+    }
+
+    /**
+     * gets the background color of a cell
+     *
+     * @return color, or null, if the cell has no background
+     */
+    private Color getCellColor(char ch, int site) {
+        if (characters.isMasked(site))
+            return MASKED_COLOR;
+        if (!isVariable(site))
+            return null;
+        return getStateColor(ch);
+    }
+
+    /**
+     * gets the color of a state, computing it the first time that the state is seen
+     *
+     * @return color, or null, for states that have no color, such as gaps and missing
+     */
+    private Color getStateColor(char ch) {
+        if (ch < asciiColors.length) {
+            Color color = asciiColors[ch];
+            if (color == null)
+                asciiColors[ch] = color = computeStateColor(ch);
+            return (color == getBackground() ? null : color);
+        } else {
+            Color color = otherColors.computeIfAbsent(ch, this::computeStateColor);
+            return (color == getBackground() ? null : color);
+        }
+    }
+
+    /**
+     * computes the color of a state from the color index of the characters block
+     *
+     * @return color, the background color is used for states without color
+     */
+    private Color computeStateColor(char ch) {
+        final int index = characters.getColor(ch);
+        if (index <= 0)
+            return getBackground();
+        if (characters.isNucleotides()) {
+            switch (index) {
+                case 1:
+                    return new Color(160, 230, 160); // a
+                case 2:
+                    return new Color(160, 190, 255); // c
+                case 3:
+                    return new Color(255, 210, 140); // g
+                case 4:
+                    return new Color(255, 160, 160); // t or u
+            }
+        }
+        return Color.getHSBColor((index * 0.618034f) % 1f, 0.35f, 1f);
+    }
+
+    /**
+     * is the site variable? Computed the first time it is asked and then cached. Sites are computed in chunks,
+     * reading the matrix row by row, which is much faster than reading a single column of a large alignment
+     *
+     * @return true, if not all taxa have the same state
+     */
+    private boolean isVariable(int site) {
+        if (siteVariability[site] == 0) {
+            final int first = ((site - 1) / SITE_CHUNK) * SITE_CHUNK + 1;
+            final int last = Math.min(nchar, first + SITE_CHUNK - 1);
+            final char[] states = new char[last - first + 1];
+            for (int c = first; c <= last; c++) {
+                states[c - first] = Character.toLowerCase(characters.get(1, c));
+                siteVariability[c] = 1;
+            }
+            int numberConstant = states.length;
+            for (int t = 2; t <= ntax && numberConstant > 0; t++) {
+                for (int c = first; c <= last; c++) {
+                    final char ch = characters.get(t, c);
+                    if (siteVariability[c] == 1 && ch != states[c - first] && Character.toLowerCase(ch) != states[c - first]) {
+                        siteVariability[c] = 2;
+                        numberConstant--;
+                    }
+                }
+            }
+        }
+        return siteVariability[site] == 2;
+    }
+
+    public String getToolTipText(MouseEvent event) {
+        final int t = event.getY() / cellHeight + 1;
+        final int c = event.getX() / cellWidth + 1;
+        if (t >= 1 && t <= ntax && c >= 1 && c <= nchar)
+            return taxa.getLabel(t) + ", site " + c + ": " + characters.get(t, c);
+        else
+            return null;
+    }
+
+    public Dimension getPreferredSize() {
+        return new Dimension((int) Math.min(Integer.MAX_VALUE / 2, (long) nchar * cellWidth),
+                (int) Math.min(Integer.MAX_VALUE / 2, (long) ntax * cellHeight));
+    }
+
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(Math.min(getPreferredSize().width, 80 * cellWidth), Math.min(getPreferredSize().height, 30 * cellHeight));
+    }
+
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return (orientation == SwingConstants.VERTICAL ? cellHeight : cellWidth);
+    }
+
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        if (orientation == SwingConstants.VERTICAL)
+            return Math.max(cellHeight, visibleRect.height - cellHeight);
+        else
+            return Math.max(cellWidth, visibleRect.width - cellWidth);
+    }
+
+    public boolean getScrollableTracksViewportWidth() {
+        return getParent() instanceof JViewport && getParent().getWidth() > getPreferredSize().width;
+    }
+
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+    }
+
+    /**
+     * shows the taxon labels, only the visible ones are painted
+     */
+    private class RowHeader extends JComponent {
+        private int width = 2 * MARGIN;
+
+        RowHeader() {
+            setOpaque(true);
+            setBackground(new Color(240, 240, 240));
+        }
+
+        void updateWidth() {
+            final FontMetrics metrics = getFontMetrics(AlignmentSheet.this.getFont());
+            width = 2 * MARGIN;
+            for (int t = 1; t <= ntax; t++)
+                width = Math.max(width, metrics.stringWidth(taxa.getLabel(t)) + 2 * MARGIN);
+        }
+
+        public Dimension getPreferredSize() {
+            return new Dimension(width, AlignmentSheet.this.getPreferredSize().height);
+        }
+
+        public void paintComponent(Graphics g) {
+            final Rectangle clip = g.getClipBounds();
+            g.setColor(getBackground());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+            g.setColor(Color.BLACK);
+            g.setFont(AlignmentSheet.this.getFont());
+            final int firstTaxon = Math.max(1, clip.y / cellHeight + 1);
+            final int lastTaxon = Math.min(ntax, (clip.y + clip.height) / cellHeight + 1);
+            for (int t = firstTaxon; t <= lastTaxon; t++)
+                g.drawString(taxa.getLabel(t), MARGIN, (t - 1) * cellHeight + ascent);
+        }
+    }
+
+    /**
+     * shows the site numbers, every tenth site is labeled and masked sites are marked
+     */
+    private class ColumnHeader extends JComponent {
+        ColumnHeader() {
+            setOpaque(true);
+            setBackground(new Color(240, 240, 240));
+        }
+
+        public Dimension getPreferredSize() {
+            return new Dimension(AlignmentSheet.this.getPreferredSize().width, cellHeight + MARGIN);
+        }
+
+        public void paintComponent(Graphics g) {
+            final Rectangle clip = g.getClipBounds();
+            g.setColor(getBackground());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+            if (nchar == 0)
+                return;
+            g.setFont(AlignmentSheet.this.getFont());
+            // extend to the left, so that labels that start before the clip are drawn, too:
+            final int firstSite = Math.max(1, (clip.x - 10 * cellWidth) / cellWidth + 1);
+            final int lastSite = Math.min(nchar, (clip.x + clip.width) / cellWidth + 1);
+            for (int c = firstSite; c <= lastSite; c++) {
+                final int x = (c - 1) * cellWidth;
+                if (characters.isMasked(c)) {
+                    g.setColor(MASKED_COLOR);
+                    g.fillRect(x, 0, cellWidth, getHeight());
+                }
+                if (c % 10 == 0 || c == 1) {
+                    g.setColor(Color.BLACK);
+                    g.drawLine(x + cellWidth / 2, getHeight() - MARGIN, x + cellWidth / 2, getHeight());
+                    g.drawString(String.valueOf(c), x, ascent);
+                }
+            }
+        }
+    }
+}
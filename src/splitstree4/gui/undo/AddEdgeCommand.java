@@ -106,6 +106,7 @@ public class AddEdgeCommand extends ICommandAdapter implements ICommand {
                 viewer.getGraph().deleteEdge(edgeToDelete);
             setReverseCommand(new AddEdgeCommand(viewer, a, b, x, y, null, null));
         }
+        viewer.invalidateLODGrid();
         viewer.repaint();
         return getReverseCommand();
     }
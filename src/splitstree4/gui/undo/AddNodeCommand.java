@@ -74,6 +74,7 @@ public class AddNodeCommand extends ICommandAdapter implements ICommand {
             viewer.getGraph().deleteNode(toDelete);
             setReverseCommand(new AddNodeCommand(viewer, x, y, null));
         }
+        viewer.invalidateLODGrid();
         viewer.repaint();
         return getReverseCommand();
     }
@@ -0,0 +1,93 @@
+/*
+ * BoundedUndoManager.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.gui.undo;
+
+import javax.swing.undo.UndoManager;
+import javax.swing.undo.UndoableEdit;
+
+/**
+ * undo manager that, in addition to the number of edits, limits the estimated memory held by the undo history.
+ * When the limit is exceeded, the oldest edits are discarded. The most recent edit is always kept
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class BoundedUndoManager extends UndoManager {
+    public static final long DEFAULT_MAX_MEMORY = 64L * 1024 * 1024;
+
+    private long maxMemory;
+
+    public BoundedUndoManager() {
+        this(DEFAULT_MAX_MEMORY);
+    }
+
+    /**
+     * constructor
+     *
+     * @param maxMemory max number of bytes held by edits
+     */
+    public BoundedUndoManager(long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    public synchronized boolean addEdit(UndoableEdit anEdit) {
+        final boolean result = super.addEdit(anEdit);
+        trimForMemory();
+        return result;
+    }
+
+    public synchronized long getMaxMemory() {
+        return maxMemory;
+    }
+
+    public synchronized void setMaxMemory(long maxMemory) {
+        this.maxMemory = maxMemory;
+        trimForMemory();
+    }
+
+    /**
+     * estimated number of bytes held by all edits
+     *
+     * @return size
+     */
+    public synchronized long getMemorySize() {
+        long size = 0;
+        for (UndoableEdit edit : edits)
+            size += getMemorySize(edit);
+        return size;
+    }
+
+    /**
+     * discards the oldest edits until the history fits into the memory limit
+     */
+    private void trimForMemory() {
+        long size = 0;
+        for (int i = edits.size() - 1; i > 0; i--) {
+            size += getMemorySize(edits.get(i));
+            if (size + getMemorySize(edits.get(i - 1)) > maxMemory) {
+                trimEdits(0, i - 1);
+                return;
+            }
+        }
+    }
+
+    private static long getMemorySize(UndoableEdit edit) {
+        return (edit instanceof Edit ? ((Edit) edit).getMemorySize() : 64);
+    }
+}
@@ -47,6 +47,7 @@ public class ChangeEdgeLabelCommand extends ICommandAdapter implements ICommand
             label = null;
         viewer.setLabel(e, label);
         viewer.setLabelVisible(e, label != null && label.length() > 0);
+        viewer.getLabelIndex().update(e);
         viewer.repaint();
         return getReverseCommand();
     }
@@ -47,6 +47,7 @@ public class ChangeNodeLabelCommand extends ICommandAdapter implements ICommand
             label = null;
         viewer.setLabel(v, label);
         viewer.setLabelVisible(v, label != null && label.length() > 0);
+        viewer.getLabelIndex().update(v);
         viewer.repaint();
         return getReverseCommand();
     }
@@ -19,6 +19,7 @@
 package splitstree4.gui.undo;
 
 
+import java.util.Iterator;
 import java.util.LinkedList;
 
 /**
@@ -48,5 +49,29 @@ public class CompoundCommand extends LinkedList<ICommand> implements ICommand {
         }
         return getReverseCommand();
     }
+
+    /**
+     * two compound commands are combined, if their commands can be combined pairwise
+     */
+    public ICommand coalesce(ICommand later) {
+        if (!(later instanceof CompoundCommand) || ((CompoundCommand) later).size() != size())
+            return null;
+        final CompoundCommand result = new CompoundCommand();
+        final Iterator<ICommand> it = ((CompoundCommand) later).iterator();
+        for (ICommand cmd : this) {
+            final ICommand combined = cmd.coalesce(it.next());
+            if (combined == null)
+                return null;
+            result.add(combined);
+        }
+        return result;
+    }
+
+    public long getMemorySize() {
+        long size = 64;
+        for (ICommand cmd : this)
+            size += cmd.getMemorySize();
+        return size;
+    }
 }
 
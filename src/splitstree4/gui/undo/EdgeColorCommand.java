@@ -19,19 +19,18 @@
 package splitstree4.gui.undo;
 
 import jloda.graph.Edge;
-import jloda.graph.EdgeArray;
 import splitstree4.gui.main.MainViewer;
 
 import java.awt.*;
 import java.util.Random;
 
 /**
- * set the color of all selected edges
+ * set the color of all selected edges. Only the colors of the selected edges are kept
  * Daniel Huson and David Bryant
  */
 public class EdgeColorCommand extends ICommandAdapter implements ICommand {
 	final MainViewer viewer;
-	final EdgeArray colors;
+	final ElementValues colors; // foreground, label background and label color for each edge
 	final boolean fg;
 	final boolean label;
 	final boolean lbg;
@@ -49,43 +48,34 @@ public class EdgeColorCommand extends ICommandAdapter implements ICommand {
 
         Random rand = new Random();
 
-        colors = new EdgeArray(viewer.getGraph());
+        final ElementValues.Builder builder = new ElementValues.Builder(3);
         for (Edge a = viewer.getGraph().getFirstEdge(); a != null; a = a.getNext()) {
-            if (!viewer.getSelected(a)) {
-                if (fg)
-                    colors.put(a, viewer.getColor(a));
-                else if (lbg)
-                    colors.put(a, viewer.getLabelBackgroundColor(a));
-                else if (label)
-                    colors.put(a, viewer.getLabelColor(a));
-            } else if (randomColors)
-                colors.put(a, new Color(rand.nextInt(256), rand.nextInt(256), rand.nextInt(256)));
-
-            else colors.put(a, color);
+            if (viewer.getSelected(a)) {
+                final double value = ElementValues.encode(randomColors ? new Color(rand.nextInt(256), rand.nextInt(256), rand.nextInt(256)) : color);
+                builder.add(a.getId(), value, value, value);
+            }
         }
+        colors = builder.build();
     }
 
     /**
-     * constructor  for reverse command
+     * constructor  for reverse command, keeps the current colors of the given edges
      *
 	 */
-	private EdgeColorCommand(MainViewer viewer, boolean fg, boolean label, boolean lbg) {
+	private EdgeColorCommand(MainViewer viewer, ElementValues edges, boolean fg, boolean label, boolean lbg) {
         this.viewer = viewer;
         this.fg = fg;
         this.label = label;
         this.lbg = lbg;
 
-        colors = new EdgeArray(viewer.getGraph());
+        final ElementValues.Builder builder = new ElementValues.Builder(3);
         for (Edge a = viewer.getGraph().getFirstEdge(); a != null; a = a.getNext()) {
-            {
-                if (fg)
-                    colors.put(a, viewer.getColor(a));
-                else if (lbg)
-                    colors.put(a, viewer.getLabelBackgroundColor(a));
-                else if (label)
-                    colors.put(a, viewer.getLabelColor(a));
+            if (edges.indexOf(a.getId()) >= 0) {
+                builder.add(a.getId(), ElementValues.encode(viewer.getColor(a)), ElementValues.encode(viewer.getLabelBackgroundColor(a)),
+                        ElementValues.encode(viewer.getLabelColor(a)));
             }
         }
+        colors = builder.build();
     }
 
     /**
@@ -94,18 +84,24 @@ public class EdgeColorCommand extends ICommandAdapter implements ICommand {
      * @return a new command which will undo the effect of this execution.
      */
     public ICommand execute() {
-        setReverseCommand(new EdgeColorCommand(viewer, fg, label, lbg));
+        setReverseCommand(new EdgeColorCommand(viewer, colors, fg, label, lbg));
 
         for (Edge a = viewer.getGraph().getFirstEdge(); a != null; a = a.getNext()) {
-            Color color = (Color) colors.get(a);
-            if (fg)
-                viewer.setColor(a, color);
-            if (lbg)
-                viewer.setLabelBackgroundColor(a, color);
-            if (label)
-                viewer.setLabelColor(a, color);
+            final int i = colors.indexOf(a.getId());
+            if (i >= 0) {
+                if (fg)
+                    viewer.setColor(a, ElementValues.decodeColor(colors.get(i, 0)));
+                if (lbg)
+                    viewer.setLabelBackgroundColor(a, ElementValues.decodeColor(colors.get(i, 1)));
+                if (label)
+                    viewer.setLabelColor(a, ElementValues.decodeColor(colors.get(i, 2)));
+            }
         }
         viewer.repaint();
         return getReverseCommand();
     }
+
+    public long getMemorySize() {
+        return 32 + colors.getMemorySize();
+    }
 }
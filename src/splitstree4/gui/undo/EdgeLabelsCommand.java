@@ -89,6 +89,7 @@ public class EdgeLabelsCommand extends ICommandAdapter implements ICommand {
             Network network = viewer.getDir().getDocument().getNetwork();
             network.modifyEdgeLabels(showWeight, showEClass, showConfidence, showInterval, splits, viewer, selectedOnly);
         }
+        viewer.getLabelIndex().invalidate();
         viewer.repaint();
         return getReverseCommand();
     }
@@ -18,16 +18,16 @@
  */
 package splitstree4.gui.undo;
 
-import jloda.graph.EdgeIntArray;
 import splitstree4.gui.main.MainViewer;
 
 /**
- * change edge width  for all selected edges
+ * change edge width  for all selected edges. Only the widths of the changed edges are kept,
+ * consecutive changes of width are combined into one
  * Daniel Huson and David Bryant
  */
 public class EdgeWidthCommand extends ICommandAdapter implements ICommand {
 	final MainViewer viewer;
-	final EdgeIntArray widths;
+	final ElementValues widths;
 
 	/**
 	 * constructor
@@ -38,15 +38,20 @@ public class EdgeWidthCommand extends ICommandAdapter implements ICommand {
 		this.viewer = viewer;
 
 		var graph = viewer.getPhyloGraph();
-        widths = graph.newEdgeIntArray();
+        final ElementValues.Builder builder = new ElementValues.Builder(1);
 
         boolean noneSelected = viewer.getSelectedEdges().isEmpty(); //No nodes currently selected... apply to all.
         for (var e : graph.edges()) {
-            widths.set(e, -1);
             if (viewer.getSelected(e) || noneSelected) {
-                widths.set(e, width != -1 ? width : viewer.getLineWidth(e));
+                builder.add(e.getId(), width != -1 ? width : viewer.getLineWidth(e));
             }
         }
+        widths = builder.build();
+    }
+
+    private EdgeWidthCommand(MainViewer viewer, ElementValues widths) {
+        this.viewer = viewer;
+        this.widths = widths;
     }
 
     /**
@@ -55,16 +60,42 @@ public class EdgeWidthCommand extends ICommandAdapter implements ICommand {
      * @return a new command which will undo the effect of this execution.
      */
     public ICommand execute() {
-        if (getReverseCommand() == null)
-            setReverseCommand(new EdgeWidthCommand(viewer, -1));
+        setReverseCommand(new EdgeWidthCommand(viewer, getCurrentWidths()));
 
         var graph = viewer.getPhyloGraph();
         for (var e : graph.edges()) {
-            if (widths.getInt(e) != -1) {
-                viewer.setLineWidth(e, widths.getInt(e));
+            final int i = widths.indexOf(e.getId());
+            if (i >= 0) {
+                viewer.setLineWidth(e, (int) widths.get(i, 0));
             }
         }
         viewer.repaint();
         return getReverseCommand();
     }
+
+    /**
+     * combines two changes of width into one
+     */
+    public ICommand coalesce(ICommand later) {
+        if (later instanceof EdgeWidthCommand && ((EdgeWidthCommand) later).viewer == viewer)
+            return new EdgeWidthCommand(viewer, widths.coalesce(((EdgeWidthCommand) later).widths));
+        else
+            return null;
+    }
+
+    /**
+     * gets the current widths of all edges changed by this command
+     */
+    private ElementValues getCurrentWidths() {
+        final ElementValues.Builder builder = new ElementValues.Builder(1);
+        for (var e : viewer.getPhyloGraph().edges()) {
+            if (widths.indexOf(e.getId()) >= 0)
+                builder.add(e.getId(), viewer.getLineWidth(e));
+        }
+        return builder.build();
+    }
+
+    public long getMemorySize() {
+        return 32 + widths.getMemorySize();
+    }
 }
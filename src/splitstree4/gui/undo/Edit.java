@@ -21,6 +21,7 @@ package splitstree4.gui.undo;
 import javax.swing.undo.AbstractUndoableEdit;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
 import javax.swing.undo.UndoableEditSupport;
 
 /**
@@ -34,6 +35,9 @@ import javax.swing.undo.UndoableEditSupport;
  * @version $Id: Edit.java,v 1.1 2005-05-10 16:14:43 huson Exp $
  */
 public class Edit extends AbstractUndoableEdit {
+    // Edits of the same name executed within this many milliseconds of each other are combined, if their commands allow it.
+    public static final long COALESCE_MILLIS = 2000;
+
     // The command to perform.
     private ICommand cmd;
     // The command to perform upon undo.
@@ -42,6 +46,10 @@ public class Edit extends AbstractUndoableEdit {
     private boolean performed = false;
     // The presentation name for this undo.
     private String presentationName = "";
+    // Time of the last execution.
+    private long time;
+    // Estimated size of the commands, or -1, if not computed.
+    private long memorySize = -1;
 
     /**
      * Constructs a Edit instance.
@@ -64,6 +72,7 @@ public class Edit extends AbstractUndoableEdit {
 
         reverse_cmd = cmd.execute();
         performed = true;
+        time = System.currentTimeMillis();
         if (undoSupport != null) {
             undoSupport.postEdit(this);
         }
@@ -100,6 +109,45 @@ public class Edit extends AbstractUndoableEdit {
         }
     }
 
+    /**
+     * combines a directly following edit into this one, if both have the same name, follow each other closely
+     * and their commands can be combined, e.g. consecutive drags of nodes
+     *
+     * @return true, if combined
+     */
+    public boolean addEdit(UndoableEdit anEdit) {
+        if (anEdit instanceof Edit) {
+            final Edit other = (Edit) anEdit;
+            if (performed && other.performed && other.time - time <= COALESCE_MILLIS
+                    && getPresentationName().equals(other.getPresentationName())) {
+                final ICommand combined = cmd.coalesce(other.cmd);
+                if (combined != null) {
+                    // undo the later edit first:
+                    final ICommand combinedReverse = other.reverse_cmd.coalesce(reverse_cmd);
+                    if (combinedReverse != null) {
+                        cmd = combined;
+                        reverse_cmd = combinedReverse;
+                        time = other.time;
+                        memorySize = -1;
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * estimates the number of bytes held by this edit
+     *
+     * @return estimated size
+     */
+    public long getMemorySize() {
+        if (memorySize == -1)
+            memorySize = 64 + (cmd != null ? cmd.getMemorySize() : 0) + (reverse_cmd != null ? reverse_cmd.getMemorySize() : 0);
+        return memorySize;
+    }
+
     public String getPresentationName() {
         if (presentationName == null) {
             return "";
@@ -0,0 +1,194 @@
+/*
+ * ElementValues.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.gui.undo;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * values of a property for a set of nodes or edges, kept in primitive arrays sorted by node or edge id.
+ * Used by commands that change many nodes or edges, so that the undo history only holds the values
+ * of the nodes or edges that are actually changed. A fixed number of values is kept per node or edge
+ *
+ * @author huson
+ * Date: 2022
+ */
+class ElementValues {
+    private final int stride;
+    private final int[] ids;
+    private final double[] values;
+
+    private ElementValues(int stride, int[] ids, double[] values) {
+        this.stride = stride;
+        this.ids = ids;
+        this.values = values;
+    }
+
+    /**
+     * number of nodes or edges
+     */
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * gets the index of a node or edge id
+     *
+     * @return index or negative number, if not contained
+     */
+    int indexOf(int id) {
+        return Arrays.binarySearch(ids, id);
+    }
+
+    int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * gets a value
+     *
+     * @param index index of node or edge
+     * @param k     number of value, 0..stride-1
+     */
+    double get(int index, int k) {
+        return values[index * stride + k];
+    }
+
+    /**
+     * combines these values with values that were set later. Nodes or edges contained in both get the later values
+     *
+     * @return combined values
+     */
+    ElementValues coalesce(ElementValues later) {
+        if (later.stride != stride)
+            return null;
+        final int[] newIds = new int[ids.length + later.ids.length];
+        final double[] newValues = new double[newIds.length * stride];
+        int i = 0, j = 0, size = 0;
+        while (i < ids.length || j < later.ids.length) {
+            if (j == later.ids.length || (i < ids.length && ids[i] < later.ids[j])) {
+                newIds[size] = ids[i];
+                System.arraycopy(values, i++ * stride, newValues, size++ * stride, stride);
+            } else {
+                if (i < ids.length && ids[i] == later.ids[j])
+                    i++;
+                newIds[size] = later.ids[j];
+                System.arraycopy(later.values, j++ * stride, newValues, size++ * stride, stride);
+            }
+        }
+        return new ElementValues(stride, Arrays.copyOf(newIds, size), Arrays.copyOf(newValues, size * stride));
+    }
+
+    /**
+     * estimated number of bytes used
+     */
+    long getMemorySize() {
+        return 48 + 4L * ids.length + 8L * values.length;
+    }
+
+    /**
+     * encodes a color as a value, null is encoded as NaN
+     */
+    static double encode(Color color) {
+        return (color == null ? Double.NaN : color.getRGB());
+    }
+
+    /**
+     * decodes a color
+     */
+    static Color decodeColor(double value) {
+        return (Double.isNaN(value) ? null : new Color((int) value, true));
+    }
+
+    /**
+     * collects values of nodes or edges in any order
+     */
+    static class Builder {
+        private final int stride;
+        private int[] ids = new int[16];
+        private double[] values;
+        private int size;
+
+        Builder(int stride) {
+            this.stride = stride;
+            values = new double[ids.length * stride];
+        }
+
+        void add(int id, double value) {
+            final int offset = grow(id);
+            values[offset] = value;
+        }
+
+        void add(int id, double value0, double value1) {
+            final int offset = grow(id);
+            values[offset] = value0;
+            values[offset + 1] = value1;
+        }
+
+        void add(int id, double value0, double value1, double value2) {
+            final int offset = grow(id);
+            values[offset] = value0;
+            values[offset + 1] = value1;
+            values[offset + 2] = value2;
+        }
+
+        void add(int id, double value0, double value1, double value2, double value3) {
+            final int offset = grow(id);
+            values[offset] = value0;
+            values[offset + 1] = value1;
+            values[offset + 2] = value2;
+            values[offset + 3] = value3;
+        }
+
+        /**
+         * adds an id and returns the offset of its values
+         */
+        private int grow(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, 2 * size);
+                values = Arrays.copyOf(values, 2 * size * stride);
+            }
+            ids[size] = id;
+            return size++ * stride;
+        }
+
+        /**
+         * sorts the values by id
+         */
+        ElementValues build() {
+            boolean sorted = true;
+            for (int i = 1; sorted && i < size; i++)
+                sorted = (ids[i - 1] < ids[i]);
+            if (sorted)
+                return new ElementValues(stride, Arrays.copyOf(ids, size), Arrays.copyOf(values, size * stride));
+
+            final long[] order = new long[size]; // id and position
+            for (int i = 0; i < size; i++)
+                order[i] = ((long) ids[i] << 32) | i;
+            Arrays.sort(order);
+            final int[] sortedIds = new int[size];
+            final double[] sortedValues = new double[size * stride];
+            for (int i = 0; i < size; i++) {
+                sortedIds[i] = (int) (order[i] >>> 32);
+                System.arraycopy(values, (int) order[i] * stride, sortedValues, i * stride, stride);
+            }
+            return new ElementValues(stride, sortedIds, sortedValues);
+        }
+    }
+}
@@ -38,4 +38,23 @@ public interface ICommand {
     void setReverseCommand(ICommand reverseCommand);
 
     ICommand getReverseCommand();
+
+    /**
+     * combines this command with a command that is executed directly after it, so that both can be undone in one step
+     *
+     * @param later the command executed after this one
+     * @return a command that has the same effect as executing both, or null, if they can't be combined
+     */
+    default ICommand coalesce(ICommand later) {
+        return null;
+    }
+
+    /**
+     * estimates the number of bytes held by this command, used to limit the size of the undo history
+     *
+     * @return estimated size
+     */
+    default long getMemorySize() {
+        return 64;
+    }
 }
@@ -25,26 +25,68 @@ import jloda.graph.NodeArray;
 import splitstree4.gui.main.MainViewer;
 
 import java.awt.geom.Point2D;
+import java.util.LinkedList;
 import java.util.List;
 
 /**
- * move nodes in the graph
+ * move nodes in the graph. Only the locations of nodes and the single internal points of edges that have
+ * been moved are kept, in primitive arrays. Consecutive moves are combined into one
  * Daniel Huson and David Bryant
  */
 public class MoveNodesCommand extends ICommandAdapter implements ICommand {
 	final MainViewer viewer;
-	final NodeArray oldLocations;
-	final NodeArray newLocations;
-	final EdgeArray oldInternalPoints;
-	final EdgeArray newInternalPoints;
+	final ElementValues locations; // x and y for each node
+	final ElementValues internalPoints; // x and y of the single internal point of each edge
 
-	public MoveNodesCommand(MainViewer viewer, NodeArray oldLocations,
-							NodeArray newLocations, EdgeArray oldInternalPoints, EdgeArray newInternalPoints) {
+	/**
+	 * constructor. Records all nodes and edges that have been moved from the given old locations to their current ones
+	 *
+	 * @param oldLocations      node locations before the move
+	 * @param oldInternalPoints single internal edge points before the move
+	 */
+	public MoveNodesCommand(MainViewer viewer, NodeArray<Point2D> oldLocations, EdgeArray<Point2D> oldInternalPoints) {
 		this.viewer = viewer;
-		this.oldLocations = oldLocations;
-		this.newLocations = newLocations;
-		this.oldInternalPoints = oldInternalPoints;
-		this.newInternalPoints = newInternalPoints;
+
+		final ElementValues.Builder oldLocationsBuilder = new ElementValues.Builder(2);
+		final ElementValues.Builder newLocationsBuilder = new ElementValues.Builder(2);
+		for (Node v = viewer.getGraph().getFirstNode(); v != null; v = v.getNext()) {
+			final Point2D oldLocation = oldLocations.get(v);
+			final Point2D newLocation = viewer.getLocation(v);
+			if (oldLocation != null && newLocation != null && !oldLocation.equals(newLocation)) {
+				oldLocationsBuilder.add(v.getId(), oldLocation.getX(), oldLocation.getY());
+				newLocationsBuilder.add(v.getId(), newLocation.getX(), newLocation.getY());
+			}
+		}
+
+		final ElementValues.Builder oldPointsBuilder = new ElementValues.Builder(2);
+		final ElementValues.Builder newPointsBuilder = new ElementValues.Builder(2);
+		for (Edge e = viewer.getGraph().getFirstEdge(); e != null; e = e.getNext()) {
+			final Point2D oldPoint = oldInternalPoints.get(e);
+			final List<Point2D> newPoints = viewer.getInternalPoints(e);
+			if (oldPoint != null && newPoints != null && newPoints.size() == 1 && !oldPoint.equals(newPoints.get(0))) {
+				oldPointsBuilder.add(e.getId(), oldPoint.getX(), oldPoint.getY());
+				newPointsBuilder.add(e.getId(), newPoints.get(0).getX(), newPoints.get(0).getY());
+			}
+		}
+
+		locations = newLocationsBuilder.build();
+		internalPoints = newPointsBuilder.build();
+		setReverseCommand(new MoveNodesCommand(viewer, oldLocationsBuilder.build(), oldPointsBuilder.build()));
+	}
+
+	private MoveNodesCommand(MainViewer viewer, ElementValues locations, ElementValues internalPoints) {
+		this.viewer = viewer;
+		this.locations = locations;
+		this.internalPoints = internalPoints;
+	}
+
+	/**
+	 * does this command move anything?
+	 *
+	 * @return true, if nothing has been moved
+	 */
+	public boolean isEmpty() {
+		return locations.size() == 0 && internalPoints.size() == 0;
 	}
 
     /**
@@ -53,16 +95,70 @@ public class MoveNodesCommand extends ICommandAdapter implements ICommand {
      * @return a new command which will undo the effect of this execution.
      */
     public ICommand execute() {
-        setReverseCommand(new MoveNodesCommand(viewer, newLocations, oldLocations, newInternalPoints, oldInternalPoints));
+        if (getReverseCommand() == null)
+            setReverseCommand(new MoveNodesCommand(viewer, getCurrentLocations(), getCurrentInternalPoints()));
 
-        for (Node v = viewer.getGraph().getFirstNode(); v != null; v = v.getNext())
-            viewer.setLocation(v, (Point2D) newLocations.get(v));
+        for (Node v = viewer.getGraph().getFirstNode(); v != null; v = v.getNext()) {
+            final int i = locations.indexOf(v.getId());
+            if (i >= 0)
+                viewer.setLocation(v, locations.get(i, 0), locations.get(i, 1));
+        }
 
-        for (Edge e = viewer.getGraph().getFirstEdge(); e != null; e = e.getNext())
-            if (newInternalPoints.get(e) != null && ((List) newInternalPoints.get(e)).size() == 1)
-                viewer.setInternalPoints(e, viewer.getInternalPoints(e));
+        for (Edge e = viewer.getGraph().getFirstEdge(); e != null; e = e.getNext()) {
+            final int i = internalPoints.indexOf(e.getId());
+            if (i >= 0) {
+                final List<Point2D> list = new LinkedList<>();
+                list.add(new Point2D.Double(internalPoints.get(i, 0), internalPoints.get(i, 1)));
+                viewer.setInternalPoints(e, list);
+            }
+        }
 
+        viewer.invalidateLODGrid();
         viewer.repaint();
         return getReverseCommand();
     }
+
+    /**
+     * combines two moves into one
+     */
+    public ICommand coalesce(ICommand later) {
+        if (later instanceof MoveNodesCommand && ((MoveNodesCommand) later).viewer == viewer)
+            return new MoveNodesCommand(viewer, locations.coalesce(((MoveNodesCommand) later).locations),
+                    internalPoints.coalesce(((MoveNodesCommand) later).internalPoints));
+        else
+            return null;
+    }
+
+    public long getMemorySize() {
+        return 32 + locations.getMemorySize() + internalPoints.getMemorySize();
+    }
+
+    /**
+     * gets the current locations of all nodes moved by this command
+     */
+    private ElementValues getCurrentLocations() {
+        final ElementValues.Builder builder = new ElementValues.Builder(2);
+        for (Node v = viewer.getGraph().getFirstNode(); v != null; v = v.getNext()) {
+            if (locations.indexOf(v.getId()) >= 0) {
+                final Point2D location = viewer.getLocation(v);
+                builder.add(v.getId(), location.getX(), location.getY());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * gets the current single internal points of all edges changed by this command
+     */
+    private ElementValues getCurrentInternalPoints() {
+        final ElementValues.Builder builder = new ElementValues.Builder(2);
+        for (Edge e = viewer.getGraph().getFirstEdge(); e != null; e = e.getNext()) {
+            if (internalPoints.indexOf(e.getId()) >= 0) {
+                final List<Point2D> points = viewer.getInternalPoints(e);
+                if (points != null && points.size() == 1)
+                    builder.add(e.getId(), points.get(0).getX(), points.get(0).getY());
+            }
+        }
+        return builder.build();
+    }
 }
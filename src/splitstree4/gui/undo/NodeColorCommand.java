@@ -19,19 +19,18 @@
 package splitstree4.gui.undo;
 
 import jloda.graph.Node;
-import jloda.graph.NodeArray;
 import splitstree4.gui.main.MainViewer;
 
 import java.awt.*;
 import java.util.Random;
 
 /**
- * set the color of all selected nodes
+ * set the color of all selected nodes. Only the colors of the selected nodes are kept
  * Daniel Huson and David Bryant
  */
 public class NodeColorCommand extends ICommandAdapter implements ICommand {
 	final MainViewer viewer;
-	final NodeArray colors;
+	final ElementValues colors; // foreground, background, label background and label color for each node
 	final boolean fg;
 	final boolean bg;
 	final boolean label;
@@ -51,47 +50,35 @@ public class NodeColorCommand extends ICommandAdapter implements ICommand {
 
         Random rand = new Random();
 
-        colors = new NodeArray(viewer.getGraph());
+        final ElementValues.Builder builder = new ElementValues.Builder(4);
         for (Node a = viewer.getGraph().getFirstNode(); a != null; a = a.getNext()) {
-            if (!viewer.getSelected(a)) {
-                if (fg)
-                    colors.put(a, viewer.getColor(a));
-                else if (bg)
-                    colors.put(a, viewer.getBackgroundColor(a));
-                else if (lbg)
-                    colors.put(a, viewer.getLabelBackgroundColor(a));
-                else if (label)
-                    colors.put(a, viewer.getLabelColor(a));
-            } else if (randomColors)
-                colors.put(a, new Color(rand.nextInt(256), rand.nextInt(256), rand.nextInt(256)));
-            else colors.put(a, color);
+            if (viewer.getSelected(a)) {
+                final double value = ElementValues.encode(randomColors ? new Color(rand.nextInt(256), rand.nextInt(256), rand.nextInt(256)) : color);
+                builder.add(a.getId(), value, value, value, value);
+            }
         }
+        colors = builder.build();
     }
 
     /**
-     * constructor  for reverse command
+     * constructor  for reverse command, keeps the current colors of the given nodes
      *
 	 */
-	private NodeColorCommand(MainViewer viewer, boolean fg, boolean bg, boolean label, boolean lbg) {
+	private NodeColorCommand(MainViewer viewer, ElementValues nodes, boolean fg, boolean bg, boolean label, boolean lbg) {
         this.viewer = viewer;
         this.fg = fg;
         this.bg = bg;
         this.label = label;
         this.lbg = lbg;
 
-        colors = new NodeArray(viewer.getGraph());
+        final ElementValues.Builder builder = new ElementValues.Builder(4);
         for (Node a = viewer.getGraph().getFirstNode(); a != null; a = a.getNext()) {
-            {
-                if (fg)
-                    colors.put(a, viewer.getColor(a));
-                else if (bg)
-                    colors.put(a, viewer.getBackgroundColor(a));
-                else if (lbg)
-                    colors.put(a, viewer.getLabelBackgroundColor(a));
-                else if (label)
-                    colors.put(a, viewer.getLabelColor(a));
+            if (nodes.indexOf(a.getId()) >= 0) {
+                builder.add(a.getId(), ElementValues.encode(viewer.getColor(a)), ElementValues.encode(viewer.getBackgroundColor(a)),
+                        ElementValues.encode(viewer.getLabelBackgroundColor(a)), ElementValues.encode(viewer.getLabelColor(a)));
             }
         }
+        colors = builder.build();
     }
 
     /**
@@ -100,20 +87,26 @@ public class NodeColorCommand extends ICommandAdapter implements ICommand {
      * @return a new command which will undo the effect of this execution.
      */
     public ICommand execute() {
-        setReverseCommand(new NodeColorCommand(viewer, fg, bg, label, lbg));
+        setReverseCommand(new NodeColorCommand(viewer, colors, fg, bg, label, lbg));
 
         for (Node a = viewer.getGraph().getFirstNode(); a != null; a = a.getNext()) {
-            Color color = (Color) colors.get(a);
-            if (fg)
-                viewer.setColor(a, color);
-            if (bg)
-                viewer.setBackgroundColor(a, color);
-            if (lbg)
-                viewer.setLabelBackgroundColor(a, color);
-            if (label)
-                viewer.setLabelColor(a, color);
+            final int i = colors.indexOf(a.getId());
+            if (i >= 0) {
+                if (fg)
+                    viewer.setColor(a, ElementValues.decodeColor(colors.get(i, 0)));
+                if (bg)
+                    viewer.setBackgroundColor(a, ElementValues.decodeColor(colors.get(i, 1)));
+                if (lbg)
+                    viewer.setLabelBackgroundColor(a, ElementValues.decodeColor(colors.get(i, 2)));
+                if (label)
+                    viewer.setLabelColor(a, ElementValues.decodeColor(colors.get(i, 3)));
+            }
         }
         viewer.repaint();
         return getReverseCommand();
     }
+
+    public long getMemorySize() {
+        return 32 + colors.getMemorySize();
+    }
 }
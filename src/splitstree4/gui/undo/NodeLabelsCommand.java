@@ -87,6 +87,7 @@ public class NodeLabelsCommand extends ICommandAdapter implements ICommand {
             Network network = doc.getNetwork();
             network.modifyNodeLabels(names, ids, taxa, viewer, selectedOnly);
         }
+        viewer.getLabelIndex().invalidate();
         viewer.repaint();
         return getReverseCommand();
     }
@@ -40,6 +40,9 @@ public class UndoableEdgeLabelSearcher implements IObjectSearcher {
     final MainViewer viewer;
     Edge current = null;
 
+    private final LinkedList<ICommand> pendingCommands = new LinkedList<>();
+    private final LinkedList<ICommand> pendingReverseCommands = new LinkedList<>();
+
     final EdgeSet toSelect;
     final EdgeSet toDeselect;
     public static final String SEARCHER_NAME = "Edges";
@@ -181,17 +184,44 @@ public class UndoableEdgeLabelSearcher implements IObjectSearcher {
         if (current != null) {
             String currentLabel = viewer.getLabel(current);
             if (newLabel == null && currentLabel != null) {
-                final ICommand cmd = new ChangeEdgeLabelCommand(viewer, current, null);
-                new Edit(cmd, "replace in edge label").execute(viewer.getUndoSupportNetwork());
+                addPendingCommand(new ChangeEdgeLabelCommand(viewer, current, null));
                 fireLabelChangedListeners(current);
             } else if (newLabel != null && currentLabel != null && !newLabel.equals(currentLabel)) {
-                final ICommand cmd = new ChangeEdgeLabelCommand(viewer, current, newLabel);
-                new Edit(cmd, "replace in edge label").execute(viewer.getUndoSupportNetwork());
+                addPendingCommand(new ChangeEdgeLabelCommand(viewer, current, newLabel));
                 fireLabelChangedListeners(current);
             }
         }
     }
 
+    /**
+     * executes a label change. Changes are collected and only registered for undo as a single edit in updateView(),
+     * which the search manager calls once a find or replace all has finished, so that it can be undone in one step
+     */
+    private void addPendingCommand(ICommand cmd) {
+        synchronized (pendingCommands) {
+            pendingReverseCommands.addFirst(cmd.execute());
+            pendingCommands.add(cmd);
+        }
+    }
+
+    /**
+     * registers all pending label changes as a single edit
+     */
+    private void postPendingCommands() {
+        synchronized (pendingCommands) {
+            if (pendingCommands.size() > 0) {
+                final CompoundCommand cmd = new CompoundCommand();
+                cmd.addAll(pendingCommands);
+                final CompoundCommand reverseCmd = new CompoundCommand();
+                reverseCmd.addAll(pendingReverseCommands);
+                cmd.setReverseCommand(reverseCmd); // already executed
+                new Edit(cmd, "replace in edge labels").execute(viewer.getUndoSupportNetwork());
+                pendingCommands.clear();
+                pendingReverseCommands.clear();
+            }
+        }
+    }
+
     /**
      * is a global find possible?
      *
@@ -223,6 +253,7 @@ public class UndoableEdgeLabelSearcher implements IObjectSearcher {
      * something has been changed or selected, update view
      */
     public void updateView() {
+        postPendingCommands();
         viewer.selectedEdges.addAll(toSelect);
         viewer.fireDoSelect(toSelect);
         Edge edge = toSelect.getLastElement();
@@ -40,6 +40,9 @@ public class UndoableNodeLabelSearcher implements IObjectSearcher {
     final Frame frame;
     protected Node current = null;
 
+    private final LinkedList<ICommand> pendingCommands = new LinkedList<>();
+    private final LinkedList<ICommand> pendingReverseCommands = new LinkedList<>();
+
     final NodeSet toSelect;
     final NodeSet toDeselect;
     public static final String SEARCHER_NAME = "Nodes";
@@ -186,17 +189,44 @@ public class UndoableNodeLabelSearcher implements IObjectSearcher {
         if (current != null) {
             String currentLabel = viewer.getLabel(current);
             if (newLabel == null && currentLabel != null) {
-                final ICommand cmd = new ChangeNodeLabelCommand(viewer, current, null);
-                new Edit(cmd, "replace in node label").execute(viewer.getUndoSupportNetwork());
+                addPendingCommand(new ChangeNodeLabelCommand(viewer, current, null));
                 fireLabelChangedListeners(current);
             } else if (newLabel != null && currentLabel != null && !newLabel.equals(currentLabel)) {
-                final ICommand cmd = new ChangeNodeLabelCommand(viewer, current, newLabel);
-                new Edit(cmd, "replace in node label").execute(viewer.getUndoSupportNetwork());
+                addPendingCommand(new ChangeNodeLabelCommand(viewer, current, newLabel));
                 fireLabelChangedListeners(current);
             }
         }
     }
 
+    /**
+     * executes a label change. Changes are collected and only registered for undo as a single edit in updateView(),
+     * which the search manager calls once a find or replace all has finished, so that it can be undone in one step
+     */
+    private void addPendingCommand(ICommand cmd) {
+        synchronized (pendingCommands) {
+            pendingReverseCommands.addFirst(cmd.execute());
+            pendingCommands.add(cmd);
+        }
+    }
+
+    /**
+     * registers all pending label changes as a single edit
+     */
+    private void postPendingCommands() {
+        synchronized (pendingCommands) {
+            if (pendingCommands.size() > 0) {
+                final CompoundCommand cmd = new CompoundCommand();
+                cmd.addAll(pendingCommands);
+                final CompoundCommand reverseCmd = new CompoundCommand();
+                reverseCmd.addAll(pendingReverseCommands);
+                cmd.setReverseCommand(reverseCmd); // already executed
+                new Edit(cmd, "replace in node labels").execute(viewer.getUndoSupportNetwork());
+                pendingCommands.clear();
+                pendingReverseCommands.clear();
+            }
+        }
+    }
+
     /**
      * is a global find possible?
      *
@@ -228,6 +258,7 @@ public class UndoableNodeLabelSearcher implements IObjectSearcher {
      * something has been changed or selected, update view
      */
     public void updateView() {
+        postPendingCommands();
         viewer.selectedNodes.addAll(toSelect);
         viewer.fireDoSelect(toSelect);
         Node v = toSelect.getLastElement();
@@ -0,0 +1,222 @@
+/*
+ * BatchRunner.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.main;
+
+import jloda.util.progress.ProgressSilent;
+import splitstree4.core.Document;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * runs the same command script on many input files in one JVM, using a bounded pool of worker threads,
+ * each file being processed in its own document. Reports time, memory and failures for each file.
+ * <p/>
+ * In the commands, %f is replaced by the path of the input file, %d by its directory and %n by its
+ * name without suffix
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class BatchRunner {
+    private final List<String> inputFiles;
+    private final List<String> commands;
+    private final int numberOfThreads;
+
+    /**
+     * constructor
+     *
+     * @param inputFiles      input files
+     * @param commands        commands to execute on each file, after loading it
+     * @param numberOfThreads number of files processed at the same time
+     */
+    public BatchRunner(List<String> inputFiles, List<String> commands, int numberOfThreads) {
+        this.inputFiles = inputFiles;
+        this.commands = commands;
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+    }
+
+    /**
+     * reads the input files from a manifest, one per line. Empty lines and lines starting with # are ignored,
+     * relative paths are relative to the directory of the manifest
+     *
+     * @return input files
+     */
+    public static List<String> readManifest(String manifestFile) throws IOException {
+        final File parent = new File(manifestFile).getAbsoluteFile().getParentFile();
+        final List<String> files = new ArrayList<>();
+        try (BufferedReader r = new BufferedReader(new FileReader(manifestFile))) {
+            String aLine;
+            while ((aLine = r.readLine()) != null) {
+                aLine = aLine.trim();
+                if (aLine.length() > 0 && !aLine.startsWith("#")) {
+                    final File file = new File(aLine);
+                    files.add(file.isAbsolute() ? file.getPath() : new File(parent, aLine).getPath());
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * reads commands, one per line. As in command-line mode, a line consisting of a single backslash
+     * starts or ends a command that spans several lines
+     *
+     * @return commands
+     */
+    public static List<String> readCommands(String commandFile) throws IOException {
+        final List<String> commands = new ArrayList<>();
+        try (BufferedReader r = new BufferedReader(new FileReader(commandFile))) {
+            boolean inMultiLineMode = false;
+            StringBuilder command = new StringBuilder();
+            String aLine;
+            while ((aLine = r.readLine()) != null) {
+                if (aLine.equals("\\"))
+                    inMultiLineMode = !inMultiLineMode;
+                else
+                    command.append(aLine);
+                if (!inMultiLineMode && command.toString().trim().length() > 0) {
+                    commands.add(command + ";");
+                    command = new StringBuilder();
+                }
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * runs all files and writes a summary table
+     *
+     * @param summary where to write the summary table
+     * @return number of failed files
+     */
+    public int run(PrintStream summary) throws InterruptedException {
+        final Result[] results = new Result[inputFiles.size()];
+        final ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        final long start = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < inputFiles.size(); i++) {
+                final int index = i;
+                executor.submit(() -> results[index] = process(inputFiles.get(index)));
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // wait until all files are processed
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int failed = 0;
+        summary.printf("%-40s %-6s %10s %10s %12s  %s%n", "File", "Status", "Time(ms)", "CPU(ms)", "Alloc(MB)", "Message");
+        for (Result result : results) {
+            if (result == null)
+                continue;
+            if (result.message != null)
+                failed++;
+            summary.printf("%-40s %-6s %10d %10s %12s  %s%n", result.fileName, (result.message == null ? "ok" : "FAILED"),
+                    result.wallTime, (result.cpuTime >= 0 ? String.valueOf(result.cpuTime / 1000000) : "?"),
+                    (result.allocatedBytes >= 0 ? String.format("%.1f", result.allocatedBytes / 1048576.0) : "?"),
+                    (result.message == null ? "" : result.message));
+        }
+        summary.printf("Files: %d, failed: %d, threads: %d, total time: %ds%n", results.length, failed, numberOfThreads,
+                (System.currentTimeMillis() - start) / 1000);
+        return failed;
+    }
+
+    /**
+     * processes a single file in a new document
+     *
+     * @return result
+     */
+    private Result process(String fileName) {
+        final Result result = new Result(fileName);
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        final long startCpu = (threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : -1);
+        final long startAllocated = getAllocatedBytes(threadMXBean);
+        final long start = System.currentTimeMillis();
+
+        final Document doc = new Document();
+        doc.setProgressListener(new ProgressSilent());
+        String command = "load file=" + fileName + ";";
+        try {
+            doc.execute(command);
+            for (String aCommand : commands) {
+                command = substitute(aCommand, fileName);
+                doc.execute(command);
+            }
+        } catch (Throwable ex) {
+            result.message = command + ": " + ex.getMessage();
+            System.err.println(fileName + ": " + result.message);
+        }
+
+        result.wallTime = System.currentTimeMillis() - start;
+        if (startCpu >= 0)
+            result.cpuTime = threadMXBean.getCurrentThreadCpuTime() - startCpu;
+        if (startAllocated >= 0)
+            result.allocatedBytes = getAllocatedBytes(threadMXBean) - startAllocated;
+        return result;
+    }
+
+    /**
+     * replaces %f, %d and %n in a command
+     *
+     * @return command for the given file
+     */
+    private static String substitute(String command, String fileName) {
+        final File file = new File(fileName);
+        final String name = file.getName();
+        final String base = (name.lastIndexOf('.') > 0 ? name.substring(0, name.lastIndexOf('.')) : name);
+        final String directory = (file.getAbsoluteFile().getParent() != null ? file.getAbsoluteFile().getParent() : ".");
+        return command.replace("%f", fileName).replace("%d", directory).replace("%n", base);
+    }
+
+    /**
+     * number of bytes allocated by the current thread, if supported
+     *
+     * @return bytes or -1
+     */
+    private static long getAllocatedBytes(ThreadMXBean threadMXBean) {
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        else
+            return -1;
+    }
+
+    /**
+     * outcome of processing a single file
+     */
+    private static class Result {
+        final String fileName;
+        long wallTime;
+        long cpuTime = -1;
+        long allocatedBytes = -1;
+        String message;
+
+        Result(String fileName) {
+            this.fileName = fileName;
+        }
+    }
+}
@@ -29,6 +29,7 @@ import splitstree4.util.NexusFileFilter;
 
 import javax.swing.*;
 import java.io.*;
+import java.util.ArrayList;
 
 /**
  * Runs the splits tree program
@@ -86,6 +87,10 @@ public class SplitsTree {
 
         final String initCommand = options.getOption("-x", "initCommand", "Execute this command at startup", "");
         final String commandFileName = options.getOption("-c", "commandFile", "File of commands to execute in command-line mode", "");
+        final String batchManifest = options.getOption("-b", "batchManifest", "File listing input files, to each of which the command file is applied in batch mode", "");
+        final int batchThreads = options.getOption("-t", "threads", "Number of files processed concurrently in batch mode", Runtime.getRuntime().availableProcessors());
+        if (batchManifest.length() > 0)
+            ProgramProperties.setUseGUI(false);
 
         options.comment("Configuration:");
         final boolean showMessages = options.getOption("-m", "hideMessageWindow", "Hide the message window", false);
@@ -112,7 +117,18 @@ public class SplitsTree {
         }
         System.err.println("Java version: " + System.getProperty("java.version"));
 
-        if (ProgramProperties.isUseGUI())  // run in GUI mode
+        if (batchManifest.length() > 0) { // batch mode
+            System.setProperty("java.awt.headless", "true");
+            ProgramProperties.load(propertiesFile); // don't initialize icons or other GUI resources
+
+            Basic.restoreSystemErr(System.out); // send system err to system out
+            System.err.println(Basic.stopCollectingStdErr());
+
+            final BatchRunner batchRunner = new BatchRunner(BatchRunner.readManifest(batchManifest),
+                    (commandFileName.length() > 0 ? BatchRunner.readCommands(commandFileName) : new ArrayList<>()), batchThreads);
+            if (batchRunner.run(System.out) > 0)
+                System.exit(1);
+        } else if (ProgramProperties.isUseGUI())  // run in GUI mode
 		{
 			System.setProperty("user.dir", System.getProperty("user.home"));
 			SplitsTreeProperties.initializeProperties(propertiesFile);
@@ -62,6 +62,13 @@ public class SplitsTreeProperties {
     public static final String WINDOW_WIDTH = "WindowWidth";
     public static final String WINDOW_HEIGHT = "WindowHeight";
     public static final String LASTCOMMAND = "LastCommand";
+    public static final String TRANSFORM_CACHE_ENABLED = "TransformCacheEnabled";
+    public static final String TRANSFORM_CACHE_SIZE = "TransformCacheSize";
+    public static final String TRANSFORM_CACHE_DIRECTORY = "TransformCacheDirectory";
+    public static final String EXTERNAL_PROCESSES = "ExternalProcesses";
+    public static final String EXTERNAL_CACHE_SIZE = "ExternalCacheSize";
+    public static final String LOD_RENDERING = "LODRendering";
+    public static final String LOD_MIN_EDGES = "LODMinEdges";
 
     public static final boolean USE_SPLIT_PANE = true;
 
@@ -28,6 +28,7 @@ import splitstree4.algorithms.util.simulate.RandomCharacters;
 import splitstree4.core.Document;
 import splitstree4.core.SplitsException;
 import splitstree4.core.TaxaSet;
+import splitstree4.core.TransformMetrics;
 import splitstree4.gui.Director;
 import splitstree4.models.SubstitutionModel;
 import splitstree4.util.CharactersUtilities;
@@ -278,6 +279,7 @@ public class Bootstrap extends NexusBlock {
         bdoc.setAssumptions(doc.getAssumptions().clone(bdoc.getTaxa()));
         bdoc.getAssumptions().setExTaxa(null);
         bdoc.setInBootstrap(true);
+        bdoc.setMetrics(doc.getMetrics());
 
         doc.notifySetMaximumProgress(this.getRuns());
         doc.notifyTasks("Bootstrapping", "runs=" + this.getRuns());
@@ -303,12 +305,17 @@ public class Bootstrap extends NexusBlock {
         PrintStream ps = null;
         try {
             for (r = 1; r <= this.getRuns(); r++) {
-                //Sample the characters
-                bdoc.setCharacters(resample(bdoc.getTaxa(), doc.getCharacters(), rand));
-                //bdoc.getCharacters().setFormat(doc.getCharacters().getFormat());
-                ps = jloda.util.Basic.hideSystemErr();//disable syserr.
-                // Compute everything
-                bdoc.update();
+                final TransformMetrics.Measurement measurement = doc.getMetrics().start("Bootstrap", "Replicate", doc.getTaxa(), doc.getCharacters());
+                try {
+                    //Sample the characters
+                    bdoc.setCharacters(resample(bdoc.getTaxa(), doc.getCharacters(), rand));
+                    //bdoc.getCharacters().setFormat(doc.getCharacters().getFormat());
+                    ps = jloda.util.Basic.hideSystemErr();//disable syserr.
+                    // Compute everything
+                    bdoc.update();
+                } finally {
+                    doc.getMetrics().stop(measurement, bdoc.getSplits());
+                }
 
                 //store the first tree if we are storing these.
                 if (getSaveTrees() && bdoc.getTrees() != null && bdoc.getTrees().getNtrees() > 0)
@@ -374,6 +381,7 @@ public class Bootstrap extends NexusBlock {
         bdoc.setAssumptions(doc.getAssumptions().clone(bdoc.getTaxa()));
         bdoc.getAssumptions().setExTaxa(null);
         bdoc.setInBootstrap(true);
+        bdoc.setMetrics(doc.getMetrics());
 
         /* Initialise the SplitMatrix that stores the replicates */
         SplitMatrix splitMatrix = new SplitMatrix(doc.getTaxa().getNtax());
@@ -393,17 +401,22 @@ public class Bootstrap extends NexusBlock {
 
         for (int r = 1; r <= this.getRuns(); r++) {
 
-            RandomCharacters.simulateCharacters(bdoc.getCharacters(), T, M);
-
-            PrintStream ps = jloda.util.Basic.hideSystemErr();//disable syserr.
-            // Update the doc Parser
+            final TransformMetrics.Measurement measurement = doc.getMetrics().start("Bootstrap", "ParametricReplicate", doc.getTaxa(), doc.getCharacters());
             try {
-                bdoc.update();
-            } catch (Exception ex) {
-                Basic.caught(ex);
-                throw new SplitsException("Bootstrapping failed: " + ex);
+                RandomCharacters.simulateCharacters(bdoc.getCharacters(), T, M);
+
+                PrintStream ps = jloda.util.Basic.hideSystemErr();//disable syserr.
+                // Update the doc Parser
+                try {
+                    bdoc.update();
+                } catch (Exception ex) {
+                    Basic.caught(ex);
+                    throw new SplitsException("Bootstrapping failed: " + ex);
+                } finally {
+                    jloda.util.Basic.restoreSystemErr(ps);
+                }
             } finally {
-                jloda.util.Basic.restoreSystemErr(ps);
+                doc.getMetrics().stop(measurement, bdoc.getSplits());
             }
 
             try {
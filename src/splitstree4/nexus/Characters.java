@@ -35,6 +35,7 @@ import splitstree4.util.SparseTable;
 import splitstree4.util.TaxaUtilities;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 
@@ -1221,6 +1222,93 @@ public class Characters extends NexusBlock {
      * @throws CanceledException if user presses cancel during the read
      */
     public void read(NexusStreamParser np, Taxa taxa, Document doc) throws SplitsException, IOException, CanceledException {
+        if (!readHeader(np, taxa, doc))
+            return;
+
+        if (np.peekMatchIgnoreCase("MATRIX")) {
+            np.matchIgnoreCase("MATRIX");
+            if (!getFormat().transpose && !getFormat().interleave) {
+                readMatrix(np, taxa, doc);
+            } else if (getFormat().transpose
+                    && !getFormat().interleave) {
+                readMatrixTransposed(np, taxa, doc);
+            } else if (!getFormat().transpose && getFormat().interleave) {
+                readMatrixInterleaved(np, taxa, doc);
+            } else
+                throw new IOException("line " + np.lineno() + ": can't read matrix!");
+            np.matchIgnoreCase(";");
+        }
+
+        np.matchEndBlock();
+
+        completeRead(taxa);
+    }//End of read
+
+    /**
+     * reads only the dimensions, properties and format of the block, leaving the parser positioned after the
+     * format statement. Used to determine the size and format of the data without reading the matrix
+     *
+     * @param np   the nexus streamparser
+     * @param taxa the taxa block
+     */
+    public void readDimensionsAndFormat(NexusStreamParser np, Taxa taxa) throws SplitsException, IOException {
+        try {
+            readDimensionsAndFormat(np, taxa, null);
+        } catch (CanceledException e) {
+            // can't happen
+        }
+    }
+
+    /**
+     * reads everything up to the matrix
+     *
+     * @return false, if the block already has a matrix, in which case the end of the block has been read
+     */
+    private boolean readHeader(NexusStreamParser np, Taxa taxa, Document doc) throws SplitsException, IOException, CanceledException {
+        readDimensionsAndFormat(np, taxa, doc);
+
+        //If we are using one of the standard types, check the states and post a warning if they're no valid.
+        int datatype = getFormat().getDatatypeID();
+        checkStates = datatype == Datatypes.DNAID || datatype == Datatypes.PROTEINID || datatype == Datatypes.RNAID;
+
+
+        if (matrix != null) // already have a matrix, can't change the data!
+        {
+            np.matchIgnoreCase("end;");
+            return false;
+        }
+        if (np.peekMatchIgnoreCase("CHARWEIGHTS")) {
+            np.matchIgnoreCase("CHARWEIGHTS");
+            charWeights = new double[getNchar() + 1];
+            for (int i = 1; i <= getNchar(); i++)
+                charWeights[i] = np.getDouble();
+            np.matchIgnoreCase(";");
+        }
+        // adding CharStateLabels
+
+        if (np.peekMatchIgnoreCase("CHARSTATELABELS")) {
+            np.matchIgnoreCase("CHARSTATELABELS");
+            //setHasCharStateLabels(true);     redundant.
+            haveReadCharStateLabels = true;
+            charLabeler = new Hashtable<>();
+            stateLabeler = new StateLabeler(this);
+            readCharStateLabels(np, charLabeler, stateLabeler);
+            np.matchIgnoreCase(";");
+        }
+
+        //Check if matrix will be tokens
+        if (getFormat().getTokens() || getFormat().datatypeID == Datatypes.MICROSATID) {
+            matrixIsTokens = true;
+            if (stateLabeler == null)
+                stateLabeler = new StateLabeler(this);
+        }
+        return true;
+    }
+
+    /**
+     * reads the dimensions, properties and format
+     */
+    private void readDimensionsAndFormat(NexusStreamParser np, Taxa taxa, Document doc) throws SplitsException, IOException, CanceledException {
         unknownStates = new BitSet();
         hasAmbigStates = false;
 
@@ -1337,59 +1425,12 @@ public class Characters extends NexusBlock {
         }
         if (doc != null)
             doc.notifyProgress(np);
+    }
 
-        //If we are using one of the standard types, check the states and post a warning if they're no valid.
-        int datatype = getFormat().getDatatypeID();
-        checkStates = datatype == Datatypes.DNAID || datatype == Datatypes.PROTEINID || datatype == Datatypes.RNAID;
-
-
-        if (matrix != null) // already have a matrix, can't change the data!
-        {
-            np.matchIgnoreCase("end;");
-            return;
-        }
-        if (np.peekMatchIgnoreCase("CHARWEIGHTS")) {
-            np.matchIgnoreCase("CHARWEIGHTS");
-            charWeights = new double[getNchar() + 1];
-            for (int i = 1; i <= getNchar(); i++)
-                charWeights[i] = np.getDouble();
-            np.matchIgnoreCase(";");
-        }
-        // adding CharStateLabels
-
-        if (np.peekMatchIgnoreCase("CHARSTATELABELS")) {
-            np.matchIgnoreCase("CHARSTATELABELS");
-            //setHasCharStateLabels(true);     redundant.
-            haveReadCharStateLabels = true;
-            charLabeler = new Hashtable<>();
-            stateLabeler = new StateLabeler(this);
-            readCharStateLabels(np, charLabeler, stateLabeler);
-            np.matchIgnoreCase(";");
-        }
-
-        //Check if matrix will be tokens
-        if (getFormat().getTokens() || getFormat().datatypeID == Datatypes.MICROSATID) {
-            matrixIsTokens = true;
-            if (stateLabeler == null)
-                stateLabeler = new StateLabeler(this);
-        }
-
-        if (np.peekMatchIgnoreCase("MATRIX")) {
-            np.matchIgnoreCase("MATRIX");
-            if (!getFormat().transpose && !getFormat().interleave) {
-                readMatrix(np, taxa, doc);
-            } else if (getFormat().transpose
-                    && !getFormat().interleave) {
-                readMatrixTransposed(np, taxa, doc);
-            } else if (!getFormat().transpose && getFormat().interleave) {
-                readMatrixInterleaved(np, taxa, doc);
-            } else
-                throw new IOException("line " + np.lineno() + ": can't read matrix!");
-            np.matchIgnoreCase(";");
-        }
-
-        np.matchEndBlock();
-
+    /**
+     * sets the symbols, guesses the datatype, if necessary, and replaces ambiguity states, once the matrix has been read
+     */
+    private void completeRead(Taxa taxa) {
         //If there are tokens, we set the symbols list to the set of chars used.
         if ((getFormat().getTokens() || haveReadCharStateLabels) && stateLabeler != null && stateLabeler.getSymbolsUsed() != null) {
             getFormat().setSymbols(stateLabeler.getSymbolsUsed());
@@ -1421,9 +1462,7 @@ public class Characters extends NexusBlock {
             new Alert("Unknown states encountered in matrix:\n" + buf + "\n"
                       + "All replaced by the gap-char '" + getFormat().getGap() + "'");
         }
-
-
-    }//End of read
+    }
 
     /**
      * replace all abiguity states by the missing char in the matrix. The corresponding state is stored
@@ -1775,6 +1814,24 @@ public class Characters extends NexusBlock {
      * @param taxa the taxa
      */
     public void write(Writer w, Taxa taxa) throws java.io.IOException {
+        writeHeader(w);
+        w.write("MATRIX\n");
+        if (matrix != null)
+            if (getFormat().transpose && !getFormat().interleave)
+                writeMatrixTranposed(w, taxa);
+            else if (!getFormat().transpose && getFormat().interleave)
+                writeMatrixInterleaved(w, taxa);
+            else
+                writeMatrix(w, taxa);
+        w.write(";\nEND; [" + Characters.NAME + "]\n");
+    }
+
+    /**
+     * writes everything up to the matrix
+     *
+     * @param w the writer
+     */
+    private void writeHeader(Writer w) throws IOException {
         w.write("\nBEGIN " + Characters.NAME + ";\n");
         w.write("DIMENSIONS nchar=" + getNchar() + ";\n");
         w.write("FORMAT\n");
@@ -1848,16 +1905,92 @@ public class Characters extends NexusBlock {
             }
             w.write(";\n");
         }
+    }
 
-        w.write("MATRIX\n");
+    /**
+     * can this block be written in binary format? Not possible for matrices of tokens or with state labels
+     *
+     * @return true, if writeBinary can be used
+     */
+    public boolean canWriteBinary() {
+        return matrix != null && !matrixIsTokens && !haveReadCharStateLabels;
+    }
+
+    /**
+     * writes the block in binary format: the text of the block without the matrix, followed by the matrix,
+     * row by row, using one byte per state, if possible, otherwise two
+     *
+     * @param out  the output
+     * @param taxa the taxa
+     */
+    public void writeBinary(DataOutput out, Taxa taxa) throws IOException {
+        if (!canWriteBinary())
+            throw new IOException("Characters: binary format not supported");
+        final StringWriter w = new StringWriter();
+        writeHeader(w);
+        w.write("END; [" + Characters.NAME + "]\n");
+        writeString(out, w.toString());
+
+        boolean wide = false;
+        for (int t = 1; !wide && t <= getNtax(); t++) {
+            for (int c = 1; c <= getNchar(); c++) {
+                if (getOriginal(t, c) > 255) {
+                    wide = true;
+                    break;
+                }
+            }
+        }
+        out.writeBoolean(wide);
+        final byte[] row = new byte[(wide ? 2 : 1) * getNchar()];
+        for (int t = 1; t <= getNtax(); t++) {
+            for (int c = 1; c <= getNchar(); c++) {
+                final char ch = getOriginal(t, c);
+                if (wide) {
+                    row[2 * (c - 1)] = (byte) (ch >>> 8);
+                    row[2 * (c - 1) + 1] = (byte) ch;
+                } else
+                    row[c - 1] = (byte) ch;
+            }
+            out.write(row);
+        }
+    }
+
+    /**
+     * reads a block written by writeBinary
+     *
+     * @param buffer the buffer, positioned at the start of the block
+     * @param taxa   the taxa
+     */
+    public void readBinary(ByteBuffer buffer, Taxa taxa) throws SplitsException, IOException, CanceledException {
         if (matrix != null)
-            if (getFormat().transpose && !getFormat().interleave)
-                writeMatrixTranposed(w, taxa);
-            else if (!getFormat().transpose && getFormat().interleave)
-                writeMatrixInterleaved(w, taxa);
-            else
-                writeMatrix(w, taxa);
-        w.write(";\nEND; [" + Characters.NAME + "]\n");
+            throw new IOException("Characters: already have a matrix");
+        final NexusStreamParser np = new NexusStreamParser(new StringReader(readString(buffer)));
+        readHeader(np, taxa, null);
+
+        final boolean wide = (buffer.get() != 0);
+        final byte[] row = new byte[(wide ? 2 : 1) * getNchar()];
+        matrix = new char[getNtax() + 1][getNchar() + 1];
+        for (int t = 1; t <= getNtax(); t++) {
+            buffer.get(row);
+            for (int i = 1; i <= getNchar(); i++) {
+                final char ch;
+                if (wide)
+                    ch = (char) (((row[2 * (i - 1)] & 0xff) << 8) | (row[2 * (i - 1) + 1] & 0xff));
+                else
+                    ch = (char) (row[i - 1] & 0xff);
+                if (ch == getFormat().getMatchchar() && t > 1)
+                    matrix[t][i] = matrix[1][i];
+                else if (!this.checkStates || isValidState(ch))
+                    matrix[t][i] = ch;
+                else {
+                    matrix[t][i] = getFormat().getGap();
+                    unknownStates.set(ch);
+                }
+            }
+        }
+        np.matchEndBlock();
+
+        completeRead(taxa);
     }
 
     /**
@@ -26,6 +26,8 @@ import splitstree4.core.SplitsException;
 import splitstree4.core.TaxaSet;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
 import java.util.List;
 
 
@@ -552,6 +554,58 @@ public class Distances extends NexusBlock {
         }
     }
 
+    /**
+     * writes the block in binary format: format, followed by the upper triangle of the matrix
+     * or, if the matrix is not symmetric, the whole matrix
+     *
+     * @param out  the output
+     * @param taxa the taxa
+     */
+    public void writeBinary(DataOutput out, Taxa taxa) throws IOException {
+        out.writeInt(getNtax());
+        out.writeBoolean(getFormat().getLabels());
+        out.writeBoolean(getFormat().getDiagonal());
+        writeString(out, getFormat().getTriangle());
+        final boolean symmetric = isSymmetric();
+        out.writeBoolean(symmetric);
+        for (int t = 1; t <= getNtax(); t++) {
+            for (int q = (symmetric ? t + 1 : 1); q <= getNtax(); q++)
+                out.writeDouble(get(t, q));
+        }
+    }
+
+    /**
+     * reads a block written by writeBinary
+     *
+     * @param buffer the buffer, positioned at the start of the block
+     * @param taxa   the taxa
+     */
+    public void readBinary(ByteBuffer buffer, Taxa taxa) throws IOException {
+        final int n = buffer.getInt();
+        if (n != taxa.getNtax())
+            throw new IOException("Distances: wrong number of taxa: " + n);
+        getFormat().labels = (buffer.get() != 0);
+        getFormat().diagonal = (buffer.get() != 0);
+        getFormat().triangle = readString(buffer);
+        final boolean symmetric = (buffer.get() != 0);
+
+        ntax = n;
+        matrix = new double[ntax + 1][ntax + 1];
+        final DoubleBuffer values = buffer.asDoubleBuffer();
+        for (int t = 1; t <= ntax; t++) {
+            if (symmetric) {
+                values.get(matrix[t], t + 1, ntax - t);
+                for (int q = t + 1; q <= ntax; q++)
+                    matrix[q][t] = matrix[t][q];
+            } else
+                values.get(matrix[t], 1, ntax);
+        }
+        buffer.position(buffer.position() + 8 * values.position());
+        if (!symmetric)
+            symmetrize();
+        isSet = true;
+    }
+
     /**
      * gets the value of a format switch
      *
@@ -608,11 +662,14 @@ public class Distances extends NexusBlock {
             originalDistances = this.clone(origTaxa); // make a copy
 
         setNtax(inducedTaxa.getNtax());
+        final int[] newIds = new int[origTaxa.getNtax() + 1]; // look up each label only once
+        for (int s = 1; s <= origTaxa.getNtax(); s++)
+            newIds[s] = inducedTaxa.indexOf(origTaxa.getLabel(s));
         for (int s = 1; s <= origTaxa.getNtax(); s++) {
-            int sNew = inducedTaxa.indexOf(origTaxa.getLabel(s));
+            int sNew = newIds[s];
             if (sNew > 0) {
                 for (int t = 1; t <= origTaxa.getNtax(); t++) {
-                    int tNew = inducedTaxa.indexOf(origTaxa.getLabel(t));
+                    int tNew = newIds[t];
                     if (tNew > 0)
                         set(sNew, tNew, originalDistances.get(s, t));
                 }
@@ -26,7 +26,9 @@ import jloda.util.parse.NexusStreamParser;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 
 /**
@@ -63,6 +65,7 @@ public class EdgeDescription implements Cloneable {
     float labelAngle = 0;
     String font = FONT;
     String label = null;
+    boolean changed = false; // modified since the network was last synchronized with a viewer
 
     Edge e;
 
@@ -132,6 +135,7 @@ public class EdgeDescription implements Cloneable {
 
     public void setLabelAngle(float labelAngle) {
         this.labelAngle = labelAngle;
+        changed = true;
     }
 
     /**
@@ -279,6 +283,73 @@ public class EdgeDescription implements Cloneable {
         return buf.toString();
     }
 
+    /**
+     * writes the edge, its label and its internal points in binary format
+     */
+    void writeBinary(DataOutput out) throws IOException {
+        out.writeInt(source);
+        out.writeInt(target);
+        out.writeInt(eclass);
+        out.writeFloat(weight);
+        out.writeInt(line);
+        out.writeByte(shape);
+        NexusBlock.writeColor(out, fgc);
+        NexusBlock.writeColor(out, bgc);
+        NexusBlock.writeOptionalString(out, label);
+        if (label != null) {
+            NexusBlock.writeOptionalString(out, font);
+            out.writeByte(labelLayout);
+            out.writeBoolean(labelOffset != null);
+            if (labelOffset != null) {
+                out.writeInt(labelOffset.x);
+                out.writeInt(labelOffset.y);
+            }
+            out.writeFloat(labelAngle);
+            NexusBlock.writeColor(out, labelFgc);
+            NexusBlock.writeColor(out, labelBgc);
+        }
+        out.writeInt(internal != null ? internal.size() : -1);
+        if (internal != null) {
+            for (Point2D apt : internal) {
+                out.writeFloat((float) apt.getX());
+                out.writeFloat((float) apt.getY());
+            }
+        }
+    }
+
+    /**
+     * reads an edge written by writeBinary
+     *
+     * @param id edge id
+     */
+    void readBinary(int id, ByteBuffer buffer) {
+        this.id = id;
+        source = buffer.getInt();
+        target = buffer.getInt();
+        eclass = buffer.getInt();
+        weight = buffer.getFloat();
+        line = buffer.getInt();
+        shape = buffer.get();
+        fgc = NexusBlock.readColor(buffer);
+        bgc = NexusBlock.readColor(buffer);
+        label = NexusBlock.readOptionalString(buffer);
+        if (label != null) {
+            font = NexusBlock.readOptionalString(buffer);
+            labelLayout = buffer.get();
+            if (buffer.get() != 0)
+                labelOffset = new Point(buffer.getInt(), buffer.getInt());
+            labelAngle = buffer.getFloat();
+            labelFgc = NexusBlock.readColor(buffer);
+            labelBgc = NexusBlock.readColor(buffer);
+        }
+        final int count = buffer.getInt();
+        if (count >= 0) {
+            internal = new LinkedList<>();
+            for (int i = 0; i < count; i++)
+                internal.add(new Point2D.Double(buffer.getFloat(), buffer.getFloat()));
+        }
+    }
+
     /**
      * clones this
      *
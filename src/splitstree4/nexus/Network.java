@@ -34,10 +34,12 @@ import splitstree4.util.NetworkUtilities;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.*;
 
@@ -56,6 +58,11 @@ public class Network extends NexusBlock {
     private VertexDescription[] vertices = null;
     private EdgeDescription[] edges = null;
 
+    // used to propagate only changes between the network and the viewer that it was last synchronized with:
+    private PhyloGraphView syncedGraphView = null;
+    private boolean topologyChanged = true;
+    private boolean allowMoveNodes = true;
+
     static final Map<String, Font> fonts = new HashMap<>(); // hash all fonts
 
     private String newick = null; // keep a Newick representation if tree
@@ -283,6 +290,7 @@ public class Network extends NexusBlock {
     public void setNvertices(int n) {
         this.nvertices = n;
         vertices = new VertexDescription[n + 1];
+        topologyChanged = true;
     }
 
     public VertexDescription[] getVertices() {
@@ -306,6 +314,7 @@ public class Network extends NexusBlock {
     public void setNedges(int n) {
         this.nedges = n;
         edges = new EdgeDescription[n + 1];
+        topologyChanged = true;
     }
 
     public EdgeDescription[] getEdges() {
@@ -577,6 +586,92 @@ public class Network extends NexusBlock {
         np.matchEndBlock();
     }
 
+    /**
+     * writes the block in binary format: dimensions, drawing switches, layout and translation,
+     * followed by the vertices and edges, including their labels and internal points
+     *
+     * @param out  the output
+     * @param taxa the taxa
+     */
+    public void writeBinary(DataOutput out, Taxa taxa) throws IOException {
+        out.writeInt(getNtax());
+        out.writeInt(getNvertices());
+        out.writeInt(getNedges());
+
+        out.writeBoolean(draw.toScale);
+        out.writeFloat(draw.hoffset);
+        out.writeFloat(draw.voffset);
+        out.writeInt(draw.hflip);
+        out.writeInt(draw.vflip);
+        out.writeDouble(draw.rotate);
+        out.writeFloat(draw.zoom);
+        writeString(out, getLayout());
+
+        int count = 0;
+        for (List<String> labels : translate.values()) {
+            if (labels != null && labels.size() > 0)
+                count++;
+        }
+        out.writeInt(count);
+        for (Integer key : translate.keySet()) {
+            final List<String> labels = translate.get(key);
+            if (labels != null && labels.size() > 0) {
+                out.writeInt(key);
+                out.writeInt(labels.size());
+                for (String label : labels)
+                    writeString(out, label);
+            }
+        }
+
+        for (int i = 1; i <= getNvertices(); i++)
+            vertices[i].writeBinary(out);
+        for (int i = 1; i <= getNedges(); i++)
+            edges[i].writeBinary(out);
+    }
+
+    /**
+     * reads a block written by writeBinary
+     *
+     * @param buffer the buffer, positioned at the start of the block
+     * @param taxa   the taxa
+     */
+    public void readBinary(ByteBuffer buffer, Taxa taxa) throws IOException {
+        getTranslate().clear();
+
+        setNtax(buffer.getInt());
+        if (getNtax() != taxa.getNtax())
+            throw new IOException("Network: ntax=" + getNtax() + " wrong");
+        setNvertices(buffer.getInt());
+        setNedges(buffer.getInt());
+
+        draw.toScale = buffer.get() != 0;
+        draw.hoffset = buffer.getFloat();
+        draw.voffset = buffer.getFloat();
+        draw.hflip = buffer.getInt();
+        draw.vflip = buffer.getInt();
+        draw.rotate = buffer.getDouble();
+        draw.zoom = buffer.getFloat();
+        setLayout(readString(buffer));
+
+        final int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            final int key = buffer.getInt();
+            final List<String> labels = new LinkedList<>();
+            for (int n = buffer.getInt(); n > 0; n--)
+                labels.add(readString(buffer));
+            translate.put(key, labels);
+        }
+
+        for (int i = 1; i <= getNvertices(); i++) {
+            vertices[i] = new VertexDescription();
+            vertices[i].readBinary(i, buffer);
+        }
+        for (int i = 1; i <= getNedges(); i++) {
+            edges[i] = new EdgeDescription();
+            edges[i].readBinary(i, buffer);
+        }
+    }
+
     /**
      * Reads a network object in OLD 4beta-1-3 NexusBlock format
      *
@@ -781,7 +876,11 @@ public class Network extends NexusBlock {
     }
 
     /**
-     * syncronizes the phylograph object to the Network representation of the graph
+     * syncronizes the phylograph object to the Network representation of the graph.
+     * If the network was last synchronized with the same viewer and the graph has not changed since,
+     * then the existing descriptions are updated in place, otherwise they are rebuilt.
+     * Note that the viewer does not track which nodes and edges it has modified, so all node and edge views are
+     * read in either case. Only the direction from network to viewer, see syncNetwork2PhyloGraphView, is incremental
      */
     public void syncPhyloGraphView2Network(Taxa taxa, PhyloGraphView graphView) {
         PhyloSplitsGraph graph = graphView.getPhyloGraph();
@@ -791,23 +890,46 @@ public class Network extends NexusBlock {
         getDraw().setHflip(graphView.trans.getFlipH() ? 1 : 0);
         getDraw().setVflip(graphView.trans.getFlipV() ? 1 : 0);
 
-        ntax = taxa.getNtax();
-        nvertices = graph.getNumberOfNodes();
-        nedges = graph.getNumberOfEdges();
-
-        translate.clear();
-        vertices = new VertexDescription[nvertices + 1];
-        edges = new EdgeDescription[nedges + 1];
-
-        NodeIntArray node2id = new NodeIntArray(graph);
+        final boolean rebuild = (!isSyncedWith(graphView) || ntax != taxa.getNtax());
+        boolean newickChanged = rebuild;
+        String defaultFontCode = null;
+
+        if (rebuild) {
+            ntax = taxa.getNtax();
+            nvertices = graph.getNumberOfNodes();
+            nedges = graph.getNumberOfEdges();
+
+            translate.clear();
+            vertices = new VertexDescription[nvertices + 1];
+            edges = new EdgeDescription[nedges + 1];
+
+            NodeIntArray node2id = new NodeIntArray(graph);
+
+            int vi = 1;
+            for (Node v = graph.getFirstNode(); v != null; v = graph.getNextNode(v)) {
+                VertexDescription vd = vertices[vi] = new VertexDescription();
+                vd.id = vi;
+                vd.v = v;
+                node2id.set(v, vi);
+                setTranslate(taxa, vi, IteratorUtils.asList(graph.getTaxa(v)));
+                vi++;
+            }
+            int ei = 1;
+            for (Edge e = graph.getFirstEdge(); e != null; e = graph.getNextEdge(e)) {
+                EdgeDescription ed = edges[ei] = new EdgeDescription();
+                ed.id = ei;
+                ed.e = e;
+                ed.source = node2id.get(graph.getSource(e));
+                ed.target = node2id.get(graph.getTarget(e));
+                ei++;
+            }
+        }
 
-        int vi = 1;
-        for (Node v = graph.getFirstNode(); v != null; v = graph.getNextNode(v)) {
+        for (int vi = 1; vi <= nvertices; vi++) {
+            VertexDescription vd = vertices[vi];
+            Node v = vd.v;
             NodeView nv = graphView.getNV(v);
             Point2D p = nv.getLocation();
-            VertexDescription vd = vertices[vi] = new VertexDescription();
-            vd.id = vi;
-            vd.v = v;
 
             vd.x = (float) p.getX();
             vd.y = (float) p.getY();
@@ -827,28 +949,31 @@ public class Network extends NexusBlock {
                     break;
             }
 
-            if (nv.getFont() != null)
-                vd.font = BasicSwing.getCode(nv.getFont());
-            else
-                vd.font = BasicSwing.getCode(graphView.getFont());
+            if (nv.getFont() != null) {
+                if (rebuild || fonts.get(vd.font) != nv.getFont()) // computing font codes is slow, only do it for changed fonts
+                    vd.font = BasicSwing.getCode(nv.getFont());
+            } else {
+                if (defaultFontCode == null)
+                    defaultFontCode = BasicSwing.getCode(graphView.getFont());
+                vd.font = defaultFontCode;
+            }
             if (vd.font != null && vd.font.length() > 0) {
                 fonts.put(vd.font, nv.getFont());
             }
-            node2id.set(v, vi);
-            if (nv.getColor() != null && !nv.getColor().equals(VertexDescription.FGC)) {
-                vd.fgc = nv.getColor();
-            }
-            if (nv.getBackgroundColor() != null) {
-                vd.bgc = nv.getBackgroundColor();
-            }
-            if (nv.getLabelColor() != null && !nv.getLabelColor().equals(VertexDescription.FGC)) {
-                vd.labelFgc = nv.getLabelColor();
-            }
-            if (nv.getLabelBackgroundColor() != null) {
-                vd.labelBgc = nv.getLabelBackgroundColor();
+            vd.fgc = (nv.getColor() != null && !nv.getColor().equals(VertexDescription.FGC) ? nv.getColor() : VertexDescription.FGC);
+            vd.bgc = (nv.getBackgroundColor() != null ? nv.getBackgroundColor() : VertexDescription.BGC);
+            vd.labelFgc = (nv.getLabelColor() != null && !nv.getLabelColor().equals(VertexDescription.FGC) ? nv.getLabelColor() : VertexDescription.FGC);
+            vd.labelBgc = nv.getLabelBackgroundColor();
+            if (!rebuild && !hasTranslate(taxa, vi, graph.getTaxa(v))) {
+                setTranslate(taxa, vi, IteratorUtils.asList(graph.getTaxa(v)));
+                newickChanged = true;
             }
-            setTranslate(taxa, vi, IteratorUtils.asList(graph.getTaxa(v)));
 
+            final String oldLabel = vd.label;
+            vd.label = null;
+            vd.labelOffset = VertexDescription.OFFSET;
+            vd.labelLayout = NodeView.LAYOUT;
+            vd.labelAngle = 0;
             if (nv.isLabelVisible() && nv.getLabel() != null && nv.getLabel().length() > 0) {
                 vd.label = nv.getLabel();
                 vd.labelOffset = nv.getLabelOffset();
@@ -860,20 +985,19 @@ public class Network extends NexusBlock {
                 vd.label = graph.getLabel(v);
                 nv.setLabel(vd.label); // TODO: fix this
             }
-
-            vi++;
+            if (!Objects.equals(oldLabel, vd.label))
+                newickChanged = true;
+            vd.changed = false;
         }
-        int ei = 1;
-        for (Edge e = graph.getFirstEdge(); e != null; e = graph.getNextEdge(e)) {
+        for (int ei = 1; ei <= nedges; ei++) {
+            EdgeDescription ed = edges[ei];
+            Edge e = ed.e;
             EdgeView ev = graphView.getEV(e);
-            int sid = graph.getSplit(e);
-            EdgeDescription ed = edges[ei] = new EdgeDescription();
-            ed.id = ei;
-            ed.e = e;
-            ed.eclass = sid;
-            ed.source = node2id.get(graph.getSource(e));
-            ed.target = node2id.get(graph.getTarget(e));
+            final float oldWeight = ed.weight;
+            ed.eclass = graph.getSplit(e);
             ed.weight = (float) graph.getWeight(e);
+            if (ed.weight != oldWeight)
+                newickChanged = true;
             ed.internal = graphView.getInternalPoints(e);
             ed.line = graphView.getLineWidth(e);
             ed.label = ev.getLabel();
@@ -883,49 +1007,100 @@ public class Network extends NexusBlock {
             ed.labelOffset = ev.getLabelOffset();
             ed.labelLayout = ev.getLabelLayout();
             ed.labelAngle = ev.getLabelAngle();
-            if (ev.getFont() != null)
+            if (ev.getFont() == null)
+                ed.font = EdgeDescription.FONT;
+            else if (rebuild || fonts.get(ed.font) != ev.getFont()) {
                 ed.font = BasicSwing.getCode(ev.getFont());
-            if (ed.font != null && ed.font.length() > 0) {
-                fonts.put(ed.font, ev.getFont());
-            }
-            if (ev.getColor() != null && !ev.getColor().equals(EdgeDescription.FGC)) {
-                ed.fgc = ev.getColor();
-            }
-            if (ev.getLabelColor() != null && !ev.getLabelColor().equals(EdgeDescription.FGC)) {
-                ed.labelFgc = ev.getLabelColor();
-            }
-            if (ev.getLabelBackgroundColor() != null) {
-                ed.labelBgc = ev.getLabelBackgroundColor();
+                if (ed.font != null && ed.font.length() > 0) {
+                    fonts.put(ed.font, ev.getFont());
+                }
             }
+            ed.fgc = (ev.getColor() != null && !ev.getColor().equals(EdgeDescription.FGC) ? ev.getColor() : EdgeDescription.FGC);
+            ed.labelFgc = (ev.getLabelColor() != null && !ev.getLabelColor().equals(EdgeDescription.FGC) ? ev.getLabelColor() : EdgeDescription.FGC);
+            ed.labelBgc = ev.getLabelBackgroundColor();
             if (ev.isLabelVisible() && (ed.label == null || ed.label.length() == 0) && graph.getLabel(e) != null && graph.getLabel(e).length() > 0) {
                 ed.label = graph.getLabel(e);
                 if (ed.label != null && ed.label.equals("null"))
                     Basic.caught(new Exception("null"));
                 ev.setLabel(ed.label); // fix this
             }
-            ei++;
+            ed.changed = false;
         }
-        newick = graphView.getNewick(true);
+        if (newickChanged)
+            newick = graphView.getNewick(true);
+        syncedGraphView = graphView;
+        topologyChanged = false;
         setValid(true);
     }
 
     /**
-     * syncronizes the network to the PhyloGraphView
+     * is the network synchronized with the given viewer, with nodes and edges unchanged? If so, then
+     * changes can be propagated between the network and the viewer without rebuilding either
      *
+     * @return true, if descriptions refer to the current nodes and edges of the viewer
      */
-    public void syncNetwork2PhyloGraphView(Taxa taxa, Splits splits, PhyloGraphView graphView) {
-        PhyloSplitsGraph graph = graphView.getPhyloGraph();
-        graph.clear();
-        boolean allowMove = true; // disallow, if edges contain internal points
+    public boolean isSyncedWith(PhyloGraphView graphView) {
+        if (graphView == null || graphView != syncedGraphView || topologyChanged || vertices == null || edges == null)
+            return false;
+        final PhyloSplitsGraph graph = graphView.getPhyloGraph();
+        if (graph.getNumberOfNodes() != nvertices || graph.getNumberOfEdges() != nedges)
+            return false;
+        for (int vi = 1; vi <= nvertices; vi++) {
+            if (vertices[vi] == null || vertices[vi].v == null || vertices[vi].v.getOwner() != graph)
+                return false;
+        }
+        for (int ei = 1; ei <= nedges; ei++) {
+            final EdgeDescription ed = edges[ei];
+            if (ed == null || ed.e == null || ed.e.getOwner() != graph || ed.e.getSource() != vertices[ed.source].v
+                || ed.e.getTarget() != vertices[ed.target].v)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * does the node have the given taxa?
+     */
+    private boolean hasTranslate(Taxa taxa, int nodeId, Iterable<Integer> taxonIds) {
+        final List<String> labels = translate.get(nodeId);
+        final Iterator<String> it = (labels != null ? labels.iterator() : Collections.emptyIterator());
+        if (taxonIds != null) {
+            for (Integer t : taxonIds) {
+                if (t > 0 && t <= taxa.getNtax() && (!it.hasNext() || !it.next().equals(taxa.getLabel(t))))
+                    return false;
+            }
+        }
+        return !it.hasNext();
+    }
 
+    /**
+     * syncronizes the network to the PhyloGraphView.
+     * If the network was last synchronized with the same viewer and neither has changed its nodes or edges since,
+     * then only the nodes and edges whose descriptions have changed are updated. Otherwise, the graph is rebuilt
+     *
+     * @return true, if the graph was rebuilt
+     */
+    public boolean syncNetwork2PhyloGraphView(Taxa taxa, Splits splits, PhyloGraphView graphView) {
         graphView.trans.setAngle(getDraw().getRotate());
         graphView.trans.setFlipH(getDraw().getHFlip() != 0);
         graphView.trans.setFlipV(getDraw().getVFlip() != 0);
 
+        if (isSyncedWith(graphView)) {
+            syncChanges2PhyloGraphView(graphView);
+            applyDrawModifications(taxa, splits, graphView);
+            graphView.setAllowMoveNodes(allowMoveNodes);
+            return false;
+        }
+
+        PhyloSplitsGraph graph = graphView.getPhyloGraph();
+        graph.clear();
+        boolean allowMove = true; // disallow, if edges contain internal points
+
         for (int vi = 1; vi <= getNvertices(); vi++) {
             Node v = graph.newNode();
             VertexDescription vd = vertices[vi];
             vd.v = v;
+            vd.changed = false;
             NodeView nv = graphView.getNV(v);
             nv.setLocation(new Point2D.Float(vd.x, vd.y));
             nv.setLineWidth((byte) vd.line);
@@ -1011,6 +1186,7 @@ public class Network extends NexusBlock {
                 Basic.caught(e1);
             }
             ed.e = e;
+            ed.changed = false;
 
             EdgeView ev = graphView.getEV(e);
             ev.setLineWidth((byte) ed.line);
@@ -1055,6 +1231,107 @@ public class Network extends NexusBlock {
 
             //graphView.setDirection(e,EdgeView.DIRECTED);
         }
+        syncedGraphView = graphView;
+        topologyChanged = false;
+        allowMoveNodes = allowMove;
+
+        applyDrawModifications(taxa, splits, graphView);
+
+        // todo: comment out the next line to allow moving in rectilinear graphs
+        graphView.setAllowMoveNodes(allowMove);
+        return true;
+    }
+
+    /**
+     * updates the nodes and edges of the viewer whose descriptions have changed since the last synchronization
+     */
+    private void syncChanges2PhyloGraphView(PhyloGraphView graphView) {
+        final PhyloSplitsGraph graph = graphView.getPhyloGraph();
+
+        for (int vi = 1; vi <= getNvertices(); vi++) {
+            VertexDescription vd = vertices[vi];
+            if (!vd.changed)
+                continue;
+            Node v = vd.v;
+            NodeView nv = graphView.getNV(v);
+            nv.setLocation(new Point2D.Float(vd.x, vd.y));
+            nv.setLineWidth((byte) vd.line);
+            nv.setWidth(vd.width);
+            nv.setHeight(vd.height);
+            switch (vd.getShape()) {
+                case VertexDescription.NONE_NODE:
+                    nv.setShape(NodeView.NONE_NODE);
+                    break;
+                case VertexDescription.RECT_NODE:
+                    nv.setShape(NodeView.RECT_NODE);
+                    break;
+                default:
+                case VertexDescription.OVAL_NODE:
+                    nv.setShape(NodeView.OVAL_NODE);
+                    break;
+            }
+            nv.setColor(vd.fgc);
+            nv.setBackgroundColor(vd.bgc);
+            nv.setLabelColor(vd.labelFgc);
+            nv.setLabelBackgroundColor(vd.labelBgc);
+            if (vd.labelOffset != null)
+                nv.setLabelPositionRelative(vd.labelOffset);
+            nv.setLabelAngle(vd.labelAngle);
+            nv.setLabelLayout(vd.labelLayout);
+            graph.setLabel(v, vd.label);
+            nv.setLabel(vd.label);
+            if (vd.font != null)
+                nv.setFont(getFont(vd.font));
+            vd.changed = false;
+        }
+
+        for (int ei = 1; ei <= getNedges(); ei++) {
+            EdgeDescription ed = edges[ei];
+            if (!ed.changed)
+                continue;
+            Edge e = ed.e;
+            EdgeView ev = graphView.getEV(e);
+            ev.setLineWidth((byte) ed.line);
+            ev.setShape(ed.shape);
+            ev.setColor(ed.fgc);
+            ev.setLabelColor(ed.labelFgc);
+            ev.setLabelBackgroundColor(ed.labelBgc);
+            graph.setSplit(e, ed.eclass);
+            graph.setLabel(e, ed.label);
+            ev.setLabel(ed.label);
+            ev.setLabelVisible(ed.label != null && ed.label.length() > 0);
+            if (ed.font != null)
+                ev.setFont(getFont(ed.font));
+            if (ed.labelOffset != null)
+                ev.setLabelPositionRelative(ed.labelOffset);
+            ev.setLabelLayout(ed.labelLayout);
+            ev.setLabelAngle(ed.labelAngle);
+            if (ed.internal != null)
+                graphView.setInternalPoints(e, ed.internal);
+            graph.setWeight(e, ed.weight);
+            ed.changed = false;
+        }
+    }
+
+    /**
+     * gets the font for a font code
+     *
+     * @return font
+     */
+    private static Font getFont(String code) {
+        Font font = fonts.get(code);
+        if (font == null) {
+            font = Font.decode(code);
+            fonts.put(code, font);
+        }
+        return font;
+    }
+
+    /**
+     * applies node and edge label and highlighting modifications requested in the draw block
+     */
+    private void applyDrawModifications(Taxa taxa, Splits splits, PhyloGraphView graphView) {
+        PhyloSplitsGraph graph = graphView.getPhyloGraph();
         // if requested to show names or ids, do so
         if (getDraw().modifyShowNodeNames || getDraw().modifyShowNodeIds) {
             modifyNodeLabels(getDraw().modifyShowNodeNames, getDraw().modifyShowNodeIds,
@@ -1081,9 +1358,6 @@ public class Network extends NexusBlock {
             getDraw().modifyConfidenceEdgeWidth = false;
             getDraw().modifyConfidenceEdgeShading = false;
         }
-
-        // todo: comment out the next line to allow moving in rectilinear graphs
-        graphView.setAllowMoveNodes(allowMove);
     }
 
     /**
@@ -1187,6 +1461,8 @@ public class Network extends NexusBlock {
                 }
                 if (graphView != null)
                     graphView.setLabel(vd.v, vd.label);
+                else
+                    vd.changed = true;
             } catch (NotOwnerException ex) {
                 Basic.caught(ex);
             }
@@ -1290,6 +1566,7 @@ public class Network extends NexusBlock {
                     ed.fgc = new Color(c, c, c);
                 } else
                     ed.fgc = EdgeDescription.FGC;
+                ed.changed = true;
                 colors.put(ed.e, ed.fgc);
                 if (edgeWidth) {
                     float confidence = splits.getConfidence(ed.eclass);
@@ -1395,6 +1672,9 @@ public class Network extends NexusBlock {
                             if (Basic.countOccurrences(vd2.label, ',') != Basic.countOccurrences(vertices[vi].label, ','))
                             */
                             vd2.label = vertices[vi].label; // number of commas has changed, don't keep old label
+                            vd2.v = vd.v;
+                            vd2.id = vd.id;
+                            vd2.changed = true;
                             vertices[vi] = vd2;
                         }
                     }
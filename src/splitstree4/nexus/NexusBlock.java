@@ -19,8 +19,12 @@
 
 package splitstree4.nexus;
 
+import java.awt.*;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 
 /**
@@ -51,6 +55,61 @@ abstract public class NexusBlock {
      *
      */
     public abstract void write(Writer w, Taxa taxa) throws IOException;
+
+    /**
+     * writes a string in binary format, as length followed by UTF-8 bytes
+     */
+    protected static void writeString(DataOutput out, String str) throws IOException {
+        final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * reads a string written by writeString
+     *
+     * @return string
+     */
+    protected static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * writes a string that may be null in binary format
+     */
+    protected static void writeOptionalString(DataOutput out, String str) throws IOException {
+        out.writeBoolean(str != null);
+        if (str != null)
+            writeString(out, str);
+    }
+
+    /**
+     * reads a string written by writeOptionalString
+     *
+     * @return string or null
+     */
+    protected static String readOptionalString(ByteBuffer buffer) {
+        return buffer.get() != 0 ? readString(buffer) : null;
+    }
+
+    /**
+     * writes a color that may be null in binary format. As in nexus text, only the red, green and blue values are kept
+     */
+    protected static void writeColor(DataOutput out, Color color) throws IOException {
+        out.writeInt(color != null ? 0xff000000 | color.getRGB() : 0);
+    }
+
+    /**
+     * reads a color written by writeColor
+     *
+     * @return color or null
+     */
+    protected static Color readColor(ByteBuffer buffer) {
+        final int rgb = buffer.getInt();
+        return rgb != 0 ? new Color(rgb) : null;
+    }
 }
 
 // EOF
@@ -24,10 +24,10 @@ import splitstree4.core.SplitsException;
 import splitstree4.core.TaxaSet;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * This is the baseclass for a colection of Quartets
@@ -100,10 +100,21 @@ public class Quartets extends NexusBlock {
      * Identification string
      */
     public final static String NAME = "Quartets";
-    /**
-     * The Collection of quartet Objects
+
+    /*
+     * The quartets are kept in columns: the four taxa of quartet i (0-based) are at 4i..4i+3 of a short array,
+     * which is replaced by an int array as soon as a taxon id does not fit into a short.
+     * Weights are kept as floats, labels only if some quartet has one
      */
-    protected Collection quartets = null;
+    private int nquartets = 0;
+    private short[] shortTaxa;
+    private int[] intTaxa = null;
+    private float[] weights;
+    private String[] labels = null;
+    private int maxTaxon = 0;
+
+    private int[] separating = null; // optional index: number of quartets that separate each pair of taxa
+    private static final int MAX_INDEXED_TAXA = 5000; // index uses at most about 50MB
 
     /**
      * Default constructor with a size of 100
@@ -120,7 +131,9 @@ public class Quartets extends NexusBlock {
     public Quartets(int initialCapacity) {
         super();
         fmt = new Format();
-        quartets = new ArrayList(initialCapacity);
+        initialCapacity = Math.max(1, initialCapacity);
+        shortTaxa = new short[4 * initialCapacity];
+        weights = new float[initialCapacity];
     }
 
     /**
@@ -138,7 +151,7 @@ public class Quartets extends NexusBlock {
      * @return the number of quartets
      */
     public int size() {
-        return quartets.size();
+        return nquartets;
 
     }
 
@@ -175,7 +188,40 @@ public class Quartets extends NexusBlock {
      * @return <tt>true</tt> (as per the general contract of Collection.add).
      */
     public boolean add(Quartet q) {
-        return quartets.add(q);
+        add(q.getA1(), q.getA2(), q.getB1(), q.getB2(), q.getWeight(), q.getLabel());
+        return true;
+    }
+
+    /**
+     * appends the quartet a1 a2 : b1 b2, without creating a quartet object
+     *
+     * @return the index of the new quartet, 1..size()
+     */
+    public int add(int a1, int a2, int b1, int b2, double weight) {
+        return add(a1, a2, b1, b2, weight, null);
+    }
+
+    /**
+     * appends the quartet a1 a2 : b1 b2, without creating a quartet object
+     *
+     * @return the index of the new quartet, 1..size()
+     */
+    public int add(int a1, int a2, int b1, int b2, double weight, String label) {
+        if (nquartets == weights.length) {
+            if (nquartets >= Integer.MAX_VALUE / 8)
+                throw new OutOfMemoryError("Too many quartets: " + nquartets);
+            final int capacity = (int) Math.min(Integer.MAX_VALUE / 8, 2L * nquartets);
+            weights = Arrays.copyOf(weights, capacity);
+            if (intTaxa != null)
+                intTaxa = Arrays.copyOf(intTaxa, 4 * capacity);
+            else
+                shortTaxa = Arrays.copyOf(shortTaxa, 4 * capacity);
+            if (labels != null)
+                labels = Arrays.copyOf(labels, capacity);
+        }
+        nquartets++;
+        setQuartet(nquartets, a1, a2, b1, b2, weight, label);
+        return nquartets;
     }
 
     /**
@@ -190,11 +236,44 @@ public class Quartets extends NexusBlock {
 
             throw new SplitsException("quartet id " + q + ": out of range 1-" + size());
 
-        ((List) quartets).set(index - 1, q);
+        setQuartet(index, q.getA1(), q.getA2(), q.getB1(), q.getB2(), q.getWeight(), q.getLabel());
     }
 
     /**
-     * Returns the quartet at the specified position in this list.
+     * sets the taxa, weight and label of a quartet
+     */
+    private void setQuartet(int index, int a1, int a2, int b1, int b2, double weight, String label) {
+        final int max = Math.max(Math.max(a1, a2), Math.max(b1, b2));
+        if (intTaxa == null && max > Short.MAX_VALUE) { // switch to ints
+            intTaxa = new int[shortTaxa.length];
+            for (int i = 0; i < 4 * nquartets; i++)
+                intTaxa[i] = shortTaxa[i];
+            shortTaxa = null;
+        }
+        final int pos = 4 * (index - 1);
+        if (intTaxa != null) {
+            intTaxa[pos] = a1;
+            intTaxa[pos + 1] = a2;
+            intTaxa[pos + 2] = b1;
+            intTaxa[pos + 3] = b2;
+        } else {
+            shortTaxa[pos] = (short) a1;
+            shortTaxa[pos + 1] = (short) a2;
+            shortTaxa[pos + 2] = (short) b1;
+            shortTaxa[pos + 3] = (short) b2;
+        }
+        maxTaxon = Math.max(maxTaxon, max);
+        weights[index - 1] = (float) weight;
+        if (label != null && labels == null)
+            labels = new String[weights.length];
+        if (labels != null)
+            labels[index - 1] = label;
+        separating = null;
+    }
+
+    /**
+     * Returns the quartet at the specified position in this list. This is a copy,
+     * changes to it are not reflected in this block
      *
      * @param index the number of the quartet 1..size()
      * @return the quartet at the specified position in this list.
@@ -205,46 +284,197 @@ public class Quartets extends NexusBlock {
         if (index < 1 || index > nquartets)
             throw new SplitsException("quartet id " + index + ": out of range 1-" + nquartets);
 
-        return ((Quartet) ((List) quartets).get(index - 1));
+        return new Quartet(getA1(index), getA2(index), getB1(index), getB2(index), getWeight(index), getLabel(index));
+    }
+
+    /**
+     * gets a taxon of a quartet
+     *
+     * @param index    the quartet 1..size()
+     * @param position 0 for a1, 1 for a2, 2 for b1 and 3 for b2
+     * @return taxon
+     */
+    public int getTaxon(int index, int position) {
+        final int pos = 4 * (index - 1) + position;
+        return (intTaxa != null ? intTaxa[pos] : shortTaxa[pos]);
+    }
+
+    public int getA1(int index) {
+        return getTaxon(index, 0);
+    }
+
+    public int getA2(int index) {
+        return getTaxon(index, 1);
     }
 
+    public int getB1(int index) {
+        return getTaxon(index, 2);
+    }
+
+    public int getB2(int index) {
+        return getTaxon(index, 3);
+    }
 
     /**
-     * Returns <tt>true</tt> if this set contains the specified element.  More
-     * formally, returns <tt>true</tt> if and only if this set contains an
-     * element <code>e</code> such that <code>(o==null ? e==null :
-     * o.equals(e))</code>.
+     * gets the weight of a quartet
+     *
+     * @param index the quartet 1..size()
+     * @return weight
+     */
+    public double getWeight(int index) {
+        return weights[index - 1];
+    }
+
+    /**
+     * sets the weight of a quartet
+     *
+     * @param index the quartet 1..size()
+     */
+    public void setWeight(int index, double weight) {
+        weights[index - 1] = (float) weight;
+    }
+
+    /**
+     * gets the label of a quartet
+     *
+     * @param index the quartet 1..size()
+     * @return label or null
+     */
+    public String getLabel(int index) {
+        return (labels != null ? labels[index - 1] : null);
+    }
+
+    /**
+     * are the two taxa x and y on different sides of the given quartet?
+     *
+     * @param index the quartet 1..size()
+     */
+    public boolean isXYonDifferentSides(int index, int x, int y) {
+        final int a1 = getA1(index), a2 = getA2(index), b1 = getB1(index), b2 = getB2(index);
+        return ((a1 == x || a2 == x) && (b1 == y || b2 == y)) || ((a1 == y || a2 == y) && (b1 == x || b2 == x));
+    }
+
+    /**
+     * are the two taxa x and y on the same side of the given quartet?
+     *
+     * @param index the quartet 1..size()
+     */
+    public boolean isXYonSameSides(int index, int x, int y) {
+        final int a1 = getA1(index), a2 = getA2(index), b1 = getB1(index), b2 = getB2(index);
+        return ((a1 == x && a2 == y) || (a1 == y && a2 == x)) || ((b1 == x && b2 == y) || (b1 == y && b2 == x));
+    }
+
+    /**
+     * is there a quartet that has the two taxa x and y on different sides?
+     * The first call builds an index over all pairs of taxa, so that this and further calls don't scan the quartets.
+     * The index is discarded when a quartet is added or changed
+     *
+     * @return true, if x and y are separated by some quartet
+     */
+    public boolean isSeparated(int x, int y) {
+        return getNumberSeparating(x, y) > 0;
+    }
+
+    /**
+     * gets the number of quartets that have the two taxa x and y on different sides, using the pair index
+     *
+     * @return number of quartets
+     */
+    public int getNumberSeparating(int x, int y) {
+        if (x < 1 || y < 1 || x > maxTaxon || y > maxTaxon || x == y)
+            return 0;
+        if (maxTaxon > MAX_INDEXED_TAXA) { // too many pairs to index
+            int count = 0;
+            for (int q = 1; q <= nquartets; q++) {
+                if (isXYonDifferentSides(q, x, y))
+                    count++;
+            }
+            return count;
+        }
+        if (separating == null)
+            separating = computeSeparating();
+        return separating[pairIndex(x, y)];
+    }
+
+    /**
+     * computes the number of quartets separating each pair of taxa
+     *
+     * @return counts, indexed by pairIndex
+     */
+    private int[] computeSeparating() {
+        final int[] counts = new int[pairIndex(maxTaxon, maxTaxon) + 1];
+        for (int q = 1; q <= nquartets; q++) {
+            final int a1 = getA1(q), a2 = getA2(q), b1 = getB1(q), b2 = getB2(q);
+            counts[pairIndex(a1, b1)]++;
+            counts[pairIndex(a1, b2)]++;
+            counts[pairIndex(a2, b1)]++;
+            counts[pairIndex(a2, b2)]++;
+        }
+        return counts;
+    }
+
+    /**
+     * index of an unordered pair of taxa 1..maxTaxon
+     */
+    private static int pairIndex(int x, int y) {
+        if (x < y) {
+            final int tmp = x;
+            x = y;
+            y = tmp;
+        }
+        return (int) ((long) x * (x - 1) / 2 + y - 1);
+    }
+
+    /**
+     * Returns <tt>true</tt> if this set contains a quartet that displays the same edge as the given one
      *
      * @param o element whose presence in this set is to be tested.
      * @return <tt>true</tt> if this set contains the specified element.
-     * @throws java.lang.ClassCastException   if the type of the specified element
-     *                                        is incompatible with this set (optional).
-     * @throws java.lang.NullPointerException if the specified element is null and this
-     *                                        set does not support null elements (optional).
      */
     public boolean contains(Object o) {
-        return quartets.contains(o);
+        if (!(o instanceof Quartet))
+            return false;
+        final Quartet quartet = (Quartet) o;
+        for (int q = 1; q <= nquartets; q++) {
+            if (isXYonSameSides(q, quartet.getA1(), quartet.getA2()) && isXYonSameSides(q, quartet.getB1(), quartet.getB2()))
+                return true;
+        }
+        return false;
     }
 
     /**
-     * Returns an iterator over the elements in this set.  The elements are
-     * returned in no particular order (unless this set is an instance of some
-     * class that provides a guarantee).
+     * Returns an iterator over the quartets. Each quartet is a copy, changes to it are not reflected in this block
      *
      * @return an iterator over the elements in this set.
      */
-    public Iterator iterator() {
-        return quartets.iterator();
+    public Iterator<Quartet> iterator() {
+        return new Iterator<>() {
+            private int q = 1;
+
+            public boolean hasNext() {
+                return q <= nquartets;
+            }
+
+            public Quartet next() {
+                if (q > nquartets)
+                    throw new NoSuchElementException();
+                final int index = q++;
+                return new Quartet(getA1(index), getA2(index), getB1(index), getB2(index), getWeight(index), getLabel(index));
+            }
+        };
     }
 
     /**
      * Returns an array containing all of the quartets in this set.
-     * Obeys the general contract of the <tt>Collection.toArray</tt> method.
      *
      * @return an array containing all of the elements in this set.
      */
     public Quartet[] toArray() {
-		return (Quartet[]) quartets.toArray(new Quartet[0]);
+        final Quartet[] result = new Quartet[nquartets];
+        int i = 0;
+        for (Iterator<Quartet> it = iterator(); it.hasNext(); )
+            result[i++] = it.next();
+        return result;
     }
 
     /**
@@ -253,23 +483,11 @@ public class Quartets extends NexusBlock {
      * @return the clone
      */
     public Quartets clone(Taxa taxa) {
-        Writer w = new StringWriter();
-        Quartets clone = null;
-        try {
-            clone = this.getClass().getConstructor().newInstance();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        try {
-            this.write(w, taxa);
-            w.close();
-            String buffer = w.toString();
-            Reader r = new StringReader(buffer);
-            NexusStreamParser nsp = new NexusStreamParser(r);
-            clone.read(nsp, taxa);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        final Quartets clone = new Quartets(Math.max(1, nquartets));
+        clone.getFormat().setLabels(getFormat().getLabels());
+        clone.getFormat().setWeights(getFormat().getWeights());
+        for (int q = 1; q <= nquartets; q++)
+            clone.add(getA1(q), getA2(q), getB1(q), getB2(q), weights[q - 1], getLabel(q));
         return clone;
     }
 
@@ -394,14 +612,13 @@ public class Quartets extends NexusBlock {
     protected void writeMatrix(Writer w) throws
             IOException {
         w.write("MATRIX\n");
-        for (Object quartet1 : quartets) {
-            Quartet quartet = (Quartet) quartet1;
+        for (int q = 1; q <= nquartets; q++) {
             if (getFormat().getLabels()) {
-                w.write("'" + quartet.getLabel() + "'");
+                w.write("'" + getLabel(q) + "'");
             }
             if (getFormat().getWeights())
-                w.write(" " + quartet.getWeight());
-            w.write(" " + quartet.getA1() + " " + quartet.getA2() + " : " + quartet.getB1() + " " + quartet.getB2() + ",\n");
+                w.write(" " + weights[q - 1]);
+            w.write(" " + getA1(q) + " " + getA2(q) + " : " + getB1(q) + " " + getB2(q) + ",\n");
         }
         w.write(";\n");
     }
@@ -416,7 +633,7 @@ public class Quartets extends NexusBlock {
             throws IOException {
         np.matchIgnoreCase("MATRIX");
         for (int q = 1; q <= expectedQuartets; q++) {
-            String label = "<defaultLabel>";
+            String label = null;
             if (getFormat().getLabels())
                 label = np.getWordRespectCase();
             double wgt = 1;
@@ -428,7 +645,7 @@ public class Quartets extends NexusBlock {
             int b1 = np.getInt();
             int b2 = np.getInt();
             np.matchIgnoreCase(",");
-            add(new Quartet(a1, a2, b1, b2, wgt, label));
+            add(a1, a2, b1, b2, wgt, label);
         }
         np.matchIgnoreCase(";");
 
@@ -29,6 +29,7 @@ import splitstree4.core.TaxaSet;
 import splitstree4.util.Interval;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.lang.reflect.Array;
 import java.util.*;
 
@@ -597,6 +598,46 @@ public class Splits extends NexusBlock {
      * @param w a writer
      */
     public void write(Writer w, int nTaxa) throws java.io.IOException {
+        writeHeader(w);
+        w.write("MATRIX\n");
+
+        for (int i = 1; i <= getNsplits(); i++) {
+            int size = Math.min(get(i).cardinality(), nTaxa - get(i).cardinality());
+
+            w.write("[" + i + ", size=" + size + "]" + " \t");
+            if (format.getLabels()) {
+                String lab = getLabel(i);
+                w.write(" '" + lab + "'" + " \t");
+            }
+            if (format.getWeights()) {
+                float wgt = getWeight(i);
+                w.write(" " + StringUtils.removeTrailingZerosAfterDot(String.valueOf(wgt)) + " \t");
+            }
+            if (format.getConfidences()) {
+                float confidence = getConfidence(i);
+                w.write(" " + confidence + " \t");
+            }
+            if (format.getIntervals()) {
+                Interval interval = getInterval(i);
+                if (interval == null)
+                    w.write(" ()\t");
+                else
+                    w.write(" " + interval + "\t");
+
+            }
+            w.write(" " + get(i) + ",\n");
+
+        }
+        w.write(";\n");
+        w.write("END; [" + Splits.NAME + "]\n");
+    }
+
+    /**
+     * writes everything up to the matrix
+     *
+     * @param w a writer
+     */
+    private void writeHeader(Writer w) throws IOException {
         w.write("\nBEGIN " + Splits.NAME + ";\n");
         w.write("DIMENSIONS ntax=" + getNtax() + " nsplits=" + getNsplits()
                 + ";\n");
@@ -653,37 +694,88 @@ public class Splits extends NexusBlock {
                 w.write(" " + cycle[i]);
             w.write(";\n");
         }
-        w.write("MATRIX\n");
+    }
 
-        for (int i = 1; i <= getNsplits(); i++) {
-            int size = Math.min(get(i).cardinality(), nTaxa - get(i).cardinality());
+    /**
+     * writes the block in binary format: the text of the block without the matrix, followed by the splits.
+     * Each split is given by its bits, followed by weight, confidence, interval and label, as far as
+     * they are specified by the format
+     *
+     * @param out  the output
+     * @param taxa the taxa
+     */
+    public void writeBinary(DataOutput out, Taxa taxa) throws IOException {
+        final StringWriter w = new StringWriter();
+        writeHeader(w);
+        w.write("END; [" + Splits.NAME + "]\n");
+        writeString(out, w.toString());
 
-            w.write("[" + i + ", size=" + size + "]" + " \t");
-            if (format.getLabels()) {
-                String lab = getLabel(i);
-                w.write(" '" + lab + "'" + " \t");
-            }
-            if (format.getWeights()) {
-                float wgt = getWeight(i);
-                w.write(" " + StringUtils.removeTrailingZerosAfterDot(String.valueOf(wgt)) + " \t");
+        out.writeInt(getNsplits());
+        for (int i = 1; i <= getNsplits(); i++) {
+            final long[] bits = get(i).getBits().toLongArray();
+            out.writeShort(bits.length);
+            for (long word : bits)
+                out.writeLong(word);
+            if (format.getWeights())
+                out.writeFloat(getWeight(i));
+            if (format.getConfidences())
+                out.writeFloat(getConfidence(i));
+            if (format.getIntervals()) {
+                final Interval interval = getInterval(i);
+                out.writeBoolean(interval != null);
+                if (interval != null) {
+                    out.writeFloat(interval.low);
+                    out.writeFloat(interval.high);
+                }
             }
-            if (format.getConfidences()) {
-                float confidence = getConfidence(i);
-                w.write(" " + confidence + " \t");
+            if (format.getLabels()) {
+                final String label = getLabel(i);
+                out.writeBoolean(label != null);
+                if (label != null)
+                    writeString(out, label);
             }
-            if (format.getIntervals()) {
-                Interval interval = getInterval(i);
-                if (interval == null)
-                    w.write(" ()\t");
-                else
-                    w.write(" " + interval + "\t");
+        }
+    }
 
-            }
-            w.write(" " + get(i) + ",\n");
+    /**
+     * reads a block written by writeBinary
+     *
+     * @param buffer the buffer, positioned at the start of the block
+     * @param taxa   the taxa
+     */
+    public void readBinary(ByteBuffer buffer, Taxa taxa) throws IOException {
+        read(new NexusStreamParser(new StringReader(readString(buffer))), taxa);
 
+        splits.setLabels(new Vector());
+        splits.setSplits(new Vector());
+        splits.setWeights(new Vector());
+        splits.setIntervals(new Vector());
+        setNsplits(0); // need to set this to 0 because add increments it
+
+        final int nsplits = buffer.getInt();
+        for (int i = 1; i <= nsplits; i++) {
+            final long[] bits = new long[buffer.getShort()];
+            for (int k = 0; k < bits.length; k++)
+                bits[k] = buffer.getLong();
+            final TaxaSet ts = new TaxaSet(BitSet.valueOf(bits));
+            if (ts.cardinality() == 0 || ts.cardinality() == getNtax())
+                throw new IOException("Splits: non-split of size " + ts.cardinality());
+            float weight = 1;
+            float confidence = -1;
+            if (format.getWeights())
+                weight = Math.max(0, buffer.getFloat());
+            if (format.getConfidences())
+                confidence = Math.max(0, buffer.getFloat());
+            if (confidence == -1) // as in readMatrix
+                confidence = 1;
+            Interval interval = null;
+            if (format.getIntervals() && buffer.get() != 0)
+                interval = new Interval(buffer.getFloat(), buffer.getFloat());
+            String label = null;
+            if (format.getLabels() && buffer.get() != 0)
+                label = readString(buffer);
+            add(ts, weight, confidence, interval, label);
         }
-        w.write(";\n");
-        w.write("END; [" + Splits.NAME + "]\n");
     }
 
     /**
@@ -26,7 +26,9 @@ import jloda.util.Basic;
 import jloda.util.parse.NexusStreamParser;
 
 import java.awt.*;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * all the properties that a node might have
@@ -64,6 +66,7 @@ public class VertexDescription implements Cloneable {
     byte labelLayout = NodeView.LAYOUT;
     float labelAngle;
     String font = FONT;
+    boolean changed = false; // modified since the network was last synchronized with a viewer
 
     public Node getV() {
         return v;
@@ -83,10 +86,12 @@ public class VertexDescription implements Cloneable {
 
     public void setX(float x) {
         this.x = x;
+        changed = true;
     }
 
     public void setY(float y) {
         this.y = y;
+        changed = true;
     }
 
     public int getWidth() {
@@ -139,6 +144,7 @@ public class VertexDescription implements Cloneable {
 
     public void setLabelAngle(float labelAngle) {
         this.labelAngle = labelAngle;
+        changed = true;
     }
 
     public char getShape() {
@@ -147,6 +153,7 @@ public class VertexDescription implements Cloneable {
 
     public void setShape(char shape) {
         this.shape = shape;
+        changed = true;
     }
 
 
@@ -256,6 +263,60 @@ public class VertexDescription implements Cloneable {
         return buf.toString();
     }
 
+    /**
+     * writes the vertex and its label in binary format
+     */
+    void writeBinary(DataOutput out) throws IOException {
+        out.writeFloat(x);
+        out.writeFloat(y);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(line);
+        out.writeChar(shape);
+        NexusBlock.writeColor(out, fgc);
+        NexusBlock.writeColor(out, bgc);
+        NexusBlock.writeOptionalString(out, label);
+        if (label != null) {
+            NexusBlock.writeOptionalString(out, font);
+            out.writeByte(labelLayout);
+            out.writeBoolean(labelOffset != null);
+            if (labelOffset != null) {
+                out.writeInt(labelOffset.x);
+                out.writeInt(labelOffset.y);
+            }
+            out.writeFloat(labelAngle);
+            NexusBlock.writeColor(out, labelFgc);
+            NexusBlock.writeColor(out, labelBgc);
+        }
+    }
+
+    /**
+     * reads a vertex written by writeBinary
+     *
+     * @param id vertex id
+     */
+    void readBinary(int id, ByteBuffer buffer) {
+        this.id = id;
+        x = buffer.getFloat();
+        y = buffer.getFloat();
+        width = buffer.getInt();
+        height = buffer.getInt();
+        line = buffer.getInt();
+        shape = buffer.getChar();
+        fgc = NexusBlock.readColor(buffer);
+        bgc = NexusBlock.readColor(buffer);
+        label = NexusBlock.readOptionalString(buffer);
+        if (label != null) {
+            font = NexusBlock.readOptionalString(buffer);
+            labelLayout = buffer.get();
+            if (buffer.get() != 0)
+                labelOffset = new Point(buffer.getInt(), buffer.getInt());
+            labelAngle = buffer.getFloat();
+            labelFgc = NexusBlock.readColor(buffer);
+            labelBgc = NexusBlock.readColor(buffer);
+        }
+    }
+
     /**
      * clones this
      *
@@ -51,6 +51,7 @@ public class CircularDFilter {
 
     /**
      * Count the number of times the ordering changes sides in the split. Returns this number divided by 2.
+     * The split is packed into words in the order of the cycle, so that changes of side are counted word-wise
      *
      * @param ordering array containing a permutation of 1....ntax.
      * @param s        split
@@ -58,22 +59,28 @@ public class CircularDFilter {
      */
     private int numCrossings(int[] ordering, TaxaSet s) {
         int ntax = ordering.length - 1;
+        if (ntax <= 1)
+            return 0;
 
-        int count = 0;
-        boolean strand = s.get(ordering[1]);    //Which side of the split we start on.
+        long[] words = new long[(ntax + 63) / 64];
+        for (int i = 1; i <= ntax; i++) {
+            if (s.get(ordering[i]))
+                words[(i - 1) / 64] |= (1L << ((i - 1) % 64));
+        }
 
-        for (int i = 2; i <= ntax; i++) {
-            if (s.get(ordering[i]) != strand) {
-                count++;                          //Different side than before... increment count
-                strand = !strand;
-            }
+        int count = 0;
+        for (int w = 0; w < words.length; w++) {
+            long next = (words[w] >>> 1);  // bit k holds the side of position k+1
+            if (w + 1 < words.length)
+                next |= (words[w + 1] << 63);
+            long changes = words[w] ^ next;
+            if (w == words.length - 1) // the last position is compared with the first one, to close the cycle
+                changes = (changes & ((1L << ((ntax - 1) % 64)) - 1)) | ((((words[w] >>> ((ntax - 1) % 64)) ^ words[0]) & 1L) << ((ntax - 1) % 64));
+            count += Long.bitCount(changes);
         }
-        if (s.get(ordering[1]) != strand)         //Check if crossing between 1 and ntax.
-            count++;
         return count / 2;
     }
 
-
     /**
      * destroy all d-dimensional boxes in splits graph
      *
@@ -18,18 +18,18 @@
  */
 package splitstree4.util;
 
-import jloda.graph.*;
 import jloda.util.Basic;
 import jloda.util.CanceledException;
-import jloda.util.Pair;
 import splitstree4.core.Document;
 import splitstree4.nexus.Splits;
 
 import java.util.BitSet;
+import java.util.stream.IntStream;
 
 
 /**
- * Given a set of splits, removes highly incompatible splits to destroy all high-dimensional boxes
+ * Given a set of splits, removes highly incompatible splits to destroy all high-dimensional boxes.
+ * The incompatibility graph is held as a packed bit-matrix, see IncompatibilityMatrix
  *
  * @author huson
  * Date: 14-May-2004
@@ -67,35 +67,37 @@ public class DFilter {
 
         try {
             // build initial incompatibility graph:
-            Graph graph = buildIncompatibilityGraph(splits);
+            IncompatibilityMatrix graph = new IncompatibilityMatrix(splits);
 
-            //System.err.println("Init: "+graph);
-            int origNumberOfNodes = graph.getNumberOfNodes();
+            int origNumberOfNodes = graph.getNumberAlive();
             doc.notifySetMaximumProgress(origNumberOfNodes);    //initialize maximum progress
             doc.notifySetProgress(0);
 
+            BitSet all = new BitSet();
+            all.set(1, graph.getNsplits() + 1);
             if (maxDimension <= COMPUTE_DSUBGRAPH_MAXDIMENSION) {
                 System.err.println("(Small D: using D-subgraph)");
-                computeDSubgraph(graph, maxDimension + 1);
+                computeDSubgraph(graph, maxDimension + 1, all);
             } else {
                 System.err.println("(Large D: using maxDegree heuristic)");
-                relaxGraph(graph, maxDimension - 1);
+                relaxGraph(graph, maxDimension - 1, all);
             }
-            //System.err.println("relaxed: "+graph);
 
-            while (graph.getNumberOfNodes() > 0) {
-                Node worstNode = getWorstNode(graph);
-                int s = ((Pair) graph.getInfo(worstNode)).getFirstInt();
-                toDelete.set(s);
-                graph.deleteNode(worstNode);
-                //System.err.println("deleted: "+graph);
+            while (graph.getNumberAlive() > 0) {
+                int worstNode = getWorstNode(graph);
+                toDelete.set(worstNode);
+
+                // only the neighbors of the deleted node can be affected by its removal:
+                BitSet affected = new BitSet();
+                for (int t = graph.nextNeighbor(worstNode, 0); t != -1; t = graph.nextNeighbor(worstNode, t + 1))
+                    affected.set(t);
+                graph.delete(worstNode);
 
                 if (maxDimension <= COMPUTE_DSUBGRAPH_MAXDIMENSION)
-                    computeDSubgraph(graph, maxDimension + 1);
+                    computeDSubgraph(graph, maxDimension + 1, affected);
                 else
-                    relaxGraph(graph, maxDimension - 1);
-                //System.err.println("relaxed: "+graph);
-                doc.notifySetProgress(origNumberOfNodes - graph.getNumberOfNodes());
+                    relaxGraph(graph, maxDimension - 1, affected);
+                doc.notifySetProgress(origNumberOfNodes - graph.getNumberAlive());
             }
         } catch (Exception ex) {
             Basic.caught(ex);
@@ -106,132 +108,55 @@ public class DFilter {
     }
 
     /**
-     * build the incompatibility graph
-     *
-     * @return incompatibility graph
-     */
-    Graph buildIncompatibilityGraph(Splits splits) {
-        Node[] split2node = new Node[splits.getNsplits() + 1];
-        Graph graph = new Graph();
-
-        try {
-            for (int s = 1; s <= splits.getNsplits(); s++) {
-                Pair pair = new Pair(s, (int) (10000 * splits.getWeight(s)));
-                split2node[s] = graph.newNode(pair);
-            }
-            for (int s = 1; s <= splits.getNsplits(); s++) {
-
-                for (int t = s + 1; t <= splits.getNsplits(); t++)
-                    if (!SplitsUtilities.areCompatible(splits.getNtax(), splits.get(s),
-                            splits.get(t))) {
-                        graph.newEdge(split2node[s], split2node[t]);
-                    }
-            }
-
-        } catch (NotOwnerException ex) {
-            Basic.caught(ex);
-        }
-        return graph;
-    }
-
-    /**
-     * computes the subgraph in which every node is contained in a d-clique
+     * computes the subgraph in which every node is contained in a d-clique. Only the given nodes are checked,
+     * all other nodes must already be known to be contained in a d-clique. The nodes are checked in parallel
      *
      * @param d     clique size
+     * @param nodes nodes to check
      */
-    private void computeDSubgraph(Graph graph, int d) throws NotOwnerException, CanceledException {
-        //System.err.print("Compute D-subgraph: ");
-        NodeSet keep = new NodeSet(graph);
-        NodeSet discard = new NodeSet(graph);
-        NodeSet clique = new NodeSet(graph);
-        for (Node v = graph.getFirstNode(); v != null; v = graph.getNextNode(v)) {
-            if (!keep.contains(v)) {
-                clique.clear();
-                clique.add(v);
-                if (findClique(graph, v, graph.getFirstAdjacentEdge(v), 1, d, clique, discard))
-                    keep.addAll(clique);
-                else
-                    discard.add(v);
-            }
-            doc.getProgressListener().checkForCancel();
-        }
-
-        // remove all nodes not contained in a d-clique
-        for (Node v : discard) {
-            graph.deleteNode(v);
-        }
-        //System.err.println(" "+graph.getNumberOfNodes());
-    }
-
-    /**
-     * recursively determine whether v is contained in a d-clique.
-     *
-     * @return true, if v contained in a d-clique
-     */
-    private boolean findClique(Graph graph, Node v, Edge e, int i, int d, NodeSet clique, NodeSet discard) {
-        if (i == d)
-            return true;  // found clique, retreat
-        else {
-            while (e != null) {
-                Node w = graph.getOpposite(v, e);
-                e = graph.getNextAdjacentEdge(e, v);
-
-                if (isConnectedTo(graph, w, clique) && !discard.contains(w)) {
-                    clique.add(w);
-                    if (findClique(graph, v, e, i + 1, d, clique, discard))
-                        return true;
-                    clique.remove(w);
-                }
-            }
-            return false; // didn't work out, try different combination
-        }
-    }
-
-    /**
-     * determines whether node w is connected to all nodes in U
-     *
-     * @return true, if w is connected to all nodes in U
-	 */
-    private boolean isConnectedTo(Graph graph, Node w, NodeSet U) throws NotOwnerException {
-        int count = 0;
-        for (Edge e = graph.getFirstAdjacentEdge(w); e != null; e = graph.getNextAdjacentEdge(e, w)) {
-            Node u = graph.getOpposite(w, e);
-            if (U.contains(u)) {
-                count++;
-                if (count == U.size())
-                    return true;
-            }
+    private void computeDSubgraph(IncompatibilityMatrix graph, int d, BitSet nodes) throws CanceledException {
+        final int[] toCheck = nodes.stream().filter(graph::isAlive).toArray();
+        final boolean[] inClique = new boolean[toCheck.length];
+        IntStream.range(0, toCheck.length).parallel().forEach(i -> inClique[i] = graph.isContainedInClique(toCheck[i], d));
+        doc.getProgressListener().checkForCancel();
+
+        // remove all nodes not contained in a d-clique, this does not destroy any d-clique
+        for (int i = 0; i < toCheck.length; i++) {
+            if (!inClique[i])
+                graph.delete(toCheck[i]);
         }
-        return false;
     }
 
     /**
      * Modify graph to become the maximal induced graph in which all nodes have degree >maxDegree
-     * If maxDegree==1, then we additionally require that all remaining nodes are contained in a triangle
+     * If maxDegree==1, then we additionally require that all remaining nodes are contained in a triangle.
+     * Only the given nodes and the neighbors of deleted nodes are checked, as all others are known to be fine
      *
-	 */
-    private void relaxGraph(Graph graph, int maxDegree) throws NotOwnerException, CanceledException {
+     * @param nodes nodes to check
+     */
+    private void relaxGraph(IncompatibilityMatrix graph, int maxDegree, BitSet nodes) throws CanceledException {
         System.err.print("Relax graph: ");
 
         int maxDegreeHeuristicThreshold = 6; // use heuristic for max degrees above this threshold
-        NodeSet active = new NodeSet(graph);
-        for (Node v = graph.getFirstNode(); v != null; v = graph.getNextNode(v)) {
-            if (graph.getDegree(v) < maxDegree
-                    || (maxDegree <= maxDegreeHeuristicThreshold && hasDegreeDButNotInClique(maxDegree + 1, graph, v)))
-                active.add(v);
+        BitSet active = new BitSet();
+        for (int v = nodes.nextSetBit(0); v != -1; v = nodes.nextSetBit(v + 1)) {
+            if (graph.isAlive(v) && (graph.getDegree(v) < maxDegree
+                    || (maxDegree <= maxDegreeHeuristicThreshold && graph.hasDegreeDButNotInClique(maxDegree + 1, v))))
+                active.set(v);
         }
 
         while (!active.isEmpty()) {
-            Node v = active.getFirstElement();
-            if (graph.getDegree(v) < maxDegree || (maxDegree <= maxDegreeHeuristicThreshold && hasDegreeDButNotInClique(maxDegree + 1, graph, v))) {
-				active.addAll(v.adjacentNodes());
-				active.remove(v);
-                graph.deleteNode(v);
+            int v = active.nextSetBit(0);
+            if (graph.getDegree(v) < maxDegree || (maxDegree <= maxDegreeHeuristicThreshold && graph.hasDegreeDButNotInClique(maxDegree + 1, v))) {
+                for (int w = graph.nextNeighbor(v, 0); w != -1; w = graph.nextNeighbor(v, w + 1))
+                    active.set(w);
+                active.clear(v);
+                graph.delete(v);
             } else
-                active.remove(v);
+                active.clear(v);
             doc.getProgressListener().checkForCancel();
         }
-        System.err.println("" + graph.getNumberOfNodes());
+        System.err.println("" + graph.getNumberAlive());
     }
 
 
@@ -239,13 +164,13 @@ public class DFilter {
      * gets the node will the lowest compatability score
      *
      * @return worst node
-	 */
-    private Node getWorstNode(Graph graph) throws NotOwnerException {
-        float worstCompatibility = 0;
-        Node worstNode = null;
-        for (Node v = graph.getFirstNode(); v != null; v = graph.getNextNode(v)) {
-            float compatibility = getCompatibilityScore(graph, v);
-            if (worstNode == null || compatibility < worstCompatibility) {
+     */
+    private int getWorstNode(IncompatibilityMatrix graph) {
+        int worstCompatibility = 0;
+        int worstNode = -1;
+        for (int v = graph.nextAlive(0); v != -1; v = graph.nextAlive(v + 1)) {
+            int compatibility = graph.getCompatibilityScore(v);
+            if (worstNode == -1 || compatibility < worstCompatibility) {
                 worstNode = v;
                 worstCompatibility = compatibility;
             }
@@ -253,40 +178,6 @@ public class DFilter {
         return worstNode;
     }
 
-    /**
-     * gets the compatibility score of a node.
-     * This is the weight oif the splits minus the weight of all contradicting splits
-     *
-     * @return compatibility score
-	 */
-    private int getCompatibilityScore(Graph graph, Node v) throws NotOwnerException {
-        int score = ((Pair) graph.getInfo(v)).getSecondInt();
-        for (Node w : v.adjacentNodes()) {
-            score -= ((Pair) graph.getInfo(w)).getSecondInt();
-        }
-        return score;
-    }
-
-    /**
-     * determines whether the node v has degree==d but  is not contained in a clique of size d+1
-     *
-     * @param d* @param graph
-     * @return false, if the node v has degree!=d or is contained in a d+1 clique
-	 */
-    private boolean hasDegreeDButNotInClique(int d, Graph graph, Node v) throws NotOwnerException {
-        if (graph.getDegree(v) != d)
-            return false;
-        for (Edge e = graph.getFirstAdjacentEdge(v); e != null; e = graph.getNextAdjacentEdge(e, v)) {
-            Node a = graph.getOpposite(v, e);
-            for (Edge f = graph.getNextAdjacentEdge(e, v); f != null; f = graph.getNextAdjacentEdge(f, v)) {
-                Node b = graph.getOpposite(v, f);
-                if (!a.isAdjacent(b))
-                    return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * return the filtered set of splits
      *
@@ -0,0 +1,321 @@
+/*
+ * IncompatibilityMatrix.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.util;
+
+import splitstree4.nexus.Splits;
+
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * incompatibility graph of a set of splits, stored as a packed bit-matrix. Nodes are the splits 1..nsplits.
+ * Nodes can be deleted, degrees and compatibility scores of the remaining nodes are maintained incrementally
+ *
+ * @author huson
+ * Date: 2022
+ */
+class IncompatibilityMatrix {
+    private final int nsplits;
+    private final int numWords;
+    private final long[] rows; // rows[s*numWords+w]: incompatible splits, bit t for split t
+    private final long[] alive;
+    private int numberAlive;
+    private final int[] degree;
+    private final int[] weight;
+    private final int[] score;
+    private final int[][] witness; // other members of a clique containing the split, as last found
+
+    /**
+     * constructor. Computes the incompatibility matrix in parallel
+     *
+     * @param splits the splits
+     */
+    IncompatibilityMatrix(Splits splits) {
+        nsplits = splits.getNsplits();
+        numWords = (nsplits + 1 + 63) / 64;
+        rows = new long[(nsplits + 1) * numWords];
+        alive = new long[numWords];
+        degree = new int[nsplits + 1];
+        weight = new int[nsplits + 1];
+        score = new int[nsplits + 1];
+        witness = new int[nsplits + 1][];
+
+        final int ntax = splits.getNtax();
+        final int taxWords = (ntax + 63) / 64;
+        final long[] sides = new long[(nsplits + 1) * taxWords];
+        for (int s = 1; s <= nsplits; s++) {
+            // use the side not containing the first taxon, then two splits are compatible iff their sides are disjoint or nested
+            final BitSet bits = splits.get(s).getBits();
+            final boolean flip = bits.get(1);
+            for (int t = 1; t <= ntax; t++) {
+                if (bits.get(t) != flip)
+                    sides[s * taxWords + (t - 1) / 64] |= (1L << ((t - 1) % 64));
+            }
+            weight[s] = (int) (10000 * splits.getWeight(s));
+            alive[s / 64] |= (1L << (s % 64));
+        }
+        numberAlive = nsplits;
+
+        // compute upper triangle, then mirror, so that each row is written by one thread only
+        IntStream.rangeClosed(1, nsplits).parallel().forEach(s -> {
+            for (int t = s + 1; t <= nsplits; t++) {
+                if (!areCompatible(sides, s * taxWords, t * taxWords, taxWords))
+                    rows[s * numWords + t / 64] |= (1L << (t % 64));
+            }
+        });
+        IntStream.rangeClosed(1, nsplits).parallel().forEach(t -> {
+            final int word = t / 64;
+            final long bit = 1L << (t % 64);
+            for (int s = 1; s < t; s++) {
+                if ((rows[s * numWords + word] & bit) != 0)
+                    rows[t * numWords + s / 64] |= (1L << (s % 64));
+            }
+        });
+        IntStream.rangeClosed(1, nsplits).parallel().forEach(s -> {
+            int count = 0;
+            int value = weight[s];
+            for (int t = nextNeighbor(s, 0); t != -1; t = nextNeighbor(s, t + 1)) {
+                count++;
+                value -= weight[t];
+            }
+            degree[s] = count;
+            score[s] = value;
+        });
+    }
+
+    /**
+     * word-wise compatibility test for two sides that both don't contain the first taxon:
+     * they are compatible iff they are disjoint or one contains the other
+     *
+     * @return true, if compatible
+     */
+    private static boolean areCompatible(long[] sides, int a, int b, int length) {
+        long intersection = 0, aMinusB = 0, bMinusA = 0;
+        for (int w = 0; w < length; w++) {
+            final long x = sides[a + w];
+            final long y = sides[b + w];
+            intersection |= (x & y);
+            aMinusB |= (x & ~y);
+            bMinusA |= (y & ~x);
+            if (intersection != 0 && aMinusB != 0 && bMinusA != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * number of splits, including deleted ones
+     *
+     * @return nsplits
+     */
+    int getNsplits() {
+        return nsplits;
+    }
+
+    /**
+     * number of splits not yet deleted
+     *
+     * @return number alive
+     */
+    int getNumberAlive() {
+        return numberAlive;
+    }
+
+    boolean isAlive(int s) {
+        return (alive[s / 64] & (1L << (s % 64))) != 0;
+    }
+
+    /**
+     * gets the next split that is not deleted
+     *
+     * @return next split &ge;s, or -1
+     */
+    int nextAlive(int s) {
+        return nextSetBit(alive, 0, s);
+    }
+
+    /**
+     * gets the next split incompatible to s that is not deleted
+     *
+     * @return next neighbor &ge;t, or -1
+     */
+    int nextNeighbor(int s, int t) {
+        final int base = s * numWords;
+        int w = t / 64;
+        if (w >= numWords)
+            return -1;
+        long word = rows[base + w] & alive[w] & (-1L << (t % 64));
+        while (true) {
+            if (word != 0)
+                return w * 64 + Long.numberOfTrailingZeros(word);
+            if (++w == numWords)
+                return -1;
+            word = rows[base + w] & alive[w];
+        }
+    }
+
+    boolean areIncompatible(int s, int t) {
+        return (rows[s * numWords + t / 64] & (1L << (t % 64))) != 0;
+    }
+
+    /**
+     * number of incompatible splits that are not deleted
+     *
+     * @return degree
+     */
+    int getDegree(int s) {
+        return degree[s];
+    }
+
+    /**
+     * the weight of the split minus the weight of all incompatible splits that are not deleted
+     *
+     * @return compatibility score
+     */
+    int getCompatibilityScore(int s) {
+        return score[s];
+    }
+
+    /**
+     * delete a split, updating the degrees and scores of its neighbors
+     */
+    void delete(int s) {
+        if (isAlive(s)) {
+            alive[s / 64] &= ~(1L << (s % 64));
+            numberAlive--;
+            for (int t = nextNeighbor(s, 0); t != -1; t = nextNeighbor(s, t + 1)) {
+                degree[t]--;
+                score[t] += weight[s];
+            }
+        }
+    }
+
+    /**
+     * determines whether s is contained in a clique of size d, consisting of splits that are not deleted.
+     * The other members of the last clique found for s are kept as witness, so that a new search is only
+     * required once one of them has been deleted
+     *
+     * @return true, if contained in d-clique
+     */
+    boolean isContainedInClique(int s, int d) {
+        if (d <= 1)
+            return true;
+        final int[] previous = witness[s];
+        if (previous != null && previous.length == d - 1) {
+            boolean ok = true;
+            for (int t : previous) {
+                if (!isAlive(t)) {
+                    ok = false;
+                    break;
+                }
+            }
+            if (ok)
+                return true;
+        }
+        final long[][] candidates = new long[d][numWords];
+        final long[] first = candidates[1];
+        for (int w = 0; w < numWords; w++)
+            first[w] = rows[s * numWords + w] & alive[w];
+        final int[] clique = new int[d - 1];
+        if (findClique(candidates, clique, 1, d)) {
+            witness[s] = clique;
+            return true;
+        } else {
+            witness[s] = null;
+            return false;
+        }
+    }
+
+    /**
+     * recursively extends a clique of size i, using the candidates at level i, which are adjacent to all clique members.
+     * Candidates are tried in increasing order
+     *
+     * @param clique the members added so far
+     * @return true, if a d-clique was found
+     */
+    private boolean findClique(long[][] candidates, int[] clique, int i, int d) {
+        if (i == d)
+            return true;
+        final long[] current = candidates[i];
+        if (cardinality(current) < d - i)
+            return false;
+        if (i + 1 == d) {
+            clique[i - 1] = nextSetBit(current, 0, 0);
+            return true;
+        }
+        final long[] next = candidates[i + 1];
+        for (int w = nextSetBit(current, 0, 0); w != -1; w = nextSetBit(current, 0, w + 1)) {
+            final int base = w * numWords;
+            final int start = (w + 1) / 64;
+            for (int k = 0; k < start; k++)
+                next[k] = 0;
+            for (int k = start; k < numWords; k++)
+                next[k] = current[k] & rows[base + k];
+            if (start < numWords)
+                next[start] &= (-1L << ((w + 1) % 64));
+            clique[i - 1] = w;
+            if (findClique(candidates, clique, i + 1, d))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * determines whether s has degree d, but its neighbors do not form a clique
+     *
+     * @return false, if s has degree!=d or its neighbors form a clique
+     */
+    boolean hasDegreeDButNotInClique(int d, int s) {
+        if (degree[s] != d)
+            return false;
+        for (int a = nextNeighbor(s, 0); a != -1; a = nextNeighbor(s, a + 1)) {
+            for (int b = nextNeighbor(s, a + 1); b != -1; b = nextNeighbor(s, b + 1)) {
+                if (!areIncompatible(a, b))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static int cardinality(long[] bits) {
+        int count = 0;
+        for (long word : bits)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * next set bit at position &ge;from in the array of words starting at base
+     *
+     * @return position or -1
+     */
+    private int nextSetBit(long[] bits, int base, int from) {
+        int w = from / 64;
+        if (w >= numWords)
+            return -1;
+        long word = bits[base + w] & (-1L << (from % 64));
+        while (true) {
+            if (word != 0)
+                return w * 64 + Long.numberOfTrailingZeros(word);
+            if (++w == numWords)
+                return -1;
+            word = bits[base + w];
+        }
+    }
+}
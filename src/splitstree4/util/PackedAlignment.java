@@ -0,0 +1,92 @@
+/*
+ * PackedAlignment.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.util;
+
+import splitstree4.core.SplitsException;
+import splitstree4.nexus.Characters;
+
+/**
+ * read-only snapshot of a character matrix, stored column by column in a single array.
+ * Can be shared by several threads, each of which extracts the sites that it needs
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class PackedAlignment {
+    private final int ntax;
+    private final int nchar;
+    private final char[] data; // data[(site-1)*ntax+(taxon-1)]
+    private final Characters.Format format;
+
+    /**
+     * constructor
+     *
+     * @param characters the characters to take a snapshot of
+     */
+    public PackedAlignment(Characters characters) {
+        ntax = characters.getNtax();
+        nchar = characters.getNchar();
+        if ((long) ntax * nchar > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Alignment too large: " + ntax + " x " + nchar);
+        data = new char[ntax * nchar];
+        for (int t = 1; t <= ntax; t++) {
+            for (int c = 1; c <= nchar; c++)
+                data[(c - 1) * ntax + (t - 1)] = characters.get(t, c);
+        }
+        format = (Characters.Format) characters.getFormat().clone();
+    }
+
+    public int getNtax() {
+        return ntax;
+    }
+
+    public int getNchar() {
+        return nchar;
+    }
+
+    /**
+     * gets the state of a taxon at a site
+     *
+     * @param taxon 1..ntax
+     * @param site  1..nchar
+     * @return state
+     */
+    public char get(int taxon, int site) {
+        return data[(site - 1) * ntax + (taxon - 1)];
+    }
+
+    /**
+     * creates a characters block containing the given sites, in the given order
+     *
+     * @param sites sites 1..nchar
+     * @return characters
+     */
+    public Characters createCharacters(int[] sites) throws SplitsException {
+        final Characters result = new Characters(ntax, sites.length, format);
+        for (int pos = 1; pos <= sites.length; pos++) {
+            final int site = sites[pos - 1];
+            if (site <= 0 || site > nchar)
+                throw new SplitsException("Character subset contains invalid character index " + site);
+            final int offset = (site - 1) * ntax - 1;
+            for (int t = 1; t <= ntax; t++)
+                result.set(t, pos, data[offset + t]);
+        }
+        return result;
+    }
+}
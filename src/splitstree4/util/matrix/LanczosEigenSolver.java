@@ -0,0 +1,228 @@
+/*
+ * LanczosEigenSolver.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.util.matrix;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * computes the k largest (algebraic) eigenvalues and eigenvectors of a symmetric operator using the Lanczos method
+ * with full reorthogonalization. The operator is only accessed through matrix-vector products, so it can be applied
+ * implicitly
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class LanczosEigenSolver {
+    /**
+     * a symmetric linear operator
+     */
+    public interface SymmetricOperator {
+        /**
+         * dimension of the operator
+         *
+         * @return size
+         */
+        int size();
+
+        /**
+         * computes y=Ax
+         */
+        void apply(double[] x, double[] y);
+    }
+
+    private double tolerance = 1e-6;
+    private long seed = 666;
+
+    private double[] eigenValues;
+    private double[][] eigenVectors;
+    private int numberOfIterations;
+
+    /**
+     * computes the k largest eigenvalues and corresponding eigenvectors
+     *
+     * @param operator the symmetric operator
+     * @param k        number of eigenpairs required
+     */
+    public void compute(SymmetricOperator operator, int k) throws InterruptedException {
+        final int n = operator.size();
+        k = Math.min(k, n);
+
+        final List<double[]> basis = new ArrayList<>();
+        final List<Double> alphas = new ArrayList<>();
+        final List<Double> betas = new ArrayList<>();
+
+        double[] v = new double[n];
+        final Random random = new Random(seed);
+        for (int i = 0; i < n; i++)
+            v[i] = random.nextDouble() - 0.5;
+        scale(v, 1 / norm(v));
+
+        final double[] w = new double[n];
+        int nextCheck = Math.min(n, Math.max(2 * k + 10, 20));
+        numberOfIterations = 0;
+
+        while (true) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            basis.add(v);
+            operator.apply(v, w);
+            numberOfIterations++;
+            final double alpha = dot(w, v);
+            alphas.add(alpha);
+
+            // full reorthogonalization, applied twice for numerical stability
+            for (int pass = 0; pass < 2; pass++) {
+                for (double[] u : basis) {
+                    final double c = dot(w, u);
+                    for (int i = 0; i < n; i++)
+                        w[i] -= c * u[i];
+                }
+            }
+            final double beta = norm(w);
+            final int m = basis.size();
+
+            final boolean invariant = (beta <= 1e-12 * Math.max(1, Math.abs(alpha)));
+            if (invariant || m == n || m == nextCheck) {
+                if (solveTridiagonal(alphas, betas, basis, beta, k, invariant || m == n))
+                    return;
+                nextCheck = Math.min(n, 2 * nextCheck);
+            }
+            betas.add(beta);
+            v = new double[n];
+            for (int i = 0; i < n; i++)
+                v[i] = w[i] / beta;
+        }
+    }
+
+    /**
+     * computes the Ritz pairs of the current tridiagonal matrix and checks for convergence
+     *
+     * @return true, if the top k Ritz pairs have converged, in which case eigenvalues and eigenvectors are set
+     */
+    private boolean solveTridiagonal(List<Double> alphas, List<Double> betas, List<double[]> basis, double lastBeta, int k, boolean force) {
+        final int m = alphas.size();
+        final Matrix tridiagonal = new Matrix(m, m);
+        for (int i = 0; i < m; i++) {
+            tridiagonal.set(i, i, alphas.get(i));
+            if (i + 1 < m) {
+                tridiagonal.set(i, i + 1, betas.get(i));
+                tridiagonal.set(i + 1, i, betas.get(i));
+            }
+        }
+        final EigenvalueDecomposition decomposition = tridiagonal.eig();
+        final double[] values = decomposition.getRealEigenvalues();
+        final Matrix vectors = decomposition.getV();
+
+        // indices of the k largest values
+        final Integer[] order = new Integer[m];
+        for (int i = 0; i < m; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(values[b], values[a]));
+
+        k = Math.min(k, m);
+        final double scale = Math.max(Math.abs(values[order[0]]), Math.abs(values[order[m - 1]]));
+        if (!force) {
+            for (int r = 0; r < k; r++) {
+                final double residual = Math.abs(lastBeta * vectors.get(m - 1, order[r]));
+                if (residual > tolerance * Math.max(1, scale))
+                    return false;
+            }
+        }
+
+        final int n = basis.get(0).length;
+        eigenValues = new double[k];
+        eigenVectors = new double[k][n];
+        for (int r = 0; r < k; r++) {
+            eigenValues[r] = values[order[r]];
+            final double[] vector = eigenVectors[r];
+            for (int j = 0; j < m; j++) {
+                final double c = vectors.get(j, order[r]);
+                final double[] u = basis.get(j);
+                for (int i = 0; i < n; i++)
+                    vector[i] += c * u[i];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * get the computed eigenvalues, in decreasing order
+     *
+     * @return eigenvalues
+     */
+    public double[] getEigenValues() {
+        return eigenValues;
+    }
+
+    /**
+     * get the computed eigenvectors, getEigenVectors()[r] belongs to getEigenValues()[r]
+     *
+     * @return eigenvectors
+     */
+    public double[][] getEigenVectors() {
+        return eigenVectors;
+    }
+
+    /**
+     * number of operator applications used in last computation
+     *
+     * @return iterations
+     */
+    public int getNumberOfIterations() {
+        return numberOfIterations;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++)
+            sum += a[i] * b[i];
+        return sum;
+    }
+
+    private static double norm(double[] a) {
+        return Math.sqrt(dot(a, a));
+    }
+
+    private static void scale(double[] a, double factor) {
+        for (int i = 0; i < a.length; i++)
+            a[i] *= factor;
+    }
+}
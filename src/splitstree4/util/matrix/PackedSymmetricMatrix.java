@@ -0,0 +1,135 @@
+/*
+ * PackedSymmetricMatrix.java Copyright (C) 2022 Daniel H. Huson
+ *
+ * (Some files contain contributions from other authors, who are then mentioned separately.)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package splitstree4.util.matrix;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * symmetric n x n matrix of floats, stored as packed lower triangle (including the diagonal).
+ * Indices are 0-based
+ *
+ * @author huson
+ * Date: 2022
+ */
+public class PackedSymmetricMatrix {
+    private final int size;
+    private final float[] values;
+
+    /**
+     * constructor
+     *
+     * @param size number of rows and columns
+     */
+    public PackedSymmetricMatrix(int size) {
+        if ((long) size * (size + 1) / 2 > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Matrix too large: " + size);
+        this.size = size;
+        this.values = new float[(int) ((long) size * (size + 1) / 2)];
+    }
+
+    /**
+     * number of rows and columns
+     *
+     * @return size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * get entry
+     *
+     * @return value at (i,j)
+     */
+    public double get(int i, int j) {
+        return values[index(i, j)];
+    }
+
+    /**
+     * set entry (and its symmetric counterpart)
+     */
+    public void set(int i, int j, double value) {
+        values[index(i, j)] = (float) value;
+    }
+
+    /**
+     * computes y=Mx, in parallel
+     *
+     * @param x input vector
+     * @param y output vector
+     */
+    public void multiply(final double[] x, final double[] y) {
+        multiply(x, y, false);
+    }
+
+    /**
+     * computes y=Nx, where N is the matrix of squared entries, in parallel
+     *
+     * @param x input vector
+     * @param y output vector
+     */
+    public void multiplySquared(final double[] x, final double[] y) {
+        multiply(x, y, true);
+    }
+
+    /**
+     * computes the product in parallel. The packed rows are split into blocks of roughly equal numbers of entries,
+     * each block is read sequentially and accumulates into its own partial result
+     */
+    private void multiply(final double[] x, final double[] y, final boolean squared) {
+        final int numBlocks = Math.max(1, Math.min(size, Runtime.getRuntime().availableProcessors()));
+        final int[] blockStart = new int[numBlocks + 1];
+        for (int b = 1; b < numBlocks; b++)
+            blockStart[b] = (int) Math.round(size * Math.sqrt((double) b / numBlocks));
+        blockStart[numBlocks] = size;
+
+        final double[][] partial = new double[numBlocks][];
+        IntStream.range(0, numBlocks).parallel().forEach(b -> {
+            final double[] z = new double[size];
+            for (int i = blockStart[b]; i < blockStart[b + 1]; i++) {
+                final int offset = (int) ((long) i * (i + 1) / 2);
+                final double xi = x[i];
+                double sum = 0;
+                for (int j = 0; j < i; j++) {
+                    final double value = (squared ? values[offset + j] * values[offset + j] : values[offset + j]);
+                    sum += value * x[j];
+                    z[j] += value * xi;
+                }
+                final double diagonal = (squared ? values[offset + i] * values[offset + i] : values[offset + i]);
+                z[i] += sum + diagonal * xi;
+            }
+            partial[b] = z;
+        });
+        Arrays.fill(y, 0);
+        for (double[] z : partial) {
+            for (int i = 0; i < size; i++)
+                y[i] += z[i];
+        }
+    }
+
+    /**
+     * position of (i,j) in packed array
+     *
+     * @return index
+     */
+    private static int index(int i, int j) {
+        return (int) (i >= j ? (long) i * (i + 1) / 2 + j : (long) j * (j + 1) / 2 + i);
+    }
+}